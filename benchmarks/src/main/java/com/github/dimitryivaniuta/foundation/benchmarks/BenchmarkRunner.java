@@ -0,0 +1,49 @@
+package com.github.dimitryivaniuta.foundation.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of {@code benchmarks.jar}.
+ * <p>
+ * Accepts the standard JMH command line (benchmark regexps, {@code -f}, {@code -wi},
+ * {@code -p} and so on) and writes results as JSON to {@code jmh-result.json} in the
+ * working directory unless {@code -rf}/{@code -rff} say otherwise, so every run
+ * leaves a machine-readable record that can be compared against a baseline.
+ * </p>
+ */
+public final class BenchmarkRunner {
+
+    /**
+     * Default location of the JSON results.
+     */
+    public static final String DEFAULT_RESULT_FILE = "jmh-result.json";
+
+    // Prevent instantiation
+    private BenchmarkRunner() {}
+
+    /**
+     * Runs the selected benchmarks.
+     *
+     * @param args JMH command-line options
+     * @throws RunnerException            if a benchmark fails
+     * @throws CommandLineOptionException if the options cannot be parsed
+     */
+    public static void main(final String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        OptionsBuilder builder = new OptionsBuilder();
+        if (!commandLine.getResultFormat().hasValue()) {
+            builder.resultFormat(ResultFormatType.JSON);
+        }
+        if (!commandLine.getResult().hasValue()) {
+            builder.result(DEFAULT_RESULT_FILE);
+        }
+        Options options = builder.parent(commandLine).build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,116 @@
+package com.github.dimitryivaniuta.foundation.benchmarks;
+
+import com.github.dimitryivaniuta.foundation.health.CompositeHealthChecker;
+import com.github.dimitryivaniuta.foundation.health.HealthChecker;
+import com.github.dimitryivaniuta.foundation.health.HealthStatus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link CompositeHealthChecker#checkReadiness()} with a varying number of
+ * child checkers, with and without result caching.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompositeHealthCheckerBenchmark {
+
+    /**
+     * Number of child checkers.
+     */
+    @Param({"1", "8", "32"})
+    public int checkers;
+
+    /**
+     * Simulated latency of each child checker in microseconds; {@code 0} answers immediately.
+     */
+    @Param({"0", "500"})
+    public long checkerLatencyMicros;
+
+    /**
+     * Whether results are cached and refreshed in the background.
+     */
+    @Param({"false", "true"})
+    public boolean cached;
+
+    private CompositeHealthChecker composite;
+
+    /**
+     * Checker that waits for a fixed time before answering UP.
+     */
+    private static final class FixedLatencyChecker implements HealthChecker {
+        private final long latencyNanos;
+
+        FixedLatencyChecker(final long latencyNanos) {
+            this.latencyNanos = latencyNanos;
+        }
+
+        @Override
+        public HealthStatus checkLiveness() {
+            return checkReadiness();
+        }
+
+        @Override
+        public HealthStatus checkReadiness() {
+            if (latencyNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(latencyNanos);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return HealthStatus.up();
+        }
+    }
+
+    /**
+     * Builds the composite checker.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        Set<HealthChecker> children = new HashSet<>();
+        for (int i = 0; i < checkers; i++) {
+            children.add(new FixedLatencyChecker(TimeUnit.MICROSECONDS.toNanos(checkerLatencyMicros)));
+        }
+        composite = new CompositeHealthChecker(children,
+                cached ? Duration.ofSeconds(1) : Duration.ZERO,
+                CompositeHealthChecker.DEFAULT_CHECK_TIMEOUT);
+    }
+
+    /**
+     * Stops the composite's background threads.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        composite.close();
+    }
+
+    /**
+     * Runs one readiness probe.
+     *
+     * @return the aggregated status, consumed by JMH
+     */
+    @Benchmark
+    public HealthStatus checkReadiness() {
+        return composite.checkReadiness();
+    }
+}
@@ -0,0 +1,56 @@
+package com.github.dimitryivaniuta.foundation.benchmarks;
+
+import com.github.dimitryivaniuta.foundation.config.Config;
+import com.github.dimitryivaniuta.foundation.config.EnvConfigProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link EnvConfigProvider#loadConfig()}, which runs once per component
+ * graph and on every test that builds one.
+ * <p>
+ * Required settings are supplied as system properties so the benchmark does not
+ * depend on the environment of the machine running it. Each invocation merges the
+ * layers and parses and validates every setting.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConfigLoadBenchmark {
+
+    /**
+     * Provides the required settings.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        System.setProperty("APPLICATION_ID", "benchmark-app");
+        System.setProperty("INPUT_TOPIC", "benchmark-input");
+        System.setProperty("OUTPUT_TOPIC", "benchmark-output");
+        System.setProperty("GOOGLE_APPLICATION_CREDENTIALS", "/dev/null");
+    }
+
+    /**
+     * Loads the full configuration.
+     *
+     * @return the loaded configuration, consumed by JMH
+     */
+    @Benchmark
+    public Config loadConfig() {
+        return EnvConfigProvider.loadConfig();
+    }
+}
@@ -0,0 +1,72 @@
+package com.github.dimitryivaniuta.foundation.benchmarks;
+
+import com.github.dimitryivaniuta.foundation.health.HealthStatus;
+import com.github.dimitryivaniuta.foundation.health.Status;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of building {@link HealthStatus} instances, which every checker
+ * does on every probe.
+ * <p>
+ * Run with {@code -prof gc} to see allocation per operation alongside the time.
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HealthStatusBenchmark {
+
+    private final Map<String, String> details = Map.of(
+            "KafkaStreamsHealthChecker", "UP",
+            "DefaultHealthChecker", "UP",
+            "VisionHealthChecker", "UP");
+
+    /**
+     * Builds the common UP result.
+     *
+     * @return the status, consumed by JMH
+     */
+    @Benchmark
+    public HealthStatus up() {
+        return HealthStatus.up();
+    }
+
+    /**
+     * Builds a DOWN result with a message.
+     *
+     * @return the status, consumed by JMH
+     */
+    @Benchmark
+    public HealthStatus down() {
+        return HealthStatus.down("Timed out after 2000 ms");
+    }
+
+    /**
+     * Builds a composite-style result with per-checker details.
+     *
+     * @return the status, consumed by JMH
+     */
+    @Benchmark
+    public HealthStatus withDetails() {
+        return HealthStatus.builder()
+                .status(Status.UP)
+                .timestamp(Instant.now())
+                .details(details)
+                .build();
+    }
+}
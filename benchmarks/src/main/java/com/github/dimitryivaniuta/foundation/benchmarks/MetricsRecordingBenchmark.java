@@ -0,0 +1,66 @@
+package com.github.dimitryivaniuta.foundation.benchmarks;
+
+import com.github.dimitryivaniuta.foundation.metrics.Counter;
+import com.github.dimitryivaniuta.foundation.metrics.LatencyHistogram;
+import com.github.dimitryivaniuta.foundation.metrics.MetricsRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the hot-path cost of recording into shared {@link MetricsRegistry}
+ * instruments from several threads at once, as the Vision executor and sinks do.
+ * <p>
+ * Compare the single-threaded numbers ({@code -t 1}) with the default 8 threads to
+ * see how much the instruments contend.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+@Fork(1)
+public class MetricsRecordingBenchmark {
+
+    private Counter counter;
+    private LatencyHistogram histogram;
+
+    /**
+     * Registers the instruments shared by all benchmark threads.
+     */
+    @Setup
+    public void setUp() {
+        MetricsRegistry registry = new MetricsRegistry();
+        counter = registry.counter("benchmark_events_total", "Benchmark events.");
+        histogram = registry.histogram("benchmark_call_seconds", "Benchmark calls.");
+    }
+
+    /**
+     * Increments the shared counter.
+     */
+    @Benchmark
+    public void counterIncrement() {
+        counter.increment();
+    }
+
+    /**
+     * Records a latency between 1 µs and 100 ms into the shared histogram.
+     */
+    @Benchmark
+    public void histogramRecord() {
+        histogram.record(ThreadLocalRandom.current().nextLong(1_000L, 100_000_000L));
+    }
+}
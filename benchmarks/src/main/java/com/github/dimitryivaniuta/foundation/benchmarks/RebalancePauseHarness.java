@@ -0,0 +1,333 @@
+package com.github.dimitryivaniuta.foundation.benchmarks;
+
+import com.github.dimitryivaniuta.foundation.config.Config;
+import com.github.dimitryivaniuta.foundation.streams.DeadLetterPublisher;
+import com.github.dimitryivaniuta.foundation.streams.KafkaStreamsModule;
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.errors.InterruptException;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.apache.kafka.streams.KafkaStreams;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.Topology;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Measures how long a rolling restart of one Kafka Streams instance pauses the others,
+ * with dynamic and with static group membership.
+ * <p>
+ * For each mode the harness creates fresh topics, starts several instances of a small
+ * stateful topology configured through {@link KafkaStreamsModule#provideStreamsConfig},
+ * and feeds it timestamped records at a steady rate. Once the group is settled, it
+ * bounces one instance as a rolling deploy would: closes it, waits, and starts it again
+ * under the same instance id and state directory. It then reports how long the other
+ * instances spent rebalancing and the worst end-to-end latency of a record.
+ * </p>
+ * <p>
+ * {@code TopologyTestDriver} runs a single instance without a consumer group and
+ * cannot show a rebalance, so the harness needs a running broker, ideally a local one.
+ * It is a plain program rather than a JMH benchmark:
+ * </p>
+ * <pre>
+ * java -cp target/benchmarks.jar com.github.dimitryivaniuta.foundation.benchmarks.RebalancePauseHarness \
+ *     [bootstrap-servers] [instances] [restart-delay-ms]
+ * </pre>
+ */
+public final class RebalancePauseHarness {
+
+    private static final int PARTITIONS = 6;
+    private static final int RECORDS_PER_SECOND = 200;
+    private static final int KEYS = 1_000;
+    private static final Duration SETTLE = Duration.ofSeconds(20);
+    private static final Duration OBSERVE = Duration.ofSeconds(60);
+
+    private final String bootstrapServers;
+    private final int instances;
+    private final Duration restartDelay;
+
+    private RebalancePauseHarness(final String bootstrapServers, final int instances, final Duration restartDelay) {
+        this.bootstrapServers = bootstrapServers;
+        this.instances = instances;
+        this.restartDelay = restartDelay;
+    }
+
+    /**
+     * Runs the harness with dynamic membership, then static, and prints both results.
+     *
+     * @param args optional bootstrap servers (default {@code KAFKA_BOOTSTRAP_SERVERS} or
+     *             {@code localhost:9092}), instance count (default 3) and restart delay
+     *             in milliseconds (default 5000)
+     * @throws Exception if the broker cannot be reached or the run is interrupted
+     */
+    public static void main(final String[] args) throws Exception {
+        String env = System.getenv("KAFKA_BOOTSTRAP_SERVERS");
+        String bootstrap = args.length > 0 ? args[0] : env != null ? env : "localhost:9092";
+        int instances = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        Duration delay = Duration.ofMillis(args.length > 2 ? Long.parseLong(args[2]) : 5_000L);
+
+        RebalancePauseHarness harness = new RebalancePauseHarness(bootstrap, instances, delay);
+        List<Result> results = List.of(harness.run(false), harness.run(true));
+
+        System.out.printf("%-10s %12s %18s %18s%n", "membership", "rebalances", "pause ms (max)", "max latency ms");
+        for (Result result : results) {
+            System.out.printf("%-10s %12d %18d %18d%n", result.membership(), result.rebalances(),
+                    result.maxPauseMs(), result.maxLatencyMs());
+        }
+    }
+
+    /**
+     * Runs one bounce against fresh topics.
+     *
+     * @param staticMembership whether the instances get stable instance ids
+     * @return what the surviving instances saw
+     */
+    private Result run(final boolean staticMembership) throws Exception {
+        String appId = "rebalance-harness-" + (staticMembership ? "static" : "dynamic") + "-" + System.currentTimeMillis();
+        String input = appId + "-in";
+        String output = appId + "-out";
+        createTopics(input, output);
+
+        Path stateRoot = Files.createTempDirectory(appId);
+        List<Instance> group = new ArrayList<>();
+        for (int i = 0; i < instances; i++) {
+            group.add(new Instance(i, streamsConfig(appId, stateRoot.resolve("instance-" + i),
+                    staticMembership ? appId + "-" + i : ""), () -> topology(input, output)));
+        }
+        AtomicLong maxLatency = new AtomicLong();
+        Thread producer = Thread.ofVirtual().name("harness-producer").start(() -> produce(input));
+        Thread consumer = Thread.ofVirtual().name("harness-consumer").start(() -> consume(output, maxLatency));
+        try {
+            group.forEach(Instance::start);
+            awaitRunning(group);
+            Thread.sleep(SETTLE.toMillis());
+
+            maxLatency.set(0L);
+            group.forEach(Instance::resetPauses);
+            Instance bounced = group.getFirst();
+            bounced.stop(!staticMembership);
+            Thread.sleep(restartDelay.toMillis());
+            bounced.start();
+            Thread.sleep(OBSERVE.toMillis());
+
+            long rebalances = 0;
+            long maxPause = 0;
+            for (Instance instance : group.subList(1, group.size())) {
+                rebalances = Math.max(rebalances, instance.rebalances.get());
+                maxPause = Math.max(maxPause, instance.pausedMillis());
+            }
+            return new Result(staticMembership ? "static" : "dynamic", rebalances, maxPause, maxLatency.get());
+        } finally {
+            producer.interrupt();
+            consumer.interrupt();
+            group.forEach(instance -> instance.stop(true));
+            deleteTopics(input, output);
+        }
+    }
+
+    /**
+     * Builds the Streams properties the SDK would, with record caching off so that
+     * latency reflects processing rather than commit intervals.
+     */
+    private Properties streamsConfig(final String appId, final Path stateDir, final String instanceId) {
+        Map<String, String> overrides = new HashMap<>();
+        overrides.put(StreamsConfig.STATE_DIR_CONFIG, stateDir.toString());
+        overrides.put(StreamsConfig.STATESTORE_CACHE_MAX_BYTES_CONFIG, "0");
+        overrides.put(StreamsConfig.COMMIT_INTERVAL_MS_CONFIG, "100");
+        overrides.put(StreamsConfig.REPLICATION_FACTOR_CONFIG, "1");
+        Config config = Config.builder()
+                .kafkaBootstrapServers(bootstrapServers)
+                .schemaRegistryUrl("http://localhost:8081")
+                .applicationId(appId)
+                .kafkaSecurityProtocol("PLAINTEXT")
+                .streamsProfile("DEFAULT")
+                .streamsValueSerde("STRING")
+                .streamsInstanceId(instanceId)
+                .streamsNumStandbyReplicas(1)
+                .streamsAcceptableRecoveryLag(10_000L)
+                .streamsProbingRebalanceIntervalMs(600_000L)
+                .streamsOverrides(overrides)
+                .build();
+        DeadLetterPublisher deadLetters = new DeadLetterPublisher(
+                new MockProducer<>(true, null, new ByteArraySerializer(), new ByteArraySerializer()),
+                appId + "-errors", appId + "-in", List.of(), Clock.systemUTC());
+        return new KafkaStreamsModule().provideStreamsConfig(config, deadLetters);
+    }
+
+    /**
+     * Keeps the latest send time per key in a state store and forwards it, so each
+     * instance owns state that has to move or be restored when tasks are reassigned.
+     */
+    private static Topology topology(final String input, final String output) {
+        StreamsBuilder builder = new StreamsBuilder();
+        builder.<String, String>stream(input)
+                .groupByKey()
+                .reduce((previous, latest) -> latest)
+                .toStream()
+                .to(output);
+        return builder.build();
+    }
+
+    private void produce(final String topic) {
+        Properties props = new Properties();
+        props.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        props.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class.getName());
+        props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class.getName());
+        try (KafkaProducer<String, String> producer = new KafkaProducer<>(props)) {
+            long interval = TimeUnit.SECONDS.toNanos(1) / RECORDS_PER_SECOND;
+            for (long n = 0; !Thread.currentThread().isInterrupted(); n++) {
+                producer.send(new ProducerRecord<>(topic, "key-" + n % KEYS, Long.toString(System.currentTimeMillis())));
+                TimeUnit.NANOSECONDS.sleep(interval);
+            }
+        } catch (InterruptedException | InterruptException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void consume(final String topic, final AtomicLong maxLatency) {
+        Properties props = new Properties();
+        props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        props.put(ConsumerConfig.GROUP_ID_CONFIG, topic + "-harness");
+        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "latest");
+        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getName());
+        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getName());
+        try (KafkaConsumer<String, String> consumer = new KafkaConsumer<>(props)) {
+            consumer.subscribe(List.of(topic));
+            while (!Thread.currentThread().isInterrupted()) {
+                for (ConsumerRecord<String, String> record : consumer.poll(Duration.ofMillis(100))) {
+                    maxLatency.accumulateAndGet(System.currentTimeMillis() - Long.parseLong(record.value()), Math::max);
+                }
+            }
+        } catch (InterruptException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void awaitRunning(final List<Instance> group) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(2);
+        while (group.stream().anyMatch(instance -> instance.streams.state() != KafkaStreams.State.RUNNING)) {
+            if (System.nanoTime() > deadline) {
+                throw new IllegalStateException("Failed to start the harness instances within 2 minutes");
+            }
+            Thread.sleep(100);
+        }
+    }
+
+    private void createTopics(final String... topics) throws ExecutionException, InterruptedException {
+        try (Admin admin = Admin.create(Map.of(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers))) {
+            List<NewTopic> newTopics = new ArrayList<>();
+            for (String topic : topics) {
+                newTopics.add(new NewTopic(topic, PARTITIONS, (short) 1));
+            }
+            admin.createTopics(newTopics).all().get();
+        }
+    }
+
+    private void deleteTopics(final String... topics) throws ExecutionException, InterruptedException {
+        try (Admin admin = Admin.create(Map.of(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers))) {
+            admin.deleteTopics(List.of(topics)).all().get();
+        }
+    }
+
+    /**
+     * One Kafka Streams instance and the time it has spent rebalancing.
+     */
+    private static final class Instance {
+
+        private final int index;
+        private final Properties props;
+        private final Supplier<Topology> topology;
+        private final AtomicLong rebalances = new AtomicLong();
+
+        private KafkaStreams streams;
+        private volatile long pausedNanos;
+        private volatile long rebalanceStart;
+
+        private Instance(final int index, final Properties props, final Supplier<Topology> topology) {
+            this.index = index;
+            this.props = props;
+            this.topology = topology;
+        }
+
+        /**
+         * Starts a new client, as a restarted pod would, keeping the instance id and state directory.
+         */
+        void start() {
+            streams = new KafkaStreams(topology.get(), props);
+            streams.setStateListener((newState, oldState) -> {
+                if (newState == KafkaStreams.State.REBALANCING) {
+                    rebalances.incrementAndGet();
+                    rebalanceStart = System.nanoTime();
+                } else if (oldState == KafkaStreams.State.REBALANCING && rebalanceStart != 0L) {
+                    pausedNanos = Math.max(pausedNanos, System.nanoTime() - rebalanceStart);
+                    rebalanceStart = 0L;
+                }
+            });
+            streams.start();
+        }
+
+        /**
+         * Closes the client.
+         *
+         * @param leaveGroup whether to leave the group, as a dynamic member does on a clean shutdown
+         */
+        void stop(final boolean leaveGroup) {
+            if (streams != null) {
+                boolean closed = streams.close(new KafkaStreams.CloseOptions()
+                        .timeout(Duration.ofSeconds(30))
+                        .leaveGroup(leaveGroup));
+                if (!closed) {
+                    System.err.printf("Instance %d did not close within 30 s%n", index);
+                }
+            }
+        }
+
+        void resetPauses() {
+            rebalances.set(0L);
+            pausedNanos = 0L;
+        }
+
+        /**
+         * Returns the longest rebalance so far, counting one still in progress.
+         */
+        long pausedMillis() {
+            long start = rebalanceStart;
+            long current = start == 0L ? 0L : System.nanoTime() - start;
+            return TimeUnit.NANOSECONDS.toMillis(Math.max(pausedNanos, current));
+        }
+    }
+
+    /**
+     * What the instances that stayed up saw while another was bounced.
+     *
+     * @param membership   {@code dynamic} or {@code static}
+     * @param rebalances   most rebalances any of them went through
+     * @param maxPauseMs   longest time any of them spent rebalancing
+     * @param maxLatencyMs worst end-to-end latency of a record
+     */
+    private record Result(String membership, long rebalances, long maxPauseMs, long maxLatencyMs) {
+    }
+}
@@ -0,0 +1,127 @@
+package com.github.dimitryivaniuta.foundation.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.dimitryivaniuta.foundation.persistence.CoalescingAsyncDocumentSink;
+import com.github.dimitryivaniuta.foundation.persistence.DiskDocumentSink;
+import com.github.dimitryivaniuta.foundation.persistence.KafkaErrorSink;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Measures the persistence sinks under concurrent writers.
+ * <p>
+ * Eight threads write small JSON documents through the blocking
+ * {@link DiskDocumentSink}, through the coalescing asynchronous adapter (each
+ * writer waits for its own document, so group commit is what is measured), and
+ * publish envelopes through {@link KafkaErrorSink} backed by a {@link MockProducer}.
+ * Change the writer count with {@code -t}.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class SinkBenchmark {
+
+    private static final Map<String, Object> DOCUMENT = Map.of(
+            "documentId", "doc-0001",
+            "page", 1,
+            "text", "Lorem ipsum dolor sit amet, consectetur adipiscing elit.");
+
+    private Path directory;
+    private DiskDocumentSink<Object> diskSink;
+    private CoalescingAsyncDocumentSink<Object> asyncSink;
+    private MockProducer<String, byte[]> producer;
+    private KafkaErrorSink<Object> errorSink;
+
+    /**
+     * Opens the sinks in a fresh temporary directory.
+     *
+     * @throws IOException if the directory or segment files cannot be created
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("sink-benchmark");
+        diskSink = new DiskDocumentSink<>(directory.resolve("documents"), new ObjectMapper(), 64 * 1024 * 1024);
+        asyncSink = new CoalescingAsyncDocumentSink<>(diskSink);
+        producer = new MockProducer<>(true, null, new StringSerializer(), new ByteArraySerializer());
+        errorSink = new KafkaErrorSink<>(producer, "benchmark-errors", new ObjectMapper(),
+                10_000, KafkaErrorSink.OverflowPolicy.DROP_OLDEST, null);
+    }
+
+    /**
+     * Discards the records retained by the mock producer between iterations.
+     */
+    @TearDown(Level.Iteration)
+    public void clearProducer() {
+        producer.clear();
+    }
+
+    /**
+     * Closes the sinks and deletes the temporary directory.
+     *
+     * @throws IOException if the directory cannot be deleted
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        errorSink.close();
+        asyncSink.close();
+        diskSink.close();
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    /**
+     * Appends one document and waits for it to be forced to disk.
+     *
+     * @throws IOException if the write fails
+     */
+    @Benchmark
+    public void diskWrite() throws IOException {
+        diskSink.write(DOCUMENT);
+    }
+
+    /**
+     * Submits one document to the coalescing adapter and waits for it to be persisted.
+     */
+    @Benchmark
+    public void asyncWrite() {
+        asyncSink.writeAsync(DOCUMENT).toCompletableFuture().join();
+    }
+
+    /**
+     * Publishes one error envelope; returns once it is buffered.
+     */
+    @Benchmark
+    public void errorPublish() {
+        errorSink.publish(DOCUMENT);
+    }
+}
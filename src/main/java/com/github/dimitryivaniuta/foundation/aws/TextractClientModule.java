@@ -0,0 +1,138 @@
+package com.github.dimitryivaniuta.foundation.aws;
+
+import com.github.dimitryivaniuta.foundation.config.Config;
+import com.github.dimitryivaniuta.foundation.grpc.AdaptiveConcurrencyLimiter;
+import com.github.dimitryivaniuta.foundation.lifecycle.ShutdownManager;
+import com.github.dimitryivaniuta.foundation.lifecycle.ShutdownStage;
+import com.github.dimitryivaniuta.foundation.lifecycle.StartupPhase;
+import com.github.dimitryivaniuta.foundation.metrics.MetricsRegistry;
+import com.github.dimitryivaniuta.foundation.ocr.OcrEngine;
+import dagger.Module;
+import dagger.Provides;
+import dagger.multibindings.ElementsIntoSet;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.textract.TextractAsyncClient;
+
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * Dagger module responsible for providing the AWS Textract client.
+ * <p>
+ * Textract is opt-in: only when {@link Config#isTextractEnabled()} is set does this
+ * module contribute a {@link TextractOcrEngine} to the {@code Set<OcrEngine>} and a
+ * {@code textract-client} {@link StartupPhase}. Credentials come from the default AWS
+ * provider chain (environment, profile, web identity or instance role).
+ * </p>
+ * <p>
+ * The engine's concurrency limiter and call latencies are exported through the
+ * {@link MetricsRegistry} as {@code foundation_textract_*} metrics.
+ * </p>
+ *
+ * @see TextractAsyncClient
+ */
+@Module
+public class TextractClientModule {
+
+    /**
+     * Provides a singleton {@link TextractAsyncClient} for the configured region,
+     * closed in the {@link ShutdownStage#CLOSE_CLIENTS} stage.
+     *
+     * @param config   the application configuration containing the region and call timeout
+     * @param shutdown the manager the client is closed by
+     * @return a singleton Textract client
+     * @throws IllegalStateException if the client cannot be created
+     */
+    @Provides
+    @Singleton
+    public TextractAsyncClient provideTextractClient(final Config config, final ShutdownManager shutdown) {
+        try {
+            TextractAsyncClient client = TextractAsyncClient.builder()
+                    .region(Region.of(config.getAwsRegion()))
+                    .overrideConfiguration(ClientOverrideConfiguration.builder()
+                            .apiCallTimeout(textractTimeout(config))
+                            .build())
+                    .build();
+            shutdown.register("textract-client", ShutdownStage.CLOSE_CLIENTS, budget -> client.close());
+            return client;
+        } catch (SdkException e) {
+            throw new IllegalStateException(
+                    "Failed to create TextractAsyncClient in region '" + config.getAwsRegion() + "'", e);
+        }
+    }
+
+    /**
+     * Provides the singleton {@link TextractOcrEngine}, whose in-flight calls are
+     * drained in the {@link ShutdownStage#DRAIN} stage.
+     *
+     * @param config   the application configuration containing the concurrency and timeout settings
+     * @param client   provider of the Textract client, resolved on the first call
+     * @param registry the registry the engine's metrics are exported through
+     * @param shutdown the manager the engine is drained by
+     * @return a singleton Textract engine
+     */
+    @Provides
+    @Singleton
+    public TextractOcrEngine provideTextractOcrEngine(final Config config,
+                                                      final Provider<TextractAsyncClient> client,
+                                                      final MetricsRegistry registry,
+                                                      final ShutdownManager shutdown) {
+        int maxConcurrency = Math.max(1, config.getTextractMaxConcurrency());
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(maxConcurrency, 1, maxConcurrency,
+                textractTimeout(config));
+        registry.gauge("foundation_textract_limiter_limit", "Current Textract concurrency limit.", limiter::getLimit);
+        registry.gauge("foundation_textract_limiter_in_flight", "Textract calls in flight.", limiter::getInFlight);
+        registry.counter("foundation_textract_limiter_rejected_total", "Textract pages that got no slot in time.",
+                limiter::getRejectedCount);
+        registry.counter("foundation_textract_limiter_dropped_total", "Textract calls that were throttled.",
+                limiter::getDroppedCount);
+        TextractOcrEngine engine = new TextractOcrEngine(client, limiter, textractTimeout(config), registry);
+        shutdown.register("textract-calls", ShutdownStage.DRAIN, budget -> engine.close(budget));
+        return engine;
+    }
+
+    /**
+     * Contributes the Textract engine when {@link Config#isTextractEnabled()} is set.
+     *
+     * @param config the application configuration
+     * @param engine provider of the engine, only resolved when enabled
+     * @return the Textract engine, or no engine
+     */
+    @Provides
+    @ElementsIntoSet
+    public Set<OcrEngine> provideTextractOcrEngines(final Config config, final Provider<TextractOcrEngine> engine) {
+        return config.isTextractEnabled() ? Set.of(engine.get()) : Set.of();
+    }
+
+    /**
+     * Contributes the start-up phase that creates the Textract client when
+     * {@link Config#isTextractEnabled()} is set, resolving the region and credentials.
+     *
+     * @param config the application configuration
+     * @param client provider of the singleton client
+     * @return the {@code textract-client} start-up phase, or no phase
+     */
+    @Provides
+    @ElementsIntoSet
+    public Set<StartupPhase> provideTextractStartupPhases(final Config config,
+                                                          final Provider<TextractAsyncClient> client) {
+        return config.isTextractEnabled() ? Set.of(new StartupPhase("textract-client", client::get)) : Set.of();
+    }
+
+    /**
+     * Returns the total timeout of a Textract call, {@link Config#getTextractApiTimeoutMs()},
+     * falling back to 30 seconds when unset.
+     *
+     * @param config the application configuration
+     * @return the call timeout, also used as the latency budget of the limiter
+     */
+    static Duration textractTimeout(final Config config) {
+        return config.getTextractApiTimeoutMs() > 0
+                ? Duration.ofMillis(config.getTextractApiTimeoutMs())
+                : Duration.ofSeconds(30);
+    }
+}
@@ -0,0 +1,254 @@
+package com.github.dimitryivaniuta.foundation.aws;
+
+import com.github.dimitryivaniuta.foundation.grpc.AdaptiveConcurrencyLimiter;
+import com.github.dimitryivaniuta.foundation.metrics.Counter;
+import com.github.dimitryivaniuta.foundation.metrics.LatencyHistogram;
+import com.github.dimitryivaniuta.foundation.metrics.MetricsRegistry;
+import com.github.dimitryivaniuta.foundation.ocr.OcrEngine;
+import com.github.dimitryivaniuta.foundation.ocr.OcrResult;
+import com.github.dimitryivaniuta.foundation.streams.DocumentPayload;
+import javax.inject.Provider;
+import lombok.extern.slf4j.Slf4j;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.core.exception.ApiCallTimeoutException;
+import software.amazon.awssdk.core.exception.SdkServiceException;
+import software.amazon.awssdk.services.textract.TextractAsyncClient;
+import software.amazon.awssdk.services.textract.model.Block;
+import software.amazon.awssdk.services.textract.model.BlockType;
+import software.amazon.awssdk.services.textract.model.DetectDocumentTextRequest;
+import software.amazon.awssdk.services.textract.model.DetectDocumentTextResponse;
+import software.amazon.awssdk.services.textract.model.Document;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * {@link OcrEngine} backed by AWS Textract {@code DetectDocumentText}.
+ * <p>
+ * Textract's synchronous API takes one page per request, so there is nothing to
+ * batch: every page is its own asynchronous call on the {@link TextractAsyncClient}.
+ * Calls in flight are bounded by an {@link AdaptiveConcurrencyLimiter}; throttling
+ * errors and timed-out calls shrink the limit, keeping the engine under the account's
+ * TPS quota. Waiting for a slot happens on a virtual thread, so {@link #recognize}
+ * never blocks. A page that cannot get a slot within the latency budget fails with a
+ * {@link RejectedExecutionException}.
+ * </p>
+ * <p>
+ * Closing the engine waits both for pages still waiting for a slot and for calls
+ * already sent, so a page accepted before shutdown gets its result.
+ * </p>
+ * <p>
+ * The result's text is the page's {@code LINE} blocks in reading order.
+ * </p>
+ */
+@Slf4j
+public class TextractOcrEngine implements OcrEngine, AutoCloseable {
+
+    /**
+     * Name of this engine.
+     */
+    public static final String NAME = "textract";
+
+    private final Provider<TextractAsyncClient> clientProvider;
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final Duration maxQueueTime;
+    private final ExecutorService dispatcher;
+
+    /**
+     * Results of the pages accepted and not yet completed, awaited on close.
+     */
+    private final Set<CompletableFuture<OcrResult>> outstanding = ConcurrentHashMap.newKeySet();
+
+    private final LatencyHistogram callSuccessLatency;
+    private final LatencyHistogram callErrorLatency;
+    private final LatencyHistogram queueLatency;
+    private final Counter pagesSent;
+
+    private volatile boolean closed;
+
+    /**
+     * Creates the engine.
+     *
+     * @param clientProvider provider of the Textract client
+     * @param limiter        limiter bounding concurrent Textract calls
+     * @param maxQueueTime   longest time a page waits for a slot
+     * @param registry       the registry call metrics are recorded in
+     */
+    public TextractOcrEngine(final Provider<TextractAsyncClient> clientProvider,
+                             final AdaptiveConcurrencyLimiter limiter,
+                             final Duration maxQueueTime,
+                             final MetricsRegistry registry) {
+        this.clientProvider = clientProvider;
+        this.limiter = limiter;
+        this.maxQueueTime = maxQueueTime;
+        this.dispatcher = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("textract-", 0).factory());
+        String callHelp = "Latency of Textract detectDocumentText calls, including SDK retries.";
+        this.callSuccessLatency = registry.histogram("foundation_textract_call_seconds", callHelp,
+                "outcome", "success");
+        this.callErrorLatency = registry.histogram("foundation_textract_call_seconds", callHelp,
+                "outcome", "error");
+        this.queueLatency = registry.histogram("foundation_textract_queue_seconds",
+                "Time Textract pages wait for a concurrency limiter slot.");
+        this.pagesSent = registry.counter("foundation_textract_pages_total", "Pages sent to Textract.");
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IllegalStateException if the engine has been closed
+     */
+    @Override
+    public CompletableFuture<OcrResult> recognize(final DocumentPayload page) {
+        if (closed) {
+            throw new IllegalStateException("TextractOcrEngine is closed");
+        }
+        DetectDocumentTextRequest request = DetectDocumentTextRequest.builder()
+                .document(Document.builder().bytes(SdkBytes.fromByteBuffer(OcrEngine.image(page))).build())
+                .build();
+        CompletableFuture<OcrResult> result = new CompletableFuture<>();
+        outstanding.add(result);
+        result.whenComplete((completed, error) -> outstanding.remove(result));
+        try {
+            dispatcher.execute(() -> call(request, result));
+        } catch (RejectedExecutionException e) {
+            // Closed after the check above
+            result.completeExceptionally(new IllegalStateException("TextractOcrEngine is closed", e));
+        }
+        return result;
+    }
+
+    /**
+     * Closes the engine, waiting up to a minute for outstanding pages.
+     */
+    @Override
+    public void close() {
+        close(Duration.ofMinutes(1));
+    }
+
+    /**
+     * Stops taking pages and waits for pages waiting for a slot to be sent and for
+     * calls in flight to complete, within the given time. The underlying
+     * {@link TextractAsyncClient} is not closed; it is owned by its provider.
+     *
+     * @param timeout how long to wait for outstanding pages
+     */
+    public void close(final Duration timeout) {
+        closed = true;
+        long deadline = System.nanoTime() + timeout.toNanos();
+        dispatcher.shutdown();
+        try {
+            if (!dispatcher.awaitTermination(timeout.toNanos(), TimeUnit.NANOSECONDS)) {
+                dispatcher.shutdownNow();
+            }
+            CompletableFuture.allOf(outstanding.toArray(CompletableFuture[]::new))
+                    .get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            dispatcher.shutdownNow();
+            Thread.currentThread().interrupt();
+        } catch (TimeoutException e) {
+            log.warn("Closed TextractOcrEngine with {} calls still in flight", outstanding.size());
+        } catch (ExecutionException e) {
+            // Failed pages have been reported to their callers
+        }
+    }
+
+    /**
+     * Waits for a slot and sends one page.
+     *
+     * @param request the Textract request
+     * @param result  the future to complete with the page's result
+     */
+    private void call(final DetectDocumentTextRequest request, final CompletableFuture<OcrResult> result) {
+        AdaptiveConcurrencyLimiter.Permit permit;
+        long queued = System.nanoTime();
+        try {
+            permit = limiter.acquire(maxQueueTime);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.completeExceptionally(e);
+            return;
+        } finally {
+            queueLatency.recordSince(queued);
+        }
+        if (permit == null) {
+            result.completeExceptionally(new RejectedExecutionException(String.format(
+                    "No Textract slot within %d ms (limit %d)", maxQueueTime.toMillis(), limiter.getLimit())));
+            return;
+        }
+        pagesSent.increment();
+        long start = System.nanoTime();
+        CompletableFuture<DetectDocumentTextResponse> response;
+        try {
+            response = clientProvider.get().detectDocumentText(request);
+        } catch (RuntimeException e) {
+            callErrorLatency.recordSince(start);
+            permit.onIgnore();
+            result.completeExceptionally(e);
+            return;
+        }
+        response.whenComplete((detected, error) -> {
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause()
+                        : error;
+                callErrorLatency.recordSince(start);
+                if (isOverload(cause)) {
+                    permit.onDropped();
+                } else {
+                    permit.onIgnore();
+                }
+                result.completeExceptionally(cause);
+                return;
+            }
+            callSuccessLatency.recordSince(start);
+            permit.onSuccess();
+            result.complete(result(detected));
+        });
+    }
+
+    /**
+     * Tells whether a failed call signals that Textract is throttling or overloaded.
+     *
+     * @param error the call failure
+     * @return {@code true} for throttling errors, 5xx responses and timed-out calls
+     */
+    static boolean isOverload(final Throwable error) {
+        if (error instanceof ApiCallTimeoutException) {
+            return true;
+        }
+        return error instanceof SdkServiceException service
+                && (service.isThrottlingException() || service.statusCode() >= 500);
+    }
+
+    /**
+     * Builds the result from the page's {@code LINE} blocks.
+     *
+     * @param response the Textract response
+     * @return the result
+     */
+    static OcrResult result(final DetectDocumentTextResponse response) {
+        List<String> lines = new ArrayList<>();
+        for (Block block : response.blocks()) {
+            if (block.blockType() == BlockType.LINE && block.text() != null) {
+                lines.add(block.text());
+            }
+        }
+        return OcrResult.ofLines(NAME, lines);
+    }
+}
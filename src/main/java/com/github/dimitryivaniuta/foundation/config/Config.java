@@ -3,6 +3,9 @@ package com.github.dimitryivaniuta.foundation.config;
 import lombok.Builder;
 import lombok.Value;
 
+import java.util.List;
+import java.util.Map;
+
 /**
  * Immutable configuration holder for the Foundation SDK.
  * <p>
@@ -16,6 +19,12 @@ import lombok.Value;
 @Builder
 public class Config {
 
+    /**
+     * Prefix of environment variables and system properties passed through
+     * verbatim to Kafka Streams; see {@link #streamsOverrides}.
+     */
+    public static final String STREAMS_OVERRIDE_PREFIX = "KAFKA_STREAMS_";
+
     /**
      * Comma-separated list of Kafka bootstrap servers (host:port).
      * Used to configure both Kafka clients and Kafka Streams.
@@ -57,6 +66,18 @@ public class Config {
      */
     boolean runGVInParallel;
 
+    /**
+     * Upper bound on the number of Vision batches that may be in flight at once
+     * when {@link #runGVInParallel} is enabled.
+     */
+    int gvMaxParallelBatches;
+
+    /**
+     * Maximum time in milliseconds a partially filled Vision batch waits for
+     * more pages before it is sent. Zero sends every page as soon as it arrives.
+     */
+    long gvBatchLingerMs;
+
     /**
      * File system path to the Google Cloud credentials JSON file.
      * This should point to a service account key with the Vision API scope.
@@ -91,24 +112,277 @@ public class Config {
     /**
      * <p>
      * Timeout in milliseconds for gRPC Vision API calls.
-     * This value will be used to configure
-     * {@code ImageAnnotatorSettings} transport channel settings.
+     * This value bounds each {@code batchAnnotateImages} call including
+     * its retries, and how long a batch may wait for a concurrency limiter slot.
      * </p>
      */
     long visionApiTimeoutMs;
 
+    /**
+     * Latency in milliseconds above which a Vision batch call counts as overload
+     * to the concurrency limiter. It should sit well below {@link #visionApiTimeoutMs},
+     * so the limiter backs off while calls still succeed; zero or less selects a
+     * quarter of the timeout.
+     */
+    long visionLatencyTargetMs;
+
+    /**
+     * Number of gRPC channels, each with its own HTTP/2 connection, that Vision
+     * calls are spread over.
+     */
+    int visionChannelPoolSize;
+
+    /**
+     * Interval in milliseconds between HTTP/2 keepalive pings on idle-looking
+     * Vision connections.
+     */
+    long visionKeepAliveTimeMs;
+
+    /**
+     * Time in milliseconds to wait for a keepalive ping acknowledgement before
+     * the Vision connection is considered dead.
+     */
+    long visionKeepAliveTimeoutMs;
+
+    /**
+     * Maximum number of attempts per Vision call, including the first.
+     */
+    int visionMaxAttempts;
+
+    /**
+     * Timeout in milliseconds of the first attempt of a Vision call.
+     */
+    long visionInitialRpcTimeoutMs;
+
+    /**
+     * Upper bound in milliseconds of the per-attempt timeout, which grows between retries.
+     */
+    long visionMaxRpcTimeoutMs;
+
+    /**
+     * Delay in milliseconds before the first retry of a Vision call.
+     */
+    long visionInitialRetryDelayMs;
+
+    /**
+     * Upper bound in milliseconds of the delay between retries.
+     */
+    long visionMaxRetryDelayMs;
+
+    /**
+     * Factor by which the retry delay grows after each attempt.
+     */
+    double visionRetryDelayMultiplier;
+
+    /**
+     * Whether slow Vision batch calls are hedged by sending a second copy
+     * after the 95th percentile of recent latencies.
+     */
+    boolean visionHedgingEnabled;
+
+    /**
+     * Minimum delay in milliseconds before a Vision call is hedged.
+     */
+    long visionHedgingMinDelayMs;
+
+    /**
+     * Maximum number of Vision responses kept in the in-heap result cache;
+     * zero or less disables the cache.
+     */
+    int visionCacheMaxEntries;
+
+    /**
+     * Whether Vision responses are also cached on disk under
+     * {@link #documentSinkPath}, so they survive restarts.
+     */
+    boolean visionCacheDiskEnabled;
+
+    /**
+     * Maximum bytes the disk tier of the Vision result cache may occupy; the least
+     * recently used responses are deleted beyond it.
+     */
+    long visionCacheDiskMaxBytes;
+
+    /**
+     * Maximum number of records per stream task whose Vision calls may be in flight
+     * in {@code AsyncVisionProcessor} before it stops taking new records.
+     */
+    int visionMaxInFlightPerTask;
+
+    /**
+     * Whether page images are downscaled, converted to grayscale and recompressed
+     * before they are sent to Vision.
+     */
+    boolean imagePreprocessEnabled;
+
+    /**
+     * Resolution in dots per inch that larger page images are downscaled to.
+     */
+    int imageTargetDpi;
+
+    /**
+     * ImageIO format name pre-processed images are written in, e.g. "jpeg", or
+     * "webp" when a WebP writer plugin is on the classpath.
+     */
+    String imageOutputFormat;
+
+    /**
+     * Initial compression quality of pre-processed images, between 0 and 1.
+     */
+    double imageQuality;
+
+    /**
+     * Size budget in bytes of a pre-processed image; the quality is lowered
+     * step by step until the image fits.
+     */
+    int imageMaxBytes;
+
+    /**
+     * Fraction of dark pixels below which a page counts as blank and is not sent to OCR.
+     */
+    double imageBlankInkRatio;
+
+    /**
+     * Number of threads pre-processing images; zero or less uses one per CPU.
+     */
+    int imagePreprocessThreads;
+
+    /**
+     * Whether to create the AWS Textract client and offer Textract as an
+     * {@code OcrEngine} alongside Vision.
+     */
+    boolean textractEnabled;
+
+    /**
+     * AWS region of the Textract endpoint, e.g. "eu-west-1". Credentials come from
+     * the default AWS provider chain.
+     */
+    String awsRegion;
+
+    /**
+     * Upper bound on the number of Textract calls in flight at once; Textract's
+     * per-account TPS quota is far lower than Vision's.
+     */
+    int textractMaxConcurrency;
+
+    /**
+     * Total timeout of a Textract call in milliseconds, including the SDK's retries.
+     */
+    long textractApiTimeoutMs;
+
     /**
      * Interval in seconds for health check liveness probes.
      */
     int healthCheckIntervalSec;
 
+    /**
+     * Deadline in milliseconds for each individual health checker; a checker
+     * that does not answer in time is reported DOWN.
+     */
+    long healthCheckTimeoutMs;
+
+    /**
+     * TCP port of the embedded health HTTP server; {@code 0} binds an ephemeral
+     * port and a negative value disables the server.
+     */
+    int healthServerPort;
+
+    /**
+     * Deadline in milliseconds for warming up the SDK before Kafka Streams is started;
+     * see {@code StartupCoordinator}.
+     */
+    long startupTimeoutMs;
+
+    /**
+     * Budget in milliseconds for the ordered shutdown of the SDK, shared out among
+     * its stages; see {@code ShutdownManager}.
+     */
+    long shutdownTimeoutMs;
+
     /**
      * Base directory path where OCR-processed documents will be written.
      */
     String documentSinkPath;
 
+    /**
+     * Size in bytes of each pre-allocated, memory-mapped segment file
+     * written by the disk document sink.
+     */
+    int documentSinkSegmentBytes;
+
     /**
      * Kafka topic name for publishing error envelopes.
      */
     String errorTopic;
+
+    /**
+     * Delays in milliseconds of the retry tiers a record that failed processing
+     * passes through before it is dead-lettered to {@link #errorTopic}; each tier
+     * has its own topic. Empty ({@code none} in the environment) to dead-letter
+     * failed records at once.
+     */
+    List<Long> retryDelaysMs;
+
+    /**
+     * Capacity of the in-memory queue between {@code ErrorSink.publish} callers
+     * and the Kafka producer that drains it.
+     */
+    int errorSinkQueueCapacity;
+
+    /**
+     * What the Kafka error sink does when its queue is full:
+     * {@code BLOCK}, {@code DROP_OLDEST} or {@code SPILL_TO_DISK}.
+     */
+    String errorSinkOverflowPolicy;
+
+    /**
+     * Maximum bytes of the Kafka error sink's spill file; envelopes overflowing
+     * it are dropped.
+     */
+    long errorSinkSpillMaxBytes;
+
+    /**
+     * Name of the Kafka Streams tuning profile: {@code DEFAULT}, {@code LOW_LATENCY},
+     * {@code HIGH_THROUGHPUT} or {@code EXACTLY_ONCE_V2}.
+     */
+    String streamsProfile;
+
+    /**
+     * Default value Serde of the Kafka Streams application: {@code STRING},
+     * {@code BYTES}, {@code DOCUMENT} (binary OCR document payloads) or a
+     * fully qualified {@code Serde} class name.
+     */
+    String streamsValueSerde;
+
+    /**
+     * Stable identity of this instance within the Kafka Streams consumer group, from
+     * {@code STREAMS_INSTANCE_ID} or else the pod's {@code POD_NAME}. When set, the
+     * stream threads join with static membership, so a restart within the session
+     * timeout does not rebalance the group. Blank for dynamic membership.
+     */
+    String streamsInstanceId;
+
+    /**
+     * Number of warm standby copies kept of each state store ({@code num.standby.replicas}).
+     */
+    int streamsNumStandbyReplicas;
+
+    /**
+     * Largest changelog lag, in records, at which an instance still counts as caught up
+     * and may take over active tasks ({@code acceptable.recovery.lag}).
+     */
+    long streamsAcceptableRecoveryLag;
+
+    /**
+     * Interval in milliseconds of the probing rebalances that move tasks back once
+     * their warm-up replicas have caught up ({@code probing.rebalance.interval.ms}).
+     */
+    long streamsProbingRebalanceIntervalMs;
+
+    /**
+     * Raw Kafka Streams properties applied on top of the tuning profile, keyed by
+     * property name, e.g. {@code num.stream.threads} from
+     * {@code KAFKA_STREAMS_NUM_STREAM_THREADS}.
+     */
+    Map<String, String> streamsOverrides;
 }
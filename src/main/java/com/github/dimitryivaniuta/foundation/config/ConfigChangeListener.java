@@ -0,0 +1,22 @@
+package com.github.dimitryivaniuta.foundation.config;
+
+/**
+ * Callback notified when {@link ReloadableConfigSource} publishes a new {@link Config}.
+ * <p>
+ * Implementations are contributed to a Dagger {@code Set<ConfigChangeListener>}
+ * multibinding, or registered with {@link ReloadableConfigSource#addListener}.
+ * They run on the watcher thread one after another, so they should only adopt the
+ * settings they care about and return quickly.
+ * </p>
+ */
+@FunctionalInterface
+public interface ConfigChangeListener {
+
+    /**
+     * Called after a new snapshot has been published.
+     *
+     * @param previous the snapshot that was replaced
+     * @param current  the snapshot now returned by {@link ReloadableConfigSource#get()}
+     */
+    void onConfigChange(Config previous, Config current);
+}
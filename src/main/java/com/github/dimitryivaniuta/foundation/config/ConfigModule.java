@@ -2,8 +2,14 @@ package com.github.dimitryivaniuta.foundation.config;
 
 import dagger.Module;
 import dagger.Provides;
+import dagger.multibindings.Multibinds;
+import javax.inject.Provider;
 import javax.inject.Singleton;
 
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.function.Supplier;
+
 /**
  * Dagger module responsible for providing application-wide configuration.
  * <p>
@@ -11,26 +17,84 @@ import javax.inject.Singleton;
  * settings into an immutable {@link Config} object. The provided
  * Config instance is a singleton within the Dagger component scope.
  * </p>
+ * <p>
+ * When {@code CONFIG_FILE} names a {@code .properties} or flat YAML file, its
+ * settings fill in whatever the environment does not set, and a
+ * {@link ReloadableConfigSource} watches it for changes. The injected {@code Config}
+ * is the snapshot taken at start-up; inject {@code Supplier<Config>} for the latest
+ * one, or contribute a {@link ConfigChangeListener} to adopt changes as they happen.
+ * </p>
  *
  * @see EnvConfigProvider
  * @see Config
  */
-@Module
+@Module(includes = ConfigModule.Declarations.class)
 public class ConfigModule {
 
+    /**
+     * Name of the environment variable or system property pointing at the
+     * configuration file.
+     */
+    public static final String CONFIG_FILE = "CONFIG_FILE";
+
     /**
      * Provides the immutable application {@link Config} object.
      * <p>
      * Loads all required settings (Kafka servers, topics, timeouts, credentials, etc.)
-     * from environment variables or system properties, applying any necessary
-     * defaults or validations.
+     * from environment variables, system properties or the configuration file,
+     * applying any necessary defaults or validations.
      * </p>
      *
+     * @param source the source holding the current configuration
      * @return a singleton Config instance populated with environment settings
      */
     @Provides
     @Singleton
-    public Config provideConfig() {
-        return EnvConfigProvider.loadConfig();
+    public Config provideConfig(final ReloadableConfigSource source) {
+        return source.get();
+    }
+
+    /**
+     * Provides the source of configuration snapshots, watching {@code CONFIG_FILE}
+     * when it is set.
+     *
+     * @param listeners the contributed listeners, resolved on the first change
+     * @return a singleton configuration source
+     */
+    @Provides
+    @Singleton
+    public ReloadableConfigSource provideConfigSource(final Provider<Set<ConfigChangeListener>> listeners) {
+        String path = System.getProperty(CONFIG_FILE, System.getenv(CONFIG_FILE));
+        Path file = path == null || path.isBlank() ? null : Path.of(path);
+        ReloadableConfigSource source = new ReloadableConfigSource(file, EnvConfigProvider::loadConfig,
+                listeners::get, ReloadableConfigSource.DEFAULT_DEBOUNCE);
+        source.start();
+        return source;
+    }
+
+    /**
+     * Provides the latest configuration snapshot on every call.
+     *
+     * @param source the source holding the current configuration
+     * @return a supplier of the current configuration
+     */
+    @Provides
+    public Supplier<Config> provideConfigSupplier(final ReloadableConfigSource source) {
+        return source;
+    }
+
+    /**
+     * Multibinding declarations of this module.
+     */
+    @Module
+    public interface Declarations {
+
+        /**
+         * Declares the possibly empty set of configuration change listeners.
+         *
+         * @return the listeners
+         */
+        @Multibinds
+        Set<ConfigChangeListener> configChangeListeners();
     }
 }
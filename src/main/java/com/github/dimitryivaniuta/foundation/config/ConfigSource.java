@@ -0,0 +1,118 @@
+package com.github.dimitryivaniuta.foundation.config;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * One layer of settings keyed by environment variable name, such as a
+ * configuration file, the environment or the system properties.
+ * <p>
+ * {@link EnvConfigProvider#loadConfig(List)} stacks layers on top of the built-in
+ * defaults; a layer's non-blank values replace those of the layers below it.
+ * </p>
+ *
+ * @param name   describes the layer in validation errors, e.g. {@code "environment"}
+ * @param values the settings of this layer
+ */
+public record ConfigSource(String name, Map<String, String> values) {
+
+    /**
+     * Creates a layer.
+     *
+     * @param name   describes the layer in validation errors
+     * @param values the settings of this layer, copied
+     */
+    public ConfigSource {
+        values = Map.copyOf(values);
+    }
+
+    /**
+     * Creates a layer from the given settings.
+     *
+     * @param name   describes the layer in validation errors
+     * @param values the settings of this layer
+     * @return the layer
+     */
+    public static ConfigSource of(final String name, final Map<String, String> values) {
+        return new ConfigSource(name, values);
+    }
+
+    /**
+     * Returns the process environment as a layer.
+     *
+     * @return the environment layer
+     */
+    public static ConfigSource environment() {
+        return new ConfigSource("environment", System.getenv());
+    }
+
+    /**
+     * Returns the current JVM system properties as a layer.
+     *
+     * @return the system properties layer
+     */
+    public static ConfigSource systemProperties() {
+        Map<String, String> values = new HashMap<>();
+        System.getProperties().forEach((name, value) -> values.put(name.toString(), value.toString()));
+        return new ConfigSource("system properties", values);
+    }
+
+    /**
+     * Reads the settings of a {@code .properties} file, or of a flat YAML file when
+     * the name ends in {@code .yaml} or {@code .yml}.
+     *
+     * @param file the configuration file
+     * @return the file layer
+     * @throws IOException           if the file cannot be read
+     * @throws IllegalStateException if a YAML line is not a flat {@code KEY: value} pair
+     */
+    public static ConfigSource file(final Path file) throws IOException {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (name.endsWith(".yaml") || name.endsWith(".yml")) {
+            return new ConfigSource(file.toString(), parseYaml(Files.readAllLines(file, StandardCharsets.UTF_8), file));
+        }
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        Map<String, String> values = new HashMap<>();
+        properties.forEach((key, value) -> values.put(key.toString(), value.toString().trim()));
+        return new ConfigSource(file.toString(), values);
+    }
+
+    private static Map<String, String> parseYaml(final List<String> lines, final Path file) {
+        Map<String, String> values = new HashMap<>();
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i);
+            String trimmed = line.strip();
+            if (trimmed.isEmpty() || trimmed.startsWith("#") || trimmed.equals("---")) {
+                continue;
+            }
+            int colon = trimmed.indexOf(':');
+            if (Character.isWhitespace(line.charAt(0)) || colon <= 0) {
+                throw new IllegalStateException("Failed to parse " + file + " line " + (i + 1)
+                        + ": expected a flat 'KEY: value' pair");
+            }
+            String value = trimmed.substring(colon + 1).strip();
+            if (value.length() >= 2 && (value.startsWith("\"") && value.endsWith("\"")
+                    || value.startsWith("'") && value.endsWith("'"))) {
+                value = value.substring(1, value.length() - 1);
+            } else {
+                int comment = value.indexOf(" #");
+                if (comment >= 0) {
+                    value = value.substring(0, comment).strip();
+                }
+            }
+            values.put(trimmed.substring(0, colon).strip(), value);
+        }
+        return values;
+    }
+}
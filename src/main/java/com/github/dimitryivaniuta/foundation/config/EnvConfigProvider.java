@@ -1,28 +1,108 @@
 package com.github.dimitryivaniuta.foundation.config;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * EnvConfigProvider is responsible for loading and validating
  * environment variables and system properties into a {@link Config}
- * instance. All configurations are sourced from the environment
- * or JVM properties, with sensible defaults applied where appropriate.
+ * instance. Settings are resolved from layered {@link ConfigSource}s: the
+ * built-in defaults, then an optional configuration file, then the
+ * environment, then JVM properties, then explicit overrides, each layer
+ * replacing the non-blank values of the ones below it.
  * <p>
- * If a required configuration is missing or invalid, this provider
- * throws an {@link IllegalStateException} to fail fast on startup.
+ * If required configurations are missing or invalid, this provider
+ * throws a single {@link IllegalStateException} naming all of them to
+ * fail fast on startup.
  * </p>
  */
 public final class EnvConfigProvider {
-    private static final Map<String, String> ENV = System.getenv();
 
-    // Default values for optional settings
-    private static final String DEFAULT_BOOTSTRAP = "localhost:9092";
-    private static final String DEFAULT_SCHEMA_REGISTRY = "http://localhost:8081";
-    private static final int    DEFAULT_GV_THRESHOLD = 15;
-    private static final boolean DEFAULT_RUN_PARALLEL = false;
-    private static final String DEFAULT_SECURITY_PROTOCOL = "PLAINTEXT";
-    private static final long   DEFAULT_VISION_TIMEOUT = 30_000L;
-    private static final int    DEFAULT_HEALTH_INTERVAL = 60;
+    /**
+     * Settings that are required and have no default.
+     */
+    private static final List<String> REQUIRED =
+            List.of("APPLICATION_ID", "INPUT_TOPIC", "OUTPUT_TOPIC", "GOOGLE_APPLICATION_CREDENTIALS");
+
+    /**
+     * Bottom layer holding the default of every optional setting. Blank defaults
+     * leave the setting unset; {@code ERROR_TOPIC} falls back to the application id
+     * plus {@value #DEFAULT_ERROR_TOPIC_SUFFIX}, and {@code STREAMS_INSTANCE_ID} to
+     * {@code POD_NAME}.
+     */
+    private static final ConfigSource DEFAULTS = ConfigSource.of("defaults", Map.ofEntries(
+            Map.entry("KAFKA_BOOTSTRAP_SERVERS", "localhost:9092"),
+            Map.entry("SCHEMA_REGISTRY_URL", "http://localhost:8081"),
+            Map.entry("GV_THRESHOLD", "15"),
+            Map.entry("RUN_GV_IN_PARALLEL", "false"),
+            Map.entry("GV_MAX_PARALLEL_BATCHES", "4"),
+            Map.entry("GV_BATCH_LINGER_MS", "20"),
+            Map.entry("KAFKA_SECURITY_PROTOCOL", "PLAINTEXT"),
+            Map.entry("KAFKA_TRUSTSTORE_PATH", ""),
+            Map.entry("KAFKA_TRUSTSTORE_PASSWORD", ""),
+            Map.entry("KAFKA_KEYSTORE_PATH", ""),
+            Map.entry("KAFKA_KEYSTORE_PASSWORD", ""),
+            Map.entry("VISION_API_TIMEOUT_MS", "30000"),
+            Map.entry("VISION_LATENCY_TARGET_MS", "5000"),
+            Map.entry("VISION_CHANNEL_POOL_SIZE", "4"),
+            Map.entry("VISION_KEEPALIVE_TIME_MS", "60000"),
+            Map.entry("VISION_KEEPALIVE_TIMEOUT_MS", "10000"),
+            Map.entry("VISION_MAX_ATTEMPTS", "3"),
+            Map.entry("VISION_INITIAL_RPC_TIMEOUT_MS", "10000"),
+            Map.entry("VISION_MAX_RPC_TIMEOUT_MS", "30000"),
+            Map.entry("VISION_INITIAL_RETRY_DELAY_MS", "200"),
+            Map.entry("VISION_MAX_RETRY_DELAY_MS", "5000"),
+            Map.entry("VISION_RETRY_DELAY_MULTIPLIER", "2.0"),
+            Map.entry("VISION_HEDGING_ENABLED", "false"),
+            Map.entry("VISION_HEDGING_MIN_DELAY_MS", "100"),
+            Map.entry("VISION_CACHE_MAX_ENTRIES", "10000"),
+            Map.entry("VISION_CACHE_DISK_ENABLED", "false"),
+            Map.entry("VISION_CACHE_DISK_MAX_BYTES", "1073741824"),
+            Map.entry("VISION_MAX_IN_FLIGHT_PER_TASK", "64"),
+            Map.entry("IMAGE_PREPROCESS_ENABLED", "true"),
+            Map.entry("IMAGE_TARGET_DPI", "300"),
+            Map.entry("IMAGE_OUTPUT_FORMAT", "jpeg"),
+            Map.entry("IMAGE_QUALITY", "0.85"),
+            Map.entry("IMAGE_MAX_BYTES", Integer.toString(1024 * 1024)),
+            Map.entry("IMAGE_BLANK_INK_RATIO", "0.002"),
+            Map.entry("IMAGE_PREPROCESS_THREADS", "0"),
+            Map.entry("TEXTRACT_ENABLED", "false"),
+            Map.entry("AWS_REGION", "us-east-1"),
+            Map.entry("TEXTRACT_MAX_CONCURRENCY", "8"),
+            Map.entry("TEXTRACT_API_TIMEOUT_MS", "30000"),
+            Map.entry("HEALTH_CHECK_INTERVAL_SEC", "60"),
+            Map.entry("HEALTH_CHECK_TIMEOUT_MS", "2000"),
+            Map.entry("HEALTH_SERVER_PORT", "8080"),
+            Map.entry("STARTUP_TIMEOUT_MS", "60000"),
+            Map.entry("SHUTDOWN_TIMEOUT_MS", "30000"),
+            Map.entry("DOCUMENT_SINK_PATH", "documents"),
+            Map.entry("DOCUMENT_SINK_SEGMENT_BYTES", Integer.toString(64 * 1024 * 1024)),
+            Map.entry("ERROR_TOPIC", ""),
+            Map.entry("RETRY_DELAYS_MS", "10000,60000,600000"),
+            Map.entry("ERROR_SINK_QUEUE_CAPACITY", "10000"),
+            Map.entry("ERROR_SINK_OVERFLOW_POLICY", "SPILL_TO_DISK"),
+            Map.entry("ERROR_SINK_SPILL_MAX_BYTES", Long.toString(256L * 1024 * 1024)),
+            Map.entry("KAFKA_STREAMS_PROFILE", "DEFAULT"),
+            Map.entry("STREAMS_VALUE_SERDE", "STRING"),
+            Map.entry("STREAMS_INSTANCE_ID", ""),
+            Map.entry("POD_NAME", ""),
+            Map.entry("STREAMS_NUM_STANDBY_REPLICAS", "1"),
+            Map.entry("STREAMS_ACCEPTABLE_RECOVERY_LAG", "10000"),
+            Map.entry("STREAMS_PROBING_REBALANCE_INTERVAL_MS", "600000")));
+
+    private static final String DEFAULT_ERROR_TOPIC_SUFFIX = "-errors";
+
+    /**
+     * Names of all settings read by this provider, besides the {@code KAFKA_STREAMS_*} overrides.
+     */
+    private static final Set<String> SETTINGS = Stream.concat(REQUIRED.stream(), DEFAULTS.values().keySet().stream())
+            .collect(Collectors.toUnmodifiableSet());
 
     // Prevent instantiation
     private EnvConfigProvider() {}
@@ -34,129 +114,287 @@ public final class EnvConfigProvider {
      * @throws IllegalStateException if any required environment variable is missing or invalid
      */
     public static Config loadConfig() {
-        String kafkaServers    = getEnvOrDefault("KAFKA_BOOTSTRAP_SERVERS", DEFAULT_BOOTSTRAP);
-        String schemaRegistry  = getEnvOrDefault("SCHEMA_REGISTRY_URL", DEFAULT_SCHEMA_REGISTRY);
-
-        String appId           = getEnvOrThrow("APPLICATION_ID");
-        String inputTopic      = getEnvOrThrow("INPUT_TOPIC");
-        String outputTopic     = getEnvOrThrow("OUTPUT_TOPIC");
-
-        int gvThreshold        = parseInt(getEnvOrDefault("GV_THRESHOLD", Integer.toString(DEFAULT_GV_THRESHOLD)), "GV_THRESHOLD");
-        boolean runParallel    = parseBoolean(getEnvOrDefault("RUN_GV_IN_PARALLEL", Boolean.toString(DEFAULT_RUN_PARALLEL)), "RUN_GV_IN_PARALLEL");
-
-        String credentialsPath = getEnvOrThrow("GOOGLE_APPLICATION_CREDENTIALS");
-
-        String securityProtocol     = getEnvOrDefault("KAFKA_SECURITY_PROTOCOL", DEFAULT_SECURITY_PROTOCOL);
-        String truststorePath       = getEnvOrDefault("KAFKA_TRUSTSTORE_PATH", "");
-        String truststorePassword   = getEnvOrDefault("KAFKA_TRUSTSTORE_PASSWORD", "");
-        String keystorePath         = getEnvOrDefault("KAFKA_KEYSTORE_PATH", "");
-        String keystorePassword     = getEnvOrDefault("KAFKA_KEYSTORE_PASSWORD", "");
-
-        long visionTimeout          = parseLong(getEnvOrDefault("VISION_API_TIMEOUT_MS", Long.toString(DEFAULT_VISION_TIMEOUT)), "VISION_API_TIMEOUT_MS");
-        int healthInterval          = parseInt(getEnvOrDefault("HEALTH_CHECK_INTERVAL_SEC", Integer.toString(DEFAULT_HEALTH_INTERVAL)), "HEALTH_CHECK_INTERVAL_SEC");
-
-        return Config.builder()
-                .kafkaBootstrapServers(kafkaServers)
-                .schemaRegistryUrl(schemaRegistry)
-                .applicationId(appId)
-                .inputTopic(inputTopic)
-                .outputTopic(outputTopic)
-                .gvThreshold(gvThreshold)
-                .runGVInParallel(runParallel)
-                .googleCredentialsPath(credentialsPath)
-                .kafkaSecurityProtocol(securityProtocol)
-                .kafkaTruststorePath(truststorePath)
-                .kafkaTruststorePassword(truststorePassword)
-                .kafkaKeystorePath(keystorePath)
-                .kafkaKeystorePassword(keystorePassword)
-                .visionApiTimeoutMs(visionTimeout)
-                .healthCheckIntervalSec(healthInterval)
-                .build();
+        return loadConfig(Map.of());
     }
 
     /**
-     * Retrieves an environment variable or system property,
-     * returning a default if not present or blank.
+     * Loads all settings into a {@link Config} instance, falling back to the given
+     * file values for settings that are neither environment variables nor system
+     * properties.
      *
-     * @param name the variable name
-     * @param def  the default value
-     * @return the environment value or the default
+     * @param fileValues settings read from a configuration file, keyed by
+     *                   environment variable name
+     * @return a fully populated Config
+     * @throws IllegalStateException if any required setting is missing or invalid
      */
-    private static String getEnvOrDefault(String name, String def) {
-        String val = ENV.getOrDefault(name, System.getProperty(name));
-        return (val == null || val.isBlank()) ? def : val;
+    public static Config loadConfig(final Map<String, String> fileValues) {
+        return loadConfig(fileValues, Map.of());
     }
 
     /**
-     * Retrieves a required environment variable or system property,
-     * throwing if missing or blank.
+     * Loads all settings into a {@link Config} instance from, in increasing order of
+     * precedence, the defaults, the file values, the environment, the system
+     * properties and the given overrides.
      *
-     * @param name the variable name
-     * @return the environment value
-     * @throws IllegalStateException if missing or blank
+     * @param fileValues settings read from a configuration file, keyed by
+     *                   environment variable name
+     * @param overrides  settings that win over every other layer, e.g. from a
+     *                   batch job's command line
+     * @return a fully populated Config
+     * @throws IllegalStateException if any required setting is missing or invalid
      */
-    private static String getEnvOrThrow(String name) {
-        String val = ENV.getOrDefault(name, System.getProperty(name));
-        if (val == null || val.isBlank()) {
-            throw new IllegalStateException(
-                    String.format("Required environment variable '%s' is not set", name)
-            );
-        }
-        return val;
+    public static Config loadConfig(final Map<String, String> fileValues, final Map<String, String> overrides) {
+        return loadConfig(List.of(
+                ConfigSource.of("file", fileValues),
+                ConfigSource.environment(),
+                ConfigSource.systemProperties(),
+                ConfigSource.of("overrides", overrides)));
     }
 
     /**
-     * Parses an integer from a string, failing with context on error.
+     * Loads all settings into a {@link Config} instance from the given layers stacked
+     * on top of the defaults.
+     * <p>
+     * The layers are merged once, keeping only the settings this provider reads, and
+     * every setting is then parsed and validated in a single pass. All problems are
+     * reported together rather than one per start-up attempt. Every call returns a new
+     * instance, so component graphs never share one.
+     * </p>
      *
-     * @param value the string value
-     * @param name  the variable name (for error messaging)
-     * @return the parsed integer
-     * @throws IllegalStateException if parse fails
+     * @param layers the layers in increasing order of precedence
+     * @return a fully populated Config
+     * @throws IllegalStateException listing every missing or invalid setting
      */
-    private static int parseInt(String value, String name) {
-        try {
-            return Integer.parseInt(value);
-        } catch (NumberFormatException e) {
-            throw new IllegalStateException(
-                    String.format("Environment variable '%s' must be an integer, but was '%s'", name, value),
-                    e
-            );
+    public static Config loadConfig(final List<ConfigSource> layers) {
+        Map<String, String> settings = new HashMap<>();
+        Map<String, String> origins = new HashMap<>();
+        merge(DEFAULTS, settings, origins);
+        for (ConfigSource layer : layers) {
+            merge(layer, settings, origins);
         }
+        return new Parser(settings, origins).parse();
     }
 
     /**
-     * Parses a long from a string, failing with context on error.
+     * Copies a layer's non-blank settings over those collected so far.
      *
-     * @param value the string value
-     * @param name  the variable name (for error messaging)
-     * @return the parsed long
-     * @throws IllegalStateException if parse fails
+     * @param layer    the layer to apply
+     * @param settings the settings collected so far
+     * @param origins  the name of the layer each setting came from
      */
-    private static long parseLong(String value, String name) {
-        try {
-            return Long.parseLong(value);
-        } catch (NumberFormatException e) {
-            throw new IllegalStateException(
-                    String.format("Environment variable '%s' must be a long, but was '%s'", name, value),
-                    e
-            );
-        }
+    private static void merge(final ConfigSource layer,
+                              final Map<String, String> settings,
+                              final Map<String, String> origins) {
+        layer.values().forEach((name, value) -> {
+            if ((SETTINGS.contains(name) || name.startsWith(Config.STREAMS_OVERRIDE_PREFIX)) && !value.isBlank()) {
+                settings.put(name, value);
+                origins.put(name, layer.name());
+            }
+        });
     }
 
     /**
-     * Parses a boolean from a string, failing if not 'true' or 'false'.
-     *
-     * @param value the string value
-     * @param name  the variable name (for error messaging)
-     * @return the parsed boolean
-     * @throws IllegalStateException if value is not 'true' or 'false'
+     * Parses merged settings into a {@link Config}, collecting every problem
+     * instead of stopping at the first.
      */
-    private static boolean parseBoolean(String value, String name) {
-        if ("true".equalsIgnoreCase(value) || "false".equalsIgnoreCase(value)) {
-            return Boolean.parseBoolean(value);
+    private static final class Parser {
+
+        private final Map<String, String> settings;
+        private final Map<String, String> origins;
+        private final List<String> problems = new ArrayList<>();
+
+        Parser(final Map<String, String> settings, final Map<String, String> origins) {
+            this.settings = settings;
+            this.origins = origins;
+        }
+
+        Config parse() {
+            String appId = required("APPLICATION_ID");
+            Config.ConfigBuilder builder = Config.builder()
+                    .kafkaBootstrapServers(text("KAFKA_BOOTSTRAP_SERVERS"))
+                    .schemaRegistryUrl(text("SCHEMA_REGISTRY_URL"))
+                    .applicationId(appId)
+                    .inputTopic(required("INPUT_TOPIC"))
+                    .outputTopic(required("OUTPUT_TOPIC"))
+                    .gvThreshold(parseInt("GV_THRESHOLD"))
+                    .runGVInParallel(parseBoolean("RUN_GV_IN_PARALLEL"))
+                    .gvMaxParallelBatches(parseInt("GV_MAX_PARALLEL_BATCHES"))
+                    .gvBatchLingerMs(parseLong("GV_BATCH_LINGER_MS"))
+                    .googleCredentialsPath(required("GOOGLE_APPLICATION_CREDENTIALS"))
+                    .kafkaSecurityProtocol(text("KAFKA_SECURITY_PROTOCOL"))
+                    .kafkaTruststorePath(text("KAFKA_TRUSTSTORE_PATH"))
+                    .kafkaTruststorePassword(text("KAFKA_TRUSTSTORE_PASSWORD"))
+                    .kafkaKeystorePath(text("KAFKA_KEYSTORE_PATH"))
+                    .kafkaKeystorePassword(text("KAFKA_KEYSTORE_PASSWORD"))
+                    .visionApiTimeoutMs(parseLong("VISION_API_TIMEOUT_MS"))
+                    .visionLatencyTargetMs(parseLong("VISION_LATENCY_TARGET_MS"))
+                    .visionChannelPoolSize(parseInt("VISION_CHANNEL_POOL_SIZE"))
+                    .visionKeepAliveTimeMs(parseLong("VISION_KEEPALIVE_TIME_MS"))
+                    .visionKeepAliveTimeoutMs(parseLong("VISION_KEEPALIVE_TIMEOUT_MS"))
+                    .visionMaxAttempts(parseInt("VISION_MAX_ATTEMPTS"))
+                    .visionInitialRpcTimeoutMs(parseLong("VISION_INITIAL_RPC_TIMEOUT_MS"))
+                    .visionMaxRpcTimeoutMs(parseLong("VISION_MAX_RPC_TIMEOUT_MS"))
+                    .visionInitialRetryDelayMs(parseLong("VISION_INITIAL_RETRY_DELAY_MS"))
+                    .visionMaxRetryDelayMs(parseLong("VISION_MAX_RETRY_DELAY_MS"))
+                    .visionRetryDelayMultiplier(parseDouble("VISION_RETRY_DELAY_MULTIPLIER"))
+                    .visionHedgingEnabled(parseBoolean("VISION_HEDGING_ENABLED"))
+                    .visionHedgingMinDelayMs(parseLong("VISION_HEDGING_MIN_DELAY_MS"))
+                    .visionCacheMaxEntries(parseInt("VISION_CACHE_MAX_ENTRIES"))
+                    .visionCacheDiskEnabled(parseBoolean("VISION_CACHE_DISK_ENABLED"))
+                    .visionCacheDiskMaxBytes(parseLong("VISION_CACHE_DISK_MAX_BYTES"))
+                    .visionMaxInFlightPerTask(parseInt("VISION_MAX_IN_FLIGHT_PER_TASK"))
+                    .imagePreprocessEnabled(parseBoolean("IMAGE_PREPROCESS_ENABLED"))
+                    .imageTargetDpi(parseInt("IMAGE_TARGET_DPI"))
+                    .imageOutputFormat(text("IMAGE_OUTPUT_FORMAT"))
+                    .imageQuality(parseDouble("IMAGE_QUALITY"))
+                    .imageMaxBytes(parseInt("IMAGE_MAX_BYTES"))
+                    .imageBlankInkRatio(parseDouble("IMAGE_BLANK_INK_RATIO"))
+                    .imagePreprocessThreads(parseInt("IMAGE_PREPROCESS_THREADS"))
+                    .textractEnabled(parseBoolean("TEXTRACT_ENABLED"))
+                    .awsRegion(text("AWS_REGION"))
+                    .textractMaxConcurrency(parseInt("TEXTRACT_MAX_CONCURRENCY"))
+                    .textractApiTimeoutMs(parseLong("TEXTRACT_API_TIMEOUT_MS"))
+                    .healthCheckIntervalSec(parseInt("HEALTH_CHECK_INTERVAL_SEC"))
+                    .healthCheckTimeoutMs(parseLong("HEALTH_CHECK_TIMEOUT_MS"))
+                    .healthServerPort(parseInt("HEALTH_SERVER_PORT"))
+                    .startupTimeoutMs(parseLong("STARTUP_TIMEOUT_MS"))
+                    .shutdownTimeoutMs(parseLong("SHUTDOWN_TIMEOUT_MS"))
+                    .documentSinkPath(text("DOCUMENT_SINK_PATH"))
+                    .documentSinkSegmentBytes(parseInt("DOCUMENT_SINK_SEGMENT_BYTES"))
+                    .errorTopic(settings.getOrDefault("ERROR_TOPIC", appId + DEFAULT_ERROR_TOPIC_SUFFIX))
+                    .retryDelaysMs(parseLongList("RETRY_DELAYS_MS"))
+                    .errorSinkQueueCapacity(parseInt("ERROR_SINK_QUEUE_CAPACITY"))
+                    .errorSinkOverflowPolicy(text("ERROR_SINK_OVERFLOW_POLICY"))
+                    .errorSinkSpillMaxBytes(parseLong("ERROR_SINK_SPILL_MAX_BYTES"))
+                    .streamsProfile(text("KAFKA_STREAMS_PROFILE"))
+                    .streamsValueSerde(text("STREAMS_VALUE_SERDE"))
+                    .streamsInstanceId(settings.getOrDefault("STREAMS_INSTANCE_ID", text("POD_NAME")))
+                    .streamsNumStandbyReplicas(parseInt("STREAMS_NUM_STANDBY_REPLICAS"))
+                    .streamsAcceptableRecoveryLag(parseLong("STREAMS_ACCEPTABLE_RECOVERY_LAG"))
+                    .streamsProbingRebalanceIntervalMs(parseLong("STREAMS_PROBING_REBALANCE_INTERVAL_MS"))
+                    .streamsOverrides(streamsOverrides());
+            if (!problems.isEmpty()) {
+                throw new IllegalStateException("Invalid configuration: " + String.join("; ", problems));
+            }
+            return builder.build();
+        }
+
+        /**
+         * Collects raw Kafka Streams overrides from {@code KAFKA_STREAMS_*} settings.
+         * <p>
+         * The prefix is stripped and the remainder lower-cased with underscores turned
+         * into dots, so {@code KAFKA_STREAMS_NUM_STREAM_THREADS=4} becomes
+         * {@code num.stream.threads=4}. {@code KAFKA_STREAMS_PROFILE} selects the tuning
+         * profile and is not passed through.
+         * </p>
+         *
+         * @return an immutable map of Kafka Streams property names to values
+         */
+        private Map<String, String> streamsOverrides() {
+            Map<String, String> overrides = new HashMap<>();
+            settings.forEach((name, value) -> {
+                if (name.startsWith(Config.STREAMS_OVERRIDE_PREFIX) && !"KAFKA_STREAMS_PROFILE".equals(name)) {
+                    String key = name.substring(Config.STREAMS_OVERRIDE_PREFIX.length())
+                            .toLowerCase(Locale.ROOT)
+                            .replace('_', '.');
+                    overrides.put(key, value);
+                }
+            });
+            return Map.copyOf(overrides);
+        }
+
+        /**
+         * Returns a setting, or an empty string if unset.
+         *
+         * @param name the variable name
+         * @return the value
+         */
+        private String text(final String name) {
+            return settings.getOrDefault(name, "");
+        }
+
+        /**
+         * Returns a required setting, recording a problem if it is unset.
+         *
+         * @param name the variable name
+         * @return the value, or {@code null} if unset
+         */
+        private String required(final String name) {
+            String value = settings.get(name);
+            if (value == null) {
+                problems.add(String.format("required setting '%s' is not set", name));
+            }
+            return value;
+        }
+
+        private int parseInt(final String name) {
+            String value = text(name);
+            try {
+                return Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                return invalid(name, value, "an integer");
+            }
+        }
+
+        private long parseLong(final String name) {
+            String value = text(name);
+            try {
+                return Long.parseLong(value);
+            } catch (NumberFormatException e) {
+                return invalid(name, value, "a long");
+            }
+        }
+
+        private List<Long> parseLongList(final String name) {
+            String value = text(name);
+            if ("none".equalsIgnoreCase(value.trim())) {
+                return List.of();
+            }
+            List<Long> values = new ArrayList<>();
+            for (String item : value.split(",")) {
+                if (item.isBlank()) {
+                    continue;
+                }
+                try {
+                    values.add(Long.parseLong(item.trim()));
+                } catch (NumberFormatException e) {
+                    invalid(name, value, "a comma-separated list of longs");
+                    return List.of();
+                }
+            }
+            return List.copyOf(values);
+        }
+
+        private double parseDouble(final String name) {
+            String value = text(name);
+            try {
+                return Double.parseDouble(value);
+            } catch (NumberFormatException e) {
+                return invalid(name, value, "a number");
+            }
+        }
+
+        private boolean parseBoolean(final String name) {
+            String value = text(name);
+            if ("true".equalsIgnoreCase(value) || "false".equalsIgnoreCase(value)) {
+                return Boolean.parseBoolean(value);
+            }
+            invalid(name, value, "'true' or 'false'");
+            return false;
+        }
+
+        /**
+         * Records a value that failed to parse, naming the layer it came from.
+         *
+         * @param name     the variable name
+         * @param value    the offending value
+         * @param expected what the value should have been
+         * @return zero, standing in for the value until the problems are reported
+         */
+        private int invalid(final String name, final String value, final String expected) {
+            problems.add(String.format("'%s' must be %s, but was '%s' (from %s)",
+                    name, expected, value, origins.get(name)));
+            return 0;
         }
-        throw new IllegalStateException(
-                String.format("Environment variable '%s' must be 'true' or 'false', but was '%s'", name, value)
-        );
     }
 }
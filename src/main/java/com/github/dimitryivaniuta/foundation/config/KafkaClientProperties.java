@@ -0,0 +1,43 @@
+package com.github.dimitryivaniuta.foundation.config;
+
+import org.apache.kafka.clients.CommonClientConfigs;
+import org.apache.kafka.common.config.SslConfigs;
+
+import java.util.Properties;
+
+/**
+ * Builds the Kafka client properties shared by every client the SDK creates
+ * (Kafka Streams, producers, admin clients): bootstrap servers and the
+ * optional SSL/TLS settings from {@link Config}.
+ */
+public final class KafkaClientProperties {
+
+    // Prevent instantiation
+    private KafkaClientProperties() {}
+
+    /**
+     * Creates a new {@link Properties} instance populated with connection
+     * and security settings.
+     *
+     * @param config the application configuration
+     * @return mutable properties that callers may extend with client-specific settings
+     */
+    public static Properties common(final Config config) {
+        Properties props = new Properties();
+
+        // Kafka cluster bootstrap servers
+        props.put(CommonClientConfigs.BOOTSTRAP_SERVERS_CONFIG, config.getKafkaBootstrapServers());
+
+        // Optional SSL/TLS configuration
+        props.put(CommonClientConfigs.SECURITY_PROTOCOL_CONFIG, config.getKafkaSecurityProtocol());
+        if (config.getKafkaTruststorePath() != null && !config.getKafkaTruststorePath().isEmpty()) {
+            props.put(SslConfigs.SSL_TRUSTSTORE_LOCATION_CONFIG, config.getKafkaTruststorePath());
+            props.put(SslConfigs.SSL_TRUSTSTORE_PASSWORD_CONFIG, config.getKafkaTruststorePassword());
+        }
+        if (config.getKafkaKeystorePath() != null && !config.getKafkaKeystorePath().isEmpty()) {
+            props.put(SslConfigs.SSL_KEYSTORE_LOCATION_CONFIG, config.getKafkaKeystorePath());
+            props.put(SslConfigs.SSL_KEYSTORE_PASSWORD_CONFIG, config.getKafkaKeystorePassword());
+        }
+        return props;
+    }
+}
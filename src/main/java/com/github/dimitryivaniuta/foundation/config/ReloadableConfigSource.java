@@ -0,0 +1,242 @@
+package com.github.dimitryivaniuta.foundation.config;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Source of {@link Config} snapshots that follows changes to a mounted configuration
+ * file, so settings such as {@code GV_THRESHOLD}, Vision timeouts or health intervals
+ * can be tuned without restarting the pod and rebalancing Kafka Streams.
+ * <p>
+ * The file holds settings keyed by their environment variable names, either as a
+ * {@code .properties} file or, for {@code .yaml}/{@code .yml}, as flat
+ * {@code KEY: value} lines. Environment variables and system properties still take
+ * precedence over the file; see {@link EnvConfigProvider#loadConfig(Map)}.
+ * </p>
+ * <p>
+ * {@link #start()} watches the file's directory with a {@link WatchService}, which
+ * also catches the symlink swap Kubernetes uses to update ConfigMap volumes. Bursts
+ * of events are coalesced, the file is re-read and, if the resulting {@code Config}
+ * differs, it is published atomically through {@link #get()} before the listeners
+ * are notified. A file that fails to parse or validate is logged and ignored; the
+ * previous snapshot stays in effect.
+ * </p>
+ */
+@Slf4j
+public class ReloadableConfigSource implements Supplier<Config>, AutoCloseable {
+
+    /**
+     * Time to wait after a file event for the rest of its burst before reloading.
+     */
+    public static final Duration DEFAULT_DEBOUNCE = Duration.ofMillis(200);
+
+    private final Path file;
+    private final Function<Map<String, String>, Config> loader;
+    private final Supplier<? extends Collection<? extends ConfigChangeListener>> boundListeners;
+    private final Duration debounce;
+    private final AtomicReference<Config> current = new AtomicReference<>();
+    private final List<ConfigChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Serialises reloads, so listeners see snapshots in publication order.
+     */
+    private final ReentrantLock reloadLock = new ReentrantLock();
+
+    private WatchService watchService;
+    private Thread watcher;
+
+    /**
+     * Creates a source that loads settings from the environment and the given file.
+     *
+     * @param file the configuration file, or {@code null} for environment settings only
+     * @throws IllegalStateException if the initial configuration cannot be loaded
+     */
+    public ReloadableConfigSource(final Path file) {
+        this(file, EnvConfigProvider::loadConfig, List::of, DEFAULT_DEBOUNCE);
+    }
+
+    /**
+     * Creates a source.
+     *
+     * @param file           the configuration file, or {@code null} for environment settings only
+     * @param loader         builds a {@code Config} from the file's settings
+     * @param boundListeners listeners resolved on the first change, e.g. a Dagger multibinding
+     * @param debounce       time to wait for further file events before reloading
+     * @throws IllegalStateException if the initial configuration cannot be loaded
+     */
+    public ReloadableConfigSource(final Path file,
+                                  final Function<Map<String, String>, Config> loader,
+                                  final Supplier<? extends Collection<? extends ConfigChangeListener>> boundListeners,
+                                  final Duration debounce) {
+        this.file = file;
+        this.loader = loader;
+        this.boundListeners = boundListeners;
+        this.debounce = debounce;
+        try {
+            current.set(loader.apply(file == null ? Map.of() : ConfigSource.file(file).values()));
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to read configuration file " + file, e);
+        }
+    }
+
+    /**
+     * Returns the current snapshot.
+     *
+     * @return the most recently published configuration
+     */
+    @Override
+    public Config get() {
+        return current.get();
+    }
+
+    /**
+     * Registers a listener notified after each published change.
+     *
+     * @param listener the listener
+     */
+    public void addListener(final ConfigChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes a listener registered with {@link #addListener}.
+     *
+     * @param listener the listener
+     */
+    public void removeListener(final ConfigChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Starts watching the file on a daemon thread; does nothing without a file or
+     * if already started.
+     *
+     * @throws IllegalStateException if the file's directory cannot be watched
+     */
+    public void start() {
+        if (file == null) {
+            return;
+        }
+        reloadLock.lock();
+        try {
+            if (watcher != null) {
+                return;
+            }
+            Path directory = file.toAbsolutePath().getParent();
+            watchService = directory.getFileSystem().newWatchService();
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            watcher = Thread.ofPlatform().daemon().name("config-watcher").start(this::watch);
+            log.info("Watching {} for configuration changes", file);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to watch configuration file " + file, e);
+        } finally {
+            reloadLock.unlock();
+        }
+    }
+
+    /**
+     * Re-reads the file and publishes the result if it differs from the current snapshot.
+     *
+     * @return {@code true} if a new snapshot was published
+     */
+    public boolean reload() {
+        if (file == null) {
+            return false;
+        }
+        reloadLock.lock();
+        try {
+            Config next;
+            try {
+                next = loader.apply(ConfigSource.file(file).values());
+            } catch (IOException | UncheckedIOException | IllegalStateException e) {
+                log.warn("Failed to reload configuration from {}; keeping the current one", file, e);
+                return false;
+            }
+            Config previous = current.get();
+            if (next.equals(previous)) {
+                return false;
+            }
+            current.set(next);
+            log.info("Reloaded configuration from {}", file);
+            notifyListeners(previous, next);
+            return true;
+        } finally {
+            reloadLock.unlock();
+        }
+    }
+
+    /**
+     * Stops watching the file.
+     */
+    @Override
+    public void close() {
+        reloadLock.lock();
+        try {
+            if (watchService != null) {
+                try {
+                    watchService.close();
+                } catch (IOException e) {
+                    log.warn("Failed to close configuration watcher", e);
+                }
+            }
+            if (watcher != null) {
+                watcher.interrupt();
+            }
+        } finally {
+            reloadLock.unlock();
+        }
+    }
+
+    private void watch() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                drain(watchService.take());
+                // Editors and ConfigMap updates produce several events per change
+                Thread.sleep(debounce.toMillis());
+                for (WatchKey key = watchService.poll(); key != null; key = watchService.poll()) {
+                    drain(key);
+                }
+                reload();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // Closed by close()
+        }
+    }
+
+    private static void drain(final WatchKey key) {
+        key.pollEvents();
+        key.reset();
+    }
+
+    private void notifyListeners(final Config previous, final Config next) {
+        List<ConfigChangeListener> all = new ArrayList<>(boundListeners.get());
+        all.addAll(listeners);
+        for (ConfigChangeListener listener : all) {
+            try {
+                listener.onConfigChange(previous, next);
+            } catch (RuntimeException e) {
+                log.warn("Configuration listener {} failed", listener.getClass().getName(), e);
+            }
+        }
+    }
+}
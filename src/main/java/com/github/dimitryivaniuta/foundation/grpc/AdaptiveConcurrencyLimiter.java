@@ -0,0 +1,384 @@
+package com.github.dimitryivaniuta.foundation.grpc;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Client-side concurrency limiter whose limit adapts to the health of the backend
+ * using additive-increase / multiplicative-decrease (AIMD).
+ * <p>
+ * Every call holds a {@link Permit} while it is in flight and reports its outcome:
+ * </p>
+ * <ul>
+ *   <li>{@link Permit#onSuccess()} within the latency budget grows the limit by
+ *       {@code 1/limit}, i.e. by about one per limit's worth of successful calls,
+ *       provided the limit was actually being used.</li>
+ *   <li>{@link Permit#onSuccess()} over the latency budget, or
+ *       {@link Permit#onDropped()} for quota and overload errors, multiplies the limit
+ *       by the backoff ratio. Only one decrease is applied per congestion episode:
+ *       calls that were already in flight when the limit last dropped do not shrink it
+ *       again, so a burst of quota errors does not collapse the limit to its minimum.</li>
+ *   <li>{@link Permit#onIgnore()} releases the slot without adjusting the limit,
+ *       for failures that say nothing about load (bad requests, cancellations).</li>
+ * </ul>
+ * <p>
+ * Callers that cannot get a slot wait in strict FIFO order for at most the given
+ * time, and are then rejected. This keeps the number of requests hitting the
+ * backend near what it can serve, instead of letting every caller fail and retry
+ * at the same moment.
+ * </p>
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    /**
+     * Factor applied to the limit on a latency or quota signal.
+     */
+    public static final double DEFAULT_BACKOFF_RATIO = 0.75;
+
+    private final int minLimit;
+    private final double backoffRatio;
+
+    /**
+     * Guards all mutable state below.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Callers waiting for a slot, in arrival order.
+     */
+    private final ArrayDeque<Waiter> waiters = new ArrayDeque<>();
+
+    private int maxLimit;
+    private long latencyBudgetNanos;
+    private double limit;
+    private int inFlight;
+    private long lastDecreaseNanos;
+
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * Creates a limiter with the default backoff ratio.
+     *
+     * @param initialLimit  starting limit
+     * @param minLimit      the limit never drops below this; at least 1
+     * @param maxLimit      the limit never grows above this
+     * @param latencyBudget calls slower than this count as an overload signal
+     */
+    public AdaptiveConcurrencyLimiter(final int initialLimit, final int minLimit, final int maxLimit,
+                                      final Duration latencyBudget) {
+        this(initialLimit, minLimit, maxLimit, latencyBudget, DEFAULT_BACKOFF_RATIO);
+    }
+
+    /**
+     * Creates a limiter.
+     *
+     * @param initialLimit  starting limit
+     * @param minLimit      the limit never drops below this; at least 1
+     * @param maxLimit      the limit never grows above this
+     * @param latencyBudget calls slower than this count as an overload signal
+     * @param backoffRatio  factor in (0, 1) applied to the limit on an overload signal
+     * @throws IllegalArgumentException if the bounds or ratio are inconsistent
+     */
+    public AdaptiveConcurrencyLimiter(final int initialLimit, final int minLimit, final int maxLimit,
+                                      final Duration latencyBudget, final double backoffRatio) {
+        if (minLimit < 1 || maxLimit < minLimit) {
+            throw new IllegalArgumentException(
+                    "Limits must satisfy 1 <= min <= max, got min=" + minLimit + ", max=" + maxLimit);
+        }
+        if (backoffRatio <= 0 || backoffRatio >= 1) {
+            throw new IllegalArgumentException("Backoff ratio must be in (0, 1), got " + backoffRatio);
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyBudgetNanos = latencyBudget.toNanos();
+        this.backoffRatio = backoffRatio;
+        this.limit = Math.clamp(initialLimit, minLimit, maxLimit);
+        this.lastDecreaseNanos = System.nanoTime();
+    }
+
+    /**
+     * Takes a slot if one is free and nobody is waiting.
+     *
+     * @return a permit, or {@code null} if the limit has been reached (counted as rejected)
+     */
+    public Permit tryAcquire() {
+        lock.lock();
+        try {
+            if (waiters.isEmpty() && inFlight < currentLimit()) {
+                inFlight++;
+                return new Permit(inFlight);
+            }
+            rejected.increment();
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes a slot, waiting in FIFO order for at most {@code maxWait}.
+     *
+     * @param maxWait longest time to wait for a slot
+     * @return a permit, or {@code null} if none became free in time (counted as rejected)
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public Permit acquire(final Duration maxWait) throws InterruptedException {
+        lock.lock();
+        try {
+            if (waiters.isEmpty() && inFlight < currentLimit()) {
+                inFlight++;
+                return new Permit(inFlight);
+            }
+            Waiter waiter = new Waiter(lock.newCondition());
+            waiters.add(waiter);
+            long remaining = maxWait.toNanos();
+            try {
+                while (!waiter.granted) {
+                    if (remaining <= 0) {
+                        waiters.remove(waiter);
+                        rejected.increment();
+                        return null;
+                    }
+                    remaining = waiter.condition.awaitNanos(remaining);
+                }
+            } catch (InterruptedException e) {
+                if (waiter.granted) {
+                    // The slot was handed over just before the interrupt; give it back
+                    inFlight--;
+                    grantWaiters();
+                } else {
+                    waiters.remove(waiter);
+                }
+                throw e;
+            }
+            return new Permit(inFlight);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the current concurrency limit.
+     *
+     * @return the number of calls allowed in flight
+     */
+    public int getLimit() {
+        lock.lock();
+        try {
+            return currentLimit();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Changes the upper bound of the limit, e.g. after a configuration reload. A lower
+     * bound takes effect immediately for new calls; a higher one is reached through the
+     * usual additive increase.
+     *
+     * @param maxLimit the new upper bound; at least the minimum limit
+     * @throws IllegalArgumentException if {@code maxLimit} is below the minimum limit
+     */
+    public void setMaxLimit(final int maxLimit) {
+        if (maxLimit < minLimit) {
+            throw new IllegalArgumentException(
+                    "Limits must satisfy 1 <= min <= max, got min=" + minLimit + ", max=" + maxLimit);
+        }
+        lock.lock();
+        try {
+            this.maxLimit = maxLimit;
+            limit = Math.min(limit, maxLimit);
+            grantWaiters();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Changes the latency above which a successful call counts as an overload signal.
+     *
+     * @param latencyBudget the new latency budget
+     */
+    public void setLatencyBudget(final Duration latencyBudget) {
+        lock.lock();
+        try {
+            this.latencyBudgetNanos = latencyBudget.toNanos();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of calls currently holding a permit.
+     *
+     * @return the in-flight count
+     */
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of callers queued for a slot.
+     *
+     * @return the waiting count
+     */
+    public int getWaiting() {
+        lock.lock();
+        try {
+            return waiters.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns how many callers have been refused a permit.
+     *
+     * @return the cumulative rejection count
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * Returns how many calls reported an overload via {@link Permit#onDropped()}.
+     *
+     * @return the cumulative dropped count
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * Must be called while holding {@link #lock}.
+     */
+    private int currentLimit() {
+        return Math.max(minLimit, (int) limit);
+    }
+
+    /**
+     * Hands free slots to waiters in arrival order. Must be called while holding {@link #lock}.
+     */
+    private void grantWaiters() {
+        while (!waiters.isEmpty() && inFlight < currentLimit()) {
+            Waiter waiter = waiters.poll();
+            inFlight++;
+            waiter.granted = true;
+            waiter.condition.signal();
+        }
+    }
+
+    /**
+     * Shrinks the limit unless it already shrank after the call started.
+     * Must be called while holding {@link #lock}.
+     */
+    private void decrease(final long startNanos, final long nowNanos) {
+        if (startNanos - lastDecreaseNanos < 0) {
+            return;
+        }
+        limit = Math.max(minLimit, limit * backoffRatio);
+        lastDecreaseNanos = nowNanos;
+    }
+
+    /**
+     * A caller parked in the FIFO queue.
+     */
+    private static final class Waiter {
+        private final Condition condition;
+        private boolean granted;
+
+        Waiter(final Condition condition) {
+            this.condition = condition;
+        }
+    }
+
+    /**
+     * A slot held by one in-flight call. Exactly one of the outcome methods must be
+     * called; later calls are ignored.
+     */
+    public final class Permit {
+
+        private final long startNanos = System.nanoTime();
+        private final int inFlightAtStart;
+        private boolean released;
+
+        private Permit(final int inFlightAtStart) {
+            this.inFlightAtStart = inFlightAtStart;
+        }
+
+        /**
+         * Reports a successful call; its latency decides whether the limit grows or shrinks.
+         */
+        public void onSuccess() {
+            long now = System.nanoTime();
+            lock.lock();
+            try {
+                if (release()) {
+                    if (now - startNanos > latencyBudgetNanos) {
+                        decrease(startNanos, now);
+                    } else if (inFlightAtStart * 2 >= limit) {
+                        // Only grow when the limit is actually being exercised
+                        limit = Math.min(maxLimit, limit + 1.0 / limit);
+                    }
+                    grantWaiters();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Reports a call rejected by the backend for quota or overload reasons, shrinking the limit.
+         */
+        public void onDropped() {
+            long now = System.nanoTime();
+            lock.lock();
+            try {
+                if (release()) {
+                    dropped.increment();
+                    decrease(startNanos, now);
+                    grantWaiters();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Releases the slot without adjusting the limit.
+         */
+        public void onIgnore() {
+            lock.lock();
+            try {
+                if (release()) {
+                    grantWaiters();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Must be called while holding {@link #lock}.
+         *
+         * @return {@code true} if this call released the slot
+         */
+        private boolean release() {
+            if (released) {
+                return false;
+            }
+            released = true;
+            inFlight--;
+            return true;
+        }
+    }
+}
@@ -1,17 +1,29 @@
 package com.github.dimitryivaniuta.foundation.grpc;
 
 import com.github.dimitryivaniuta.foundation.config.Config;
-import com.google.api.gax.core.FixedCredentialsProvider;
+import com.github.dimitryivaniuta.foundation.config.ReloadableConfigSource;
+import com.github.dimitryivaniuta.foundation.lifecycle.ShutdownManager;
+import com.github.dimitryivaniuta.foundation.lifecycle.ShutdownStage;
+import com.github.dimitryivaniuta.foundation.lifecycle.StartupPhase;
+import com.github.dimitryivaniuta.foundation.metrics.MetricsRegistry;
+import com.github.dimitryivaniuta.foundation.ocr.OcrEngine;
 import com.google.auth.oauth2.GoogleCredentials;
 import com.google.cloud.vision.v1.ImageAnnotatorClient;
-import com.google.cloud.vision.v1.ImageAnnotatorSettings;
 import dagger.Module;
 import dagger.Provides;
+import dagger.multibindings.IntoSet;
+import javax.inject.Provider;
 import javax.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
 
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Dagger module responsible for providing gRPC-based clients.
@@ -21,9 +33,27 @@ import java.util.List;
  * Configuration values are sourced from the provided {@link Config}.
  * </p>
  *
+ * <p>
+ * It also contributes {@link StartupPhase}s that load the credentials and connect the
+ * channel pool before the first record arrives.
+ * </p>
+ * <p>
+ * The state of the channel pool, concurrency limiter, result cache and hedger is
+ * exported through the {@link MetricsRegistry} as {@code foundation_vision_*} metrics.
+ * </p>
+ * <p>
+ * Vision is contributed to the {@code Set<OcrEngine>} as a {@link VisionOcrEngine}, and an
+ * {@link OcrEngineRouter} spreads pages over every engine in that set.
+ * </p>
+ * <p>
+ * On shutdown the {@link ShutdownManager} drains the {@link VisionBatchExecutor} first
+ * and closes the client, channel pool and result cache last, after Kafka Streams.
+ * </p>
+ *
  * @see ImageAnnotatorClient
  * @see GoogleCredentials
  */
+@Slf4j
 @Module
 public class GrpcClientModule {
 
@@ -34,28 +64,33 @@ public class GrpcClientModule {
      * The client is configured with service account credentials loaded
      * from the JSON key file path specified in {@link Config#getGoogleCredentialsPath()}.
      * Credentials are scoped to the Cloud Platform to allow full Vision API access.
+     * Timeouts and retries come from {@link VisionSettingsFactory}, and calls are
+     * spread over the shared {@link LeastOutstandingChannelPool}.
      * </p>
+     * The client is closed in the {@link ShutdownStage#CLOSE_CLIENTS} stage.
      *
-     * @param config the application configuration containing credential path
+     * @param config      the application configuration containing credential path
+     * @param channelPool the channels the client sends its calls over
+     * @param shutdown    the manager the client is closed by
      * @return a fully configured, singleton ImageAnnotatorClient
      * @throws IllegalStateException if the credentials file cannot be read or
      *                               client initialization fails
      */
     @Provides
     @Singleton
-    public ImageAnnotatorClient provideImageAnnotatorClient(final Config config) {
+    public ImageAnnotatorClient provideImageAnnotatorClient(final Config config,
+                                                            final LeastOutstandingChannelPool channelPool,
+                                                            final ShutdownManager shutdown) {
         try (FileInputStream fis = new FileInputStream(config.getGoogleCredentialsPath())) {
             // Load service account credentials from JSON key file
             GoogleCredentials credentials = GoogleCredentials.fromStream(fis)
                     .createScoped(List.of("https://www.googleapis.com/auth/cloud-platform"));
 
-            // Build Vision API settings with credentials provider
-            ImageAnnotatorSettings settings = ImageAnnotatorSettings.newBuilder()
-                    .setCredentialsProvider(FixedCredentialsProvider.create(credentials))
-                    .build();
-
             // Create and return the Vision API client
-            return ImageAnnotatorClient.create(settings);
+            ImageAnnotatorClient client =
+                    ImageAnnotatorClient.create(VisionSettingsFactory.create(config, credentials, channelPool));
+            registerShutdown(client, shutdown);
+            return client;
         } catch (IOException e) {
             throw new IllegalStateException(
                     "Failed to create ImageAnnotatorClient with credentials at '"
@@ -63,4 +98,360 @@ public class GrpcClientModule {
             );
         }
     }
+
+    /**
+     * Registers a Vision client to be shut down in the {@link ShutdownStage#CLOSE_CLIENTS}
+     * stage, waiting for its calls to end within the stage budget.
+     *
+     * @param client   the client to close
+     * @param shutdown the manager to register with
+     */
+    static void registerShutdown(final ImageAnnotatorClient client, final ShutdownManager shutdown) {
+        shutdown.register("vision-client", ShutdownStage.CLOSE_CLIENTS, budget -> {
+            client.shutdown();
+            if (!client.awaitTermination(budget.toMillis(), TimeUnit.MILLISECONDS)) {
+                client.shutdownNow();
+            }
+        });
+    }
+
+    /**
+     * Provides the singleton pool of gRPC channels to the Vision API, shut down in the
+     * {@link ShutdownStage#CLOSE_CLIENTS} stage. The outstanding RPCs of each channel
+     * are exported as a gauge.
+     *
+     * @param config   the application configuration containing the pool size and keepalive settings
+     * @param registry the registry the per-channel gauges are registered in
+     * @param shutdown the manager the pool is shut down by
+     * @return a singleton channel pool
+     */
+    @Provides
+    @Singleton
+    public LeastOutstandingChannelPool provideVisionChannelPool(final Config config, final MetricsRegistry registry,
+                                                                final ShutdownManager shutdown) {
+        LeastOutstandingChannelPool pool = VisionSettingsFactory.channelPool(config);
+        shutdown.register("vision-channels", ShutdownStage.CLOSE_CLIENTS, budget -> {
+            pool.shutdown();
+            if (!pool.awaitTermination(budget.toMillis(), TimeUnit.MILLISECONDS)) {
+                pool.shutdownNow();
+            }
+        });
+        for (int i = 0; i < pool.size(); i++) {
+            int channel = i;
+            registry.gauge("foundation_vision_channel_in_flight", "Outstanding Vision RPCs per pooled channel.",
+                    () -> pool.getInFlight(channel), "channel", Integer.toString(channel));
+        }
+        return pool;
+    }
+
+    /**
+     * Contributes the start-up phase that creates the Vision client, loading and
+     * scoping its credentials.
+     *
+     * @param client provider of the singleton client
+     * @return the {@code vision-client} start-up phase
+     */
+    @Provides
+    @IntoSet
+    public StartupPhase provideVisionClientStartupPhase(final Provider<ImageAnnotatorClient> client) {
+        return new StartupPhase("vision-client", client::get);
+    }
+
+    /**
+     * Contributes the start-up phase that connects every channel of the pool.
+     * <p>
+     * The phase fails only if no channel becomes ready within
+     * {@link Config#getStartupTimeoutMs()}; channels that are still connecting
+     * are logged and left to connect on first use.
+     * </p>
+     *
+     * @param config      the application configuration containing the start-up timeout
+     * @param channelPool the pool to connect
+     * @return the {@code vision-channel} start-up phase
+     */
+    @Provides
+    @IntoSet
+    public StartupPhase provideVisionChannelStartupPhase(final Config config,
+                                                         final LeastOutstandingChannelPool channelPool) {
+        return new StartupPhase("vision-channel", () -> {
+            int ready = channelPool.connect(Duration.ofMillis(Math.max(1L, config.getStartupTimeoutMs())));
+            if (ready == 0) {
+                throw new IllegalStateException("Failed to connect any of " + channelPool.size()
+                        + " Vision channels within " + config.getStartupTimeoutMs() + " ms");
+            }
+            if (ready < channelPool.size()) {
+                log.warn("Only {} of {} Vision channels connected during start-up", ready, channelPool.size());
+            }
+        });
+    }
+
+    /**
+     * Provides the singleton {@link AdaptiveConcurrencyLimiter} that bounds concurrent
+     * Vision batch RPCs.
+     *
+     * @param config   the application configuration containing the Vision batching settings
+     * @param registry the registry the limiter's state is exported through
+     * @return a singleton limiter shared by all Vision callers
+     */
+    @Provides
+    @Singleton
+    public AdaptiveConcurrencyLimiter provideVisionConcurrencyLimiter(final Config config,
+                                                                      final MetricsRegistry registry) {
+        AdaptiveConcurrencyLimiter limiter = visionConcurrencyLimiter(config);
+        registry.gauge("foundation_vision_limiter_limit", "Current Vision concurrency limit.", limiter::getLimit);
+        registry.gauge("foundation_vision_limiter_in_flight", "Vision batch RPCs in flight.", limiter::getInFlight);
+        registry.gauge("foundation_vision_limiter_waiting", "Vision batches waiting for a slot.", limiter::getWaiting);
+        registry.counter("foundation_vision_limiter_rejected_total", "Vision batches that got no slot in time.",
+                limiter::getRejectedCount);
+        registry.counter("foundation_vision_limiter_dropped_total", "Vision RPCs that signalled overload.",
+                limiter::getDroppedCount);
+        return limiter;
+    }
+
+    /**
+     * Provides the singleton {@link VisionRequestHedger} used for Vision batch RPCs.
+     *
+     * @param config   the application configuration containing the hedging settings
+     * @param registry the registry the hedger's counts are exported through
+     * @return a singleton hedger, hedging only when {@link Config#isVisionHedgingEnabled()} is set
+     */
+    @Provides
+    @Singleton
+    public VisionRequestHedger provideVisionRequestHedger(final Config config, final MetricsRegistry registry) {
+        VisionRequestHedger hedger = visionRequestHedger(config);
+        String help = "Vision batch calls made through the hedger, by kind.";
+        registry.counter("foundation_vision_hedger_calls_total", help, hedger::getCallCount, "kind", "call");
+        registry.counter("foundation_vision_hedger_calls_total", help, hedger::getHedgeCount, "kind", "hedge");
+        registry.counter("foundation_vision_hedger_calls_total", help, hedger::getHedgeWinCount, "kind", "hedge_win");
+        return hedger;
+    }
+
+    /**
+     * Builds the Vision request hedger.
+     *
+     * @param config the application configuration
+     * @return a new hedger
+     */
+    static VisionRequestHedger visionRequestHedger(final Config config) {
+        return new VisionRequestHedger(config.isVisionHedgingEnabled(),
+                Duration.ofMillis(config.getVisionHedgingMinDelayMs()));
+    }
+
+    /**
+     * Provides the singleton {@link VisionResultCache} in front of the Vision API,
+     * closed in the {@link ShutdownStage#CLOSE_CLIENTS} stage once the last results
+     * have been cached.
+     *
+     * @param config   the application configuration containing the cache settings
+     * @param registry the registry the cache's size and counts are exported through
+     * @param shutdown the manager the cache is closed by
+     * @return a singleton cache, disabled when {@link Config#getVisionCacheMaxEntries()} is not positive
+     */
+    @Provides
+    @Singleton
+    public VisionResultCache provideVisionResultCache(final Config config, final MetricsRegistry registry,
+                                                      final ShutdownManager shutdown) {
+        VisionResultCache cache = visionResultCache(config);
+        shutdown.register("vision-cache", ShutdownStage.CLOSE_CLIENTS, budget -> cache.close(budget));
+        registry.gauge("foundation_vision_cache_size", "Vision responses held in heap.", cache::size);
+        String help = "Vision result cache lookups, by result.";
+        registry.counter("foundation_vision_cache_lookups_total", help, cache::getHitCount, "result", "hit");
+        registry.counter("foundation_vision_cache_lookups_total", help, cache::getDiskHitCount, "result", "disk_hit");
+        registry.counter("foundation_vision_cache_lookups_total", help, cache::getMissCount, "result", "miss");
+        registry.counter("foundation_vision_cache_lookups_total", help, cache::getCoalescedCount, "result", "coalesced");
+        registry.counter("foundation_vision_cache_evictions_total", "Vision responses evicted from heap.",
+                cache::getEvictionCount);
+        registry.gauge("foundation_vision_cache_disk_bytes", "Bytes held by the Vision cache's disk tier.",
+                cache::getDiskBytes);
+        registry.counter("foundation_vision_cache_disk_evictions_total",
+                "Vision responses deleted from disk to keep the disk tier under its cap.", cache::getDiskEvictionCount);
+        return cache;
+    }
+
+    /**
+     * Provides the singleton {@link VisionBatchExecutor}, drained in the
+     * {@link ShutdownStage#DRAIN} stage: pending pages are sent and in-flight
+     * batches awaited, so their results reach the cache.
+     * <p>
+     * The executor adopts reloaded batching, concurrency and timeout settings from
+     * {@code configSource} once it exists, so a reload never builds it. Settings baked
+     * into the Vision client at creation, such as retry and channel pool settings,
+     * still require a restart.
+     * </p>
+     *
+     * @param config         the application configuration containing the batching settings
+     * @param clientProvider provider of the Vision client, resolved on the first batch
+     * @param limiter        the limiter bounding concurrent batch RPCs
+     * @param resultCache    the cache consulted before a page is batched
+     * @param hedger         the hedger batch RPCs go through
+     * @param registry       the registry RPC metrics are recorded in
+     * @param shutdown       the manager the executor is drained by
+     * @param configSource   the source whose reloads the executor adopts
+     * @return a singleton executor
+     */
+    @Provides
+    @Singleton
+    public VisionBatchExecutor provideVisionBatchExecutor(final Config config,
+                                                          final Provider<ImageAnnotatorClient> clientProvider,
+                                                          final AdaptiveConcurrencyLimiter limiter,
+                                                          final VisionResultCache resultCache,
+                                                          final VisionRequestHedger hedger,
+                                                          final MetricsRegistry registry,
+                                                          final ShutdownManager shutdown,
+                                                          final ReloadableConfigSource configSource) {
+        VisionBatchExecutor executor = new VisionBatchExecutor(config, clientProvider, limiter, resultCache, hedger,
+                registry);
+        configSource.addListener((previous, current) -> executor.applyConfig(current));
+        shutdown.register("vision-batches", ShutdownStage.DRAIN, budget -> executor.close(budget));
+        return executor;
+    }
+
+    /**
+     * Contributes the Vision engine to the set of OCR engines.
+     *
+     * @param engine the singleton Vision engine
+     * @return the engine
+     */
+    @Provides
+    @IntoSet
+    public OcrEngine provideVisionOcrEngine(final VisionOcrEngine engine) {
+        return engine;
+    }
+
+    /**
+     * Provides the singleton {@link OcrEngineRouter} over every contributed OCR engine,
+     * Vision first, exporting its decisions and per-engine statistics.
+     *
+     * @param config   the application configuration containing the latency budget and minimum hedge delay
+     * @param engines  the contributed engines
+     * @param registry the registry the router's metrics are exported through
+     * @return a singleton router
+     */
+    @Provides
+    @Singleton
+    public OcrEngineRouter provideOcrEngineRouter(final Config config,
+                                                  final Set<OcrEngine> engines,
+                                                  final MetricsRegistry registry) {
+        OcrEngineRouter router = new OcrEngineRouter(routingOrder(engines), visionLatencyBudget(config),
+                Duration.ofMillis(config.getVisionHedgingMinDelayMs()));
+        String decisionHelp = "Pages the OCR router sent to each engine, by decision.";
+        String latencyHelp = "Rolling latency of successful OCR calls per engine, in seconds.";
+        for (OcrEngineRouter.EngineStats stats : router.getEngineStats()) {
+            String engine = stats.getEngine().getName();
+            registry.counter("foundation_ocr_router_decisions_total", decisionHelp, stats::getRoutedCount,
+                    "engine", engine, "decision", "primary");
+            registry.counter("foundation_ocr_router_decisions_total", decisionHelp, stats::getProbeCount,
+                    "engine", engine, "decision", "probe");
+            registry.counter("foundation_ocr_router_decisions_total", decisionHelp, stats::getHedgeCount,
+                    "engine", engine, "decision", "hedge");
+            registry.counter("foundation_ocr_router_decisions_total", decisionHelp, stats::getHedgeWinCount,
+                    "engine", engine, "decision", "hedge_win");
+            registry.counter("foundation_ocr_router_decisions_total", decisionHelp, stats::getFallbackCount,
+                    "engine", engine, "decision", "fallback");
+            // "quantile" is reserved for summaries, so the two percentiles are separate gauges
+            registry.gauge("foundation_ocr_engine_latency_p50_seconds", latencyHelp, () -> seconds(stats.getP50()),
+                    "engine", engine);
+            registry.gauge("foundation_ocr_engine_latency_p99_seconds", latencyHelp, () -> seconds(stats.getP99()),
+                    "engine", engine);
+            registry.gauge("foundation_ocr_engine_error_ratio", "Share of recent OCR calls that failed per engine.",
+                    stats::getErrorRate, "engine", engine);
+        }
+        return router;
+    }
+
+    /**
+     * Orders engines for the router: Vision first, the others by name.
+     *
+     * @param engines the contributed engines
+     * @return the engines in order of preference
+     * @throws IllegalStateException if no engine is contributed
+     */
+    static List<OcrEngine> routingOrder(final Set<OcrEngine> engines) {
+        if (engines.isEmpty()) {
+            throw new IllegalStateException("Failed to create OcrEngineRouter: no OCR engine is bound");
+        }
+        return engines.stream()
+                .sorted(Comparator.comparing((OcrEngine engine) -> !VisionOcrEngine.NAME.equals(engine.getName()))
+                        .thenComparing(OcrEngine::getName))
+                .toList();
+    }
+
+    private static double seconds(final Duration duration) {
+        return duration == null ? Double.NaN : duration.toNanos() / 1e9;
+    }
+
+    /**
+     * Builds the Vision result cache: {@link Config#getVisionCacheMaxEntries()} responses
+     * in heap and, when {@link Config#isVisionCacheDiskEnabled()} is set, a disk tier in
+     * {@value VisionResultCache#DISK_DIRECTORY} under {@link Config#getDocumentSinkPath()},
+     * bounded by {@link Config#getVisionCacheDiskMaxBytes()}.
+     *
+     * @param config the application configuration
+     * @return a new cache
+     */
+    static VisionResultCache visionResultCache(final Config config) {
+        if (config.getVisionCacheMaxEntries() <= 0) {
+            return VisionResultCache.disabled();
+        }
+        Path disk = config.isVisionCacheDiskEnabled()
+                ? Path.of(config.getDocumentSinkPath(), VisionResultCache.DISK_DIRECTORY)
+                : null;
+        return new VisionResultCache(config.getVisionCacheMaxEntries(), disk, config.getVisionCacheDiskMaxBytes());
+    }
+
+    /**
+     * Builds the Vision concurrency limiter.
+     * <p>
+     * The limit starts at, and never exceeds, {@link Config#getGvMaxParallelBatches()}
+     * when {@link Config#isRunGVInParallel()} is set, or 1 otherwise. It never drops
+     * below 1. Calls slower than {@link #visionLatencyTarget(Config)} count as overload.
+     * </p>
+     *
+     * @param config the application configuration
+     * @return a new limiter
+     */
+    static AdaptiveConcurrencyLimiter visionConcurrencyLimiter(final Config config) {
+        int maxInFlight = visionMaxConcurrency(config);
+        return new AdaptiveConcurrencyLimiter(maxInFlight, 1, maxInFlight, visionLatencyTarget(config));
+    }
+
+    /**
+     * Returns the maximum number of Vision batch RPCs in flight: 1 in sequential mode,
+     * otherwise {@link Config#getGvMaxParallelBatches()}.
+     *
+     * @param config the application configuration
+     * @return the upper bound of the concurrency limit
+     */
+    static int visionMaxConcurrency(final Config config) {
+        return config.isRunGVInParallel() ? Math.max(1, config.getGvMaxParallelBatches()) : 1;
+    }
+
+    /**
+     * Returns the latency budget of a Vision call, {@link Config#getVisionApiTimeoutMs()},
+     * falling back to 30 seconds when unset.
+     *
+     * @param config the application configuration
+     * @return the latency budget
+     */
+    static Duration visionLatencyBudget(final Config config) {
+        return config.getVisionApiTimeoutMs() > 0
+                ? Duration.ofMillis(config.getVisionApiTimeoutMs())
+                : Duration.ofSeconds(30);
+    }
+
+    /**
+     * Returns the latency above which a Vision call counts as overload,
+     * {@link Config#getVisionLatencyTargetMs()}, or a quarter of
+     * {@link #visionLatencyBudget(Config)} when unset. It never exceeds the budget.
+     *
+     * @param config the application configuration
+     * @return the latency target of the concurrency limiter
+     */
+    static Duration visionLatencyTarget(final Config config) {
+        Duration budget = visionLatencyBudget(config);
+        Duration target = config.getVisionLatencyTargetMs() > 0
+                ? Duration.ofMillis(config.getVisionLatencyTargetMs())
+                : budget.dividedBy(4);
+        return target.compareTo(budget) < 0 ? target : budget;
+    }
 }
@@ -0,0 +1,210 @@
+package com.github.dimitryivaniuta.foundation.grpc;
+
+import io.grpc.CallOptions;
+import io.grpc.ClientCall;
+import io.grpc.ConnectivityState;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingClientCallListener;
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * {@link ManagedChannel} that spreads calls over several underlying channels, each
+ * with its own HTTP/2 connection, so one connection's concurrent stream limit does
+ * not cap throughput.
+ * <p>
+ * Every call goes to the channel with the fewest outstanding RPCs; ties are broken
+ * round-robin so an idle pool still uses every connection. A call counts as
+ * outstanding from {@link ClientCall#start} until its listener is closed.
+ * {@link #getInFlight(int)} exposes the per-channel counts.
+ * </p>
+ */
+public class LeastOutstandingChannelPool extends ManagedChannel {
+
+    private final List<ManagedChannel> channels;
+    private final AtomicInteger[] outstanding;
+
+    /**
+     * Where the next tie-breaking scan starts.
+     */
+    private final AtomicInteger nextStart = new AtomicInteger();
+
+    /**
+     * Creates a pool of {@code size} channels.
+     *
+     * @param size    number of channels; at least 1
+     * @param factory creates each underlying channel
+     * @throws IllegalArgumentException if {@code size} is not positive
+     */
+    public LeastOutstandingChannelPool(final int size, final Supplier<ManagedChannel> factory) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Channel pool size must be positive, got " + size);
+        }
+        ManagedChannel[] created = new ManagedChannel[size];
+        this.outstanding = new AtomicInteger[size];
+        for (int i = 0; i < size; i++) {
+            created[i] = factory.get();
+            outstanding[i] = new AtomicInteger();
+        }
+        this.channels = List.of(created);
+    }
+
+    /**
+     * Returns the number of channels in the pool.
+     *
+     * @return the pool size
+     */
+    public int size() {
+        return channels.size();
+    }
+
+    /**
+     * Returns the number of RPCs in flight on one channel.
+     *
+     * @param index channel index, from 0 to {@link #size()} - 1
+     * @return the channel's outstanding RPC count
+     */
+    public int getInFlight(final int index) {
+        return outstanding[index].get();
+    }
+
+    /**
+     * Asks every channel to connect and waits until all are ready or the timeout elapses,
+     * so the first calls do not pay for DNS, TCP and TLS set-up.
+     *
+     * @param timeout longest time to wait
+     * @return the number of channels that are ready
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public int connect(final Duration timeout) throws InterruptedException {
+        CountDownLatch ready = new CountDownLatch(channels.size());
+        channels.forEach(channel -> awaitReady(channel, ready));
+        ready.await(timeout.toNanos(), TimeUnit.NANOSECONDS);
+        return (int) channels.stream()
+                .filter(channel -> channel.getState(false) == ConnectivityState.READY)
+                .count();
+    }
+
+    @Override
+    public <Q, R> ClientCall<Q, R> newCall(final MethodDescriptor<Q, R> method, final CallOptions options) {
+        int index = pick();
+        return new CountingCall<>(channels.get(index).newCall(method, options), outstanding[index]);
+    }
+
+    @Override
+    public String authority() {
+        return channels.get(0).authority();
+    }
+
+    @Override
+    public ManagedChannel shutdown() {
+        channels.forEach(ManagedChannel::shutdown);
+        return this;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return channels.stream().allMatch(ManagedChannel::isShutdown);
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return channels.stream().allMatch(ManagedChannel::isTerminated);
+    }
+
+    @Override
+    public ManagedChannel shutdownNow() {
+        channels.forEach(ManagedChannel::shutdownNow);
+        return this;
+    }
+
+    @Override
+    public boolean awaitTermination(final long timeout, final TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (ManagedChannel channel : channels) {
+            if (!channel.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Requests a connection and counts the latch down once the channel is ready,
+     * re-requesting after each state change (e.g. a transient failure).
+     */
+    private static void awaitReady(final ManagedChannel channel, final CountDownLatch ready) {
+        ConnectivityState state = channel.getState(true);
+        if (state == ConnectivityState.READY) {
+            ready.countDown();
+        } else if (state != ConnectivityState.SHUTDOWN) {
+            channel.notifyWhenStateChanged(state, () -> awaitReady(channel, ready));
+        }
+    }
+
+    /**
+     * Returns the index of the channel with the fewest outstanding RPCs.
+     */
+    private int pick() {
+        int size = outstanding.length;
+        int start = Math.floorMod(nextStart.getAndIncrement(), size);
+        int best = start;
+        int bestCount = outstanding[start].get();
+        for (int i = 1; i < size && bestCount > 0; i++) {
+            int candidate = (start + i) % size;
+            int count = outstanding[candidate].get();
+            if (count < bestCount) {
+                best = candidate;
+                bestCount = count;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Counts a call as outstanding on its channel from start until close.
+     */
+    private static final class CountingCall<Q, R> extends ForwardingClientCall.SimpleForwardingClientCall<Q, R> {
+
+        private final AtomicInteger counter;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        CountingCall(final ClientCall<Q, R> delegate, final AtomicInteger counter) {
+            super(delegate);
+            this.counter = counter;
+        }
+
+        @Override
+        public void start(final Listener<R> listener, final Metadata headers) {
+            counter.incrementAndGet();
+            try {
+                super.start(new ForwardingClientCallListener.SimpleForwardingClientCallListener<>(listener) {
+                    @Override
+                    public void onClose(final Status status, final Metadata trailers) {
+                        release();
+                        super.onClose(status, trailers);
+                    }
+                }, headers);
+            } catch (RuntimeException e) {
+                release();
+                throw e;
+            }
+        }
+
+        private void release() {
+            if (released.compareAndSet(false, true)) {
+                counter.decrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,464 @@
+package com.github.dimitryivaniuta.foundation.grpc;
+
+import com.github.dimitryivaniuta.foundation.ocr.OcrEngine;
+import com.github.dimitryivaniuta.foundation.ocr.OcrResult;
+import com.github.dimitryivaniuta.foundation.streams.DocumentPayload;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * {@link OcrEngine} that sends each page to whichever of several engines currently
+ * performs best, and hedges slow pages to the runner-up.
+ * <p>
+ * For every engine the router keeps the latencies of its last {@value #WINDOW}
+ * successful calls and the outcomes of its last {@value #OUTCOME_WINDOW} calls. An
+ * engine's score is its p99 latency divided by its success rate, roughly the time a
+ * page takes to come back with text; the engine with the lowest score is the
+ * primary, and every {@value #PROBE_EVERY}th page goes to the runner-up so its
+ * statistics stay current. Ties go to the engine listed first.
+ * </p>
+ * <p>
+ * Engines with fewer than {@value #MIN_SAMPLES} successful calls are warming up. They
+ * rank ahead of warmed-up engines and take turns among themselves, the one with the
+ * fewest calls going first, so every engine is measured within its first few dozen
+ * pages. A warming-up engine that has failed at least {@value #WARM_UP_FAILURES}
+ * times and at least half its calls ranks last instead, so an engine that is broken
+ * from start-up is not the primary of every page; probes, hedges and fallbacks still
+ * reach it and let it recover.
+ * </p>
+ * <p>
+ * A page the primary has not answered within its p99, capped at the latency budget
+ * and never sooner than the minimum hedge delay, is sent to the runner-up as well;
+ * whichever answers first wins. At most {@value #MAX_HEDGE_PERCENT}% of pages are
+ * hedged this way. A page the primary fails is sent to the runner-up at once,
+ * regardless of that limit. A page fails only when both engines fail.
+ * </p>
+ * <p>
+ * Latencies of losing calls are recorded too, so an engine that slows down loses
+ * its place even while hedges hide its slowness from callers.
+ * </p>
+ */
+public class OcrEngineRouter implements OcrEngine {
+
+    /**
+     * Name of this engine.
+     */
+    public static final String NAME = "router";
+
+    /**
+     * Number of recent latencies the percentiles are computed from.
+     */
+    static final int WINDOW = 256;
+
+    /**
+     * Number of recent outcomes the error rate is computed from.
+     */
+    static final int OUTCOME_WINDOW = 128;
+
+    /**
+     * Successful calls an engine needs before its percentiles count.
+     */
+    static final int MIN_SAMPLES = 16;
+
+    /**
+     * Failures after which a warming-up engine failing at least half its calls ranks last.
+     */
+    static final int WARM_UP_FAILURES = 3;
+
+    /**
+     * Every this many pages, the runner-up is made the primary.
+     */
+    static final int PROBE_EVERY = 64;
+
+    /**
+     * Upper bound on hedged pages, as a percentage of all pages.
+     */
+    static final int MAX_HEDGE_PERCENT = 10;
+
+    /**
+     * The percentiles are recomputed after this many new samples.
+     */
+    private static final int RECOMPUTE_EVERY = 8;
+
+    private final List<EngineStats> engines;
+    private final long latencyBudgetNanos;
+    private final long minHedgeDelayNanos;
+    private final AtomicLong pages = new AtomicLong();
+    private final LongAdder hedges = new LongAdder();
+
+    /**
+     * Creates a router.
+     *
+     * @param engines        the engines to route between, in order of preference
+     * @param latencyBudget  longest a page waits for its primary before being hedged
+     * @param minHedgeDelay  the earliest a page may be hedged
+     * @throws IllegalArgumentException if no engine is given
+     */
+    public OcrEngineRouter(final List<? extends OcrEngine> engines,
+                           final Duration latencyBudget,
+                           final Duration minHedgeDelay) {
+        if (engines.isEmpty()) {
+            throw new IllegalArgumentException("At least one OCR engine is required");
+        }
+        List<EngineStats> stats = new ArrayList<>(engines.size());
+        for (OcrEngine engine : engines) {
+            stats.add(new EngineStats(engine));
+        }
+        this.engines = List.copyOf(stats);
+        this.latencyBudgetNanos = latencyBudget.toNanos();
+        this.minHedgeDelayNanos = Math.max(0L, minHedgeDelay.toNanos());
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public CompletableFuture<OcrResult> recognize(final DocumentPayload page) {
+        List<EngineStats> ranked = rank();
+        EngineStats primary = ranked.get(0);
+        EngineStats secondary = ranked.size() > 1 ? ranked.get(1) : null;
+        if (secondary != null && pages.incrementAndGet() % PROBE_EVERY == 0) {
+            EngineStats probe = primary;
+            primary = secondary;
+            secondary = probe;
+            primary.probes.increment();
+        } else {
+            primary.routed.increment();
+        }
+
+        CompletableFuture<OcrResult> result = new CompletableFuture<>();
+        if (secondary == null) {
+            send(primary, page).whenComplete((ocr, error) -> complete(result, ocr, error));
+            return result;
+        }
+        EngineStats fallback = secondary;
+        AtomicBoolean fallbackSent = new AtomicBoolean();
+        AtomicInteger failures = new AtomicInteger();
+        send(primary, page).whenComplete((ocr, error) -> {
+            if (error == null) {
+                result.complete(ocr);
+            } else if (fallbackSent.compareAndSet(false, true)) {
+                fallback.fallbacks.increment();
+                send(fallback, page).whenComplete((second, secondError) -> {
+                    if (secondError == null) {
+                        result.complete(second);
+                    } else {
+                        Throwable cause = unwrap(secondError);
+                        cause.addSuppressed(unwrap(error));
+                        result.completeExceptionally(cause);
+                    }
+                });
+            } else {
+                // The hedge is in flight and decides the outcome
+                failWhenBothFailed(result, error, failures);
+            }
+        });
+        CompletableFuture.delayedExecutor(hedgeDelayNanos(primary), TimeUnit.NANOSECONDS).execute(() -> {
+            if (result.isDone() || !reserveHedge() || !fallbackSent.compareAndSet(false, true)) {
+                return;
+            }
+            fallback.hedged.increment();
+            send(fallback, page).whenComplete((ocr, error) -> {
+                if (error == null) {
+                    if (result.complete(ocr)) {
+                        fallback.hedgeWins.increment();
+                    }
+                } else {
+                    failWhenBothFailed(result, error, failures);
+                }
+            });
+        });
+        return result;
+    }
+
+    /**
+     * Returns the engines with their statistics, in the order they were given.
+     *
+     * @return the per-engine statistics
+     */
+    public List<EngineStats> getEngineStats() {
+        return engines;
+    }
+
+    /**
+     * Returns the engines ordered from best to worst score, ties keeping their
+     * order of preference.
+     *
+     * @return the ranked engines
+     */
+    List<EngineStats> rank() {
+        List<EngineStats> ranked = new ArrayList<>(engines);
+        ranked.sort(Comparator.comparingDouble(EngineStats::score)
+                .thenComparingLong(stats -> stats.p99Nanos < 0 ? stats.calls.sum() : 0L));
+        return ranked;
+    }
+
+    /**
+     * Returns how long a page waits for the given primary before being hedged.
+     *
+     * @param primary the primary engine
+     * @return the hedge delay in nanoseconds
+     */
+    long hedgeDelayNanos(final EngineStats primary) {
+        long p99 = primary.p99Nanos;
+        long delay = p99 < 0 ? latencyBudgetNanos : Math.min(latencyBudgetNanos, p99);
+        return Math.max(minHedgeDelayNanos, delay);
+    }
+
+    /**
+     * Counts a hedge if the hedge budget allows one.
+     */
+    private boolean reserveHedge() {
+        if (hedges.sum() * 100 >= pages.get() * MAX_HEDGE_PERCENT) {
+            return false;
+        }
+        hedges.increment();
+        return true;
+    }
+
+    /**
+     * Sends a page to one engine, recording the call's latency and outcome.
+     */
+    private static CompletableFuture<OcrResult> send(final EngineStats stats, final DocumentPayload page) {
+        long start = System.nanoTime();
+        stats.calls.increment();
+        CompletableFuture<OcrResult> call;
+        try {
+            call = stats.engine.recognize(page);
+        } catch (RuntimeException e) {
+            stats.recordFailure();
+            return CompletableFuture.failedFuture(e);
+        }
+        return call.whenComplete((ocr, error) -> {
+            if (error == null) {
+                stats.recordSuccess(System.nanoTime() - start);
+            } else {
+                stats.recordFailure();
+            }
+        });
+    }
+
+    /**
+     * Fails the page once both the primary and the hedge have failed.
+     *
+     * @param result   the page's result
+     * @param error    the failure of one of the two calls
+     * @param failures failures seen so far among the two calls
+     */
+    private static void failWhenBothFailed(final CompletableFuture<OcrResult> result,
+                                           final Throwable error,
+                                           final AtomicInteger failures) {
+        if (failures.incrementAndGet() == 2) {
+            complete(result, null, error);
+        }
+    }
+
+    private static void complete(final CompletableFuture<OcrResult> result,
+                                 final OcrResult ocr,
+                                 final Throwable error) {
+        if (error == null) {
+            result.complete(ocr);
+        } else {
+            result.completeExceptionally(unwrap(error));
+        }
+    }
+
+    private static Throwable unwrap(final Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    /**
+     * Rolling latency and error statistics of one engine, and the router's decisions for it.
+     */
+    public static final class EngineStats {
+
+        private final OcrEngine engine;
+
+        /**
+         * Guards the windows below.
+         */
+        private final ReentrantLock lock = new ReentrantLock();
+        private final long[] latencies = new long[WINDOW];
+        private int latencyCount;
+        private int nextLatency;
+        private int sinceRecompute;
+        private final boolean[] failures = new boolean[OUTCOME_WINDOW];
+        private int outcomeCount;
+        private int nextOutcome;
+        private int failureCount;
+
+        private volatile long p50Nanos = -1L;
+        private volatile long p99Nanos = -1L;
+        private volatile double errorRate;
+        private volatile boolean failingWarmUp;
+
+        private final LongAdder routed = new LongAdder();
+        private final LongAdder probes = new LongAdder();
+        private final LongAdder hedged = new LongAdder();
+        private final LongAdder hedgeWins = new LongAdder();
+        private final LongAdder fallbacks = new LongAdder();
+        private final LongAdder calls = new LongAdder();
+
+        EngineStats(final OcrEngine engine) {
+            this.engine = engine;
+        }
+
+        /**
+         * Returns the engine these statistics describe.
+         *
+         * @return the engine
+         */
+        public OcrEngine getEngine() {
+            return engine;
+        }
+
+        /**
+         * Returns the median latency of recent successful calls.
+         *
+         * @return the p50 latency, or {@code null} while warming up
+         */
+        public Duration getP50() {
+            long p50 = p50Nanos;
+            return p50 < 0 ? null : Duration.ofNanos(p50);
+        }
+
+        /**
+         * Returns the 99th percentile latency of recent successful calls.
+         *
+         * @return the p99 latency, or {@code null} while warming up
+         */
+        public Duration getP99() {
+            long p99 = p99Nanos;
+            return p99 < 0 ? null : Duration.ofNanos(p99);
+        }
+
+        /**
+         * Returns the share of recent calls that failed.
+         *
+         * @return the error rate between 0 and 1
+         */
+        public double getErrorRate() {
+            return errorRate;
+        }
+
+        /**
+         * Returns the number of pages sent to this engine as the primary.
+         *
+         * @return the cumulative count
+         */
+        public long getRoutedCount() {
+            return routed.sum();
+        }
+
+        /**
+         * Returns the number of pages sent to this engine as the primary to refresh
+         * its statistics while it was the runner-up.
+         *
+         * @return the cumulative count
+         */
+        public long getProbeCount() {
+            return probes.sum();
+        }
+
+        /**
+         * Returns the number of slow pages hedged to this engine.
+         *
+         * @return the cumulative count
+         */
+        public long getHedgeCount() {
+            return hedged.sum();
+        }
+
+        /**
+         * Returns the number of hedges to this engine that answered first.
+         *
+         * @return the cumulative count
+         */
+        public long getHedgeWinCount() {
+            return hedgeWins.sum();
+        }
+
+        /**
+         * Returns the number of pages sent to this engine after the primary failed them.
+         *
+         * @return the cumulative count
+         */
+        public long getFallbackCount() {
+            return fallbacks.sum();
+        }
+
+        /**
+         * Returns the routing score: p99 latency in nanoseconds divided by the success
+         * rate. While warming up, zero, or the worst possible score once the engine
+         * keeps failing.
+         *
+         * @return the score; lower is better
+         */
+        double score() {
+            long p99 = p99Nanos;
+            if (p99 < 0) {
+                return failingWarmUp ? Double.MAX_VALUE : 0;
+            }
+            return p99 / Math.max(0.01, 1.0 - errorRate);
+        }
+
+        void recordSuccess(final long latencyNanos) {
+            lock.lock();
+            try {
+                latencies[nextLatency] = latencyNanos;
+                nextLatency = (nextLatency + 1) % WINDOW;
+                latencyCount = Math.min(latencyCount + 1, WINDOW);
+                if (++sinceRecompute >= RECOMPUTE_EVERY && latencyCount >= MIN_SAMPLES) {
+                    sinceRecompute = 0;
+                    long[] sorted = Arrays.copyOf(latencies, latencyCount);
+                    Arrays.sort(sorted);
+                    p50Nanos = sorted[(int) Math.ceil(latencyCount * 0.50) - 1];
+                    p99Nanos = sorted[(int) Math.ceil(latencyCount * 0.99) - 1];
+                }
+                recordOutcome(false);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void recordFailure() {
+            lock.lock();
+            try {
+                recordOutcome(true);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Adds an outcome to the window. Must be called while holding {@link #lock}.
+         */
+        private void recordOutcome(final boolean failed) {
+            if (outcomeCount == OUTCOME_WINDOW && failures[nextOutcome]) {
+                failureCount--;
+            }
+            failures[nextOutcome] = failed;
+            if (failed) {
+                failureCount++;
+            }
+            nextOutcome = (nextOutcome + 1) % OUTCOME_WINDOW;
+            outcomeCount = Math.min(outcomeCount + 1, OUTCOME_WINDOW);
+            errorRate = (double) failureCount / outcomeCount;
+            failingWarmUp = failureCount >= WARM_UP_FAILURES && errorRate >= 0.5;
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.github.dimitryivaniuta.foundation.grpc;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Size-bounded map with W-TinyLFU admission and eviction.
+ * <p>
+ * New entries go into a small LRU window holding about 1% of the capacity. An entry
+ * pushed out of the window competes with the least recently used entry of the main
+ * space, and whichever key was requested more often, according to a compact
+ * count-min {@link FrequencySketch}, stays. One-off keys therefore cannot flush out
+ * keys that keep coming back. The main space is a segmented LRU: entries are
+ * admitted into probation and promoted to the protected segment (80% of the main
+ * space) on their next hit.
+ * </p>
+ * <p>
+ * Not thread-safe; callers must serialise access.
+ * </p>
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+final class TinyLfuCache<K, V> {
+
+    private final int windowMax;
+    private final int mainMax;
+    private final int protectedMax;
+
+    private final LinkedHashMap<K, V> window = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<K, V> probation = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<K, V> protectedSegment = new LinkedHashMap<>(16, 0.75f, true);
+    private final FrequencySketch sketch;
+
+    private long evictions;
+
+    /**
+     * Creates an empty cache.
+     *
+     * @param maximumSize maximum number of entries; at least 1
+     * @throws IllegalArgumentException if {@code maximumSize} is not positive
+     */
+    TinyLfuCache(final int maximumSize) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("Maximum size must be positive, got " + maximumSize);
+        }
+        this.windowMax = Math.max(1, maximumSize / 100);
+        this.mainMax = maximumSize - windowMax;
+        this.protectedMax = mainMax * 4 / 5;
+        this.sketch = new FrequencySketch(maximumSize);
+    }
+
+    /**
+     * Looks up a key, recording the request in the frequency sketch.
+     *
+     * @param key the key
+     * @return the cached value, or {@code null}
+     */
+    V get(final K key) {
+        sketch.increment(key);
+        V value = window.get(key);
+        if (value != null) {
+            return value;
+        }
+        value = protectedSegment.get(key);
+        if (value != null) {
+            return value;
+        }
+        value = probation.remove(key);
+        if (value != null) {
+            protectedSegment.put(key, value);
+            while (protectedSegment.size() > protectedMax) {
+                Map.Entry<K, V> demoted = removeEldest(protectedSegment);
+                probation.put(demoted.getKey(), demoted.getValue());
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Adds or replaces an entry. A new entry may be evicted again straight away
+     * if it loses the admission contest when it leaves the window.
+     *
+     * @param key   the key
+     * @param value the value
+     */
+    void put(final K key, final V value) {
+        if (window.containsKey(key)) {
+            window.put(key, value);
+        } else if (protectedSegment.containsKey(key)) {
+            protectedSegment.put(key, value);
+        } else if (probation.containsKey(key)) {
+            probation.put(key, value);
+        } else {
+            window.put(key, value);
+            if (window.size() > windowMax) {
+                admit(removeEldest(window));
+            }
+        }
+    }
+
+    /**
+     * Returns the number of cached entries.
+     *
+     * @return the entry count
+     */
+    int size() {
+        return window.size() + probation.size() + protectedSegment.size();
+    }
+
+    /**
+     * Returns how many entries have been evicted or refused admission.
+     *
+     * @return the cumulative eviction count
+     */
+    long evictions() {
+        return evictions;
+    }
+
+    /**
+     * Moves an entry leaving the window into the main space, evicting either it or
+     * the main space's LRU victim when the main space is full.
+     */
+    private void admit(final Map.Entry<K, V> candidate) {
+        if (probation.size() + protectedSegment.size() < mainMax) {
+            probation.put(candidate.getKey(), candidate.getValue());
+            return;
+        }
+        evictions++;
+        LinkedHashMap<K, V> victims = probation.isEmpty() ? protectedSegment : probation;
+        if (victims.isEmpty()) {
+            return;
+        }
+        K victim = victims.keySet().iterator().next();
+        if (sketch.frequency(candidate.getKey()) > sketch.frequency(victim)) {
+            victims.remove(victim);
+            probation.put(candidate.getKey(), candidate.getValue());
+        }
+    }
+
+    private static <K, V> Map.Entry<K, V> removeEldest(final LinkedHashMap<K, V> segment) {
+        Iterator<Map.Entry<K, V>> it = segment.entrySet().iterator();
+        Map.Entry<K, V> eldest = it.next();
+        Map.Entry<K, V> copy = Map.entry(eldest.getKey(), eldest.getValue());
+        it.remove();
+        return copy;
+    }
+
+    /**
+     * Count-min sketch of 4-bit counters estimating how often each key was requested.
+     * <p>
+     * Counters saturate at 15 and are all halved once the number of increments reaches
+     * ten times the cache size, so old popularity fades out.
+     * </p>
+     */
+    static final class FrequencySketch {
+
+        private static final long[] SEEDS = {
+                0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+        private static final long RESET_MASK = 0x7777777777777777L;
+
+        private final long[] table;
+        private final int tableMask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(final int maximumSize) {
+            int length = Math.max(8, Integer.highestOneBit(Math.clamp(maximumSize - 1L, 1, 1 << 29)) << 1);
+            this.table = new long[length];
+            this.tableMask = length - 1;
+            this.sampleSize = (int) Math.min(Integer.MAX_VALUE, 10L * maximumSize);
+        }
+
+        /**
+         * Records one request for the key.
+         */
+        void increment(final Object key) {
+            int hash = spread(key.hashCode());
+            boolean added = false;
+            for (int i = 0; i < SEEDS.length; i++) {
+                long h = hashOf(hash, i);
+                int slot = (int) h & tableMask;
+                int shift = (int) (h >>> 60) << 2;
+                if (((table[slot] >>> shift) & 0xFL) < 15) {
+                    table[slot] += 1L << shift;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) {
+                for (int i = 0; i < table.length; i++) {
+                    table[i] = (table[i] >>> 1) & RESET_MASK;
+                }
+                additions /= 2;
+            }
+        }
+
+        /**
+         * Returns the estimated number of recent requests for the key, at most 15.
+         */
+        int frequency(final Object key) {
+            int hash = spread(key.hashCode());
+            int min = 15;
+            for (int i = 0; i < SEEDS.length; i++) {
+                long h = hashOf(hash, i);
+                int shift = (int) (h >>> 60) << 2;
+                min = Math.min(min, (int) ((table[(int) h & tableMask] >>> shift) & 0xFL));
+            }
+            return min;
+        }
+
+        private static long hashOf(final int hash, final int depth) {
+            long h = (hash + SEEDS[depth]) * SEEDS[depth];
+            return h ^ (h >>> 32);
+        }
+
+        private static int spread(final int hash) {
+            int h = hash * 0x9e3779b9;
+            return h ^ (h >>> 16);
+        }
+    }
+}
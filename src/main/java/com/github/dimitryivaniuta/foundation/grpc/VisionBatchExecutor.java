@@ -0,0 +1,509 @@
+package com.github.dimitryivaniuta.foundation.grpc;
+
+import com.github.dimitryivaniuta.foundation.config.Config;
+import com.github.dimitryivaniuta.foundation.metrics.Counter;
+import com.github.dimitryivaniuta.foundation.metrics.LatencyHistogram;
+import com.github.dimitryivaniuta.foundation.metrics.MetricsRegistry;
+import com.google.api.gax.rpc.ApiException;
+import com.google.api.gax.rpc.StatusCode;
+import com.google.cloud.vision.v1.AnnotateImageRequest;
+import com.google.cloud.vision.v1.AnnotateImageResponse;
+import com.google.cloud.vision.v1.BatchAnnotateImagesRequest;
+import com.google.cloud.vision.v1.BatchAnnotateImagesResponse;
+import com.google.cloud.vision.v1.ImageAnnotatorClient;
+import javax.inject.Provider;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Coalesces individual Vision API page requests into
+ * {@link BatchAnnotateImagesRequest}s of up to {@link Config#getGvThreshold()} images.
+ * <p>
+ * Each submitted page immediately receives a {@link CompletableFuture} that is
+ * completed with its own {@link AnnotateImageResponse} once the batch it was
+ * placed in returns. A batch is sent as soon as it is full, or after
+ * {@link Config#getGvBatchLingerMs()} if traffic is too light to fill it.
+ * </p>
+ * <p>
+ * RPCs run on virtual threads. When {@link Config#isRunGVInParallel()} is
+ * enabled, up to {@link Config#getGvMaxParallelBatches()} batches are in flight
+ * at once; otherwise batches are sent strictly one after another in submission order.
+ * Full batches go to a single dispatcher thread, which takes a limiter slot for each
+ * in turn before handing it to its RPC thread, so batches are started in the order
+ * they were formed in either mode.
+ * Per-page Vision errors are reported in {@link AnnotateImageResponse#getError()}
+ * and do not fail the future; only a failed RPC completes its pages exceptionally.
+ * </p>
+ * <p>
+ * In-flight batches are bounded by an {@link AdaptiveConcurrencyLimiter}: quota
+ * errors and batches slower than {@link Config#getVisionLatencyTargetMs()} shrink the
+ * number of concurrent RPCs, and successful ones grow it back towards the configured
+ * maximum. A batch waits for a slot for at most {@link Config#getVisionApiTimeoutMs()},
+ * in sequential mode as well: by then a caller bounded by the same timeout has given
+ * up, so the batch's pages fail with a {@link RejectedExecutionException} instead of
+ * being sent late. Callers should treat that as a retryable overload.
+ * </p>
+ * <p>
+ * RPCs go through a {@link VisionRequestHedger}, which may send a slow batch
+ * a second time and use whichever copy answers first.
+ * </p>
+ * <p>
+ * RPC latency by outcome, the time batches wait for a slot and the number of pages
+ * sent are recorded in a {@link MetricsRegistry}.
+ * </p>
+ * <p>
+ * Pages are looked up in a {@link VisionResultCache} first; only misses are
+ * batched, and identical pages submitted while one is in flight share its RPC.
+ * </p>
+ * <p>
+ * {@link GrpcClientModule} provides the singleton and drains it on shutdown, before
+ * Kafka Streams and the Vision client are closed.
+ * </p>
+ */
+public class VisionBatchExecutor implements AutoCloseable {
+
+    /**
+     * Supplies the Vision client; resolved on the first RPC so that
+     * constructing the executor does not load credentials.
+     */
+    private final Provider<ImageAnnotatorClient> clientProvider;
+
+    /**
+     * Maximum number of pages per batch RPC.
+     */
+    private volatile int batchSize;
+
+    /**
+     * Maximum time a partial batch waits before being sent.
+     */
+    private volatile long lingerMs;
+
+    /**
+     * Bounds and adapts the number of concurrently executing batch RPCs.
+     */
+    private final AdaptiveConcurrencyLimiter limiter;
+
+    /**
+     * Longest time a batch waits for a slot before being rejected.
+     */
+    private volatile Duration maxQueueTime;
+
+    /**
+     * Answers resent pages without an RPC.
+     */
+    private final VisionResultCache resultCache;
+
+    /**
+     * Performs batch RPCs, hedging slow ones.
+     */
+    private final VisionRequestHedger hedger;
+
+    /**
+     * Latency of successful and failed batch RPCs, including hedges and retries.
+     */
+    private final LatencyHistogram rpcSuccessLatency;
+    private final LatencyHistogram rpcErrorLatency;
+
+    /**
+     * Time batches wait for a limiter slot.
+     */
+    private final LatencyHistogram queueLatency;
+
+    /**
+     * Pages sent to Vision, i.e. cache misses.
+     */
+    private final Counter pagesSent;
+
+    /**
+     * Takes a limiter slot for each batch, one batch at a time in the order they
+     * were formed.
+     */
+    private final ExecutorService dispatcher;
+
+    /**
+     * Runs each batch RPC on its own virtual thread.
+     */
+    private final ExecutorService rpcExecutor;
+
+    /**
+     * Fires the linger deadline of partially filled batches.
+     */
+    private final ScheduledExecutorService lingerScheduler;
+
+    /**
+     * Guards {@link #pending}, {@link #lingerTask} and setting {@link #closed}.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Pages collected for the batch currently being filled.
+     */
+    private List<PendingPage> pending = new ArrayList<>();
+
+    /**
+     * Linger deadline of the batch currently being filled, if scheduled.
+     */
+    private ScheduledFuture<?> lingerTask;
+
+    /**
+     * Set once {@link #close()} has been called; new pages are rejected afterwards.
+     */
+    private volatile boolean closed;
+
+    /**
+     * Constructs the executor from the batching settings in {@link Config},
+     * with its own concurrency limiter, result cache, hedger and metrics registry.
+     *
+     * @param config         application configuration
+     * @param clientProvider provider of the Vision client used for batch RPCs
+     */
+    public VisionBatchExecutor(final Config config,
+                               final Provider<ImageAnnotatorClient> clientProvider) {
+        this(config, clientProvider, GrpcClientModule.visionConcurrencyLimiter(config),
+                GrpcClientModule.visionResultCache(config), GrpcClientModule.visionRequestHedger(config),
+                new MetricsRegistry());
+    }
+
+    /**
+     * Constructs the executor from the batching settings in {@link Config}.
+     *
+     * @param config         application configuration
+     * @param clientProvider provider of the Vision client used for batch RPCs
+     * @param limiter        limiter bounding concurrent batch RPCs
+     * @param resultCache    cache consulted before a page is batched
+     * @param hedger         performs batch RPCs, hedging slow ones
+     * @param registry       the registry RPC metrics are recorded in
+     */
+    public VisionBatchExecutor(final Config config,
+                               final Provider<ImageAnnotatorClient> clientProvider,
+                               final AdaptiveConcurrencyLimiter limiter,
+                               final VisionResultCache resultCache,
+                               final VisionRequestHedger hedger,
+                               final MetricsRegistry registry) {
+        this.clientProvider = clientProvider;
+        this.batchSize = Math.max(1, config.getGvThreshold());
+        this.lingerMs = Math.max(0L, config.getGvBatchLingerMs());
+        this.limiter = limiter;
+        this.maxQueueTime = GrpcClientModule.visionLatencyBudget(config);
+        this.resultCache = resultCache;
+        this.hedger = hedger;
+        String rpcHelp = "Latency of Vision batchAnnotateImages calls, including retries and hedges.";
+        this.rpcSuccessLatency = registry.histogram("foundation_vision_rpc_seconds", rpcHelp, "outcome", "success");
+        this.rpcErrorLatency = registry.histogram("foundation_vision_rpc_seconds", rpcHelp, "outcome", "error");
+        this.queueLatency = registry.histogram("foundation_vision_queue_seconds",
+                "Time Vision batches wait for a concurrency limiter slot.");
+        this.pagesSent = registry.counter("foundation_vision_pages_total", "Pages sent to Vision.");
+        this.dispatcher = Executors.newSingleThreadExecutor(
+                Thread.ofVirtual().name("vision-batch-dispatcher").factory());
+        this.rpcExecutor = Executors.newThreadPerTaskExecutor(
+                Thread.ofVirtual().name("vision-batch-", 0).factory());
+        this.lingerScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "vision-batch-linger");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Queues a single page for annotation, unless its response is already cached.
+     *
+     * @param page the Vision request for one image
+     * @return a future completed with the response for this page
+     * @throws IllegalStateException if the executor has been closed
+     */
+    public CompletableFuture<AnnotateImageResponse> submit(final AnnotateImageRequest page) {
+        if (closed) {
+            throw new IllegalStateException("VisionBatchExecutor is closed");
+        }
+        return resultCache.get(page, this::enqueue);
+    }
+
+    /**
+     * Adds a page to the batch currently being filled, sending the batch if it is full.
+     *
+     * @param page the Vision request for one image
+     * @return a future completed with the response for this page
+     */
+    private CompletableFuture<AnnotateImageResponse> enqueue(final AnnotateImageRequest page) {
+        PendingPage entry = new PendingPage(page, new CompletableFuture<>());
+        List<PendingPage> full = null;
+        lock.lock();
+        try {
+            if (closed) {
+                // Closed after submit() checked; the linger scheduler may already be gone
+                return CompletableFuture.failedFuture(new IllegalStateException("VisionBatchExecutor is closed"));
+            }
+            pending.add(entry);
+            if (pending.size() >= batchSize || lingerMs == 0) {
+                full = drainPending();
+            } else if (lingerTask == null) {
+                lingerTask = lingerScheduler.schedule(this::flush, lingerMs, TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (full != null) {
+            dispatch(full);
+        }
+        return entry.result();
+    }
+
+    /**
+     * Queues several pages, preserving their order in the returned list.
+     *
+     * @param pages the Vision requests to annotate
+     * @return one future per page, in the same order as {@code pages}
+     */
+    public List<CompletableFuture<AnnotateImageResponse>> submitAll(final Collection<AnnotateImageRequest> pages) {
+        List<CompletableFuture<AnnotateImageResponse>> results = new ArrayList<>(pages.size());
+        for (AnnotateImageRequest page : pages) {
+            results.add(submit(page));
+        }
+        return results;
+    }
+
+    /**
+     * Sends the batch currently being filled without waiting for it to fill up
+     * or for its linger deadline.
+     */
+    public void flush() {
+        List<PendingPage> batch;
+        lock.lock();
+        try {
+            batch = drainPending();
+        } finally {
+            lock.unlock();
+        }
+        if (!batch.isEmpty()) {
+            dispatch(batch);
+        }
+    }
+
+    /**
+     * Adopts the batching and concurrency settings of a reloaded configuration:
+     * {@link Config#getGvThreshold()}, {@link Config#getGvBatchLingerMs()},
+     * {@link Config#isRunGVInParallel()}, {@link Config#getGvMaxParallelBatches()},
+     * {@link Config#getVisionApiTimeoutMs()} and {@link Config#getVisionLatencyTargetMs()}.
+     * Pages already queued keep their batch; the new sizes apply from the next page on.
+     *
+     * @param config the new configuration
+     */
+    public void applyConfig(final Config config) {
+        batchSize = Math.max(1, config.getGvThreshold());
+        lingerMs = Math.max(0L, config.getGvBatchLingerMs());
+        maxQueueTime = GrpcClientModule.visionLatencyBudget(config);
+        limiter.setMaxLimit(GrpcClientModule.visionMaxConcurrency(config));
+        limiter.setLatencyBudget(GrpcClientModule.visionLatencyTarget(config));
+    }
+
+    /**
+     * Closes the executor, waiting up to a minute for queued and in-flight batches.
+     */
+    @Override
+    public void close() {
+        close(Duration.ofMinutes(1));
+    }
+
+    /**
+     * Flushes any pending pages and waits for queued and in-flight batches to finish
+     * within the given time. Pages submitted concurrently with or after the call fail.
+     * The underlying {@link ImageAnnotatorClient} is not closed; it is owned
+     * by its provider.
+     *
+     * @param timeout how long to wait for the batches
+     */
+    public void close(final Duration timeout) {
+        List<PendingPage> batch;
+        lock.lock();
+        try {
+            closed = true;
+            batch = drainPending();
+        } finally {
+            lock.unlock();
+        }
+        if (!batch.isEmpty()) {
+            dispatch(batch);
+        }
+        long deadline = System.nanoTime() + timeout.toNanos();
+        try {
+            // A linger deadline that already fired may still be dispatching its batch
+            lingerScheduler.shutdown();
+            awaitUntil(lingerScheduler, deadline);
+            dispatcher.shutdown();
+            awaitUntil(dispatcher, deadline);
+            rpcExecutor.shutdown();
+            awaitUntil(rpcExecutor, deadline);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lingerScheduler.shutdownNow();
+            dispatcher.shutdownNow();
+            rpcExecutor.shutdownNow();
+        }
+    }
+
+    private static void awaitUntil(final ExecutorService executor, final long deadline) throws InterruptedException {
+        executor.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Detaches the current batch and cancels its linger deadline.
+     * Must be called while holding {@link #lock}.
+     *
+     * @return the detached pages, possibly empty
+     */
+    private List<PendingPage> drainPending() {
+        List<PendingPage> batch = pending;
+        pending = new ArrayList<>(batchSize);
+        if (lingerTask != null) {
+            lingerTask.cancel(false);
+            lingerTask = null;
+        }
+        return batch;
+    }
+
+    /**
+     * Queues a batch on the dispatcher, which sends batches in the order they arrive.
+     *
+     * @param batch the pages to send in a single RPC
+     */
+    private void dispatch(final List<PendingPage> batch) {
+        long queued = System.nanoTime();
+        try {
+            dispatcher.execute(() -> acquireAndSend(batch, queued));
+        } catch (RejectedExecutionException e) {
+            failAll(batch, e);
+        }
+    }
+
+    /**
+     * Waits for a limiter slot on the dispatcher thread, then hands the batch to its
+     * own virtual thread. Later batches wait behind this one, so slots are taken in
+     * the order the batches were formed.
+     *
+     * @param batch  the pages to send in a single RPC
+     * @param queued {@link System#nanoTime()} at which the batch was dispatched
+     */
+    private void acquireAndSend(final List<PendingPage> batch, final long queued) {
+        Duration maxWait = maxQueueTime;
+        AdaptiveConcurrencyLimiter.Permit permit;
+        try {
+            permit = limiter.acquire(maxWait.minusNanos(System.nanoTime() - queued));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failAll(batch, e);
+            return;
+        } finally {
+            queueLatency.recordSince(queued);
+        }
+        if (permit == null) {
+            failAll(batch, new RejectedExecutionException(String.format(
+                    "No Vision RPC slot within %d ms (limit %d)", maxWait.toMillis(), limiter.getLimit())));
+            return;
+        }
+        try {
+            rpcExecutor.execute(() -> send(batch, permit));
+        } catch (RejectedExecutionException e) {
+            permit.onIgnore();
+            failAll(batch, e);
+        }
+    }
+
+    /**
+     * Performs one batch RPC and fans the responses back out to the page futures.
+     *
+     * @param batch  the pages to send in a single RPC
+     * @param permit the limiter slot the RPC holds until it completes
+     */
+    private void send(final List<PendingPage> batch, final AdaptiveConcurrencyLimiter.Permit permit) {
+        BatchAnnotateImagesResponse response;
+        pagesSent.add(batch.size());
+        long start = System.nanoTime();
+        try {
+            BatchAnnotateImagesRequest.Builder request = BatchAnnotateImagesRequest.newBuilder();
+            for (PendingPage page : batch) {
+                request.addRequests(page.request());
+            }
+            response = hedger.call(clientProvider.get(), request.build());
+        } catch (RuntimeException e) {
+            rpcErrorLatency.recordSince(start);
+            if (isOverload(e)) {
+                permit.onDropped();
+            } else {
+                permit.onIgnore();
+            }
+            failAll(batch, e);
+            return;
+        }
+        rpcSuccessLatency.recordSince(start);
+        permit.onSuccess();
+        complete(batch, response);
+    }
+
+    /**
+     * Tells whether a failed RPC signals that Vision is overloaded or out of quota.
+     *
+     * @param error the RPC failure
+     * @return {@code true} for RESOURCE_EXHAUSTED, UNAVAILABLE and DEADLINE_EXCEEDED
+     */
+    static boolean isOverload(final Throwable error) {
+        if (!(error instanceof ApiException api) || api.getStatusCode() == null) {
+            return false;
+        }
+        StatusCode.Code code = api.getStatusCode().getCode();
+        return code == StatusCode.Code.RESOURCE_EXHAUSTED
+                || code == StatusCode.Code.UNAVAILABLE
+                || code == StatusCode.Code.DEADLINE_EXCEEDED;
+    }
+
+    /**
+     * Completes each page future with the response at its position in the batch.
+     *
+     * @param batch    the pages that were sent
+     * @param response the batch response, whose entries match the request order
+     */
+    private static void complete(final List<PendingPage> batch, final BatchAnnotateImagesResponse response) {
+        int received = response.getResponsesCount();
+        for (int i = 0; i < batch.size(); i++) {
+            if (i < received) {
+                batch.get(i).result().complete(response.getResponses(i));
+            } else {
+                batch.get(i).result().completeExceptionally(new IllegalStateException(String.format(
+                        "Vision returned %d responses for a batch of %d pages", received, batch.size())));
+            }
+        }
+    }
+
+    /**
+     * Completes every page future in the batch exceptionally.
+     *
+     * @param batch the pages that were sent
+     * @param cause the failure of the batch RPC
+     */
+    private static void failAll(final List<PendingPage> batch, final Throwable cause) {
+        for (PendingPage page : batch) {
+            page.result().completeExceptionally(cause);
+        }
+    }
+
+    /**
+     * A queued page together with the future handed back to its caller.
+     *
+     * @param request the Vision request for one image
+     * @param result  completed once the page's batch returns
+     */
+    private record PendingPage(AnnotateImageRequest request,
+                               CompletableFuture<AnnotateImageResponse> result) {
+    }
+}
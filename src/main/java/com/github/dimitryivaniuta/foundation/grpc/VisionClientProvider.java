@@ -1,10 +1,9 @@
 package com.github.dimitryivaniuta.foundation.grpc;
 
 import com.github.dimitryivaniuta.foundation.config.Config;
-import com.google.api.gax.core.FixedCredentialsProvider;
+import com.github.dimitryivaniuta.foundation.lifecycle.ShutdownManager;
 import com.google.auth.oauth2.GoogleCredentials;
 import com.google.cloud.vision.v1.ImageAnnotatorClient;
-import com.google.cloud.vision.v1.ImageAnnotatorSettings;
 import javax.inject.Inject;
 import javax.inject.Provider;
 import javax.inject.Singleton;
@@ -13,6 +12,7 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Provider for a thread-safe, lazily initialized singleton
@@ -21,6 +21,12 @@ import java.util.concurrent.atomic.AtomicReference;
  * <p>
  * Uses double-checked locking with an {@link AtomicReference}
  * to ensure the client is only created once in a thread-safe manner.
+ * The lock is a {@link ReentrantLock} rather than a {@code synchronized} block,
+ * so virtual threads waiting for the credential file read do not pin their
+ * carrier threads.
+ * </p>
+ * <p>
+ * The client is closed by the {@link ShutdownManager} once Kafka Streams has closed.
  * </p>
  */
 @Singleton
@@ -31,19 +37,39 @@ public class VisionClientProvider implements Provider<ImageAnnotatorClient> {
      */
     private final Config config;
 
+    /**
+     * Channels the client sends its calls over.
+     */
+    private final LeastOutstandingChannelPool channelPool;
+
+    /**
+     * Closes the client on shutdown.
+     */
+    private final ShutdownManager shutdown;
+
     /**
      * Holds the singleton ImageAnnotatorClient once initialized.
      */
     private final AtomicReference<ImageAnnotatorClient> clientRef = new AtomicReference<>();
 
+    /**
+     * Serialises client creation.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
     /**
      * Constructs the provider with injected configuration.
      *
-     * @param config application configuration
+     * @param config      application configuration
+     * @param channelPool channels the client sends its calls over
+     * @param shutdown    manager the client is closed by
      */
     @Inject
-    public VisionClientProvider(final Config config) {
+    public VisionClientProvider(final Config config, final LeastOutstandingChannelPool channelPool,
+                                final ShutdownManager shutdown) {
         this.config = config;
+        this.channelPool = channelPool;
+        this.shutdown = shutdown;
     }
 
     /**
@@ -56,12 +82,15 @@ public class VisionClientProvider implements Provider<ImageAnnotatorClient> {
     public ImageAnnotatorClient get() {
         ImageAnnotatorClient client = clientRef.get();
         if (client == null) {
-            synchronized (clientRef) {
+            lock.lock();
+            try {
                 client = clientRef.get();
                 if (client == null) {
                     client = createClient();
                     clientRef.set(client);
                 }
+            } finally {
+                lock.unlock();
             }
         }
         return client;
@@ -80,13 +109,9 @@ public class VisionClientProvider implements Provider<ImageAnnotatorClient> {
             GoogleCredentials credentials = GoogleCredentials.fromStream(fis)
                     .createScoped(List.of("https://www.googleapis.com/auth/cloud-platform"));
 
-            ImageAnnotatorSettings settings = ImageAnnotatorSettings.newBuilder()
-                    .setCredentialsProvider(FixedCredentialsProvider.create(credentials))
-                    .build();
-
-            ImageAnnotatorClient client = ImageAnnotatorClient.create(settings);
-            // Add shutdown hook to close the client on JVM exit
-            Runtime.getRuntime().addShutdownHook(new Thread(client::close));
+            ImageAnnotatorClient client =
+                    ImageAnnotatorClient.create(VisionSettingsFactory.create(config, credentials, channelPool));
+            GrpcClientModule.registerShutdown(client, shutdown);
             return client;
         } catch (IOException e) {
             throw new VisionClientInitializationException(path, e);
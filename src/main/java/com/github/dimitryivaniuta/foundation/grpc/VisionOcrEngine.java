@@ -0,0 +1,87 @@
+package com.github.dimitryivaniuta.foundation.grpc;
+
+import com.github.dimitryivaniuta.foundation.ocr.ImagePreprocessor;
+import com.github.dimitryivaniuta.foundation.ocr.OcrEngine;
+import com.github.dimitryivaniuta.foundation.ocr.OcrResult;
+import com.github.dimitryivaniuta.foundation.streams.DocumentPayload;
+import com.google.cloud.vision.v1.AnnotateImageRequest;
+import com.google.cloud.vision.v1.AnnotateImageResponse;
+import com.google.cloud.vision.v1.Feature;
+import com.google.cloud.vision.v1.Image;
+import com.google.protobuf.ByteString;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * {@link OcrEngine} backed by Google Cloud Vision {@code DOCUMENT_TEXT_DETECTION}.
+ * <p>
+ * Pages go through the shared {@link VisionBatchExecutor}, so they are batched,
+ * cached and limited together with every other Vision caller. A page Vision reports
+ * an error for fails its future.
+ * </p>
+ * <p>
+ * Each page first goes through the {@link ImagePreprocessor}, which shrinks its image
+ * before upload. Pages it finds blank are answered with an empty response and never
+ * reach Vision. Pre-processed pages are submitted one by one as they become ready;
+ * the executor's linger still coalesces them into batches.
+ * </p>
+ */
+@Singleton
+public class VisionOcrEngine implements OcrEngine {
+
+    /**
+     * Name of this engine.
+     */
+    public static final String NAME = "vision";
+
+    private final VisionBatchExecutor executor;
+    private final ImagePreprocessor preprocessor;
+
+    /**
+     * Creates the engine.
+     *
+     * @param executor     the executor batching Vision requests
+     * @param preprocessor shrinks page images before upload
+     */
+    @Inject
+    public VisionOcrEngine(final VisionBatchExecutor executor, final ImagePreprocessor preprocessor) {
+        this.executor = executor;
+        this.preprocessor = preprocessor;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public CompletableFuture<OcrResult> recognize(final DocumentPayload page) {
+        return preprocessor.submit(page).thenCompose(prepared -> prepared.isEmpty()
+                ? CompletableFuture.completedFuture(result(page, AnnotateImageResponse.getDefaultInstance()))
+                : executor.submit(request(prepared.get())).thenApply(response -> result(page, response)));
+    }
+
+    private static AnnotateImageRequest request(final DocumentPayload page) {
+        return AnnotateImageRequest.newBuilder()
+                .setImage(Image.newBuilder().setContent(ByteString.copyFrom(OcrEngine.image(page))).build())
+                .addFeatures(Feature.newBuilder().setType(Feature.Type.DOCUMENT_TEXT_DETECTION).build())
+                .build();
+    }
+
+    private static OcrResult result(final DocumentPayload page, final AnnotateImageResponse response) {
+        if (response.hasError()) {
+            throw new CompletionException(new IllegalStateException("Failed to recognise page "
+                    + page.getPageNumber() + " of document " + page.getDocumentId() + ": "
+                    + response.getError().getMessage()));
+        }
+        return OcrResult.builder()
+                .engine(NAME)
+                .text(response.getFullTextAnnotation().getText())
+                .raw(ByteBuffer.wrap(response.toByteArray()).asReadOnlyBuffer())
+                .build();
+    }
+}
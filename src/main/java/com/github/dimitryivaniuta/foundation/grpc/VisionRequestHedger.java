@@ -0,0 +1,270 @@
+package com.github.dimitryivaniuta.foundation.grpc;
+
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutureCallback;
+import com.google.api.core.ApiFutures;
+import com.google.api.gax.rpc.UnaryCallable;
+import com.google.cloud.vision.v1.BatchAnnotateImagesRequest;
+import com.google.cloud.vision.v1.BatchAnnotateImagesResponse;
+import com.google.cloud.vision.v1.ImageAnnotatorClient;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Sends {@code batchAnnotateImages} RPCs and, when enabled, hedges slow ones to cut
+ * tail latency.
+ * <p>
+ * The hedger keeps the latencies of the last {@value #WINDOW} successful calls. Once
+ * it has seen {@value #MIN_SAMPLES}, a call that has not answered within their 95th
+ * percentile (but never sooner than the configured minimum delay) is sent a second
+ * time; whichever copy answers first wins and the other is cancelled. A call fails
+ * only when both copies fail. At most {@value #MAX_HEDGE_PERCENT}% of calls are
+ * hedged, so a slow backend does not receive twice the load.
+ * </p>
+ * <p>
+ * Calls block the calling thread; they are meant to run on virtual threads such as
+ * those of {@link VisionBatchExecutor}.
+ * </p>
+ */
+public class VisionRequestHedger {
+
+    /**
+     * Number of recent latencies the hedge delay is computed from.
+     */
+    static final int WINDOW = 512;
+
+    /**
+     * Successful calls needed before hedging starts.
+     */
+    static final int MIN_SAMPLES = 32;
+
+    /**
+     * Upper bound on hedged calls, as a percentage of all calls.
+     */
+    static final int MAX_HEDGE_PERCENT = 10;
+
+    /**
+     * The percentile is recomputed after this many new samples.
+     */
+    private static final int RECOMPUTE_EVERY = 32;
+
+    private final boolean enabled;
+    private final long minDelayNanos;
+
+    /**
+     * Guards the latency window.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+    private final long[] samples = new long[WINDOW];
+    private int sampleCount;
+    private int nextSample;
+    private int sinceRecompute;
+
+    /**
+     * Current hedge delay; negative until enough samples have been collected.
+     */
+    private volatile long hedgeDelayNanos = -1L;
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder hedges = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+
+    /**
+     * Creates a hedger.
+     *
+     * @param enabled  whether slow calls are hedged; when {@code false} every call is
+     *                 a plain {@link ImageAnnotatorClient#batchAnnotateImages} call
+     * @param minDelay the earliest a hedge may be sent after the original call
+     */
+    public VisionRequestHedger(final boolean enabled, final Duration minDelay) {
+        this.enabled = enabled;
+        this.minDelayNanos = Math.max(0L, minDelay.toNanos());
+    }
+
+    /**
+     * Performs one batch RPC, hedging it if it is slow.
+     *
+     * @param client  the Vision client
+     * @param request the batch request
+     * @return the response of the first copy to succeed
+     * @throws RuntimeException the RPC failure (typically an {@code ApiException})
+     *                          when every copy fails
+     */
+    public BatchAnnotateImagesResponse call(final ImageAnnotatorClient client,
+                                            final BatchAnnotateImagesRequest request) {
+        calls.increment();
+        if (!enabled) {
+            return client.batchAnnotateImages(request);
+        }
+        UnaryCallable<BatchAnnotateImagesRequest, BatchAnnotateImagesResponse> callable =
+                client.batchAnnotateImagesCallable();
+        long start = System.nanoTime();
+        ApiFuture<BatchAnnotateImagesResponse> primary = callable.futureCall(request);
+        long delay = hedgeDelayNanos;
+        if (delay >= 0) {
+            try {
+                BatchAnnotateImagesResponse response = primary.get(delay, TimeUnit.NANOSECONDS);
+                record(System.nanoTime() - start);
+                return response;
+            } catch (TimeoutException e) {
+                // Slow: hedge below if the budget allows
+            } catch (ExecutionException e) {
+                throw unwrap(e);
+            } catch (InterruptedException e) {
+                primary.cancel(true);
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for Vision batchAnnotateImages", e);
+            }
+        }
+        if (delay < 0 || !reserveHedge()) {
+            BatchAnnotateImagesResponse response = await(primary, primary);
+            record(System.nanoTime() - start);
+            return response;
+        }
+
+        long hedgeStart = System.nanoTime();
+        ApiFuture<BatchAnnotateImagesResponse> hedge = callable.futureCall(request);
+        CompletableFuture<BatchAnnotateImagesResponse> winner = new CompletableFuture<>();
+        AtomicInteger failures = new AtomicInteger();
+        race(primary, start, false, winner, failures);
+        race(hedge, hedgeStart, true, winner, failures);
+        return await(winner, primary, hedge);
+    }
+
+    /**
+     * Returns the number of calls made.
+     *
+     * @return the cumulative call count
+     */
+    public long getCallCount() {
+        return calls.sum();
+    }
+
+    /**
+     * Returns the number of calls that were sent a second time.
+     *
+     * @return the cumulative hedge count
+     */
+    public long getHedgeCount() {
+        return hedges.sum();
+    }
+
+    /**
+     * Returns the number of hedged calls in which the second copy answered first.
+     *
+     * @return the cumulative hedge win count
+     */
+    public long getHedgeWinCount() {
+        return hedgeWins.sum();
+    }
+
+    /**
+     * Returns how long a call currently waits before being hedged.
+     *
+     * @return the hedge delay, or {@code null} while hedging is disabled or warming up
+     */
+    public Duration getHedgeDelay() {
+        long delay = hedgeDelayNanos;
+        return delay < 0 ? null : Duration.ofNanos(delay);
+    }
+
+    /**
+     * Adds a successful call's latency to the window, recomputing the hedge delay
+     * every {@value #RECOMPUTE_EVERY} samples.
+     *
+     * @param latencyNanos the call latency
+     */
+    void record(final long latencyNanos) {
+        lock.lock();
+        try {
+            samples[nextSample] = latencyNanos;
+            nextSample = (nextSample + 1) % WINDOW;
+            sampleCount = Math.min(sampleCount + 1, WINDOW);
+            if (++sinceRecompute >= RECOMPUTE_EVERY && sampleCount >= MIN_SAMPLES) {
+                sinceRecompute = 0;
+                long[] sorted = Arrays.copyOf(samples, sampleCount);
+                Arrays.sort(sorted);
+                long p95 = sorted[(int) Math.ceil(sampleCount * 0.95) - 1];
+                hedgeDelayNanos = Math.max(minDelayNanos, p95);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Counts a hedge if the hedge budget allows one.
+     */
+    private boolean reserveHedge() {
+        if (hedges.sum() * 100 >= calls.sum() * MAX_HEDGE_PERCENT) {
+            return false;
+        }
+        hedges.increment();
+        return true;
+    }
+
+    /**
+     * Completes {@code winner} with the first success, or with the last failure once
+     * both copies have failed.
+     */
+    private void race(final ApiFuture<BatchAnnotateImagesResponse> call,
+                      final long startNanos,
+                      final boolean isHedge,
+                      final CompletableFuture<BatchAnnotateImagesResponse> winner,
+                      final AtomicInteger failures) {
+        ApiFutures.addCallback(call, new ApiFutureCallback<>() {
+            @Override
+            public void onSuccess(final BatchAnnotateImagesResponse response) {
+                if (winner.complete(response)) {
+                    record(System.nanoTime() - startNanos);
+                    if (isHedge) {
+                        hedgeWins.increment();
+                    }
+                }
+            }
+
+            @Override
+            public void onFailure(final Throwable error) {
+                if (failures.incrementAndGet() == 2) {
+                    winner.completeExceptionally(error);
+                }
+            }
+        }, Runnable::run);
+    }
+
+    /**
+     * Waits for {@code result}, then cancels whichever calls are still running.
+     */
+    private static BatchAnnotateImagesResponse await(final Future<BatchAnnotateImagesResponse> result,
+                                                     final Future<?>... calls) {
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for Vision batchAnnotateImages", e);
+        } finally {
+            for (Future<?> call : calls) {
+                call.cancel(true);
+            }
+        }
+    }
+
+    private static RuntimeException unwrap(final ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException runtime) {
+            return runtime;
+        }
+        return new IllegalStateException("Failed to call Vision batchAnnotateImages", cause);
+    }
+}
@@ -0,0 +1,556 @@
+package com.github.dimitryivaniuta.foundation.grpc;
+
+import com.google.cloud.vision.v1.AnnotateImageRequest;
+import com.google.cloud.vision.v1.AnnotateImageResponse;
+import com.google.protobuf.InvalidProtocolBufferException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Cache of Vision responses keyed by a SHA-256 hash of the page's image bytes and
+ * request options, so resent pages do not cost another Vision RPC.
+ * <p>
+ * Lookups go through up to two tiers:
+ * </p>
+ * <ul>
+ *   <li>an in-heap {@link TinyLfuCache} bounded by entry count, whose W-TinyLFU
+ *       admission keeps frequently resent pages over one-off ones;</li>
+ *   <li>optionally, one file per response under a directory on disk, which
+ *       survives restarts. Reads and writes run on virtual threads; files are
+ *       written to a temporary name and atomically moved into place.</li>
+ * </ul>
+ * <p>
+ * The disk tier is bounded in bytes. Its size is counted from the directory on the
+ * first write and tracked from then on; once it exceeds the cap, the least recently
+ * used files, by modification time, are deleted until it is back under
+ * {@value #DISK_TRIM_PERCENT} % of the cap. A disk hit refreshes its file's
+ * modification time. The count is recomputed on every trim, so it stays close to
+ * what is on disk even when files are removed behind the cache's back.
+ * </p>
+ * <p>
+ * Concurrent lookups of a key that is not cached share a single load. Only
+ * successful responses without a per-page {@link AnnotateImageResponse#getError()}
+ * are stored. Requests that reference their image by URI rather than carrying its
+ * content bypass the cache, as the content behind a URI can change.
+ * </p>
+ */
+@Slf4j
+public class VisionResultCache implements AutoCloseable {
+
+    /**
+     * Name of the disk tier's directory under {@code documentSinkPath}.
+     */
+    public static final String DISK_DIRECTORY = "vision-cache";
+
+    /**
+     * Disk tier cap used when none is given: 1 GiB.
+     */
+    public static final long DEFAULT_DISK_MAX_BYTES = 1L << 30;
+
+    /**
+     * Share of the cap, in percent, the disk tier is trimmed down to.
+     */
+    static final int DISK_TRIM_PERCENT = 90;
+
+    /**
+     * Suffix of the files holding cached responses.
+     */
+    private static final String DISK_SUFFIX = ".pb";
+
+    /**
+     * In-heap tier; {@code null} when the cache is disabled.
+     */
+    private final TinyLfuCache<String, AnnotateImageResponse> heap;
+
+    /**
+     * Guards {@link #heap}.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Directory of the disk tier; {@code null} when the disk tier is off.
+     */
+    private final Path diskDirectory;
+
+    /**
+     * Runs disk reads and writes; {@code null} when the disk tier is off.
+     */
+    private final ExecutorService diskExecutor;
+
+    /**
+     * Maximum bytes the disk tier may occupy.
+     */
+    private final long diskMaxBytes;
+
+    /**
+     * Bytes currently held by the disk tier, as far as this cache knows.
+     */
+    private final AtomicLong diskBytes = new AtomicLong();
+
+    /**
+     * Whether {@link #diskBytes} has been counted from the directory yet.
+     */
+    private volatile boolean diskCounted;
+
+    /**
+     * Held by the one disk write that is trimming the disk tier.
+     */
+    private final AtomicBoolean trimming = new AtomicBoolean();
+
+    /**
+     * Loads in progress, shared by concurrent lookups of the same key.
+     */
+    private final ConcurrentHashMap<String, CompletableFuture<AnnotateImageResponse>> inFlight =
+            new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder diskHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder diskEvictions = new LongAdder();
+
+    /**
+     * Creates a cache whose disk tier holds at most {@link #DEFAULT_DISK_MAX_BYTES}.
+     *
+     * @param maximumSize   maximum number of responses kept in heap; at least 1
+     * @param diskDirectory directory of the disk tier, or {@code null} for heap only
+     */
+    public VisionResultCache(final int maximumSize, final Path diskDirectory) {
+        this(maximumSize, diskDirectory, DEFAULT_DISK_MAX_BYTES);
+    }
+
+    /**
+     * Creates a cache.
+     *
+     * @param maximumSize   maximum number of responses kept in heap; at least 1
+     * @param diskDirectory directory of the disk tier, or {@code null} for heap only
+     * @param diskMaxBytes  maximum bytes the disk tier may occupy; zero or less selects
+     *                      {@link #DEFAULT_DISK_MAX_BYTES}
+     */
+    public VisionResultCache(final int maximumSize, final Path diskDirectory, final long diskMaxBytes) {
+        this.heap = new TinyLfuCache<>(maximumSize);
+        this.diskDirectory = diskDirectory;
+        this.diskExecutor = diskDirectory == null ? null
+                : Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("vision-cache-", 0).factory());
+        this.diskMaxBytes = diskMaxBytes > 0 ? diskMaxBytes : DEFAULT_DISK_MAX_BYTES;
+    }
+
+    private VisionResultCache() {
+        this.heap = null;
+        this.diskDirectory = null;
+        this.diskExecutor = null;
+        this.diskMaxBytes = 0;
+    }
+
+    /**
+     * Returns a cache that passes every lookup straight to the loader.
+     *
+     * @return a disabled cache
+     */
+    public static VisionResultCache disabled() {
+        return new VisionResultCache();
+    }
+
+    /**
+     * Returns the cached response for a page, or loads it.
+     *
+     * @param request the Vision request for one image
+     * @param loader  performs the Vision call on a miss
+     * @return a future completed with the cached or loaded response
+     */
+    public CompletableFuture<AnnotateImageResponse> get(
+            final AnnotateImageRequest request,
+            final Function<AnnotateImageRequest, CompletableFuture<AnnotateImageResponse>> loader) {
+        if (heap == null || !request.hasImage() || request.getImage().getContent().isEmpty()) {
+            return loader.apply(request);
+        }
+        String key = key(request);
+        AnnotateImageResponse cached = heapGet(key);
+        if (cached != null) {
+            hits.increment();
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        CompletableFuture<AnnotateImageResponse> result = new CompletableFuture<>();
+        CompletableFuture<AnnotateImageResponse> existing = inFlight.putIfAbsent(key, result);
+        if (existing != null) {
+            coalesced.increment();
+            return existing.copy();
+        }
+        // Another load may have finished between the heap lookup and registering this one
+        cached = heapGet(key);
+        if (cached != null) {
+            hits.increment();
+            finish(key, result, cached, null);
+        } else if (diskExecutor != null) {
+            try {
+                diskExecutor.execute(() -> loadThroughDisk(key, request, loader, result));
+            } catch (RejectedExecutionException e) {
+                // Closing; skip the disk tier
+                load(key, request, loader, result);
+            }
+        } else {
+            load(key, request, loader, result);
+        }
+        return result.copy();
+    }
+
+    /**
+     * Returns the number of responses held in heap.
+     *
+     * @return the heap entry count
+     */
+    public int size() {
+        if (heap == null) {
+            return 0;
+        }
+        lock.lock();
+        try {
+            return heap.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns how many lookups were answered from heap.
+     *
+     * @return the cumulative heap hit count
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns how many lookups were answered from the disk tier.
+     *
+     * @return the cumulative disk hit count
+     */
+    public long getDiskHitCount() {
+        return diskHits.sum();
+    }
+
+    /**
+     * Returns how many lookups had to call Vision.
+     *
+     * @return the cumulative miss count
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns how many lookups joined a load already in progress for the same page.
+     *
+     * @return the cumulative coalesced count
+     */
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
+    /**
+     * Returns how many files were deleted from the disk tier to keep it under its cap.
+     *
+     * @return the cumulative disk eviction count
+     */
+    public long getDiskEvictionCount() {
+        return diskEvictions.sum();
+    }
+
+    /**
+     * Returns the bytes held by the disk tier, as last counted and tracked since.
+     *
+     * @return the disk tier size in bytes; zero without a disk tier
+     */
+    public long getDiskBytes() {
+        return diskBytes.get();
+    }
+
+    /**
+     * Returns how many responses were evicted from, or refused admission to, the heap tier.
+     *
+     * @return the cumulative eviction count
+     */
+    public long getEvictionCount() {
+        if (heap == null) {
+            return 0;
+        }
+        lock.lock();
+        try {
+            return heap.evictions();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits up to ten seconds for pending disk writes to finish.
+     */
+    @Override
+    public void close() {
+        close(Duration.ofSeconds(10));
+    }
+
+    /**
+     * Waits for pending disk writes to finish, abandoning those still queued after the timeout.
+     *
+     * @param timeout how long to wait
+     */
+    public void close(final Duration timeout) {
+        if (diskExecutor == null) {
+            return;
+        }
+        diskExecutor.shutdown();
+        try {
+            if (!diskExecutor.awaitTermination(timeout.toNanos(), TimeUnit.NANOSECONDS)) {
+                diskExecutor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            diskExecutor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Computes the cache key of a page: SHA-256 over the image content followed by
+     * the rest of the request (features and image context).
+     *
+     * @param request the Vision request for one image
+     * @return the lower-case hex digest
+     */
+    static String key(final AnnotateImageRequest request) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Failed to create SHA-256 digest", e);
+        }
+        digest.update(request.getImage().getContent().asReadOnlyByteBuffer());
+        digest.update(request.toBuilder().clearImage().build().toByteArray());
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Answers from the disk tier if the page is stored there, otherwise calls the loader.
+     */
+    private void loadThroughDisk(final String key,
+                                 final AnnotateImageRequest request,
+                                 final Function<AnnotateImageRequest, CompletableFuture<AnnotateImageResponse>> loader,
+                                 final CompletableFuture<AnnotateImageResponse> result) {
+        AnnotateImageResponse stored = readDisk(key);
+        if (stored == null) {
+            load(key, request, loader, result);
+            return;
+        }
+        diskHits.increment();
+        heapPut(key, stored);
+        finish(key, result, stored, null);
+    }
+
+    /**
+     * Calls the loader and stores a successful response before releasing waiters.
+     */
+    private void load(final String key,
+                      final AnnotateImageRequest request,
+                      final Function<AnnotateImageRequest, CompletableFuture<AnnotateImageResponse>> loader,
+                      final CompletableFuture<AnnotateImageResponse> result) {
+        misses.increment();
+        CompletableFuture<AnnotateImageResponse> loaded;
+        try {
+            loaded = loader.apply(request);
+        } catch (RuntimeException e) {
+            finish(key, result, null, e);
+            return;
+        }
+        loaded.whenComplete((response, error) -> {
+            if (error == null && response != null && !response.hasError()) {
+                heapPut(key, response);
+                if (diskExecutor != null) {
+                    writeDiskAsync(key, response);
+                }
+            }
+            finish(key, result, response, error);
+        });
+    }
+
+    private void finish(final String key,
+                        final CompletableFuture<AnnotateImageResponse> result,
+                        final AnnotateImageResponse response,
+                        final Throwable error) {
+        inFlight.remove(key, result);
+        if (error != null) {
+            result.completeExceptionally(error);
+        } else {
+            result.complete(response);
+        }
+    }
+
+    private AnnotateImageResponse heapGet(final String key) {
+        lock.lock();
+        try {
+            return heap.get(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void heapPut(final String key, final AnnotateImageResponse response) {
+        lock.lock();
+        try {
+            heap.put(key, response);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Path diskPath(final String key) {
+        return diskDirectory.resolve(key.substring(0, 2)).resolve(key + DISK_SUFFIX);
+    }
+
+    /**
+     * Reads a stored response, treating unreadable or corrupt files as misses.
+     */
+    private AnnotateImageResponse readDisk(final String key) {
+        Path file = diskPath(key);
+        try {
+            AnnotateImageResponse response = AnnotateImageResponse.parseFrom(Files.readAllBytes(file));
+            touch(file);
+            return response;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (InvalidProtocolBufferException e) {
+            log.warn("Discarding corrupt Vision cache entry {}", file, e);
+            deleteQuietly(file);
+            return null;
+        } catch (IOException e) {
+            log.warn("Failed to read Vision cache entry {}", file, e);
+            return null;
+        }
+    }
+
+    private void writeDiskAsync(final String key, final AnnotateImageResponse response) {
+        try {
+            diskExecutor.execute(() -> writeDisk(key, response));
+        } catch (RejectedExecutionException e) {
+            // Closing; the response stays cached in heap only
+        }
+    }
+
+    /**
+     * Stores a response, then trims the disk tier if this is the first write or the
+     * tier has outgrown its cap.
+     */
+    private void writeDisk(final String key, final AnnotateImageResponse response) {
+        Path file = diskPath(key);
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp-" + Thread.currentThread().threadId());
+        byte[] bytes = response.toByteArray();
+        try {
+            Files.createDirectories(file.getParent());
+            Files.write(temp, bytes);
+            long replaced = Files.exists(file) ? Files.size(file) : 0;
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            diskBytes.addAndGet(bytes.length - replaced);
+        } catch (IOException e) {
+            log.warn("Failed to write Vision cache entry {}", file, e);
+            deleteQuietly(temp);
+            return;
+        }
+        if ((!diskCounted || diskBytes.get() > diskMaxBytes) && trimming.compareAndSet(false, true)) {
+            try {
+                trimDisk();
+            } finally {
+                trimming.set(false);
+            }
+        }
+    }
+
+    /**
+     * Counts the disk tier and, if it exceeds the cap, deletes the least recently used
+     * files until it is under {@value #DISK_TRIM_PERCENT} % of the cap.
+     */
+    private void trimDisk() {
+        List<Map.Entry<Path, BasicFileAttributes>> files = new ArrayList<>();
+        try {
+            Files.walkFileTree(diskDirectory, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult visitFile(final Path file, final BasicFileAttributes attributes) {
+                    if (file.getFileName().toString().endsWith(DISK_SUFFIX)) {
+                        files.add(Map.entry(file, attributes));
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(final Path file, final IOException e) {
+                    // Deleted or replaced while walking
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            log.warn("Failed to count Vision cache directory {}", diskDirectory, e);
+            return;
+        }
+        long total = 0;
+        for (Map.Entry<Path, BasicFileAttributes> file : files) {
+            total += file.getValue().size();
+        }
+        if (total > diskMaxBytes) {
+            long target = diskMaxBytes / 100 * DISK_TRIM_PERCENT;
+            files.sort(Comparator.comparing(file -> file.getValue().lastModifiedTime()));
+            for (Map.Entry<Path, BasicFileAttributes> file : files) {
+                if (total <= target) {
+                    break;
+                }
+                deleteQuietly(file.getKey());
+                total -= file.getValue().size();
+                diskEvictions.increment();
+            }
+        }
+        diskBytes.set(total);
+        diskCounted = true;
+    }
+
+    private static void touch(final Path file) {
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            log.debug("Failed to touch {}", file, e);
+        }
+    }
+
+    private static void deleteQuietly(final Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.debug("Failed to delete {}", file, e);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.github.dimitryivaniuta.foundation.grpc;
+
+import com.github.dimitryivaniuta.foundation.config.Config;
+import com.google.api.gax.core.FixedCredentialsProvider;
+import com.google.api.gax.grpc.GrpcTransportChannel;
+import com.google.api.gax.retrying.RetrySettings;
+import com.google.api.gax.rpc.FixedTransportChannelProvider;
+import com.google.auth.Credentials;
+import com.google.cloud.vision.v1.ImageAnnotatorSettings;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds the {@link ImageAnnotatorSettings} shared by {@link GrpcClientModule} and
+ * {@link VisionClientProvider}, so both create identically configured clients.
+ * <p>
+ * {@code batchAnnotateImages} gets {@link RetrySettings} derived from {@link Config}:
+ * </p>
+ * <ul>
+ *   <li>the whole call, including retries, is bounded by
+ *       {@link Config#getVisionApiTimeoutMs()};</li>
+ *   <li>each attempt starts with {@link Config#getVisionInitialRpcTimeoutMs()} and may
+ *       grow by {@value #RPC_TIMEOUT_MULTIPLIER}x per retry up to
+ *       {@link Config#getVisionMaxRpcTimeoutMs()};</li>
+ *   <li>retries back off exponentially from {@link Config#getVisionInitialRetryDelayMs()}
+ *       by {@link Config#getVisionRetryDelayMultiplier()} up to
+ *       {@link Config#getVisionMaxRetryDelayMs()}, with gax's random jitter, for at most
+ *       {@link Config#getVisionMaxAttempts()} attempts.</li>
+ * </ul>
+ * <p>
+ * Values are clamped so the settings are always valid: no per-attempt timeout
+ * exceeds the total timeout and maxima are never below their initial values.
+ * The retryable status codes stay at the client's defaults.
+ * </p>
+ * <p>
+ * Calls travel over a {@link LeastOutstandingChannelPool} of
+ * {@link Config#getVisionChannelPoolSize()} channels to the default Vision endpoint,
+ * with HTTP/2 keepalive from {@link Config#getVisionKeepAliveTimeMs()} and
+ * {@link Config#getVisionKeepAliveTimeoutMs()}. The pool is not closed together
+ * with the client; its owner shuts it down.
+ * </p>
+ */
+public final class VisionSettingsFactory {
+
+    /**
+     * Growth factor of the per-attempt RPC timeout between retries.
+     */
+    public static final double RPC_TIMEOUT_MULTIPLIER = 1.5;
+
+    // Prevent instantiation
+    private VisionSettingsFactory() {}
+
+    /**
+     * Builds client settings with the given credentials, channel and the configured retry policy.
+     *
+     * @param config      the application configuration
+     * @param credentials scoped credentials for the Vision API
+     * @param channel     the channel calls are sent over, typically a {@link #channelPool(Config)}
+     * @return the client settings
+     * @throws IOException if the settings cannot be built
+     */
+    public static ImageAnnotatorSettings create(final Config config,
+                                                final Credentials credentials,
+                                                final ManagedChannel channel) throws IOException {
+        ImageAnnotatorSettings.Builder builder = ImageAnnotatorSettings.newBuilder()
+                .setCredentialsProvider(FixedCredentialsProvider.create(credentials))
+                .setTransportChannelProvider(FixedTransportChannelProvider.create(
+                        GrpcTransportChannel.create(channel)));
+        builder.batchAnnotateImagesSettings().setRetrySettings(retrySettings(config));
+        return builder.build();
+    }
+
+    /**
+     * Builds the retry policy of {@code batchAnnotateImages} from the configuration.
+     *
+     * @param config the application configuration
+     * @return the retry settings
+     */
+    public static RetrySettings retrySettings(final Config config) {
+        Duration total = GrpcClientModule.visionLatencyBudget(config);
+        Duration initialRpc = atMost(positiveOr(config.getVisionInitialRpcTimeoutMs(), total), total);
+        Duration maxRpc = atMost(positiveOr(config.getVisionMaxRpcTimeoutMs(), total), total);
+        Duration initialDelay = Duration.ofMillis(Math.max(0L, config.getVisionInitialRetryDelayMs()));
+        Duration maxDelay = Duration.ofMillis(Math.max(0L, config.getVisionMaxRetryDelayMs()));
+
+        return RetrySettings.newBuilder()
+                .setTotalTimeoutDuration(total)
+                .setInitialRpcTimeoutDuration(initialRpc)
+                .setRpcTimeoutMultiplier(RPC_TIMEOUT_MULTIPLIER)
+                .setMaxRpcTimeoutDuration(maxRpc.compareTo(initialRpc) < 0 ? initialRpc : maxRpc)
+                .setInitialRetryDelayDuration(initialDelay)
+                .setRetryDelayMultiplier(Math.max(1.0, config.getVisionRetryDelayMultiplier()))
+                .setMaxRetryDelayDuration(maxDelay.compareTo(initialDelay) < 0 ? initialDelay : maxDelay)
+                .setMaxAttempts(Math.max(1, config.getVisionMaxAttempts()))
+                .build();
+    }
+
+    /**
+     * Builds the pool of channels to the Vision endpoint. Channels connect lazily on first use.
+     *
+     * @param config the application configuration
+     * @return a new channel pool of at least one channel
+     */
+    public static LeastOutstandingChannelPool channelPool(final Config config) {
+        long keepAliveMs = config.getVisionKeepAliveTimeMs();
+        long keepAliveTimeoutMs = config.getVisionKeepAliveTimeoutMs();
+        return new LeastOutstandingChannelPool(Math.max(1, config.getVisionChannelPoolSize()), () -> {
+            ManagedChannelBuilder<?> builder = ManagedChannelBuilder
+                    .forTarget(ImageAnnotatorSettings.getDefaultEndpoint())
+                    .maxInboundMessageSize(Integer.MAX_VALUE);
+            if (keepAliveMs > 0) {
+                builder.keepAliveTime(keepAliveMs, TimeUnit.MILLISECONDS);
+            }
+            if (keepAliveTimeoutMs > 0) {
+                builder.keepAliveTimeout(keepAliveTimeoutMs, TimeUnit.MILLISECONDS);
+            }
+            return builder.build();
+        });
+    }
+
+    private static Duration positiveOr(final long millis, final Duration fallback) {
+        return millis > 0 ? Duration.ofMillis(millis) : fallback;
+    }
+
+    private static Duration atMost(final Duration value, final Duration limit) {
+        return value.compareTo(limit) > 0 ? limit : value;
+    }
+}
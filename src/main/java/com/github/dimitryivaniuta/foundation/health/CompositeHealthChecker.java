@@ -1,11 +1,30 @@
 package com.github.dimitryivaniuta.foundation.health;
 
+import com.github.dimitryivaniuta.foundation.metrics.Counter;
+import com.github.dimitryivaniuta.foundation.metrics.LatencyHistogram;
+import com.github.dimitryivaniuta.foundation.metrics.MetricsRegistry;
+
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
 import javax.inject.Inject;
 import javax.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
 
 /**
  * CompositeHealthChecker aggregates multiple {@link HealthChecker} implementations
@@ -16,29 +35,169 @@ import javax.inject.Singleton;
  *   <li>If any checker reports {@link Status#DOWN}, the composite status is DOWN.</li>
  *   <li>Otherwise, the composite status is UP.</li>
  * </ul>
- * Detailed results from each checker are included in the returned {@link HealthStatus}.
+ * The returned {@link HealthStatus} maps each checker's simple class name to its
+ * status, and carries each checker's own details under a {@code <checker>.} prefix,
+ * e.g. {@code KafkaStreamsHealthChecker.lag.total}.
+ * </p>
+ * <p>
+ * Child checkers run in parallel on virtual threads, each bounded by a deadline;
+ * a checker that misses it is reported DOWN and interrupted rather than delaying
+ * the probe.
+ * When a refresh interval is configured, aggregated results are cached and
+ * recomputed in the background, so {@link #checkLiveness()} and
+ * {@link #checkReadiness()} are answered from memory. Both the deadline and the
+ * refresh interval can be changed at runtime, e.g. after a configuration reload.
+ * </p>
+ * <p>
+ * Each child check is timed in {@code foundation_health_check_seconds}, labelled by
+ * checker and probe, and missed deadlines are counted in
+ * {@code foundation_health_check_timeouts_total}.
  * </p>
  *
  * @see HealthChecker
  * @see HealthStatus
  * @see Status
  */
+@Slf4j
 @Singleton
-public class CompositeHealthChecker implements HealthChecker {
+public class CompositeHealthChecker implements HealthChecker, AutoCloseable {
+
+    /**
+     * Per-checker deadline used when none is configured.
+     */
+    public static final Duration DEFAULT_CHECK_TIMEOUT = Duration.ofSeconds(2);
 
     private final Set<HealthChecker> checkers;
+    private volatile long checkTimeoutMs;
+    private final ExecutorService probeExecutor;
+
+    /**
+     * Guards {@link #refresher} and {@link #refreshTask}.
+     */
+    private final ReentrantLock scheduleLock = new ReentrantLock();
+
+    /**
+     * Runs the background refresh; created the first time caching is enabled.
+     */
+    private ScheduledExecutorService refresher;
+
+    /**
+     * The scheduled background refresh; {@code null} when caching is disabled.
+     */
+    private volatile ScheduledFuture<?> refreshTask;
+
+    private final Map<HealthChecker, LatencyHistogram> livenessTimers = new HashMap<>();
+    private final Map<HealthChecker, LatencyHistogram> readinessTimers = new HashMap<>();
+    private final Map<HealthChecker, Counter> timeouts = new HashMap<>();
+
+    private final AtomicReference<HealthStatus> liveness = new AtomicReference<>();
+    private final AtomicReference<HealthStatus> readiness = new AtomicReference<>();
 
     /**
-     * Constructs a CompositeHealthChecker.
+     * Constructs a CompositeHealthChecker that runs its checkers on every call,
+     * with the default per-checker deadline.
      *
      * @param checkers the set of HealthChecker implementations to aggregate
      */
     @Inject
     public CompositeHealthChecker(Set<HealthChecker> checkers) {
+        this(checkers, Duration.ZERO, DEFAULT_CHECK_TIMEOUT);
+    }
+
+    /**
+     * Constructs a CompositeHealthChecker with result caching.
+     *
+     * @param checkers        the set of HealthChecker implementations to aggregate
+     * @param refreshInterval how long aggregated results are served from memory before
+     *                        being recomputed in the background; zero disables caching
+     * @param checkTimeout    deadline for each individual checker; zero selects
+     *                        {@link #DEFAULT_CHECK_TIMEOUT}
+     */
+    public CompositeHealthChecker(Set<HealthChecker> checkers, Duration refreshInterval, Duration checkTimeout) {
+        this(checkers, refreshInterval, checkTimeout, new MetricsRegistry());
+    }
+
+    /**
+     * Constructs a CompositeHealthChecker with result caching that records check
+     * durations in the given registry.
+     *
+     * @param checkers        the set of HealthChecker implementations to aggregate
+     * @param refreshInterval how long aggregated results are served from memory before
+     *                        being recomputed in the background; zero disables caching
+     * @param checkTimeout    deadline for each individual checker; zero selects
+     *                        {@link #DEFAULT_CHECK_TIMEOUT}
+     * @param registry        the registry check durations and timeouts are recorded in
+     */
+    public CompositeHealthChecker(Set<HealthChecker> checkers, Duration refreshInterval, Duration checkTimeout,
+                                  MetricsRegistry registry) {
         if (checkers == null || checkers.isEmpty()) {
             throw new IllegalArgumentException("At least one HealthChecker must be provided");
         }
         this.checkers = checkers;
+        for (HealthChecker checker : checkers) {
+            String name = checker.getClass().getSimpleName();
+            String help = "Duration of individual health checks.";
+            livenessTimers.put(checker, registry.histogram("foundation_health_check_seconds", help,
+                    "checker", name, "probe", "liveness"));
+            readinessTimers.put(checker, registry.histogram("foundation_health_check_seconds", help,
+                    "checker", name, "probe", "readiness"));
+            timeouts.put(checker, registry.counter("foundation_health_check_timeouts_total",
+                    "Health checks that missed their deadline.", "checker", name));
+        }
+        this.checkTimeoutMs = timeoutMillis(checkTimeout);
+        this.probeExecutor = Executors.newThreadPerTaskExecutor(
+                Thread.ofVirtual().name("health-probe-", 0).factory());
+        schedule(refreshInterval);
+    }
+
+    /**
+     * Changes the deadline of each individual checker, from the next check on.
+     *
+     * @param checkTimeout the new deadline; zero selects {@link #DEFAULT_CHECK_TIMEOUT}
+     */
+    public void setCheckTimeout(final Duration checkTimeout) {
+        this.checkTimeoutMs = timeoutMillis(checkTimeout);
+    }
+
+    /**
+     * Changes how long aggregated results are served from memory. The background
+     * refresh is rescheduled and runs once straight away.
+     *
+     * @param refreshInterval the new interval; zero disables caching
+     */
+    public void setRefreshInterval(final Duration refreshInterval) {
+        schedule(refreshInterval);
+    }
+
+    private static long timeoutMillis(final Duration checkTimeout) {
+        return checkTimeout.isZero() || checkTimeout.isNegative()
+                ? DEFAULT_CHECK_TIMEOUT.toMillis() : checkTimeout.toMillis();
+    }
+
+    private void schedule(final Duration refreshInterval) {
+        scheduleLock.lock();
+        try {
+            if (refreshTask != null) {
+                refreshTask.cancel(false);
+                refreshTask = null;
+            }
+            if (refreshInterval.isZero() || refreshInterval.isNegative()) {
+                liveness.set(null);
+                readiness.set(null);
+                return;
+            }
+            if (refresher == null) {
+                refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+                    Thread t = new Thread(r, "health-refresh");
+                    t.setDaemon(true);
+                    return t;
+                });
+            }
+            refreshTask = refresher.scheduleWithFixedDelay(this::refresh,
+                    0, refreshInterval.toMillis(), TimeUnit.MILLISECONDS);
+        } finally {
+            scheduleLock.unlock();
+        }
     }
 
     /**
@@ -48,22 +207,15 @@ public class CompositeHealthChecker implements HealthChecker {
      */
     @Override
     public HealthStatus checkLiveness() {
-        boolean anyDown = false;
-        Map<String, String> details = new HashMap<>();
-
-        for (HealthChecker checker : checkers) {
-            HealthStatus status = checker.checkLiveness();
-            details.put(checker.getClass().getSimpleName(), status.getStatus().name());
-            if (status.getStatus() == Status.DOWN) {
-                anyDown = true;
-            }
+        HealthStatus cached = liveness.get();
+        if (cached != null) {
+            return cached;
         }
-
-        return HealthStatus.builder()
-                .status(anyDown ? Status.DOWN : Status.UP)
-                .timestamp(Instant.now())
-                .details(details)
-                .build();
+        HealthStatus status = aggregate(HealthChecker::checkLiveness, livenessTimers);
+        if (refreshTask != null) {
+            liveness.compareAndSet(null, status);
+        }
+        return status;
     }
 
     /**
@@ -73,21 +225,128 @@ public class CompositeHealthChecker implements HealthChecker {
      */
     @Override
     public HealthStatus checkReadiness() {
+        HealthStatus cached = readiness.get();
+        if (cached != null) {
+            return cached;
+        }
+        HealthStatus status = aggregate(HealthChecker::checkReadiness, readinessTimers);
+        if (refreshTask != null) {
+            readiness.compareAndSet(null, status);
+        }
+        return status;
+    }
+
+    /**
+     * Stops the background refresh and the probe executor.
+     */
+    @Override
+    public void close() {
+        scheduleLock.lock();
+        try {
+            if (refresher != null) {
+                refresher.shutdownNow();
+            }
+        } finally {
+            scheduleLock.unlock();
+        }
+        probeExecutor.shutdownNow();
+    }
+
+    /**
+     * Recomputes and publishes both cached results. Any failure is logged and the
+     * previous results are kept, since an exception escaping a task scheduled with a
+     * fixed delay would silently cancel every later refresh.
+     */
+    private void refresh() {
+        try {
+            liveness.set(aggregate(HealthChecker::checkLiveness, livenessTimers));
+            readiness.set(aggregate(HealthChecker::checkReadiness, readinessTimers));
+        } catch (Throwable t) {
+            log.error("Failed to refresh health checks", t);
+        }
+    }
+
+    /**
+     * Runs the probe against every checker in parallel and combines the results.
+     * A checker still running at the deadline is reported DOWN and interrupted, so
+     * that hung checks do not pile up on the probe executor.
+     *
+     * @param probe  the check to run on each checker
+     * @param timers the duration histogram of each checker for this probe
+     * @return the combined status
+     */
+    private HealthStatus aggregate(final Function<HealthChecker, HealthStatus> probe,
+                                   final Map<HealthChecker, LatencyHistogram> timers) {
+        List<HealthChecker> ordered = new ArrayList<>(checkers);
+        List<Future<HealthStatus>> results = new ArrayList<>(ordered.size());
+        long timeoutMs = checkTimeoutMs;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        for (HealthChecker checker : ordered) {
+            LatencyHistogram timer = timers.get(checker);
+            results.add(probeExecutor.submit(() -> {
+                long start = System.nanoTime();
+                try {
+                    return probe.apply(checker);
+                } finally {
+                    timer.recordSince(start);
+                }
+            }));
+        }
+
         boolean anyDown = false;
         Map<String, String> details = new HashMap<>();
-
-        for (HealthChecker checker : checkers) {
-            HealthStatus status = checker.checkReadiness();
-            details.put(checker.getClass().getSimpleName(), status.getStatus().name());
+        HealthStatus.HealthStatusBuilder builder = HealthStatus.builder();
+        for (int i = 0; i < ordered.size(); i++) {
+            String name = ordered.get(i).getClass().getSimpleName();
+            HealthStatus status = await(results.get(i), ordered.get(i), deadline, timeoutMs);
+            details.put(name, status.getStatus().name());
+            for (Map.Entry<String, String> detail : status.getDetails().entrySet()) {
+                details.put(name + "." + detail.getKey(), detail.getValue());
+            }
             if (status.getStatus() == Status.DOWN) {
                 anyDown = true;
+                for (String message : status.getMessages()) {
+                    builder.message(name + ": " + message);
+                }
             }
         }
 
-        return HealthStatus.builder()
+        return builder
                 .status(anyDown ? Status.DOWN : Status.UP)
                 .timestamp(Instant.now())
                 .details(details)
                 .build();
     }
+
+    /**
+     * Waits for one checker's result until the shared deadline, cancelling the
+     * check if it is missed.
+     *
+     * @param result    the running check
+     * @param checker   the checker it runs
+     * @param deadline  {@link System#nanoTime()} by which every check must be done
+     * @param timeoutMs the deadline as configured, for the message
+     * @return the checker's status, or DOWN if it failed, timed out or was interrupted
+     */
+    private HealthStatus await(final Future<HealthStatus> result, final HealthChecker checker,
+                               final long deadline, final long timeoutMs) {
+        try {
+            HealthStatus status = result.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            return status != null ? status : HealthStatus.down("Check returned no status");
+        } catch (TimeoutException e) {
+            result.cancel(true);
+            timeouts.get(checker).increment();
+            return HealthStatus.down("Timed out after " + timeoutMs + " ms");
+        } catch (ExecutionException e) {
+            return failed(e.getCause() != null ? e.getCause() : e);
+        } catch (InterruptedException e) {
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            return HealthStatus.down("Interrupted");
+        }
+    }
+
+    private static HealthStatus failed(final Throwable cause) {
+        return HealthStatus.down("Check failed: " + cause);
+    }
 }
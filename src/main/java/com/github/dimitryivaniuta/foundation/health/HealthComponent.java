@@ -17,7 +17,8 @@ import javax.inject.Singleton;
 @Singleton
 @Component(modules = {
         ConfigModule.class,
-        HealthModule.class
+        HealthModule.class,
+        HealthServerModule.class
 })
 public interface HealthComponent {
 
@@ -32,4 +33,15 @@ public interface HealthComponent {
      * @return the application’s singleton HealthChecker
      */
     HealthChecker getHealthChecker();
-}
\ No newline at end of file
+
+    /**
+     * Returns the embedded {@link HealthServer} serving {@code /live},
+     * {@code /ready} and {@code /metrics}.
+     * <p>
+     * The server is started on first access unless the configured port is negative.
+     * </p>
+     *
+     * @return the application’s singleton HealthServer
+     */
+    HealthServer getHealthServer();
+}
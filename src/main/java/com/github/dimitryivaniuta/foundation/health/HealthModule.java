@@ -1,11 +1,15 @@
 package com.github.dimitryivaniuta.foundation.health;
 
+import com.github.dimitryivaniuta.foundation.config.Config;
+import com.github.dimitryivaniuta.foundation.config.ReloadableConfigSource;
+import com.github.dimitryivaniuta.foundation.metrics.MetricsRegistry;
 import dagger.Binds;
 import dagger.Module;
 import dagger.Provides;
 import dagger.multibindings.IntoSet;
 import javax.inject.Singleton;
 
+import java.time.Duration;
 import java.util.Set;
 
 /**
@@ -45,13 +49,35 @@ public abstract class HealthModule {
      * returning DOWN if any checker reports DOWN, otherwise UP. Detailed
      * statuses from each checker are included in the returned {@link HealthStatus}.
      * </p>
+     * <p>
+     * Checkers run in parallel, each bounded by {@link Config#getHealthCheckTimeoutMs()},
+     * and results are cached and refreshed in the background every
+     * {@link Config#getHealthCheckIntervalSec()} seconds. Check durations are
+     * recorded in the {@link MetricsRegistry}. Reloaded timings are applied as
+     * {@code configSource} publishes them.
+     * </p>
      *
-     * @param checkers the set of all registered HealthChecker instances
+     * @param checkers     the set of all registered HealthChecker instances
+     * @param config       the application configuration containing health check timings
+     * @param registry     the registry check durations are recorded in
+     * @param configSource the source whose reloaded timings the checker adopts
      * @return a singleton CompositeHealthChecker instance
      */
     @Provides
     @Singleton
-    public static HealthChecker provideCompositeHealthChecker(Set<HealthChecker> checkers) {
-        return new CompositeHealthChecker(checkers);
+    public static HealthChecker provideCompositeHealthChecker(Set<HealthChecker> checkers, Config config,
+                                                              MetricsRegistry registry,
+                                                              ReloadableConfigSource configSource) {
+        CompositeHealthChecker composite = new CompositeHealthChecker(checkers,
+                Duration.ofSeconds(config.getHealthCheckIntervalSec()),
+                Duration.ofMillis(config.getHealthCheckTimeoutMs()),
+                registry);
+        configSource.addListener((previous, current) -> {
+            composite.setCheckTimeout(Duration.ofMillis(current.getHealthCheckTimeoutMs()));
+            if (current.getHealthCheckIntervalSec() != previous.getHealthCheckIntervalSec()) {
+                composite.setRefreshInterval(Duration.ofSeconds(current.getHealthCheckIntervalSec()));
+            }
+        });
+        return composite;
     }
 }
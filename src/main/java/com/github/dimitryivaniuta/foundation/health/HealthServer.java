@@ -0,0 +1,275 @@
+package com.github.dimitryivaniuta.foundation.health;
+
+import com.github.dimitryivaniuta.foundation.metrics.MetricsRegistry;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Minimal HTTP endpoint exposing a {@link HealthChecker} to orchestrators and scrapers.
+ * <p>
+ * Serves three routes on the JDK's built-in {@link HttpServer}, with one virtual
+ * thread per exchange:
+ * <ul>
+ *   <li>{@code /live} &ndash; liveness as JSON; 200 when UP, 503 otherwise.</li>
+ *   <li>{@code /ready} &ndash; readiness as JSON; 200 when UP, 503 otherwise.</li>
+ *   <li>{@code /metrics} &ndash; health gauges followed by everything in the
+ *       {@link MetricsRegistry}, in Prometheus text format.</li>
+ * </ul>
+ * Response bodies are rendered once per distinct {@link HealthStatus} instance and
+ * reused until the checker returns a new one. Combined with the cached
+ * {@link CompositeHealthChecker}, a probe therefore only copies a pre-built byte array.
+ * Registry metrics change continuously and are rendered on every scrape.
+ * </p>
+ */
+public class HealthServer implements AutoCloseable {
+
+    private static final String JSON = "application/json";
+    private static final String PROMETHEUS = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final HealthChecker checker;
+    private final MetricsRegistry registry;
+    private final InetSocketAddress address;
+    private final ExecutorService executor;
+
+    private volatile Rendered live;
+    private volatile Rendered ready;
+    private volatile Rendered metrics;
+    private HttpServer server;
+
+    /**
+     * Creates a server that will listen on all interfaces on the given port.
+     *
+     * @param checker the health checker to expose
+     * @param port    the TCP port; {@code 0} picks an ephemeral port
+     */
+    public HealthServer(final HealthChecker checker, final int port) {
+        this(checker, port, new MetricsRegistry());
+    }
+
+    /**
+     * Creates a server that will listen on all interfaces on the given port and
+     * also export the given registry on {@code /metrics}.
+     *
+     * @param checker  the health checker to expose
+     * @param port     the TCP port; {@code 0} picks an ephemeral port
+     * @param registry the metrics appended to the health gauges
+     */
+    public HealthServer(final HealthChecker checker, final int port, final MetricsRegistry registry) {
+        this.checker = checker;
+        this.registry = registry;
+        this.address = new InetSocketAddress(port);
+        this.executor = Executors.newThreadPerTaskExecutor(
+                Thread.ofVirtual().name("health-http-", 0).factory());
+    }
+
+    /**
+     * Binds the port and starts serving. Both probes are evaluated once up front
+     * so that their responses are rendered before the first request arrives.
+     *
+     * @throws IOException if the port cannot be bound
+     */
+    public synchronized void start() throws IOException {
+        if (server != null) {
+            return;
+        }
+        HttpServer http = HttpServer.create(address, 0);
+        http.createContext("/live", exchange -> respond(exchange, renderLive()));
+        http.createContext("/ready", exchange -> respond(exchange, renderReady()));
+        http.createContext("/metrics", exchange -> respond(exchange, renderMetrics()));
+        http.setExecutor(executor);
+        renderLive();
+        renderReady();
+        http.start();
+        server = http;
+    }
+
+    /**
+     * Returns the port the server is bound to.
+     *
+     * @return the bound port, or the configured port if not yet started
+     */
+    public synchronized int port() {
+        return server != null ? server.getAddress().getPort() : address.getPort();
+    }
+
+    /**
+     * Stops accepting requests and releases the port.
+     */
+    @Override
+    public synchronized void close() {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+        executor.shutdownNow();
+    }
+
+    private Rendered renderLive() {
+        HealthStatus status = checker.checkLiveness();
+        Rendered current = live;
+        if (current == null || current.source() != status) {
+            current = renderJson(status);
+            live = current;
+        }
+        return current;
+    }
+
+    private Rendered renderReady() {
+        HealthStatus status = checker.checkReadiness();
+        Rendered current = ready;
+        if (current == null || current.source() != status) {
+            current = renderJson(status);
+            ready = current;
+        }
+        return current;
+    }
+
+    private Rendered renderMetrics() {
+        HealthStatus liveness = renderLive().source();
+        HealthStatus readiness = renderReady().source();
+        Rendered current = metrics;
+        if (current == null || current.source() != liveness || current.secondary() != readiness) {
+            current = new Rendered(liveness, readiness, 200, PROMETHEUS,
+                    prometheus(liveness, readiness).getBytes(StandardCharsets.UTF_8));
+            metrics = current;
+        }
+        byte[] registryText = registry.scrape().getBytes(StandardCharsets.UTF_8);
+        if (registryText.length == 0) {
+            return current;
+        }
+        byte[] body = Arrays.copyOf(current.body(), current.body().length + registryText.length);
+        System.arraycopy(registryText, 0, body, current.body().length, registryText.length);
+        return new Rendered(liveness, readiness, 200, PROMETHEUS, body);
+    }
+
+    private static void respond(final HttpExchange exchange, final Rendered rendered) throws IOException {
+        try (exchange) {
+            String method = exchange.getRequestMethod();
+            if (!"GET".equals(method) && !"HEAD".equals(method)) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", rendered.contentType());
+            exchange.getResponseHeaders().set("Cache-Control", "no-store");
+            if ("HEAD".equals(method)) {
+                exchange.sendResponseHeaders(rendered.code(), -1);
+                return;
+            }
+            exchange.sendResponseHeaders(rendered.code(), rendered.body().length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(rendered.body());
+            }
+        }
+    }
+
+    private static Rendered renderJson(final HealthStatus status) {
+        StringBuilder json = new StringBuilder(128);
+        json.append("{\"status\":\"").append(status.getStatus().name()).append('"');
+        if (status.getTimestamp() != null) {
+            json.append(",\"timestamp\":\"").append(status.getTimestamp()).append('"');
+        }
+        json.append(",\"details\":{");
+        boolean first = true;
+        for (Map.Entry<String, String> detail : new TreeMap<>(status.getDetails()).entrySet()) {
+            if (!first) {
+                json.append(',');
+            }
+            appendString(json, detail.getKey()).append(':');
+            appendString(json, detail.getValue());
+            first = false;
+        }
+        json.append("},\"messages\":[");
+        first = true;
+        for (String message : status.getMessages()) {
+            if (!first) {
+                json.append(',');
+            }
+            appendString(json, message);
+            first = false;
+        }
+        json.append("]}");
+        int code = status.getStatus() == Status.UP ? 200 : 503;
+        return new Rendered(status, null, code, JSON, json.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String prometheus(final HealthStatus liveness, final HealthStatus readiness) {
+        StringBuilder text = new StringBuilder(256);
+        text.append("# HELP foundation_health_up Whether the probe is UP (1) or not (0).\n");
+        text.append("# TYPE foundation_health_up gauge\n");
+        appendGauge(text, "foundation_health_up", Map.of("probe", "liveness"), liveness.getStatus() == Status.UP);
+        appendGauge(text, "foundation_health_up", Map.of("probe", "readiness"), readiness.getStatus() == Status.UP);
+        text.append("# HELP foundation_health_check_up Whether an individual checker is UP (1) or not (0).\n");
+        text.append("# TYPE foundation_health_check_up gauge\n");
+        appendChecks(text, "liveness", liveness);
+        appendChecks(text, "readiness", readiness);
+        return text.toString();
+    }
+
+    private static void appendChecks(final StringBuilder text, final String probe, final HealthStatus status) {
+        for (Map.Entry<String, String> detail : new TreeMap<>(status.getDetails()).entrySet()) {
+            if (detail.getKey().indexOf('.') >= 0) {
+                // A checker's own detail, merged in by CompositeHealthChecker
+                continue;
+            }
+            Map<String, String> labels = new TreeMap<>();
+            labels.put("probe", probe);
+            labels.put("checker", detail.getKey());
+            appendGauge(text, "foundation_health_check_up", labels, Status.UP.name().equals(detail.getValue()));
+        }
+    }
+
+    private static void appendGauge(final StringBuilder text, final String name,
+                                    final Map<String, String> labels, final boolean up) {
+        text.append(name).append('{');
+        boolean first = true;
+        for (Map.Entry<String, String> label : new TreeMap<>(labels).entrySet()) {
+            if (!first) {
+                text.append(',');
+            }
+            text.append(label.getKey()).append("=\"")
+                    .append(label.getValue().replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n"))
+                    .append('"');
+            first = false;
+        }
+        text.append("} ").append(up ? '1' : '0').append('\n');
+    }
+
+    private static StringBuilder appendString(final StringBuilder json, final String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> json.append("\\\"");
+                case '\\' -> json.append("\\\\");
+                case '\n' -> json.append("\\n");
+                case '\r' -> json.append("\\r");
+                case '\t' -> json.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+                }
+            }
+        }
+        return json.append('"');
+    }
+
+    /**
+     * A pre-rendered response and the status instance(s) it was rendered from.
+     */
+    private record Rendered(HealthStatus source, HealthStatus secondary, int code,
+                            String contentType, byte[] body) {
+    }
+}
@@ -0,0 +1,63 @@
+package com.github.dimitryivaniuta.foundation.health;
+
+import com.github.dimitryivaniuta.foundation.config.Config;
+import com.github.dimitryivaniuta.foundation.lifecycle.ShutdownManager;
+import com.github.dimitryivaniuta.foundation.lifecycle.ShutdownStage;
+import com.github.dimitryivaniuta.foundation.metrics.MetricsRegistry;
+import dagger.Module;
+import dagger.Provides;
+import javax.inject.Singleton;
+
+import java.io.IOException;
+
+/**
+ * Dagger module exposing the composite {@link HealthChecker} over HTTP.
+ * <p>
+ * Provides a {@link HealthServer} bound to {@link Config#getHealthServerPort()}.
+ * The server serves whatever the checker from {@link HealthModule} returns, so
+ * responses change at the cadence of {@link Config#getHealthCheckIntervalSec()}.
+ * </p>
+ *
+ * @see HealthServer
+ * @see HealthModule
+ */
+@Module
+public class HealthServerModule {
+
+    /**
+     * Provides a singleton, already started {@link HealthServer}.
+     * <p>
+     * Both probes are evaluated before the port is bound, so the first request
+     * is served from a pre-rendered response. A negative port leaves the server
+     * unstarted. The port is released in the last shutdown stage, so probes keep
+     * answering while the rest of the SDK shuts down.
+     * {@code /metrics} also exports the shared {@link MetricsRegistry}.
+     * </p>
+     *
+     * @param checker  the composite health checker to expose
+     * @param config   the application configuration containing the port
+     * @param registry the SDK metrics to export
+     * @param shutdown the manager the server is closed by
+     * @return a singleton HealthServer
+     * @throws IllegalStateException if the port cannot be bound
+     */
+    @Provides
+    @Singleton
+    public HealthServer provideHealthServer(final HealthChecker checker, final Config config,
+                                            final MetricsRegistry registry,
+                                            final ShutdownManager shutdown) {
+        HealthServer server = new HealthServer(checker, Math.max(0, config.getHealthServerPort()), registry);
+        if (config.getHealthServerPort() < 0) {
+            return server;
+        }
+        try {
+            server.start();
+        } catch (IOException e) {
+            server.close();
+            throw new IllegalStateException(
+                    "Failed to start HealthServer on port " + config.getHealthServerPort(), e);
+        }
+        shutdown.register("health-server", ShutdownStage.CLOSE_CLIENTS, budget -> server.close());
+        return server;
+    }
+}
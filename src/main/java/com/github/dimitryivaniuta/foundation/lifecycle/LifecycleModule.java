@@ -0,0 +1,77 @@
+package com.github.dimitryivaniuta.foundation.lifecycle;
+
+import com.github.dimitryivaniuta.foundation.config.Config;
+import dagger.Module;
+import dagger.Provides;
+import dagger.multibindings.IntoSet;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Dagger module for the SDK start-up lifecycle.
+ * <p>
+ * {@link StartupCoordinator} runs every {@link StartupPhase} in the set. This module
+ * contributes the {@code config} phase; {@code GrpcClientModule} and
+ * {@code KafkaStreamsModule} contribute their own phases the same way, so a component
+ * only warms up the modules it includes.
+ * </p>
+ *
+ * @see StartupCoordinator
+ */
+@Module
+public class LifecycleModule {
+
+    /**
+     * Default constructor for Dagger.
+     */
+    public LifecycleModule() {
+        // No initialization required
+    }
+
+    /**
+     * Contributes the phase that validates the configuration.
+     *
+     * @param config the application configuration
+     * @return the {@code config} start-up phase
+     */
+    @Provides
+    @IntoSet
+    public StartupPhase provideConfigStartupPhase(final Config config) {
+        return new StartupPhase("config", () -> validate(config));
+    }
+
+    /**
+     * Checks the settings every SDK deployment relies on, reporting all problems at once.
+     *
+     * @param config the application configuration
+     * @throws IllegalStateException listing every problem found
+     */
+    static void validate(final Config config) {
+        List<String> problems = new ArrayList<>();
+        requireText(problems, "KAFKA_BOOTSTRAP_SERVERS", config.getKafkaBootstrapServers());
+        requireText(problems, "APPLICATION_ID", config.getApplicationId());
+        requireText(problems, "INPUT_TOPIC", config.getInputTopic());
+        requireText(problems, "OUTPUT_TOPIC", config.getOutputTopic());
+        if (config.getGvThreshold() < 1) {
+            problems.add("GV_THRESHOLD must be at least 1, but was " + config.getGvThreshold());
+        }
+        String credentials = config.getGoogleCredentialsPath();
+        if (credentials == null || credentials.isBlank()) {
+            problems.add("GOOGLE_APPLICATION_CREDENTIALS is not set");
+        } else if (!Files.isReadable(Path.of(credentials))) {
+            problems.add("GOOGLE_APPLICATION_CREDENTIALS file '" + credentials + "' is not readable");
+        }
+        if (!problems.isEmpty()) {
+            throw new IllegalStateException("Invalid configuration: " + String.join("; ", problems));
+        }
+    }
+
+    private static void requireText(final List<String> problems, final String name, final String value) {
+        if (value == null || value.isBlank()) {
+            problems.add(name + " is not set");
+        }
+    }
+}
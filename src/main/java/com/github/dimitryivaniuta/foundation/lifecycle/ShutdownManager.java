@@ -0,0 +1,250 @@
+package com.github.dimitryivaniuta.foundation.lifecycle;
+
+import com.github.dimitryivaniuta.foundation.config.Config;
+import com.github.dimitryivaniuta.foundation.config.ReloadableConfigSource;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Shuts the SDK down in dependency order within a time budget, from a single JVM
+ * shutdown hook.
+ * <p>
+ * Separate shutdown hooks run concurrently and in no fixed order, so Kafka Streams
+ * could still be committing while the Vision client was already closed. Instead,
+ * each module registers the components it creates under a {@link ShutdownStage},
+ * and {@link #shutdown()} runs the stages in order: stop intake, drain in-flight
+ * OCR work, flush the sinks, close Kafka Streams, then close the clients. Within a
+ * stage, tasks run one at a time in reverse order of registration, so a component
+ * is closed before the components it was created from.
+ * </p>
+ * <p>
+ * The budget, {@link Config#getShutdownTimeoutMs()}, is shared out by
+ * {@link ShutdownStage#getBudgetPercent()}; time a stage leaves unused passes to the
+ * next. Each task is told how much of its stage's budget remains, but never less
+ * than {@link #MIN_TASK_BUDGET}, so one task overrunning does not leave the tasks
+ * after it no time at all. A task that overruns its budget is interrupted, unless
+ * its stage is not {@linkplain ShutdownStage#isInterruptible() interruptible}, in
+ * which case it is left to finish in the background. Either way the shutdown moves
+ * on, as it does when a task fails.
+ * </p>
+ */
+@Slf4j
+@Singleton
+public class ShutdownManager {
+
+    /**
+     * Shutdown budget used when none is configured.
+     */
+    public static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(30);
+
+    /**
+     * Least time each task is given, even once its stage's budget is spent.
+     */
+    public static final Duration MIN_TASK_BUDGET = Duration.ofMillis(500);
+
+    private final Duration timeout;
+    private final boolean jvmHook;
+    private final List<Registration> registrations = new ArrayList<>();
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private boolean hookInstalled;
+    private boolean started;
+
+    /**
+     * Constructs the manager with the budget of the source's current configuration,
+     * stopping the source's file watcher in the {@link ShutdownStage#STOP_INTAKE}
+     * stage so that no reload reaches components while they are being closed. It
+     * installs a JVM shutdown hook when the first task is registered.
+     *
+     * @param configSource the source of the configuration containing the shutdown timeout
+     */
+    @Inject
+    public ShutdownManager(final ReloadableConfigSource configSource) {
+        this(Duration.ofMillis(configSource.get().getShutdownTimeoutMs()), true);
+        registrations.add(new Registration("config-watcher", ShutdownStage.STOP_INTAKE,
+                budget -> configSource.close()));
+    }
+
+    /**
+     * Constructs the manager with the configured budget. It installs a JVM shutdown
+     * hook when the first task is registered.
+     *
+     * @param config the application configuration containing the shutdown timeout
+     */
+    public ShutdownManager(final Config config) {
+        this(Duration.ofMillis(config.getShutdownTimeoutMs()), true);
+    }
+
+    /**
+     * Constructs a manager that installs no JVM shutdown hook; {@link #shutdown()}
+     * must be called explicitly.
+     *
+     * @param timeout budget for the whole shutdown; zero or negative selects
+     *                {@link #DEFAULT_TIMEOUT}
+     */
+    public ShutdownManager(final Duration timeout) {
+        this(timeout, false);
+    }
+
+    private ShutdownManager(final Duration timeout, final boolean jvmHook) {
+        this.timeout = timeout.isZero() || timeout.isNegative() ? DEFAULT_TIMEOUT : timeout;
+        this.jvmHook = jvmHook;
+    }
+
+    /**
+     * Registers a task to run during shutdown.
+     * <p>
+     * A task registered once shutdown has begun runs straight away with no budget,
+     * so that a component created that late is still closed.
+     * </p>
+     *
+     * @param name  short name used in the shutdown log, e.g. {@code kafka-streams}
+     * @param stage the stage the task belongs to
+     * @param task  the work to perform
+     */
+    public void register(final String name, final ShutdownStage stage, final Task task) {
+        lock.lock();
+        try {
+            if (!started) {
+                registrations.add(new Registration(name, stage, task));
+                if (jvmHook && !hookInstalled) {
+                    Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "foundation-shutdown"));
+                    hookInstalled = true;
+                }
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        log.warn("Shutdown task '{}' registered after shutdown began; running it now", name);
+        try {
+            task.run(Duration.ZERO);
+        } catch (Exception e) {
+            log.error("Shutdown task '{}' failed", name, e);
+        }
+    }
+
+    /**
+     * Runs every registered task, stage by stage. Only the first call has any effect.
+     *
+     * @return {@code true} if every task completed within its budget without failing
+     */
+    public boolean shutdown() {
+        List<Registration> tasks;
+        lock.lock();
+        try {
+            if (started) {
+                return false;
+            }
+            started = true;
+            tasks = List.copyOf(registrations);
+        } finally {
+            lock.unlock();
+        }
+
+        long start = System.nanoTime();
+        long budgetPercent = 0;
+        boolean clean = true;
+        List<String> timings = new ArrayList<>(tasks.size());
+        for (ShutdownStage stage : ShutdownStage.values()) {
+            budgetPercent += stage.getBudgetPercent();
+            long deadline = start + timeout.toNanos() / 100 * budgetPercent;
+            for (Registration registration : tasks.reversed()) {
+                if (registration.stage() == stage) {
+                    clean &= run(registration, deadline, timings);
+                }
+            }
+        }
+        long total = Duration.ofNanos(System.nanoTime() - start).toMillis();
+        if (clean) {
+            log.info("SDK shut down in {} ms: {}", total, String.join(", ", timings));
+        } else {
+            log.warn("SDK shut down in {} ms with failures: {}", total, String.join(", ", timings));
+        }
+        return clean;
+    }
+
+    /**
+     * Returns whether shutdown has begun.
+     *
+     * @return {@code true} once {@link #shutdown()} has been called
+     */
+    public boolean isShuttingDown() {
+        lock.lock();
+        try {
+            return started;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Runs one task on its own thread, waiting for it until the stage deadline or for
+     * {@link #MIN_TASK_BUDGET}, whichever is later.
+     *
+     * @return {@code true} if the task completed in time without failing
+     */
+    private static boolean run(final Registration registration, final long deadline, final List<String> timings) {
+        long start = System.nanoTime();
+        Duration budget = Duration.ofNanos(Math.max(MIN_TASK_BUDGET.toNanos(), deadline - start));
+        Throwable[] error = new Throwable[1];
+        Thread thread = Thread.ofVirtual().name("shutdown-" + registration.name()).start(() -> {
+            try {
+                registration.task().run(budget);
+            } catch (Exception e) {
+                error[0] = e;
+            }
+        });
+        boolean finished;
+        try {
+            finished = thread.join(budget);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            finished = false;
+        }
+        long millis = Duration.ofNanos(System.nanoTime() - start).toMillis();
+        String name = registration.stage() + "/" + registration.name();
+        if (!finished) {
+            if (registration.stage().isInterruptible()) {
+                thread.interrupt();
+                log.warn("Shutdown task '{}' did not finish within {} ms; interrupted it", name, budget.toMillis());
+            } else {
+                log.warn("Shutdown task '{}' did not finish within {} ms; leaving it running", name,
+                        budget.toMillis());
+            }
+            timings.add(name + " " + millis + " ms TIMED OUT");
+            return false;
+        }
+        if (error[0] != null) {
+            log.error("Shutdown task '{}' failed", name, error[0]);
+            timings.add(name + " " + millis + " ms FAILED");
+            return false;
+        }
+        timings.add(name + " " + millis + " ms");
+        return true;
+    }
+
+    /**
+     * Shutdown work that may fail with a checked exception.
+     */
+    @FunctionalInterface
+    public interface Task {
+
+        /**
+         * Performs the work, blocking until it is done.
+         *
+         * @param budget how long the task may take before it is interrupted
+         * @throws Exception if the task fails; the shutdown then carries on
+         */
+        void run(Duration budget) throws Exception;
+    }
+
+    private record Registration(String name, ShutdownStage stage, Task task) {
+    }
+}
@@ -0,0 +1,65 @@
+package com.github.dimitryivaniuta.foundation.lifecycle;
+
+/**
+ * The ordered stages of a {@link ShutdownManager#shutdown()}.
+ * <p>
+ * Stages run one after another in declaration order, so work is never thrown away
+ * by closing what it still depends on. Each stage may use its share of the shutdown
+ * budget, plus whatever earlier stages left unused.
+ * </p>
+ */
+public enum ShutdownStage {
+
+    /**
+     * Stop taking new work: pause stream processing and stop relaying retried records.
+     */
+    STOP_INTAKE(10, true),
+
+    /**
+     * Let work already accepted finish: image pre-processing and in-flight OCR calls.
+     */
+    DRAIN(35, true),
+
+    /**
+     * Flush buffered output: document sinks, the error sink and dead-lettered records.
+     * Tasks of this stage are never interrupted, since an interrupted
+     * {@code FileChannel} write closes the channel and loses what was buffered.
+     */
+    FLUSH(15, false),
+
+    /**
+     * Close Kafka Streams, committing its offsets without leaving the consumer group.
+     */
+    CLOSE_STREAMS(30, true),
+
+    /**
+     * Close clients and servers: Vision, Textract, Kafka producers, caches and the health server.
+     */
+    CLOSE_CLIENTS(10, true);
+
+    private final int budgetPercent;
+    private final boolean interruptible;
+
+    ShutdownStage(final int budgetPercent, final boolean interruptible) {
+        this.budgetPercent = budgetPercent;
+        this.interruptible = interruptible;
+    }
+
+    /**
+     * Returns the share of the shutdown budget reserved for this stage.
+     *
+     * @return the share in percent; the shares of all stages add up to 100
+     */
+    public int getBudgetPercent() {
+        return budgetPercent;
+    }
+
+    /**
+     * Returns whether a task of this stage that overruns its budget is interrupted.
+     *
+     * @return {@code false} if overrunning tasks are left to finish in the background
+     */
+    public boolean isInterruptible() {
+        return interruptible;
+    }
+}
@@ -0,0 +1,197 @@
+package com.github.dimitryivaniuta.foundation.lifecycle;
+
+import com.github.dimitryivaniuta.foundation.config.Config;
+import com.github.dimitryivaniuta.foundation.metrics.MetricsRegistry;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.streams.KafkaStreams;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Warms up the SDK's expensive singletons before {@link KafkaStreams#start()}, so
+ * the first records do not pay for credential loading, TLS handshakes or missing
+ * topics.
+ * <p>
+ * Every {@link StartupPhase} contributed to the set (config validation, Vision
+ * credentials and client, Vision channel connect, topic existence checks) runs on
+ * its own virtual thread, so start-up takes as long as the slowest phase rather
+ * than the sum of all of them. The whole warm-up is bounded by
+ * {@link Config#getStartupTimeoutMs()}; phases still running at the deadline are
+ * interrupted and reported as failed.
+ * </p>
+ * <p>
+ * Each warm-up produces a {@link StartupReport} with per-phase timings, which is
+ * logged, kept for {@link #getLastReport()} and exported as
+ * {@code foundation_startup_phase_seconds} gauges. If any phase fails, Kafka Streams
+ * is not started.
+ * </p>
+ */
+@Slf4j
+@Singleton
+public class StartupCoordinator {
+
+    /**
+     * Warm-up deadline used when none is configured.
+     */
+    public static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(60);
+
+    private final List<StartupPhase> phases;
+    private final Duration timeout;
+    private final MetricsRegistry registry;
+
+    private volatile StartupReport lastReport;
+
+    /**
+     * Constructs the coordinator with the configured deadline.
+     *
+     * @param phases   the phases contributed by the SDK modules
+     * @param config   the application configuration containing the start-up timeout
+     * @param registry the registry phase durations are exported through
+     */
+    @Inject
+    public StartupCoordinator(final Set<StartupPhase> phases, final Config config, final MetricsRegistry registry) {
+        this(phases, Duration.ofMillis(config.getStartupTimeoutMs()), registry);
+    }
+
+    /**
+     * Constructs the coordinator.
+     *
+     * @param phases  the phases to run
+     * @param timeout deadline for the whole warm-up; zero or negative selects
+     *                {@link #DEFAULT_TIMEOUT}
+     */
+    public StartupCoordinator(final Set<StartupPhase> phases, final Duration timeout) {
+        this(phases, timeout, new MetricsRegistry());
+    }
+
+    /**
+     * Constructs the coordinator.
+     *
+     * @param phases   the phases to run
+     * @param timeout  deadline for the whole warm-up; zero or negative selects
+     *                 {@link #DEFAULT_TIMEOUT}
+     * @param registry the registry phase durations are exported through
+     */
+    public StartupCoordinator(final Set<StartupPhase> phases, final Duration timeout,
+                              final MetricsRegistry registry) {
+        this.phases = List.copyOf(phases);
+        this.timeout = timeout.isZero() || timeout.isNegative() ? DEFAULT_TIMEOUT : timeout;
+        this.registry = registry;
+    }
+
+    /**
+     * Warms up the SDK, then starts Kafka Streams.
+     *
+     * @param streams the Kafka Streams instance to start
+     * @return the warm-up report
+     * @throws IllegalStateException if any phase fails; {@code streams} is then not started
+     */
+    public StartupReport start(final KafkaStreams streams) {
+        StartupReport report = warmUp();
+        streams.start();
+        return report;
+    }
+
+    /**
+     * Runs every phase concurrently and waits for all of them, up to the deadline.
+     *
+     * @return the report of a successful warm-up
+     * @throws IllegalStateException if any phase fails or misses the deadline; the
+     *                               first failure is the cause, the others are suppressed
+     */
+    public StartupReport warmUp() {
+        long start = System.nanoTime();
+        long deadline = start + timeout.toNanos();
+        ExecutorService executor = Executors.newThreadPerTaskExecutor(
+                Thread.ofVirtual().name("startup-", 0).factory());
+        List<StartupReport.PhaseResult> results = new ArrayList<>(phases.size());
+        try {
+            List<CompletableFuture<StartupReport.PhaseResult>> running = new ArrayList<>(phases.size());
+            for (StartupPhase phase : phases) {
+                running.add(CompletableFuture.supplyAsync(() -> run(phase), executor));
+            }
+            for (int i = 0; i < phases.size(); i++) {
+                results.add(await(phases.get(i), running.get(i), start, deadline));
+            }
+        } finally {
+            // Interrupts phases that missed the deadline
+            executor.shutdownNow();
+        }
+
+        StartupReport report = new StartupReport(results, Duration.ofNanos(System.nanoTime() - start));
+        lastReport = report;
+        export(report);
+        if (report.isSuccessful()) {
+            log.info("SDK start-up completed in {}", report.summary());
+            return report;
+        }
+
+        log.error("SDK start-up failed in {}", report.summary());
+        List<StartupReport.PhaseResult> failures = report.failures();
+        IllegalStateException error = new IllegalStateException("Failed to start SDK: phase(s) "
+                + failures.stream().map(StartupReport.PhaseResult::name).toList() + " failed",
+                failures.get(0).error());
+        failures.stream().skip(1).forEach(failure -> error.addSuppressed(failure.error()));
+        throw error;
+    }
+
+    /**
+     * Returns the report of the most recent warm-up, successful or not.
+     *
+     * @return the last report, or {@code null} if no warm-up has run
+     */
+    public StartupReport getLastReport() {
+        return lastReport;
+    }
+
+    private void export(final StartupReport report) {
+        double total = report.total().toNanos() / 1e9;
+        registry.gauge("foundation_startup_seconds", "Duration of the last SDK warm-up.", () -> total);
+        for (StartupReport.PhaseResult phase : report.phases()) {
+            double seconds = phase.duration().toNanos() / 1e9;
+            registry.gauge("foundation_startup_phase_seconds", "Duration of each phase of the last SDK warm-up.",
+                    () -> seconds, "phase", phase.name());
+        }
+    }
+
+    private static StartupReport.PhaseResult run(final StartupPhase phase) {
+        long start = System.nanoTime();
+        Throwable error = null;
+        try {
+            phase.task().run();
+        } catch (Exception e) {
+            error = e;
+        }
+        return new StartupReport.PhaseResult(phase.name(), Duration.ofNanos(System.nanoTime() - start), error);
+    }
+
+    private StartupReport.PhaseResult await(final StartupPhase phase,
+                                            final CompletableFuture<StartupReport.PhaseResult> result,
+                                            final long start,
+                                            final long deadline) {
+        try {
+            return result.get(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            return new StartupReport.PhaseResult(phase.name(), Duration.ofNanos(System.nanoTime() - start),
+                    new TimeoutException("Phase '" + phase.name() + "' did not finish within "
+                            + timeout.toMillis() + " ms"));
+        } catch (ExecutionException e) {
+            return new StartupReport.PhaseResult(phase.name(), Duration.ofNanos(System.nanoTime() - start),
+                    e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new StartupReport.PhaseResult(phase.name(), Duration.ofNanos(System.nanoTime() - start), e);
+        }
+    }
+}
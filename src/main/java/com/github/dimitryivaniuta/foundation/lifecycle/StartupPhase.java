@@ -0,0 +1,29 @@
+package com.github.dimitryivaniuta.foundation.lifecycle;
+
+/**
+ * One unit of start-up work run by the {@link StartupCoordinator}, such as loading
+ * credentials or connecting a channel.
+ * <p>
+ * Modules contribute phases with {@code @IntoSet}; all phases run concurrently,
+ * so a phase must not depend on another phase having finished.
+ * </p>
+ *
+ * @param name short name used in the start-up timing breakdown, e.g. {@code vision-channel}
+ * @param task the work to perform
+ */
+public record StartupPhase(String name, Task task) {
+
+    /**
+     * Start-up work that may fail with a checked exception.
+     */
+    @FunctionalInterface
+    public interface Task {
+
+        /**
+         * Performs the work, blocking until it is done.
+         *
+         * @throws Exception if the phase fails; start-up is then aborted
+         */
+        void run() throws Exception;
+    }
+}
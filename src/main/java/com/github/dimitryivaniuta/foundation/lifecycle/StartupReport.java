@@ -0,0 +1,74 @@
+package com.github.dimitryivaniuta.foundation.lifecycle;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Outcome and per-phase timing breakdown of one {@link StartupCoordinator#warmUp()}.
+ *
+ * @param phases the result of every phase, in contribution order
+ * @param total  wall-clock time of the whole warm-up
+ */
+public record StartupReport(List<PhaseResult> phases, Duration total) {
+
+    /**
+     * Creates a report.
+     *
+     * @param phases the result of every phase
+     * @param total  wall-clock time of the whole warm-up
+     */
+    public StartupReport {
+        phases = List.copyOf(phases);
+    }
+
+    /**
+     * Returns whether every phase succeeded.
+     *
+     * @return {@code true} if no phase failed
+     */
+    public boolean isSuccessful() {
+        return phases.stream().allMatch(PhaseResult::isSuccessful);
+    }
+
+    /**
+     * Returns the phases that failed.
+     *
+     * @return the failed phases, in contribution order
+     */
+    public List<PhaseResult> failures() {
+        return phases.stream().filter(phase -> !phase.isSuccessful()).toList();
+    }
+
+    /**
+     * Renders the breakdown on one line, e.g.
+     * {@code 412 ms total: config 1 ms, vision-client 380 ms, kafka-topics 120 ms FAILED}.
+     *
+     * @return the human-readable breakdown
+     */
+    public String summary() {
+        return phases.stream()
+                .map(phase -> phase.name() + " " + phase.duration().toMillis() + " ms"
+                        + (phase.isSuccessful() ? "" : " FAILED"))
+                .collect(Collectors.joining(", ", total.toMillis() + " ms total: ", ""));
+    }
+
+    /**
+     * Outcome of one phase.
+     *
+     * @param name     the phase name
+     * @param duration how long the phase ran, or how long it was waited for if it timed out
+     * @param error    why the phase failed, or {@code null} if it succeeded
+     */
+    public record PhaseResult(String name, Duration duration, Throwable error) {
+
+        /**
+         * Returns whether the phase succeeded.
+         *
+         * @return {@code true} if the phase completed without error
+         */
+        public boolean isSuccessful() {
+            return error == null;
+        }
+    }
+}
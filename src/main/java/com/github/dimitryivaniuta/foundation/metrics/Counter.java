@@ -0,0 +1,45 @@
+package com.github.dimitryivaniuta.foundation.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Monotonic counter backed by a striped {@link LongAdder}, so concurrent increments
+ * from many threads do not contend on a single cache line.
+ * <p>
+ * Obtain instances from {@link MetricsRegistry#counter(String, String, String...)}.
+ * </p>
+ */
+public final class Counter {
+
+    private final LongAdder value = new LongAdder();
+
+    Counter() {
+    }
+
+    /**
+     * Adds one.
+     */
+    public void increment() {
+        value.increment();
+    }
+
+    /**
+     * Adds a non-negative amount.
+     *
+     * @param amount the amount to add; negative amounts are ignored
+     */
+    public void add(final long amount) {
+        if (amount > 0) {
+            value.add(amount);
+        }
+    }
+
+    /**
+     * Returns the current total.
+     *
+     * @return the sum of all increments
+     */
+    public long sum() {
+        return value.sum();
+    }
+}
@@ -0,0 +1,179 @@
+package com.github.dimitryivaniuta.foundation.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with HdrHistogram-style log-linear buckets.
+ * <p>
+ * Values are nanoseconds. Values below {@value #SUB_BUCKETS} get a bucket each;
+ * above that, every power of two is split into {@value #SUB_BUCKETS} equal buckets,
+ * so any recorded value is off by at most about 3% when read back as a percentile.
+ * Values above {@link #MAX_TRACKABLE_NANOS} (about 18 minutes) are clamped.
+ * </p>
+ * <p>
+ * Recording finds the bucket with a leading-zero count and a shift and increments
+ * one {@link AtomicLongArray} slot: no locks and no allocation, a few nanoseconds
+ * per call. Reads copy the buckets, so percentiles may miss values recorded
+ * concurrently but are never torn.
+ * </p>
+ * <p>
+ * Obtain instances from {@link MetricsRegistry#histogram(String, String, String...)}.
+ * </p>
+ */
+public final class LatencyHistogram {
+
+    /**
+     * Largest value tracked exactly; larger values are clamped to it.
+     */
+    public static final long MAX_TRACKABLE_NANOS = (1L << 40) - 1;
+
+    /**
+     * Buckets per power of two, as a power of two.
+     */
+    private static final int SUB_BUCKET_BITS = 5;
+
+    /**
+     * Buckets per power of two.
+     */
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * Total number of buckets needed to cover {@code [0, MAX_TRACKABLE_NANOS]}.
+     */
+    private static final int BUCKET_COUNT = indexOf(MAX_TRACKABLE_NANOS) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder sum = new LongAdder();
+
+    LatencyHistogram() {
+    }
+
+    /**
+     * Records one latency.
+     *
+     * @param nanos the latency in nanoseconds; negative values count as zero
+     */
+    public void record(final long nanos) {
+        long value = Math.min(Math.max(0L, nanos), MAX_TRACKABLE_NANOS);
+        counts.incrementAndGet(indexOf(value));
+        sum.add(value);
+    }
+
+    /**
+     * Records the time elapsed since a {@link System#nanoTime()} reading.
+     *
+     * @param startNanos the reading taken when the timed operation started
+     */
+    public void recordSince(final long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Returns the number of recorded values.
+     *
+     * @return the count
+     */
+    public long count() {
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    /**
+     * Returns the sum of all recorded values.
+     *
+     * @return the sum in nanoseconds
+     */
+    public long sum() {
+        return sum.sum();
+    }
+
+    /**
+     * Returns the value at a percentile of the recorded values.
+     *
+     * @param percentile the percentile, from 0 to 100
+     * @return the value in nanoseconds, or 0 if nothing was recorded
+     */
+    public long valueAtPercentile(final double percentile) {
+        return snapshot().valueAtPercentile(percentile);
+    }
+
+    /**
+     * Copies the current bucket counts.
+     *
+     * @return a consistent view of the histogram
+     */
+    Snapshot snapshot() {
+        long[] copy = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            copy[i] = counts.get(i);
+            total += copy[i];
+        }
+        return new Snapshot(copy, total, sum.sum());
+    }
+
+    /**
+     * Returns the bucket of a non-negative value.
+     */
+    static int indexOf(final long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = (63 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+        return (shift << SUB_BUCKET_BITS) + (int) (value >>> shift);
+    }
+
+    /**
+     * Returns the smallest value that falls into a bucket.
+     */
+    static long lowestValue(final int index) {
+        if (index < 2 * SUB_BUCKETS) {
+            return index;
+        }
+        int shift = (index >>> SUB_BUCKET_BITS) - 1;
+        long mantissa = (index & (SUB_BUCKETS - 1)) + SUB_BUCKETS;
+        return mantissa << shift;
+    }
+
+    /**
+     * Returns the largest value that falls into a bucket.
+     */
+    static long highestValue(final int index) {
+        return index + 1 < BUCKET_COUNT ? lowestValue(index + 1) - 1 : MAX_TRACKABLE_NANOS;
+    }
+
+    /**
+     * Point-in-time copy of a histogram.
+     *
+     * @param counts per-bucket counts
+     * @param count  total number of values
+     * @param sum    sum of all values in nanoseconds
+     */
+    record Snapshot(long[] counts, long count, long sum) {
+
+        /**
+         * Returns the value at a percentile, as the midpoint of the bucket it falls in.
+         *
+         * @param percentile the percentile, from 0 to 100
+         * @return the value in nanoseconds, or 0 if the snapshot is empty
+         */
+        long valueAtPercentile(final double percentile) {
+            if (count == 0) {
+                return 0L;
+            }
+            long rank = Math.max(1L, (long) Math.ceil(Math.min(100.0, Math.max(0.0, percentile)) / 100.0 * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return lowestValue(i) + (highestValue(i) - lowestValue(i)) / 2;
+                }
+            }
+            return MAX_TRACKABLE_NANOS;
+        }
+    }
+}
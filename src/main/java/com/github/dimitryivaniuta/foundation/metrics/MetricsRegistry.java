@@ -0,0 +1,265 @@
+package com.github.dimitryivaniuta.foundation.metrics;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+import java.util.regex.Pattern;
+
+/**
+ * Registry of the SDK's metrics, exportable in Prometheus text format.
+ * <p>
+ * Metrics are identified by a name and a set of labels, given as alternating
+ * name/value strings. Four kinds are supported:
+ * </p>
+ * <ul>
+ *   <li>{@link Counter}s, incremented on hot paths;</li>
+ *   <li>{@link LatencyHistogram}s, exported as summaries with the 50th, 90th, 99th
+ *       and 99.9th percentiles in seconds;</li>
+ *   <li>function counters, read from an existing cumulative count such as
+ *       {@code VisionResultCache#getHitCount()} at scrape time;</li>
+ *   <li>gauges, read from a supplier at scrape time.</li>
+ * </ul>
+ * <p>
+ * Registration is idempotent: asking again for the same name and labels returns the
+ * same counter or histogram, and replaces a function counter's or gauge's supplier.
+ * Callers should look metrics up once and keep the reference, so that recording is
+ * a single {@link java.util.concurrent.atomic.LongAdder} or array increment.
+ * </p>
+ */
+@Singleton
+public class MetricsRegistry {
+
+    private static final Pattern NAME = Pattern.compile("[a-zA-Z_:][a-zA-Z0-9_:]*");
+    private static final Pattern LABEL = Pattern.compile("[a-zA-Z_][a-zA-Z0-9_]*");
+
+    /**
+     * Percentiles exported for every histogram, with their Prometheus quantile labels.
+     */
+    private static final double[] PERCENTILES = {50.0, 90.0, 99.0, 99.9};
+    private static final String[] QUANTILES = {"0.5", "0.9", "0.99", "0.999"};
+
+    private final ConcurrentHashMap<String, Family> families = new ConcurrentHashMap<>();
+
+    /**
+     * Creates an empty registry.
+     */
+    @Inject
+    public MetricsRegistry() {
+        // No initialization required
+    }
+
+    /**
+     * Returns the counter with the given name and labels, creating it if needed.
+     *
+     * @param name   the metric name, conventionally ending in {@code _total}
+     * @param help   the description exported with the metric
+     * @param labels alternating label names and values
+     * @return the counter
+     * @throws IllegalArgumentException if the name or labels are invalid, or the name
+     *                                  is already registered with another type
+     */
+    public Counter counter(final String name, final String help, final String... labels) {
+        return (Counter) family(name, help, Type.COUNTER).series
+                .computeIfAbsent(labelKey(labels), key -> new Series(key, new Counter())).metric;
+    }
+
+    /**
+     * Returns the latency histogram with the given name and labels, creating it if needed.
+     *
+     * @param name   the metric name, conventionally ending in {@code _seconds}
+     * @param help   the description exported with the metric
+     * @param labels alternating label names and values
+     * @return the histogram
+     * @throws IllegalArgumentException if the name or labels are invalid, or the name
+     *                                  is already registered with another type
+     */
+    public LatencyHistogram histogram(final String name, final String help, final String... labels) {
+        return (LatencyHistogram) family(name, help, Type.SUMMARY).series
+                .computeIfAbsent(labelKey(labels), key -> new Series(key, new LatencyHistogram())).metric;
+    }
+
+    /**
+     * Registers a counter whose value is read from an existing cumulative count.
+     *
+     * @param name   the metric name, conventionally ending in {@code _total}
+     * @param help   the description exported with the metric
+     * @param value  reads the current count
+     * @param labels alternating label names and values
+     * @throws IllegalArgumentException if the name or labels are invalid, or the name
+     *                                  is already registered with another type
+     */
+    public void counter(final String name, final String help, final LongSupplier value, final String... labels) {
+        String key = labelKey(labels);
+        family(name, help, Type.COUNTER).series.put(key, new Series(key, value));
+    }
+
+    /**
+     * Registers a gauge whose value is read when metrics are exported.
+     *
+     * @param name   the metric name
+     * @param help   the description exported with the metric
+     * @param value  reads the current value
+     * @param labels alternating label names and values
+     * @throws IllegalArgumentException if the name or labels are invalid, or the name
+     *                                  is already registered with another type
+     */
+    public void gauge(final String name, final String help, final DoubleSupplier value, final String... labels) {
+        String key = labelKey(labels);
+        family(name, help, Type.GAUGE).series.put(key, new Series(key, value));
+    }
+
+    /**
+     * Renders every metric in the Prometheus text exposition format (version 0.0.4),
+     * ordered by name and labels.
+     *
+     * @return the exposition text
+     */
+    public String scrape() {
+        StringBuilder text = new StringBuilder(1024);
+        for (Family family : new TreeMap<>(families).values()) {
+            text.append("# HELP ").append(family.name).append(' ')
+                    .append(family.help.replace("\\", "\\\\").replace("\n", "\\n")).append('\n');
+            text.append("# TYPE ").append(family.name).append(' ').append(family.type.exposition).append('\n');
+            for (Series series : new TreeMap<>(family.series).values()) {
+                series.appendTo(text, family.name);
+            }
+        }
+        return text.toString();
+    }
+
+    private Family family(final String name, final String help, final Type type) {
+        Family family = families.get(name);
+        if (family == null) {
+            if (!NAME.matcher(name).matches()) {
+                throw new IllegalArgumentException("Invalid metric name '" + name + "'");
+            }
+            family = families.computeIfAbsent(name, key -> new Family(name, help == null ? "" : help, type));
+        }
+        if (family.type != type) {
+            throw new IllegalArgumentException(
+                    "Metric '" + name + "' is already registered as a " + family.type.exposition);
+        }
+        return family;
+    }
+
+    /**
+     * Renders labels as the sorted, escaped body of a Prometheus label set, e.g.
+     * {@code checker="kafka",probe="readiness"}; this also identifies the series.
+     */
+    private static String labelKey(final String... labels) {
+        if (labels.length == 0) {
+            return "";
+        }
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels must be name/value pairs");
+        }
+        Map<String, String> sorted = new TreeMap<>();
+        for (int i = 0; i < labels.length; i += 2) {
+            if (!LABEL.matcher(labels[i]).matches() || "quantile".equals(labels[i])) {
+                throw new IllegalArgumentException("Invalid label name '" + labels[i] + "'");
+            }
+            sorted.put(labels[i], labels[i + 1] == null ? "" : labels[i + 1]);
+        }
+        List<String> pairs = new ArrayList<>(sorted.size());
+        sorted.forEach((label, value) -> pairs.add(label + "=\""
+                + value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n") + '"'));
+        return String.join(",", pairs);
+    }
+
+    private static String format(final double value) {
+        if (Double.isNaN(value)) {
+            return "NaN";
+        }
+        if (Double.isInfinite(value)) {
+            return value > 0 ? "+Inf" : "-Inf";
+        }
+        return value == Math.rint(value) && Math.abs(value) < 1e15
+                ? Long.toString((long) value) : Double.toString(value);
+    }
+
+    private static String seconds(final long nanos) {
+        return Double.toString(nanos / 1e9);
+    }
+
+    private enum Type {
+        COUNTER("counter"),
+        GAUGE("gauge"),
+        SUMMARY("summary");
+
+        private final String exposition;
+
+        Type(final String exposition) {
+            this.exposition = exposition;
+        }
+    }
+
+    /**
+     * All series sharing a metric name.
+     */
+    private static final class Family {
+        private final String name;
+        private final String help;
+        private final Type type;
+        private final ConcurrentHashMap<String, Series> series = new ConcurrentHashMap<>();
+
+        Family(final String name, final String help, final Type type) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+        }
+    }
+
+    /**
+     * One labelled metric: a {@link Counter}, {@link LatencyHistogram},
+     * {@link LongSupplier} or {@link DoubleSupplier}.
+     */
+    private record Series(String labels, Object metric) {
+
+        void appendTo(final StringBuilder text, final String name) {
+            switch (metric) {
+                case Counter counter -> line(text, name, labels, Long.toString(counter.sum()));
+                case LongSupplier count -> line(text, name, labels, read(() -> count.getAsLong()));
+                case DoubleSupplier gauge -> line(text, name, labels, read(gauge));
+                case LatencyHistogram histogram -> {
+                    LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+                    String prefix = labels.isEmpty() ? "" : labels + ",";
+                    for (int i = 0; i < PERCENTILES.length; i++) {
+                        line(text, name, prefix + "quantile=\"" + QUANTILES[i] + '"',
+                                seconds(snapshot.valueAtPercentile(PERCENTILES[i])));
+                    }
+                    line(text, name + "_sum", labels, seconds(snapshot.sum()));
+                    line(text, name + "_count", labels, Long.toString(snapshot.count()));
+                }
+                default -> throw new IllegalStateException("Unknown metric " + metric.getClass());
+            }
+        }
+
+        /**
+         * Reads a supplied value; a supplier that throws is exported as {@code NaN}
+         * rather than failing the whole scrape.
+         */
+        private static String read(final DoubleSupplier value) {
+            try {
+                return format(value.getAsDouble());
+            } catch (RuntimeException e) {
+                return "NaN";
+            }
+        }
+
+        private static void line(final StringBuilder text, final String name,
+                                 final String labels, final String value) {
+            text.append(name);
+            if (!labels.isEmpty()) {
+                text.append('{').append(labels).append('}');
+            }
+            text.append(' ').append(value).append('\n');
+        }
+    }
+}
@@ -0,0 +1,515 @@
+package com.github.dimitryivaniuta.foundation.ocr;
+
+import com.github.dimitryivaniuta.foundation.config.Config;
+import com.github.dimitryivaniuta.foundation.metrics.Counter;
+import com.github.dimitryivaniuta.foundation.metrics.LatencyHistogram;
+import com.github.dimitryivaniuta.foundation.metrics.MetricsRegistry;
+import com.github.dimitryivaniuta.foundation.streams.DocumentPayload;
+import lombok.extern.slf4j.Slf4j;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataFormatImpl;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shrinks page images before they are uploaded to an OCR engine.
+ * <p>
+ * Each page is downscaled to {@link Config#getImageTargetDpi()} and converted to
+ * grayscale in one pass, then written in {@link Config#getImageOutputFormat()} at
+ * {@link Config#getImageQuality()}. While the result is larger than
+ * {@link Config#getImageMaxBytes()} the quality is lowered in steps down to
+ * {@value #MIN_QUALITY}. Pages with fewer dark pixels than
+ * {@link Config#getImageBlankInkRatio()} are reported as blank and need no OCR at all.
+ * </p>
+ * <p>
+ * The source resolution is taken from the image metadata; without it the longer
+ * side is assumed to span {@value #ASSUMED_PAGE_INCHES} inches. Images ImageIO
+ * cannot read, such as PDFs, and images the pipeline would only make larger are
+ * passed through unchanged.
+ * </p>
+ * <p>
+ * Work runs on a fixed pool of {@link Config#getImagePreprocessThreads()} platform
+ * threads with a bounded queue; when the queue is full the submitting thread
+ * processes the page itself, which slows intake down to what the pool can handle.
+ * Once the pre-processor is closed, submitted pages fail instead of hanging.
+ * Encode buffers and image writers are kept in a pool of workspaces and reused
+ * from page to page.
+ * </p>
+ */
+@Slf4j
+public class ImagePreprocessor implements AutoCloseable {
+
+    /**
+     * Lowest quality tried while fitting an image into the size budget.
+     */
+    static final double MIN_QUALITY = 0.3;
+
+    /**
+     * Amount by which the quality is lowered per attempt.
+     */
+    static final double QUALITY_STEP = 0.15;
+
+    /**
+     * Page length assumed when the image carries no resolution: US Letter and A4 both
+     * come close to 11 inches.
+     */
+    static final double ASSUMED_PAGE_INCHES = 11.0;
+
+    /**
+     * Gray level below which a pixel counts as ink when looking for blank pages.
+     */
+    static final int INK_THRESHOLD = 160;
+
+    /**
+     * Queued pages per pre-processing thread before submitters do the work themselves.
+     */
+    private static final int QUEUE_PER_THREAD = 16;
+
+    private final boolean enabled;
+    private final int targetDpi;
+    private final String format;
+    private final String contentType;
+    private final double quality;
+    private final int maxBytes;
+    private final double blankInkRatio;
+
+    /**
+     * Runs pre-processing off the callers' threads.
+     */
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Idle workspaces, at most one per pre-processing thread.
+     */
+    private final BlockingQueue<Workspace> workspaces;
+
+    private final LatencyHistogram latency;
+    private final Counter processed;
+    private final Counter unchanged;
+    private final Counter blank;
+    private final Counter overBudget;
+    private final Counter bytesIn;
+    private final Counter bytesOut;
+
+    /**
+     * Creates a pre-processor from the image settings in {@link Config}.
+     *
+     * @param config   application configuration
+     * @param registry the registry pre-processing metrics are recorded in
+     * @throws IllegalStateException if no ImageIO writer supports the output format
+     */
+    public ImagePreprocessor(final Config config, final MetricsRegistry registry) {
+        this.enabled = config.isImagePreprocessEnabled();
+        this.targetDpi = Math.max(1, config.getImageTargetDpi());
+        this.format = config.getImageOutputFormat();
+        this.quality = Math.min(1.0, Math.max(MIN_QUALITY, config.getImageQuality()));
+        this.maxBytes = Math.max(1, config.getImageMaxBytes());
+        this.blankInkRatio = config.getImageBlankInkRatio();
+        if (enabled) {
+            Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(format);
+            if (!writers.hasNext()) {
+                throw new IllegalStateException("Failed to create ImagePreprocessor: no ImageIO writer for format '"
+                        + format + "'");
+            }
+            ImageWriter writer = writers.next();
+            String[] mimeTypes = writer.getOriginatingProvider().getMIMETypes();
+            writer.dispose();
+            this.contentType = mimeTypes == null || mimeTypes.length == 0 ? "image/" + format : mimeTypes[0];
+        } else {
+            this.contentType = null;
+        }
+
+        int threads = config.getImagePreprocessThreads() > 0
+                ? config.getImagePreprocessThreads()
+                : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads * QUEUE_PER_THREAD),
+                r -> {
+                    Thread t = new Thread(r, "image-preprocess-" + threadIndex.getAndIncrement());
+                    t.setDaemon(true);
+                    return t;
+                },
+                (task, pool) -> {
+                    if (pool.isShutdown()) {
+                        throw new RejectedExecutionException("ImagePreprocessor is closed");
+                    }
+                    task.run();
+                });
+        this.workspaces = new ArrayBlockingQueue<>(threads);
+
+        this.latency = registry.histogram("foundation_image_preprocess_seconds",
+                "Time spent pre-processing one page image.");
+        String pagesHelp = "Page images pre-processed, by outcome.";
+        this.processed = registry.counter("foundation_image_preprocess_pages_total", pagesHelp, "outcome", "processed");
+        this.unchanged = registry.counter("foundation_image_preprocess_pages_total", pagesHelp, "outcome", "unchanged");
+        this.blank = registry.counter("foundation_image_preprocess_pages_total", pagesHelp, "outcome", "blank");
+        this.overBudget = registry.counter("foundation_image_preprocess_over_budget_total",
+                "Pre-processed images still larger than the size budget at the lowest quality.");
+        String bytesHelp = "Image bytes entering and leaving pre-processing.";
+        this.bytesIn = registry.counter("foundation_image_preprocess_bytes_total", bytesHelp, "stage", "in");
+        this.bytesOut = registry.counter("foundation_image_preprocess_bytes_total", bytesHelp, "stage", "out");
+    }
+
+    /**
+     * Pre-processes a page on the pre-processing pool.
+     *
+     * @param page the page; its image must not be {@code null}
+     * @return a future completed with the page to upload, or with an empty optional
+     *         if the page is blank; failed with a {@link RejectedExecutionException}
+     *         once the pre-processor is closed
+     */
+    public CompletableFuture<Optional<DocumentPayload>> submit(final DocumentPayload page) {
+        if (!enabled) {
+            return CompletableFuture.completedFuture(Optional.of(page));
+        }
+        PageTask task = new PageTask(page);
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return task.result;
+    }
+
+    /**
+     * Pre-processes a page on the calling thread.
+     *
+     * @param page the page; its image must not be {@code null}
+     * @return the page to upload, carrying the shrunk image when that is smaller than
+     *         the original, or an empty optional if the page is blank
+     * @throws IllegalArgumentException if the page has no image
+     * @throws UncheckedIOException     if the image cannot be decoded or encoded
+     */
+    public Optional<DocumentPayload> preprocess(final DocumentPayload page) {
+        ByteBuffer image = OcrEngine.image(page);
+        if (!enabled) {
+            return Optional.of(page);
+        }
+        long start = System.nanoTime();
+        Workspace workspace = workspaces.poll();
+        if (workspace == null) {
+            workspace = new Workspace(format);
+        }
+        try {
+            int size = image.remaining();
+            bytesIn.add(size);
+            BufferedImage source = workspace.decode(image);
+            if (source == null) {
+                return unchanged(page, size);
+            }
+            BufferedImage gray = grayscale(source, scale(source, workspace.dpi));
+            if (inkRatio(gray) < blankInkRatio) {
+                blank.increment();
+                return Optional.empty();
+            }
+            int encoded = workspace.encode(gray, quality);
+            for (double q = quality - QUALITY_STEP; encoded > maxBytes && q >= MIN_QUALITY; q -= QUALITY_STEP) {
+                encoded = workspace.encode(gray, q);
+            }
+            if (encoded > maxBytes) {
+                overBudget.increment();
+                log.debug("Page {} of document {} is {} bytes after pre-processing, over the {} byte budget",
+                        page.getPageNumber(), page.getDocumentId(), encoded, maxBytes);
+            }
+            if (encoded >= size) {
+                return unchanged(page, size);
+            }
+            processed.increment();
+            bytesOut.add(encoded);
+            return Optional.of(page.toBuilder()
+                    .contentType(contentType)
+                    .image(ByteBuffer.wrap(workspace.output.toByteArray()))
+                    .build());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to pre-process page " + page.getPageNumber()
+                    + " of document " + page.getDocumentId(), e);
+        } finally {
+            if (workspace.isReusable(maxBytes)) {
+                workspaces.offer(workspace);
+            } else {
+                workspace.dispose();
+            }
+            latency.recordSince(start);
+        }
+    }
+
+    /**
+     * Closes the pre-processor, waiting up to 30 seconds for the queued pages.
+     */
+    @Override
+    public void close() {
+        close(Duration.ofSeconds(30));
+    }
+
+    /**
+     * Stops the pre-processing threads after the queued pages are done. Pages still
+     * queued after the timeout, and pages submitted afterwards, fail with a
+     * {@link RejectedExecutionException}.
+     *
+     * @param timeout how long to wait for the queued pages
+     */
+    public void close(final Duration timeout) {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(timeout.toNanos(), TimeUnit.NANOSECONDS)) {
+                abandonQueued();
+            }
+        } catch (InterruptedException e) {
+            abandonQueued();
+            Thread.currentThread().interrupt();
+        }
+        Workspace workspace;
+        while ((workspace = workspaces.poll()) != null) {
+            workspace.dispose();
+        }
+    }
+
+    private void abandonQueued() {
+        for (Runnable queued : executor.shutdownNow()) {
+            if (queued instanceof PageTask task) {
+                task.result.completeExceptionally(new RejectedExecutionException("ImagePreprocessor is closed"));
+            }
+        }
+    }
+
+    private Optional<DocumentPayload> unchanged(final DocumentPayload page, final int size) {
+        unchanged.increment();
+        bytesOut.add(size);
+        return Optional.of(page);
+    }
+
+    /**
+     * Returns the factor that brings an image down to the target resolution.
+     *
+     * @param image the decoded image
+     * @param dpi   its resolution from the metadata, or zero if unknown
+     * @return a factor in {@code (0, 1]}
+     */
+    private double scale(final BufferedImage image, final double dpi) {
+        double sourceDpi = dpi > 0
+                ? dpi
+                : Math.max(image.getWidth(), image.getHeight()) / ASSUMED_PAGE_INCHES;
+        return Math.min(1.0, targetDpi / sourceDpi);
+    }
+
+    /**
+     * Scales an image and converts it to 8-bit grayscale. Large reductions are done
+     * in halving steps so that bilinear filtering still averages every source pixel.
+     *
+     * @param source the decoded image
+     * @param scale  the factor to scale by, at most 1
+     * @return a new grayscale image
+     */
+    static BufferedImage grayscale(final BufferedImage source, final double scale) {
+        int targetWidth = Math.max(1, (int) Math.round(source.getWidth() * scale));
+        int targetHeight = Math.max(1, (int) Math.round(source.getHeight() * scale));
+        BufferedImage current = source;
+        do {
+            int width = Math.max(targetWidth, current.getWidth() / 2);
+            int height = Math.max(targetHeight, current.getHeight() / 2);
+            BufferedImage next = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+            Graphics2D g = next.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.drawImage(current, 0, 0, width, height, null);
+            } finally {
+                g.dispose();
+            }
+            current = next;
+        } while (current.getWidth() != targetWidth || current.getHeight() != targetHeight);
+        return current;
+    }
+
+    /**
+     * Returns the fraction of pixels of a grayscale image darker than {@value #INK_THRESHOLD}.
+     *
+     * @param gray an image of type {@link BufferedImage#TYPE_BYTE_GRAY}
+     * @return the ink ratio in {@code [0, 1]}
+     */
+    static double inkRatio(final BufferedImage gray) {
+        byte[] pixels = ((DataBufferByte) gray.getRaster().getDataBuffer()).getData();
+        int ink = 0;
+        for (byte pixel : pixels) {
+            if ((pixel & 0xFF) < INK_THRESHOLD) {
+                ink++;
+            }
+        }
+        return pixels.length == 0 ? 0.0 : (double) ink / pixels.length;
+    }
+
+    /**
+     * Buffers and the image writer used for one page at a time.
+     */
+    /**
+     * A page waiting for or being pre-processed, with the future its result goes to.
+     */
+    private final class PageTask implements Runnable {
+        private final DocumentPayload page;
+        private final CompletableFuture<Optional<DocumentPayload>> result = new CompletableFuture<>();
+
+        PageTask(final DocumentPayload page) {
+            this.page = page;
+        }
+
+        @Override
+        public void run() {
+            try {
+                result.complete(preprocess(page));
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            }
+        }
+    }
+
+    private static final class Workspace {
+
+        /**
+         * Largest input copy kept for reuse; bigger scans get a fresh workspace.
+         */
+        private static final int MAX_RETAINED_INPUT = 32 * 1024 * 1024;
+
+        private final ImageWriter writer;
+        private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        private byte[] input = new byte[0];
+
+        /**
+         * Resolution of the image last decoded, or zero if its metadata has none.
+         */
+        private double dpi;
+
+        Workspace(final String format) {
+            this.writer = ImageIO.getImageWritersByFormatName(format).next();
+        }
+
+        /**
+         * Decodes an image.
+         *
+         * @param image the encoded image
+         * @return the decoded image, or {@code null} if no ImageIO reader supports it
+         * @throws IOException if the image is corrupt
+         */
+        BufferedImage decode(final ByteBuffer image) throws IOException {
+            int size = image.remaining();
+            if (input.length < size) {
+                input = new byte[size];
+            }
+            image.duplicate().get(input, 0, size);
+            try (ImageInputStream stream = new MemoryCacheImageInputStream(new ByteArrayInputStream(input, 0, size))) {
+                Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+                if (!readers.hasNext()) {
+                    return null;
+                }
+                ImageReader reader = readers.next();
+                try {
+                    reader.setInput(stream, true, false);
+                    BufferedImage decoded = reader.read(0);
+                    dpi = dpi(reader.getImageMetadata(0));
+                    return decoded;
+                } finally {
+                    reader.dispose();
+                }
+            }
+        }
+
+        /**
+         * Encodes an image into {@link #output}, replacing its previous content.
+         *
+         * @param image   the image
+         * @param quality the compression quality
+         * @return the encoded size in bytes
+         * @throws IOException if encoding fails
+         */
+        int encode(final BufferedImage image, final double quality) throws IOException {
+            output.reset();
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (param.canWriteCompressed()) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                if (param.getCompressionType() == null && param.getCompressionTypes() != null) {
+                    param.setCompressionType(param.getCompressionTypes()[0]);
+                }
+                param.setCompressionQuality((float) quality);
+            }
+            try (MemoryCacheImageOutputStream stream = new MemoryCacheImageOutputStream(output)) {
+                writer.setOutput(stream);
+                writer.write(null, new IIOImage(image, null, null), param);
+            } finally {
+                writer.setOutput(null);
+            }
+            return output.size();
+        }
+
+        /**
+         * Tells whether the buffers are small enough to keep for the next page.
+         *
+         * @param maxBytes the size budget of encoded images
+         * @return {@code true} if neither buffer has grown far beyond typical pages
+         */
+        boolean isReusable(final int maxBytes) {
+            return input.length <= MAX_RETAINED_INPUT && output.size() <= 2L * maxBytes;
+        }
+
+        void dispose() {
+            writer.dispose();
+        }
+
+        /**
+         * Reads the horizontal resolution from the standard metadata format, which
+         * gives it as millimetres per pixel.
+         *
+         * @param metadata the image metadata, possibly {@code null}
+         * @return the resolution in dots per inch, or zero if unknown
+         */
+        private static double dpi(final IIOMetadata metadata) {
+            if (metadata == null || !metadata.isStandardMetadataFormatSupported()) {
+                return 0;
+            }
+            Node root = metadata.getAsTree(IIOMetadataFormatImpl.standardMetadataFormatName);
+            for (Node dimension = root.getFirstChild(); dimension != null; dimension = dimension.getNextSibling()) {
+                if (!"Dimension".equals(dimension.getNodeName())) {
+                    continue;
+                }
+                for (Node child = dimension.getFirstChild(); child != null; child = child.getNextSibling()) {
+                    NamedNodeMap attributes = child.getAttributes();
+                    if ("HorizontalPixelSize".equals(child.getNodeName()) && attributes.getNamedItem("value") != null) {
+                        try {
+                            double millimetres = Double.parseDouble(attributes.getNamedItem("value").getNodeValue());
+                            return millimetres > 0 ? 25.4 / millimetres : 0;
+                        } catch (NumberFormatException e) {
+                            return 0;
+                        }
+                    }
+                }
+            }
+            return 0;
+        }
+    }
+}
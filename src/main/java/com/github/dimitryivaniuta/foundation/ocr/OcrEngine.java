@@ -0,0 +1,86 @@
+package com.github.dimitryivaniuta.foundation.ocr;
+
+import com.github.dimitryivaniuta.foundation.streams.DocumentPayload;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
+
+/**
+ * An OCR backend, such as Google Cloud Vision or AWS Textract, that recognises the
+ * text of one page image at a time.
+ * <p>
+ * Calls are asynchronous: {@link #recognize} returns at once and the future
+ * completes when the engine answers. Engines that can send several pages in one
+ * request batch the pages submitted through {@link #recognizeAll}; the others send
+ * them concurrently, within their own concurrency limit.
+ * </p>
+ * <p>
+ * A page the engine cannot read completes its future exceptionally, so callers can
+ * retry it elsewhere.
+ * </p>
+ */
+public interface OcrEngine {
+
+    /**
+     * Returns the short name of the engine, used in results, logs and metrics.
+     *
+     * @return the engine name, e.g. {@code vision}
+     */
+    String getName();
+
+    /**
+     * Recognises the text of one page.
+     *
+     * @param page the page; its image must not be {@code null}
+     * @return a future completed with the recognised text
+     */
+    CompletableFuture<OcrResult> recognize(DocumentPayload page);
+
+    /**
+     * Recognises several pages, preserving their order in the returned list.
+     *
+     * @param pages the pages; their images must not be {@code null}
+     * @return one future per page, in the same order as {@code pages}
+     */
+    default List<CompletableFuture<OcrResult>> recognizeAll(final Collection<DocumentPayload> pages) {
+        List<CompletableFuture<OcrResult>> results = new ArrayList<>(pages.size());
+        for (DocumentPayload page : pages) {
+            results.add(recognize(page));
+        }
+        return results;
+    }
+
+    /**
+     * Returns a recogniser for {@code AsyncVisionProcessor} that stores the engine's
+     * {@linkplain OcrResult#getRaw() raw response} as the payload's OCR result.
+     *
+     * @param engine the engine to recognise pages with
+     * @return the recogniser
+     */
+    static Function<DocumentPayload, CompletionStage<DocumentPayload>> recognizer(final OcrEngine engine) {
+        return page -> engine.recognize(page).thenApply(result -> page.toBuilder()
+                .ocrResult(result.getRaw())
+                .build());
+    }
+
+    /**
+     * Returns the image of a page to send to an engine.
+     *
+     * @param page the page
+     * @return a read-only view of the image bytes
+     * @throws IllegalArgumentException if the page has no image
+     */
+    static ByteBuffer image(final DocumentPayload page) {
+        ByteBuffer image = page.getImage();
+        if (image == null) {
+            throw new IllegalArgumentException("Page " + page.getPageNumber() + " of document "
+                    + page.getDocumentId() + " has no image");
+        }
+        return image;
+    }
+}
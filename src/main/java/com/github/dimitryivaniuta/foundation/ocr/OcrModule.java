@@ -0,0 +1,98 @@
+package com.github.dimitryivaniuta.foundation.ocr;
+
+import com.github.dimitryivaniuta.foundation.config.Config;
+import com.github.dimitryivaniuta.foundation.lifecycle.ShutdownManager;
+import com.github.dimitryivaniuta.foundation.lifecycle.ShutdownStage;
+import com.github.dimitryivaniuta.foundation.metrics.MetricsRegistry;
+import dagger.Module;
+import dagger.Provides;
+import dagger.multibindings.Multibinds;
+import javax.inject.Singleton;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Dagger module collecting the available {@link OcrEngine}s.
+ * <p>
+ * Client modules contribute their engines to a {@code Set<OcrEngine>} with
+ * {@code @IntoSet}: {@code GrpcClientModule} contributes Vision, and
+ * {@code TextractClientModule} contributes Textract when it is enabled. This module
+ * declares the set, so a component without any client module gets an empty one, and
+ * indexes the engines by name for callers that pick an engine per page.
+ * </p>
+ * <p>
+ * It also provides the {@link ImagePreprocessor} engines shrink page images with
+ * before uploading them.
+ * </p>
+ */
+@Module(includes = OcrModule.Declarations.class)
+public class OcrModule {
+
+    /**
+     * Provides the contributed engines keyed by {@link OcrEngine#getName()}.
+     *
+     * @param engines the contributed engines
+     * @return an immutable map of engine name to engine
+     * @throws IllegalStateException if two engines share a name
+     */
+    @Provides
+    @Singleton
+    public Map<String, OcrEngine> provideOcrEnginesByName(final Set<OcrEngine> engines) {
+        return enginesByName(engines);
+    }
+
+    /**
+     * Provides the singleton {@link ImagePreprocessor}, drained in the
+     * {@link ShutdownStage#DRAIN} stage.
+     *
+     * @param config   the application configuration containing the image settings
+     * @param registry the registry pre-processing metrics are recorded in
+     * @param shutdown the manager the pre-processor is drained by
+     * @return a singleton pre-processor
+     * @throws IllegalStateException if no ImageIO writer supports {@link Config#getImageOutputFormat()}
+     */
+    @Provides
+    @Singleton
+    public ImagePreprocessor provideImagePreprocessor(final Config config, final MetricsRegistry registry,
+                                                      final ShutdownManager shutdown) {
+        ImagePreprocessor preprocessor = new ImagePreprocessor(config, registry);
+        shutdown.register("image-preprocessor", ShutdownStage.DRAIN, budget -> preprocessor.close(budget));
+        return preprocessor;
+    }
+
+    /**
+     * Indexes engines by name.
+     *
+     * @param engines the engines
+     * @return an immutable map of engine name to engine
+     * @throws IllegalStateException if two engines share a name
+     */
+    static Map<String, OcrEngine> enginesByName(final Set<OcrEngine> engines) {
+        Map<String, OcrEngine> byName = new TreeMap<>();
+        for (OcrEngine engine : engines) {
+            if (byName.putIfAbsent(engine.getName(), engine) != null) {
+                throw new IllegalStateException("Failed to register OCR engine '" + engine.getName()
+                        + "': another engine has the same name");
+            }
+        }
+        return Collections.unmodifiableMap(byName);
+    }
+
+    /**
+     * Multibinding declarations of this module.
+     */
+    @Module
+    public interface Declarations {
+
+        /**
+         * Declares the possibly empty set of OCR engines.
+         *
+         * @return the engines
+         */
+        @Multibinds
+        Set<OcrEngine> ocrEngines();
+    }
+}
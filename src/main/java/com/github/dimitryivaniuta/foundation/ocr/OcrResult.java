@@ -0,0 +1,65 @@
+package com.github.dimitryivaniuta.foundation.ocr;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Builder;
+import lombok.Value;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Text recognised on one page by an {@link OcrEngine}.
+ */
+@Value
+@Builder
+public class OcrResult {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * Name of the engine that recognised the page, see {@link OcrEngine#getName()}.
+     */
+    String engine;
+
+    /**
+     * Recognised text, lines separated by {@code \n}; empty if the page holds no text.
+     */
+    String text;
+
+    /**
+     * The engine's own response: the serialized {@code AnnotateImageResponse} for
+     * Vision, UTF-8 JSON for the others.
+     */
+    ByteBuffer raw;
+
+    /**
+     * Builds a result from recognised lines, with {@code {"engine": ..., "lines": [...]}}
+     * as the raw response.
+     *
+     * @param engine the engine name
+     * @param lines  the recognised lines in reading order
+     * @return the result
+     */
+    public static OcrResult ofLines(final String engine, final List<String> lines) {
+        try {
+            byte[] raw = MAPPER.writeValueAsBytes(new Lines(engine, lines));
+            return OcrResult.builder()
+                    .engine(engine)
+                    .text(String.join("\n", lines))
+                    .raw(ByteBuffer.wrap(raw).asReadOnlyBuffer())
+                    .build();
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize " + engine + " OCR result", e);
+        }
+    }
+
+    /**
+     * JSON form of a result built from lines.
+     *
+     * @param engine the engine name
+     * @param lines  the recognised lines
+     */
+    private record Lines(String engine, List<String> lines) {
+    }
+}
@@ -0,0 +1,75 @@
+package com.github.dimitryivaniuta.foundation.ocr;
+
+import com.github.dimitryivaniuta.foundation.streams.DocumentPayload;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Local {@link OcrEngine} for tests and offline development that answers every page
+ * after a fixed latency, without calling any cloud service.
+ * <p>
+ * By default a page is recognised as the single line
+ * {@code "page <n> of document <id>"}; supply a function to return other lines, or
+ * to throw and so simulate a failing engine.
+ * </p>
+ */
+public class StubOcrEngine implements OcrEngine {
+
+    private final String name;
+    private final Executor executor;
+    private final Function<DocumentPayload, List<String>> lines;
+    private final LongAdder calls = new LongAdder();
+
+    /**
+     * Creates a stub that answers at once with the default line.
+     *
+     * @param name the engine name
+     */
+    public StubOcrEngine(final String name) {
+        this(name, Duration.ZERO, page -> List.of(
+                "page " + page.getPageNumber() + " of document " + page.getDocumentId()));
+    }
+
+    /**
+     * Creates a stub.
+     *
+     * @param name    the engine name
+     * @param latency time each call takes
+     * @param lines   the lines recognised on a page; an exception fails the call
+     */
+    public StubOcrEngine(final String name,
+                         final Duration latency,
+                         final Function<DocumentPayload, List<String>> lines) {
+        this.name = name;
+        this.executor = latency.isZero()
+                ? Runnable::run
+                : CompletableFuture.delayedExecutor(latency.toNanos(), TimeUnit.NANOSECONDS);
+        this.lines = lines;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public CompletableFuture<OcrResult> recognize(final DocumentPayload page) {
+        calls.increment();
+        return CompletableFuture.supplyAsync(() -> OcrResult.ofLines(name, lines.apply(page)), executor);
+    }
+
+    /**
+     * Returns the number of pages submitted so far.
+     *
+     * @return the call count
+     */
+    public long getCallCount() {
+        return calls.sum();
+    }
+}
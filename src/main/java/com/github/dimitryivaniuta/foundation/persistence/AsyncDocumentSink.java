@@ -0,0 +1,34 @@
+package com.github.dimitryivaniuta.foundation.persistence;
+
+import java.util.Collection;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Non-blocking variant of {@link DocumentSink}.
+ * <p>
+ * Writes return immediately with a {@link CompletionStage} that completes once
+ * the document has been persisted, or completes exceptionally if persistence
+ * fails. This lets a pipeline overlap OCR of the next page with persistence of
+ * the previous one instead of waiting on disk.
+ * </p>
+ *
+ * @see CoalescingAsyncDocumentSink
+ */
+public interface AsyncDocumentSink<T> {
+
+    /**
+     * Schedules the given document for persistence.
+     *
+     * @param document the OCR-processed document to persist
+     * @return a stage completed when the document is persisted
+     */
+    CompletionStage<Void> writeAsync(T document);
+
+    /**
+     * Schedules several documents for persistence as one unit, in iteration order.
+     *
+     * @param documents the OCR-processed documents to persist
+     * @return a stage completed when all documents are persisted
+     */
+    CompletionStage<Void> writeAll(Collection<? extends T> documents);
+}
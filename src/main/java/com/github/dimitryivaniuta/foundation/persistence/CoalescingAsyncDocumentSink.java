@@ -0,0 +1,184 @@
+package com.github.dimitryivaniuta.foundation.persistence;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Adapts any blocking {@link DocumentSink} into an {@link AsyncDocumentSink}.
+ * <p>
+ * Callers enqueue writes and return immediately. A single drain task, running on
+ * a virtual thread, takes every write queued since its last pass and hands them
+ * to {@link DocumentSink#writeAll(Collection)} in one call, so a delegate such as
+ * {@link DiskDocumentSink} pays one fsync per group instead of one per document.
+ * Only one drain task runs at a time, so documents reach the delegate in the
+ * order they were submitted.
+ * </p>
+ *
+ * @param <T> type of document persisted by this sink
+ */
+public class CoalescingAsyncDocumentSink<T> implements AsyncDocumentSink<T>, AutoCloseable {
+
+    /**
+     * Default upper bound on the number of documents handed to the delegate in one call.
+     */
+    public static final int DEFAULT_MAX_BATCH = 256;
+
+    private final DocumentSink<T> delegate;
+    private final int maxBatch;
+    private final ExecutorService executor;
+    private final ConcurrentLinkedQueue<PendingWrite<T>> queue = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Set while a drain task is scheduled or running.
+     */
+    private final AtomicBoolean draining = new AtomicBoolean();
+
+    private volatile boolean closed;
+
+    /**
+     * Wraps the delegate with the default maximum batch size.
+     *
+     * @param delegate the blocking sink that performs the actual writes
+     */
+    public CoalescingAsyncDocumentSink(final DocumentSink<T> delegate) {
+        this(delegate, DEFAULT_MAX_BATCH);
+    }
+
+    /**
+     * Wraps the delegate.
+     *
+     * @param delegate the blocking sink that performs the actual writes
+     * @param maxBatch upper bound on the number of documents per delegate call;
+     *                 a single {@link #writeAll(Collection)} is never split
+     */
+    public CoalescingAsyncDocumentSink(final DocumentSink<T> delegate, final int maxBatch) {
+        this.delegate = delegate;
+        this.maxBatch = Math.max(1, maxBatch);
+        this.executor = Executors.newThreadPerTaskExecutor(
+                Thread.ofVirtual().name("document-sink-", 0).factory());
+    }
+
+    /**
+     * Queues the document; the returned stage completes after the delegate has written it.
+     *
+     * @param document the OCR-processed document to persist
+     * @return a stage completed when the document is persisted
+     */
+    @Override
+    public CompletionStage<Void> writeAsync(final T document) {
+        return enqueue(List.of(document));
+    }
+
+    /**
+     * Queues the documents as one unit; they are always handed to the delegate
+     * in the same {@link DocumentSink#writeAll(Collection)} call.
+     *
+     * @param documents the OCR-processed documents to persist
+     * @return a stage completed when all documents are persisted
+     */
+    @Override
+    public CompletionStage<Void> writeAll(final Collection<? extends T> documents) {
+        if (documents.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return enqueue(List.copyOf(documents));
+    }
+
+    /**
+     * Closes the sink, waiting up to a minute for queued writes.
+     */
+    @Override
+    public void close() {
+        close(Duration.ofMinutes(1));
+    }
+
+    /**
+     * Stops accepting writes and waits for queued writes to reach the delegate,
+     * abandoning those still queued after the timeout. The delegate itself is not closed.
+     *
+     * @param timeout how long to wait for queued writes
+     */
+    public void close(final Duration timeout) {
+        closed = true;
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(timeout.toNanos(), TimeUnit.NANOSECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private CompletionStage<Void> enqueue(final List<T> documents) {
+        if (closed) {
+            return CompletableFuture.failedFuture(new IllegalStateException("AsyncDocumentSink is closed"));
+        }
+        PendingWrite<T> write = new PendingWrite<>(documents, new CompletableFuture<>());
+        queue.add(write);
+        if (draining.compareAndSet(false, true)) {
+            try {
+                executor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                // Closed concurrently; fail whatever can no longer be drained
+                draining.set(false);
+                PendingWrite<T> orphan;
+                while ((orphan = queue.poll()) != null) {
+                    orphan.result().completeExceptionally(e);
+                }
+            }
+        }
+        return write.result();
+    }
+
+    /**
+     * Writes queued documents in groups until the queue is empty.
+     */
+    private void drain() {
+        List<PendingWrite<T>> group = new ArrayList<>();
+        List<T> documents = new ArrayList<>();
+        while (true) {
+            PendingWrite<T> next;
+            while ((next = queue.peek()) != null
+                    && (documents.isEmpty() || documents.size() + next.documents().size() <= maxBatch)) {
+                queue.poll();
+                group.add(next);
+                documents.addAll(next.documents());
+            }
+            if (group.isEmpty()) {
+                draining.set(false);
+                // A write may have been queued after the last peek but before the flag was cleared
+                if (queue.isEmpty() || !draining.compareAndSet(false, true)) {
+                    return;
+                }
+                continue;
+            }
+            try {
+                delegate.writeAll(documents);
+                group.forEach(write -> write.result().complete(null));
+            } catch (IOException | RuntimeException e) {
+                group.forEach(write -> write.result().completeExceptionally(e));
+            }
+            group.clear();
+            documents.clear();
+        }
+    }
+
+    /**
+     * Documents submitted together and the stage handed back to their caller.
+     */
+    private record PendingWrite<T>(List<T> documents, CompletableFuture<Void> result) {
+    }
+}
@@ -1,6 +1,7 @@
 package com.github.dimitryivaniuta.foundation.persistence;
 
 import java.io.IOException;
+import java.util.Collection;
 
 /**
  * Defines the contract for persisting OCR-processed documents to an external sink.
@@ -22,4 +23,22 @@ public interface DocumentSink<T> {
      * @throws IOException if an I/O error occurs during persistence
      */
     void write(T document) throws IOException;
+
+    /**
+     * Persists several documents, in iteration order.
+     * <p>
+     * The default implementation calls {@link #write(Object)} for each document.
+     * Implementations that can amortize per-write costs (e.g., a single flush or
+     * fsync for the whole group) should override it.
+     * </p>
+     *
+     * @param documents the OCR-processed documents to persist
+     * @throws IOException if an I/O error occurs during persistence; documents
+     *                     before the failing one may already have been persisted
+     */
+    default void writeAll(Collection<? extends T> documents) throws IOException {
+        for (T document : documents) {
+            write(document);
+        }
+    }
 }
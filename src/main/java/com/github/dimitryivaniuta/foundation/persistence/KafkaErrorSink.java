@@ -0,0 +1,627 @@
+package com.github.dimitryivaniuta.foundation.persistence;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.dimitryivaniuta.foundation.config.Config;
+import com.github.dimitryivaniuta.foundation.config.KafkaClientProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * {@link ErrorSink} that publishes JSON-serialized error envelopes to a Kafka topic
+ * without blocking the caller on the network.
+ * <p>
+ * {@link #publish(Object)} places the envelope on a bounded in-memory ring buffer
+ * and returns. A dedicated drain thread takes envelopes off the buffer in bulk and
+ * hands them to a producer tuned for batching (linger, LZ4 compression, idempotence).
+ * What happens when the buffer is full is governed by an {@link OverflowPolicy}.
+ * </p>
+ * <p>
+ * Once {@link #close(Duration)} has begun, {@code publish} fails with an
+ * {@link IllegalStateException}, including a call that was waiting for space or whose
+ * envelope landed after the drain thread stopped, so no envelope is silently left
+ * behind in the buffer. The spill file is capped; envelopes that would grow it past
+ * the cap are counted as dropped.
+ * </p>
+ *
+ * @param <E> type of error envelope published by this sink
+ */
+@Slf4j
+public class KafkaErrorSink<E> implements ErrorSink<E>, AutoCloseable {
+
+    /**
+     * Behaviour of {@link #publish(Object)} when the in-memory buffer is full.
+     */
+    public enum OverflowPolicy {
+
+        /**
+         * Wait for space in the buffer. Keeps every envelope but can stall callers.
+         */
+        BLOCK,
+
+        /**
+         * Evict the oldest buffered envelope to make room for the new one.
+         */
+        DROP_OLDEST,
+
+        /**
+         * Append the envelope to a spill file on disk; spilled envelopes are
+         * replayed once the buffer has drained.
+         */
+        SPILL_TO_DISK
+    }
+
+    /**
+     * Size the spill file may grow to when none is given.
+     */
+    public static final long DEFAULT_SPILL_MAX_BYTES = 256L * 1024 * 1024;
+
+    /**
+     * How long {@link #close()} waits for the buffer to drain and the producer to close.
+     */
+    public static final Duration DEFAULT_CLOSE_TIMEOUT = Duration.ofSeconds(30);
+
+    private static final int MAX_DRAIN_BATCH = 512;
+    private static final long POLL_TIMEOUT_MS = 100L;
+    private static final long FLUSH_POLL_MS = 10L;
+    private static final String SPILL_FILE = "error-sink.spill";
+    private static final String REPLAY_FILE = "error-sink.replay";
+    private static final String CORRUPT_FILE = "error-sink.corrupt";
+
+    private final Producer<String, byte[]> producer;
+    private final String topic;
+    private final ObjectMapper mapper;
+    private final ArrayBlockingQueue<E> buffer;
+    private final OverflowPolicy overflowPolicy;
+
+    /**
+     * Directory holding the spill file; only used with {@link OverflowPolicy#SPILL_TO_DISK}.
+     */
+    private final Path spillDirectory;
+
+    /**
+     * Size past which envelopes are dropped instead of spilled.
+     */
+    private final long spillMaxBytes;
+
+    /**
+     * Guards appends to, and rotation of, the spill file.
+     */
+    private final ReentrantLock spillLock = new ReentrantLock();
+
+    private final Thread drainer;
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder spilled = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    /**
+     * Envelopes put on the buffer, and envelopes taken off it again by the drain
+     * thread, an eviction or a rejected publish; {@link #flush(Duration)} waits for
+     * the second to catch up with the first.
+     */
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong dequeued = new AtomicLong();
+
+    /**
+     * Cleared when closing begins; checked by publishers before and after enqueuing.
+     */
+    private volatile boolean accepting = true;
+
+    /**
+     * Cleared after {@link #accepting}; the drain thread exits once it is clear and the buffer is empty.
+     */
+    private volatile boolean running = true;
+
+    /**
+     * Set once the spill file has reached its cap, so that the overflow is logged once.
+     */
+    private volatile boolean spillFull;
+
+    /**
+     * Set when the spill file may hold envelopes; starts {@code true} so that
+     * envelopes spilled by a previous process are replayed.
+     */
+    private volatile boolean spillPending = true;
+
+    /**
+     * Set while the drain thread is sending envelopes read back from the spill file.
+     */
+    private volatile boolean replaying;
+
+    /**
+     * Constructs the sink with the default spill file cap and starts its drain thread.
+     *
+     * @param producer       producer used to send envelopes; owned and closed by this sink
+     * @param topic          destination topic
+     * @param mapper         Jackson mapper used to serialize envelopes
+     * @param capacity       number of envelopes the in-memory buffer can hold
+     * @param overflowPolicy behaviour when the buffer is full
+     * @param spillDirectory existing directory for the spill file; required for
+     *                       {@link OverflowPolicy#SPILL_TO_DISK}, may be {@code null} otherwise
+     * @throws IllegalArgumentException if spilling is requested without a spill directory
+     */
+    public KafkaErrorSink(final Producer<String, byte[]> producer,
+                          final String topic,
+                          final ObjectMapper mapper,
+                          final int capacity,
+                          final OverflowPolicy overflowPolicy,
+                          final Path spillDirectory) {
+        this(producer, topic, mapper, capacity, overflowPolicy, spillDirectory, DEFAULT_SPILL_MAX_BYTES);
+    }
+
+    /**
+     * Constructs the sink and starts its drain thread.
+     *
+     * @param producer       producer used to send envelopes; owned and closed by this sink
+     * @param topic          destination topic
+     * @param mapper         Jackson mapper used to serialize envelopes
+     * @param capacity       number of envelopes the in-memory buffer can hold
+     * @param overflowPolicy behaviour when the buffer is full
+     * @param spillDirectory existing directory for the spill file; required for
+     *                       {@link OverflowPolicy#SPILL_TO_DISK}, may be {@code null} otherwise
+     * @param spillMaxBytes  size the spill file may grow to; further overflow is dropped
+     * @throws IllegalArgumentException if spilling is requested without a spill directory
+     */
+    public KafkaErrorSink(final Producer<String, byte[]> producer,
+                          final String topic,
+                          final ObjectMapper mapper,
+                          final int capacity,
+                          final OverflowPolicy overflowPolicy,
+                          final Path spillDirectory,
+                          final long spillMaxBytes) {
+        if (overflowPolicy == OverflowPolicy.SPILL_TO_DISK && spillDirectory == null) {
+            throw new IllegalArgumentException("A spill directory is required for " + overflowPolicy);
+        }
+        this.producer = producer;
+        this.topic = topic;
+        this.mapper = mapper;
+        this.buffer = new ArrayBlockingQueue<>(capacity);
+        this.overflowPolicy = overflowPolicy;
+        this.spillDirectory = spillDirectory;
+        this.spillMaxBytes = spillMaxBytes;
+        this.drainer = new Thread(this::drainLoop, "kafka-error-sink");
+        this.drainer.setDaemon(true);
+        this.drainer.start();
+    }
+
+    /**
+     * Builds producer properties tuned for high-throughput, ordered, duplicate-free
+     * delivery of small records: idempotence with {@code acks=all}, a short linger
+     * to fill batches, and LZ4 compression.
+     *
+     * @param config the application configuration
+     * @return producer properties including connection and security settings
+     */
+    public static Properties batchingProducerProperties(final Config config) {
+        Properties props = KafkaClientProperties.common(config);
+        props.put(ProducerConfig.CLIENT_ID_CONFIG, config.getApplicationId() + "-error-sink");
+        props.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class.getName());
+        props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class.getName());
+        props.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
+        props.put(ProducerConfig.ACKS_CONFIG, "all");
+        props.put(ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION, 5);
+        props.put(ProducerConfig.LINGER_MS_CONFIG, 20);
+        props.put(ProducerConfig.BATCH_SIZE_CONFIG, 128 * 1024);
+        props.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, "lz4");
+        return props;
+    }
+
+    /**
+     * Enqueues the envelope for asynchronous delivery.
+     * <p>
+     * Returns immediately unless the buffer is full and the policy is
+     * {@link OverflowPolicy#BLOCK}, in which case it waits for space until the sink
+     * is closed.
+     * </p>
+     *
+     * @param error the error envelope containing context and error details
+     * @throws IllegalStateException if the sink is closed or closing
+     */
+    @Override
+    public void publish(final E error) {
+        if (!accepting) {
+            throw closed();
+        }
+        switch (overflowPolicy) {
+            case BLOCK -> {
+                try {
+                    while (!buffer.offer(error, POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                        if (!accepting) {
+                            throw closed();
+                        }
+                    }
+                    enqueued.incrementAndGet();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    dropped.increment();
+                    return;
+                }
+            }
+            case DROP_OLDEST -> {
+                while (!buffer.offer(error)) {
+                    if (buffer.poll() != null) {
+                        dequeued.incrementAndGet();
+                        dropped.increment();
+                    }
+                }
+                enqueued.incrementAndGet();
+            }
+            case SPILL_TO_DISK -> {
+                if (!buffer.offer(error)) {
+                    // Spilled envelopes outlive the process and are replayed on the next start
+                    spill(error);
+                    return;
+                }
+                enqueued.incrementAndGet();
+            }
+        }
+        // The drain thread may have stopped between the check above and the enqueue
+        if (!accepting && buffer.remove(error)) {
+            dequeued.incrementAndGet();
+            throw closed();
+        }
+    }
+
+    private static IllegalStateException closed() {
+        return new IllegalStateException("KafkaErrorSink is closed");
+    }
+
+    /**
+     * Returns the number of envelopes handed to the producer.
+     *
+     * @return count of sent envelopes
+     */
+    public long sentCount() {
+        return sent.sum();
+    }
+
+    /**
+     * Returns the number of envelopes discarded because of buffer overflow or interruption.
+     *
+     * @return count of dropped envelopes
+     */
+    public long droppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * Returns the number of envelopes written to the spill file.
+     *
+     * @return count of spilled envelopes
+     */
+    public long spilledCount() {
+        return spilled.sum();
+    }
+
+    /**
+     * Returns the number of envelopes whose send was rejected by the producer.
+     *
+     * @return count of failed sends
+     */
+    public long failedCount() {
+        return failed.sum();
+    }
+
+    /**
+     * Returns the number of envelopes waiting in the in-memory buffer.
+     *
+     * @return current buffer depth
+     */
+    public int queuedCount() {
+        return buffer.size();
+    }
+
+    /**
+     * Waits until the envelopes published so far, and any spilled ones, have been
+     * handed to the producer, then flushes the producer. Unlike {@link #close(Duration)}
+     * the sink keeps accepting envelopes, so callers such as closing stream threads
+     * can still publish.
+     * <p>
+     * Only the wait for the buffer is bounded by the timeout; the producer's flush
+     * is bounded by its {@code delivery.timeout.ms}, or cut short by closing the sink.
+     * </p>
+     *
+     * @param timeout how long to wait for the buffer to drain
+     * @return {@code false} if envelopes were still buffered when the timeout expired
+     */
+    public boolean flush(final Duration timeout) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        long target = enqueued.get();
+        try {
+            while (dequeued.get() < target || (spillDirectory != null && (spillPending || replaying))) {
+                if (System.nanoTime() >= deadline || !drainer.isAlive()) {
+                    log.warn("KafkaErrorSink did not drain within {} ms; {} envelopes still buffered",
+                            timeout.toMillis(), buffer.size());
+                    return false;
+                }
+                Thread.sleep(FLUSH_POLL_MS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        producer.flush();
+        return true;
+    }
+
+    /**
+     * Closes the sink within {@link #DEFAULT_CLOSE_TIMEOUT}.
+     */
+    @Override
+    public void close() {
+        close(DEFAULT_CLOSE_TIMEOUT);
+    }
+
+    /**
+     * Stops accepting envelopes, drains the buffer and any spill file, then flushes
+     * and closes the producer, all within the given time. If the drain thread has
+     * not finished by then it is interrupted, and envelopes still in the buffer are
+     * counted as dropped.
+     *
+     * @param timeout how long to wait in total
+     */
+    public void close(final Duration timeout) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        accepting = false;
+        running = false;
+        try {
+            if (!drainer.join(timeout)) {
+                drainer.interrupt();
+                int abandoned = 0;
+                while (buffer.poll() != null) {
+                    abandoned++;
+                }
+                dequeued.addAndGet(abandoned);
+                dropped.add(abandoned);
+                log.warn("KafkaErrorSink did not drain within {} ms; dropped {} buffered envelopes",
+                        timeout.toMillis(), abandoned);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        producer.close(Duration.ofNanos(Math.max(0L, deadline - System.nanoTime())));
+    }
+
+    /**
+     * Body of the drain thread: moves envelopes from the buffer to the producer in
+     * bulk, and replays spilled envelopes whenever the buffer is empty.
+     */
+    private void drainLoop() {
+        List<E> batch = new ArrayList<>(MAX_DRAIN_BATCH);
+        while (running || !buffer.isEmpty()) {
+            try {
+                E first = buffer.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    replaySpill();
+                    continue;
+                }
+                batch.add(first);
+                buffer.drainTo(batch, MAX_DRAIN_BATCH - 1);
+                for (E error : batch) {
+                    send(serialize(error));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (RuntimeException e) {
+                log.error("Failed to hand error envelopes to the producer", e);
+                failed.add(batch.size());
+            } finally {
+                dequeued.addAndGet(batch.size());
+                batch.clear();
+            }
+        }
+        replaySpill();
+        producer.flush();
+    }
+
+    private void send(final byte[] payload) {
+        if (payload == null) {
+            return;
+        }
+        producer.send(new ProducerRecord<>(topic, payload), (metadata, exception) -> {
+            if (exception != null) {
+                failed.increment();
+                log.warn("Failed to publish error envelope to '{}'", topic, exception);
+            }
+        });
+        sent.increment();
+    }
+
+    private byte[] serialize(final E error) {
+        try {
+            return mapper.writeValueAsBytes(error);
+        } catch (JsonProcessingException e) {
+            failed.increment();
+            log.error("Failed to serialize error envelope of type {}", error.getClass().getName(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Appends a length-prefixed envelope to the spill file, or drops it if that would
+     * grow the file past its cap.
+     *
+     * @param error the envelope that did not fit in the buffer
+     */
+    private void spill(final E error) {
+        byte[] payload = serialize(error);
+        if (payload == null) {
+            return;
+        }
+        ByteBuffer record = ByteBuffer.allocate(Integer.BYTES + payload.length);
+        record.putInt(payload.length).put(payload).flip();
+        spillLock.lock();
+        try (FileChannel channel = FileChannel.open(spillDirectory.resolve(SPILL_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            if (channel.size() + record.remaining() > spillMaxBytes) {
+                dropped.increment();
+                if (!spillFull) {
+                    spillFull = true;
+                    log.warn("Spill file in '{}' reached {} bytes; dropping overflowing error envelopes",
+                            spillDirectory, spillMaxBytes);
+                }
+                return;
+            }
+            while (record.hasRemaining()) {
+                channel.write(record);
+            }
+            spilled.increment();
+            spillPending = true;
+        } catch (IOException e) {
+            dropped.increment();
+            log.error("Failed to spill error envelope to '{}'", spillDirectory, e);
+        } finally {
+            spillLock.unlock();
+        }
+    }
+
+    /**
+     * Moves the spill file aside and sends its envelopes. Publishers may keep
+     * spilling into a fresh file while the replay is in progress. A replay file
+     * left behind by an interrupted replay is sent before the spill file is rotated.
+     * <p>
+     * Spill writes are not synced, so a crash can leave a torn last record. Replay
+     * stops at the first record whose length is invalid or runs past the end of the
+     * file, moves the rest of the file to {@value #CORRUPT_FILE} and deletes the replay
+     * file, so no envelope is sent twice. If reading fails part-way, the envelopes
+     * already sent are cut from the replay file before it is retried.
+     * </p>
+     */
+    private void replaySpill() {
+        if (spillDirectory == null || !spillPending) {
+            return;
+        }
+        // Set before spillPending is cleared, so a flush never sees neither
+        replaying = true;
+        try {
+            replaySpillFile();
+        } finally {
+            replaying = false;
+        }
+    }
+
+    private void replaySpillFile() {
+        Path spillFile = spillDirectory.resolve(SPILL_FILE);
+        Path replayFile = spillDirectory.resolve(REPLAY_FILE);
+        spillLock.lock();
+        try {
+            if (!Files.exists(replayFile)) {
+                spillPending = false;
+                if (!Files.exists(spillFile) || Files.size(spillFile) == 0) {
+                    return;
+                }
+                Files.move(spillFile, replayFile, StandardCopyOption.ATOMIC_MOVE);
+                spillFull = false;
+            }
+        } catch (IOException e) {
+            log.error("Failed to rotate spill file '{}'", spillFile, e);
+            return;
+        } finally {
+            spillLock.unlock();
+        }
+        long replayed = 0L;
+        try {
+            long size = Files.size(replayFile);
+            try (InputStream in = Files.newInputStream(replayFile);
+                 DataInputStream data = new DataInputStream(new BufferedInputStream(in))) {
+                while (size - replayed >= Integer.BYTES) {
+                    int length = data.readInt();
+                    if (length < 0 || length > size - replayed - Integer.BYTES) {
+                        break;
+                    }
+                    byte[] payload = new byte[length];
+                    data.readFully(payload);
+                    send(payload);
+                    replayed += Integer.BYTES + length;
+                }
+            }
+            if (replayed < size) {
+                quarantine(replayFile, replayed, size);
+            }
+            Files.delete(replayFile);
+        } catch (IOException | RuntimeException e) {
+            spillPending = true;
+            log.error("Failed to replay spilled error envelopes from '{}'", replayFile, e);
+            dropReplayed(replayFile, replayed);
+        }
+    }
+
+    /**
+     * Appends the unreadable tail of a replay file to {@value #CORRUPT_FILE} for inspection.
+     *
+     * @param replayFile the replay file
+     * @param from       offset of the first byte that is not part of a complete record
+     * @param size       size of the replay file
+     * @throws IOException if the tail cannot be copied
+     */
+    private void quarantine(final Path replayFile, final long from, final long size) throws IOException {
+        try (FileChannel source = FileChannel.open(replayFile, StandardOpenOption.READ);
+             FileChannel target = FileChannel.open(spillDirectory.resolve(CORRUPT_FILE),
+                     StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            long position = from;
+            while (position < size) {
+                position += source.transferTo(position, size - position, target);
+            }
+        }
+        dropped.increment();
+        log.warn("Spill file '{}' ends with a torn or corrupt record; moved its last {} bytes to '{}'",
+                replayFile, size - from, CORRUPT_FILE);
+    }
+
+    /**
+     * Cuts envelopes that were already sent from the front of a replay file, so that
+     * retrying the replay does not send them again.
+     *
+     * @param replayFile the replay file
+     * @param replayed   length of the prefix already sent
+     */
+    private void dropReplayed(final Path replayFile, final long replayed) {
+        if (replayed == 0L) {
+            return;
+        }
+        Path rest = spillDirectory.resolve(REPLAY_FILE + ".tmp");
+        try (FileChannel source = FileChannel.open(replayFile, StandardOpenOption.READ);
+             FileChannel target = FileChannel.open(rest, StandardOpenOption.CREATE,
+                     StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long size = source.size();
+            long position = replayed;
+            while (position < size) {
+                position += source.transferTo(position, size - position, target);
+            }
+        } catch (IOException e) {
+            log.error("Failed to drop replayed envelopes from '{}'; they will be sent again", replayFile, e);
+            return;
+        }
+        try {
+            Files.move(rest, replayFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.error("Failed to drop replayed envelopes from '{}'; they will be sent again", replayFile, e);
+        }
+    }
+}
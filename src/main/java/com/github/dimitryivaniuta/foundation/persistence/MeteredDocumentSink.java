@@ -0,0 +1,74 @@
+package com.github.dimitryivaniuta.foundation.persistence;
+
+import com.github.dimitryivaniuta.foundation.metrics.Counter;
+import com.github.dimitryivaniuta.foundation.metrics.LatencyHistogram;
+import com.github.dimitryivaniuta.foundation.metrics.MetricsRegistry;
+
+import java.io.IOException;
+import java.util.Collection;
+
+/**
+ * {@link DocumentSink} decorator that records write latency and document counts
+ * in a {@link MetricsRegistry}.
+ * <p>
+ * Exports {@code foundation_document_sink_write_seconds} per call, labelled
+ * {@code op="write"} or {@code op="write_all"}, plus
+ * {@code foundation_document_sink_documents_total} and
+ * {@code foundation_document_sink_failures_total}. Failed calls are timed too.
+ * </p>
+ *
+ * @param <T> type of document persisted by this sink
+ */
+public class MeteredDocumentSink<T> implements DocumentSink<T> {
+
+    private final DocumentSink<T> delegate;
+    private final LatencyHistogram writeLatency;
+    private final LatencyHistogram writeAllLatency;
+    private final Counter documents;
+    private final Counter failures;
+
+    /**
+     * Wraps the delegate.
+     *
+     * @param delegate the sink that performs the writes
+     * @param registry the registry the metrics are recorded in
+     */
+    public MeteredDocumentSink(final DocumentSink<T> delegate, final MetricsRegistry registry) {
+        this.delegate = delegate;
+        String help = "Time spent in DocumentSink calls.";
+        this.writeLatency = registry.histogram("foundation_document_sink_write_seconds", help, "op", "write");
+        this.writeAllLatency = registry.histogram("foundation_document_sink_write_seconds", help, "op", "write_all");
+        this.documents = registry.counter("foundation_document_sink_documents_total",
+                "Documents persisted by the DocumentSink.");
+        this.failures = registry.counter("foundation_document_sink_failures_total",
+                "DocumentSink calls that failed.");
+    }
+
+    @Override
+    public void write(final T document) throws IOException {
+        long start = System.nanoTime();
+        try {
+            delegate.write(document);
+            documents.increment();
+        } catch (IOException | RuntimeException e) {
+            failures.increment();
+            throw e;
+        } finally {
+            writeLatency.recordSince(start);
+        }
+    }
+
+    @Override
+    public void writeAll(final Collection<? extends T> documents) throws IOException {
+        long start = System.nanoTime();
+        try {
+            delegate.writeAll(documents);
+            this.documents.add(documents.size());
+        } catch (IOException | RuntimeException e) {
+            failures.increment();
+            throw e;
+        } finally {
+            writeAllLatency.recordSince(start);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.github.dimitryivaniuta.foundation.persistence;
+
+import com.github.dimitryivaniuta.foundation.metrics.Counter;
+import com.github.dimitryivaniuta.foundation.metrics.LatencyHistogram;
+import com.github.dimitryivaniuta.foundation.metrics.MetricsRegistry;
+
+/**
+ * {@link ErrorSink} decorator that records publish latency and counts in a
+ * {@link MetricsRegistry}.
+ * <p>
+ * Exports {@code foundation_error_sink_publish_seconds} and
+ * {@code foundation_error_sink_published_total}. For {@link KafkaErrorSink} the
+ * latency is the time to enqueue, which only grows when the buffer is full under
+ * {@link KafkaErrorSink.OverflowPolicy#BLOCK} or envelopes are spilled to disk.
+ * </p>
+ *
+ * @param <E> type of error envelope
+ */
+public class MeteredErrorSink<E> implements ErrorSink<E> {
+
+    private final ErrorSink<E> delegate;
+    private final LatencyHistogram publishLatency;
+    private final Counter published;
+
+    /**
+     * Wraps the delegate.
+     *
+     * @param delegate the sink that publishes the envelopes
+     * @param registry the registry the metrics are recorded in
+     */
+    public MeteredErrorSink(final ErrorSink<E> delegate, final MetricsRegistry registry) {
+        this.delegate = delegate;
+        this.publishLatency = registry.histogram("foundation_error_sink_publish_seconds",
+                "Time spent in ErrorSink.publish.");
+        this.published = registry.counter("foundation_error_sink_published_total",
+                "Envelopes handed to ErrorSink.publish.");
+    }
+
+    @Override
+    public void publish(final E error) {
+        long start = System.nanoTime();
+        try {
+            delegate.publish(error);
+            published.increment();
+        } finally {
+            publishLatency.recordSince(start);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.github.dimitryivaniuta.foundation.persistence;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.dimitryivaniuta.foundation.config.Config;
+import com.github.dimitryivaniuta.foundation.lifecycle.ShutdownManager;
+import com.github.dimitryivaniuta.foundation.lifecycle.ShutdownStage;
+import com.github.dimitryivaniuta.foundation.metrics.MetricsRegistry;
+import dagger.Module;
+import dagger.Provides;
+import javax.inject.Singleton;
+import org.apache.kafka.clients.producer.KafkaProducer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Dagger module responsible for providing persistence sinks.
+ * <p>
+ * Exposes a {@link DocumentSink} backed by {@link DiskDocumentSink}, writing
+ * under {@link Config#getDocumentSinkPath()}, and an {@link ErrorSink} backed by
+ * {@link KafkaErrorSink}, publishing to {@link Config#getErrorTopic()}. The document
+ * sink is also exposed as an {@link AsyncDocumentSink} for non-blocking callers.
+ * </p>
+ * <p>
+ * Both sinks are wrapped in {@link MeteredDocumentSink} and {@link MeteredErrorSink},
+ * recording their latency in the shared {@link MetricsRegistry}.
+ * </p>
+ * <p>
+ * All sinks are flushed in the {@link ShutdownStage#FLUSH} stage of the
+ * {@link ShutdownManager}, after in-flight OCR work has drained, within that stage's
+ * budget. The document sinks are closed there too; the error sink is only closed in
+ * {@link ShutdownStage#CLOSE_CLIENTS}, since stream threads may still report errors
+ * while Kafka Streams closes.
+ * </p>
+ *
+ * @see DocumentSink
+ * @see DiskDocumentSink
+ * @see AsyncDocumentSink
+ * @see ErrorSink
+ * @see KafkaErrorSink
+ */
+@Module
+public class PersistenceModule {
+
+    /**
+     * Provides a singleton {@link DocumentSink} that appends JSON documents to
+     * memory-mapped segment files under the configured document sink path.
+     * <p>
+     * Outstanding writes are forced and the segment files released on shutdown.
+     * Writes are timed in the metrics registry.
+     * </p>
+     *
+     * @param config   the application configuration containing the sink path
+     * @param registry the registry write latencies are recorded in
+     * @param shutdown the manager the sink is closed by
+     * @return a singleton disk-backed DocumentSink
+     * @throws IllegalStateException if the sink directory cannot be opened
+     */
+    @Provides
+    @Singleton
+    public DocumentSink<Object> provideDocumentSink(final Config config, final MetricsRegistry registry,
+                                                    final ShutdownManager shutdown) {
+        try {
+            DiskDocumentSink<Object> sink = new DiskDocumentSink<>(
+                    Path.of(config.getDocumentSinkPath()),
+                    new ObjectMapper(),
+                    config.getDocumentSinkSegmentBytes());
+            shutdown.register("document-sink", ShutdownStage.FLUSH, budget -> sink.close());
+            return new MeteredDocumentSink<>(sink, registry);
+        } catch (IOException e) {
+            throw new IllegalStateException(
+                    "Failed to open DiskDocumentSink at '" + config.getDocumentSinkPath() + "'", e);
+        }
+    }
+
+    /**
+     * Provides a singleton {@link AsyncDocumentSink} that coalesces writes onto the
+     * provided {@link DocumentSink} from a virtual thread, so callers never block on disk.
+     * <p>
+     * Queued writes are drained on shutdown, before the underlying sink is closed.
+     * </p>
+     *
+     * @param documentSink the blocking sink that performs the writes
+     * @param shutdown     the manager the adapter is drained by
+     * @return a singleton asynchronous DocumentSink adapter
+     */
+    @Provides
+    @Singleton
+    public AsyncDocumentSink<Object> provideAsyncDocumentSink(final DocumentSink<Object> documentSink,
+                                                              final ShutdownManager shutdown) {
+        CoalescingAsyncDocumentSink<Object> sink = new CoalescingAsyncDocumentSink<>(documentSink);
+        shutdown.register("async-document-sink", ShutdownStage.FLUSH, budget -> sink.close(budget));
+        return sink;
+    }
+
+    /**
+     * Provides a singleton non-blocking {@link ErrorSink} that buffers envelopes
+     * in memory and publishes them to the configured error topic with a
+     * batching, idempotent producer.
+     * <p>
+     * Envelopes that overflow the buffer under {@code SPILL_TO_DISK} are written
+     * below {@link Config#getDocumentSinkPath()}, up to
+     * {@link Config#getErrorSinkSpillMaxBytes()}. On shutdown the buffer is drained
+     * and the producer flushed with the other sinks, but the sink is only closed
+     * after Kafka Streams, whose threads may still publish while closing. Publish latency, the buffer
+     * depth and the sent, dropped, spilled and failed counts are exported through
+     * the metrics registry.
+     * </p>
+     *
+     * @param config   the application configuration containing the error topic and buffer settings
+     * @param registry the registry the sink's metrics are recorded in
+     * @param shutdown the manager the sink is closed by
+     * @return a singleton Kafka-backed ErrorSink
+     * @throws IllegalStateException if the overflow policy is unknown or the spill
+     *                               directory cannot be created
+     */
+    @Provides
+    @Singleton
+    public ErrorSink<Object> provideErrorSink(final Config config, final MetricsRegistry registry,
+                                              final ShutdownManager shutdown) {
+        KafkaErrorSink.OverflowPolicy policy;
+        try {
+            policy = KafkaErrorSink.OverflowPolicy.valueOf(config.getErrorSinkOverflowPolicy());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalStateException(
+                    "Unknown error sink overflow policy '" + config.getErrorSinkOverflowPolicy() + "'", e);
+        }
+        Path spillDirectory = Path.of(config.getDocumentSinkPath(), "error-spill");
+        try {
+            Files.createDirectories(spillDirectory);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to create error spill directory '" + spillDirectory + "'", e);
+        }
+
+        KafkaErrorSink<Object> sink = new KafkaErrorSink<>(
+                new KafkaProducer<>(KafkaErrorSink.batchingProducerProperties(config)),
+                config.getErrorTopic(),
+                new ObjectMapper(),
+                config.getErrorSinkQueueCapacity(),
+                policy,
+                spillDirectory,
+                config.getErrorSinkSpillMaxBytes());
+        shutdown.register("error-sink-flush", ShutdownStage.FLUSH, budget -> sink.flush(budget));
+        shutdown.register("error-sink", ShutdownStage.CLOSE_CLIENTS, budget -> sink.close(budget));
+
+        registry.gauge("foundation_error_sink_queued", "Envelopes waiting in the KafkaErrorSink buffer.",
+                sink::queuedCount);
+        String outcomes = "KafkaErrorSink envelopes by outcome; spilled envelopes are sent later.";
+        registry.counter("foundation_error_sink_envelopes_total", outcomes, sink::sentCount, "outcome", "sent");
+        registry.counter("foundation_error_sink_envelopes_total", outcomes, sink::droppedCount, "outcome", "dropped");
+        registry.counter("foundation_error_sink_envelopes_total", outcomes, sink::spilledCount, "outcome", "spilled");
+        registry.counter("foundation_error_sink_envelopes_total", outcomes, sink::failedCount, "outcome", "failed");
+        return new MeteredErrorSink<>(sink, registry);
+    }
+}
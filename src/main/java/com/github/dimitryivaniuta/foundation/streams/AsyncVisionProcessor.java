@@ -0,0 +1,540 @@
+package com.github.dimitryivaniuta.foundation.streams;
+
+import com.github.dimitryivaniuta.foundation.config.Config;
+import com.github.dimitryivaniuta.foundation.grpc.VisionOcrEngine;
+import com.github.dimitryivaniuta.foundation.ocr.OcrEngine;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.common.serialization.Serializer;
+import org.apache.kafka.streams.errors.StreamsException;
+import org.apache.kafka.streams.processor.Cancellable;
+import org.apache.kafka.streams.processor.PunctuationType;
+import org.apache.kafka.streams.processor.api.FixedKeyProcessor;
+import org.apache.kafka.streams.processor.api.FixedKeyProcessorContext;
+import org.apache.kafka.streams.processor.api.FixedKeyProcessorSupplier;
+import org.apache.kafka.streams.processor.api.FixedKeyRecord;
+import org.apache.kafka.streams.processor.api.InternalFixedKeyRecordFactory;
+import org.apache.kafka.streams.processor.api.Record;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.StoreBuilder;
+import org.apache.kafka.streams.state.Stores;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * {@link FixedKeyProcessor} that runs OCR on each {@link DocumentPayload} without
+ * blocking the stream thread on the Vision RPC.
+ * <p>
+ * Each record's image is handed to a recogniser (by default a
+ * {@link VisionOcrEngine}, whose batch executor lets pages of concurrent records
+ * share batch RPCs) and
+ * {@link #process} returns straight away. Results are forwarded strictly in input
+ * order: the oldest pending record is forwarded as soon as its call completes, either
+ * from {@link #process} or from a wall-clock punctuator. Records without an image are
+ * passed through unchanged, still in order.
+ * </p>
+ * <p>
+ * Up to {@code maxInFlight} calls per task are in flight at once. When the task is
+ * saturated, {@link #process} still never waits: the record is journalled and queued
+ * without a call, and queued records are submitted in order as calls complete, from
+ * {@link #process} and from the punctuator. A call that has not completed within the
+ * call timeout is handled like a failed one, so a hung call holds up the task's
+ * output for at most that long and never blocks the stream thread.
+ * </p>
+ * <p>
+ * Kafka Streams commits a record's offset once {@link #process} has returned for it,
+ * whether or not its call has completed. Pending records are therefore journalled in
+ * a logged, cached key-value store and deleted when forwarded. The journal's
+ * changelog, the forwarded results and the offsets are committed together, so under
+ * {@code exactly_once_v2} a record pending at a commit is recognised and forwarded
+ * exactly once: after a failover its journal entry is restored and resubmitted
+ * ahead of any new input. Thanks to the store cache, records that complete within a
+ * commit interval only reach the changelog as a tombstone. Replayed records keep
+ * their key, value and timestamp but not their headers.
+ * </p>
+ * <p>
+ * A failed or timed-out call fails the task with a {@link StreamsException} once its
+ * record is the oldest pending one, since Vision calls are already retried by the client.
+ * With a {@link DeadLetterPublisher}, the record is sent to its next retry tier
+ * instead and the task carries on once the broker has acknowledged it; if that send
+ * fails, the task fails with a {@link StreamsException} and the record stays in the
+ * journal to be resubmitted after the restart. Failures surface after later records were taken,
+ * so the {@link DeadLetterExceptionHandler} would blame the wrong record; the
+ * processor therefore routes its own failures.
+ * </p>
+ * <p>
+ * Replaying the journal needs a {@link FixedKeyRecord} for a key that did not arrive
+ * through {@link #process}, which the public API cannot create. Replayed records are
+ * therefore built with {@link InternalFixedKeyRecordFactory}, which ties this class to
+ * the Kafka Streams version the SDK is built against ({@code kafka.version}, 4.0); check
+ * that factory when upgrading.
+ * </p>
+ *
+ * @param <K> type of record key
+ */
+public class AsyncVisionProcessor<K> implements FixedKeyProcessor<K, DocumentPayload, DocumentPayload> {
+
+    /**
+     * Records pending per task when none is configured.
+     */
+    public static final int DEFAULT_MAX_IN_FLIGHT = 64;
+
+    /**
+     * Interval of the punctuator that forwards completed results while no records arrive.
+     */
+    public static final Duration DEFAULT_FORWARD_INTERVAL = Duration.ofMillis(10);
+
+    private final String journalName;
+    private final Function<DocumentPayload, CompletionStage<DocumentPayload>> recognizer;
+    private final int maxInFlight;
+    private final Duration callTimeout;
+    private final Duration forwardInterval;
+    private final BiConsumer<FixedKeyRecord<K, DocumentPayload>, Throwable> onFailure;
+
+    /**
+     * Records whose call has been submitted, in input order; all precede {@link #queued}.
+     */
+    private final Deque<Pending<K>> inFlight = new ArrayDeque<>();
+
+    /**
+     * Journalled records waiting for a free slot, in input order.
+     */
+    private final Deque<Pending<K>> queued = new ArrayDeque<>();
+    private FixedKeyProcessorContext<K, DocumentPayload> context;
+    private KeyValueStore<Long, JournalEntry<K>> journal;
+    private Cancellable punctuator;
+    private long nextSequence;
+
+    /**
+     * Constructs the processor.
+     *
+     * @param journalName     name of the journal store, which must be connected to this processor
+     * @param recognizer      asynchronous OCR of a payload with an image, returning the recognised payload
+     * @param maxInFlight     maximum number of calls in flight per task
+     * @param callTimeout     time after which a call that has not completed is handled as failed
+     * @param forwardInterval interval of the punctuator that forwards completed results
+     */
+    public AsyncVisionProcessor(final String journalName,
+                                final Function<DocumentPayload, CompletionStage<DocumentPayload>> recognizer,
+                                final int maxInFlight,
+                                final Duration callTimeout,
+                                final Duration forwardInterval) {
+        this(journalName, recognizer, maxInFlight, callTimeout, forwardInterval, null);
+    }
+
+    /**
+     * Constructs the processor.
+     *
+     * @param journalName     name of the journal store, which must be connected to this processor
+     * @param recognizer      asynchronous OCR of a payload with an image, returning the recognised payload
+     * @param maxInFlight     maximum number of calls in flight per task
+     * @param callTimeout     time after which a call that has not completed is handled as failed
+     * @param forwardInterval interval of the punctuator that forwards completed results
+     * @param onFailure       takes records whose call failed or timed out, in input order,
+     *                        throwing if it cannot; {@code null} to fail the task instead
+     */
+    public AsyncVisionProcessor(final String journalName,
+                                final Function<DocumentPayload, CompletionStage<DocumentPayload>> recognizer,
+                                final int maxInFlight,
+                                final Duration callTimeout,
+                                final Duration forwardInterval,
+                                final BiConsumer<FixedKeyRecord<K, DocumentPayload>, Throwable> onFailure) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight must be at least 1, but was " + maxInFlight);
+        }
+        this.journalName = journalName;
+        this.recognizer = recognizer;
+        this.maxInFlight = maxInFlight;
+        this.callTimeout = callTimeout;
+        this.forwardInterval = forwardInterval;
+        this.onFailure = onFailure;
+    }
+
+    /**
+     * Creates a supplier of processors recognising pages with Vision, configured from
+     * {@link Config#getVisionMaxInFlightPerTask()}. A call is handled as failed once it
+     * has not completed within twice {@link Config#getVisionApiTimeoutMs()}, which covers
+     * the time a batch may queue for a concurrency slot plus the call itself.
+     * <p>
+     * Pages go through the engine, so they are pre-processed before upload and a page
+     * Vision reports an error for fails its call. The engine's raw
+     * {@code AnnotateImageResponse} is stored as the payload's OCR result.
+     * </p>
+     *
+     * @param journalName name of the journal store, unique within the topology
+     * @param keySerde    Serde of the record keys, used to journal pending records
+     * @param config      the application configuration
+     * @param engine      the Vision engine recognising the pages
+     * @param <K>         type of record key
+     * @return a supplier that also registers the journal store
+     */
+    public static <K> FixedKeyProcessorSupplier<K, DocumentPayload, DocumentPayload> supplier(
+            final String journalName,
+            final Serde<K> keySerde,
+            final Config config,
+            final VisionOcrEngine engine) {
+        int maxInFlight = config.getVisionMaxInFlightPerTask() > 0
+                ? config.getVisionMaxInFlightPerTask()
+                : DEFAULT_MAX_IN_FLIGHT;
+        return supplier(journalName, keySerde, OcrEngine.recognizer(engine), maxInFlight,
+                Duration.ofMillis(2 * config.getVisionApiTimeoutMs()));
+    }
+
+    /**
+     * Creates a supplier of processors recognising pages with the given recogniser,
+     * configured like {@link #supplier(String, Serde, Config, VisionOcrEngine)}, that
+     * send records whose call failed to their next retry tier instead of failing the task.
+     *
+     * @param journalName name of the journal store, unique within the topology
+     * @param keySerde    Serde of the record keys, used to journal and dead-letter records
+     * @param config      the application configuration
+     * @param recognizer  asynchronous OCR of a payload with an image
+     * @param deadLetters the publisher failed records are handed to
+     * @param <K>         type of record key
+     * @return a supplier that also registers the journal store
+     */
+    public static <K> FixedKeyProcessorSupplier<K, DocumentPayload, DocumentPayload> supplier(
+            final String journalName,
+            final Serde<K> keySerde,
+            final Config config,
+            final Function<DocumentPayload, CompletionStage<DocumentPayload>> recognizer,
+            final DeadLetterPublisher deadLetters) {
+        int maxInFlight = config.getVisionMaxInFlightPerTask() > 0
+                ? config.getVisionMaxInFlightPerTask()
+                : DEFAULT_MAX_IN_FLIGHT;
+        return supplier(journalName, keySerde, recognizer, maxInFlight,
+                Duration.ofMillis(2 * config.getVisionApiTimeoutMs()), deadLetters);
+    }
+
+    /**
+     * Creates a supplier of processors using the given recogniser.
+     *
+     * @param journalName  name of the journal store, unique within the topology
+     * @param keySerde     Serde of the record keys, used to journal pending records
+     * @param recognizer   asynchronous OCR of a payload with an image
+     * @param maxInFlight  maximum number of calls in flight per task
+     * @param callTimeout  time after which a call that has not completed is handled as failed
+     * @param <K>          type of record key
+     * @return a supplier that also registers the journal store
+     */
+    public static <K> FixedKeyProcessorSupplier<K, DocumentPayload, DocumentPayload> supplier(
+            final String journalName,
+            final Serde<K> keySerde,
+            final Function<DocumentPayload, CompletionStage<DocumentPayload>> recognizer,
+            final int maxInFlight,
+            final Duration callTimeout) {
+        return supplier(journalName, keySerde, recognizer, maxInFlight, callTimeout, null);
+    }
+
+    /**
+     * Creates a supplier of processors using the given recogniser.
+     *
+     * @param journalName  name of the journal store, unique within the topology
+     * @param keySerde     Serde of the record keys, used to journal and dead-letter records
+     * @param recognizer   asynchronous OCR of a payload with an image
+     * @param maxInFlight  maximum number of calls in flight per task
+     * @param callTimeout  time after which a call that has not completed is handled as failed
+     * @param deadLetters  the publisher records whose call failed are handed to;
+     *                     {@code null} to fail the task instead
+     * @param <K>          type of record key
+     * @return a supplier that also registers the journal store
+     */
+    public static <K> FixedKeyProcessorSupplier<K, DocumentPayload, DocumentPayload> supplier(
+            final String journalName,
+            final Serde<K> keySerde,
+            final Function<DocumentPayload, CompletionStage<DocumentPayload>> recognizer,
+            final int maxInFlight,
+            final Duration callTimeout,
+            final DeadLetterPublisher deadLetters) {
+        BiConsumer<FixedKeyRecord<K, DocumentPayload>, Throwable> onFailure =
+                deadLetters == null ? null : deadLetterer(journalName, keySerde, deadLetters);
+        StoreBuilder<KeyValueStore<Long, JournalEntry<K>>> journal = Stores.keyValueStoreBuilder(
+                        Stores.inMemoryKeyValueStore(journalName), Serdes.Long(), journalSerde(keySerde))
+                .withCachingEnabled();
+        return new FixedKeyProcessorSupplier<>() {
+            @Override
+            public FixedKeyProcessor<K, DocumentPayload, DocumentPayload> get() {
+                return new AsyncVisionProcessor<>(journalName, recognizer, maxInFlight, callTimeout,
+                        DEFAULT_FORWARD_INTERVAL, onFailure);
+            }
+
+            @Override
+            public Set<StoreBuilder<?>> stores() {
+                return Set.of(journal);
+            }
+        };
+    }
+
+    /**
+     * Returns a failure callback that serializes a record and sends it to its next retry
+     * tier, waiting for the broker to acknowledge it. The record is dead-lettered instead
+     * unless the processor reads the input topic directly, which the publisher recognises
+     * by the journal store the processor is connected to.
+     *
+     * @param nodeName    name reported as the failing processor node; the journal store name
+     * @param keySerde    Serde of the record keys
+     * @param deadLetters the publisher to send the record through
+     * @param <K>         type of record key
+     * @return the callback
+     */
+    static <K> BiConsumer<FixedKeyRecord<K, DocumentPayload>, Throwable> deadLetterer(
+            final String nodeName,
+            final Serde<K> keySerde,
+            final DeadLetterPublisher deadLetters) {
+        Serializer<K> keySerializer = keySerde.serializer();
+        Serializer<DocumentPayload> valueSerializer = DocumentSerdes.documentPayload().serializer();
+        return (record, error) -> deadLetters.retryOrDeadLetter(FailedRecord.builder()
+                .stage(FailedRecord.Stage.PROCESSING)
+                .processorNodeId(nodeName)
+                .key(record.key() == null ? null : keySerializer.serialize(null, record.key()))
+                .value(record.value() == null ? null : valueSerializer.serialize(null, record.value()))
+                .headers(record.headers())
+                .error(error)
+                .build());
+    }
+
+    @Override
+    public void init(final FixedKeyProcessorContext<K, DocumentPayload> context) {
+        this.context = context;
+        this.journal = context.getStateStore(journalName);
+        // Records pending at the last commit go first, so input order is kept across failovers
+        try (KeyValueIterator<Long, JournalEntry<K>> entries = journal.all()) {
+            entries.forEachRemaining(entry -> {
+                queued.addLast(new Pending<>(entry.key, replayed(entry.value)));
+                nextSequence = entry.key + 1;
+            });
+        }
+        submitQueued();
+        punctuator = context.schedule(forwardInterval, PunctuationType.WALL_CLOCK_TIME, timestamp -> forwardCompleted());
+    }
+
+    @Override
+    public void process(final FixedKeyRecord<K, DocumentPayload> record) {
+        forwardCompleted();
+        long sequence = nextSequence++;
+        journal.put(sequence, new JournalEntry<>(record.key(), record.timestamp(), record.value()));
+        queued.addLast(new Pending<>(sequence, record));
+        submitQueued();
+    }
+
+    @Override
+    public void close() {
+        if (punctuator != null) {
+            punctuator.cancel();
+        }
+        // Not cancelled: the calls may be shared with other tasks; the journal resubmits them
+        inFlight.clear();
+        queued.clear();
+    }
+
+    /**
+     * Returns the number of records whose results have not been forwarded yet.
+     *
+     * @return the pending record count, in flight or queued
+     */
+    public int getPendingCount() {
+        return inFlight.size() + queued.size();
+    }
+
+    /**
+     * Rebuilds a journalled record; see the class documentation on the internal API used.
+     */
+    private static <K> FixedKeyRecord<K, DocumentPayload> replayed(final JournalEntry<K> journalled) {
+        return InternalFixedKeyRecordFactory.create(
+                new Record<>(journalled.key(), journalled.value(), journalled.timestamp()));
+    }
+
+    private CompletableFuture<DocumentPayload> recognize(final DocumentPayload payload) {
+        if (payload == null || payload.getImage() == null) {
+            return CompletableFuture.completedFuture(payload);
+        }
+        try {
+            return recognizer.apply(payload).toCompletableFuture();
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Submits queued records in order while fewer than {@code maxInFlight} calls are in flight.
+     *
+     * @return whether any record was submitted
+     */
+    private boolean submitQueued() {
+        boolean submitted = false;
+        while (inFlight.size() < maxInFlight && !queued.isEmpty()) {
+            Pending<K> next = queued.pollFirst();
+            next.submit(recognize(next.record().value()));
+            inFlight.addLast(next);
+            submitted = true;
+        }
+        return submitted;
+    }
+
+    private void forwardCompleted() {
+        do {
+            long now = System.nanoTime();
+            while (!inFlight.isEmpty()) {
+                Pending<K> oldest = inFlight.peekFirst();
+                if (!oldest.result().isDone()) {
+                    if (now - oldest.submittedAt() < callTimeout.toNanos()) {
+                        break;
+                    }
+                    inFlight.pollFirst();
+                    fail(oldest, new TimeoutException("No result within " + callTimeout.toMillis() + " ms"));
+                    continue;
+                }
+                inFlight.pollFirst();
+                DocumentPayload result;
+                try {
+                    result = oldest.result().join();
+                } catch (CompletionException | CancellationException e) {
+                    fail(oldest, unwrap(e));
+                    continue;
+                }
+                context.forward(oldest.record().withValue(result));
+                journal.delete(oldest.sequence());
+            }
+        } while (submitQueued() && inFlight.peekFirst().result().isDone());
+    }
+
+    /**
+     * Hands a record whose call failed or timed out to the failure callback and drops
+     * it from the journal, or fails the task.
+     */
+    private void fail(final Pending<K> failed, final Throwable error) {
+        if (onFailure == null) {
+            throw new StreamsException("Failed to recognise " + describe(failed), error);
+        }
+        try {
+            onFailure.accept(failed.record(), error);
+        } catch (RuntimeException failure) {
+            failure.addSuppressed(error);
+            throw new StreamsException("Failed to hand on failed " + describe(failed), failure);
+        }
+        journal.delete(failed.sequence());
+    }
+
+    private static String describe(final Pending<?> pending) {
+        DocumentPayload payload = pending.record().value();
+        return payload == null
+                ? "record " + pending.sequence()
+                : "page " + payload.getPageNumber() + " of document " + payload.getDocumentId();
+    }
+
+    private static Throwable unwrap(final Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    /**
+     * Serde of journal entries: timestamp, key length ({@code -1} for {@code null}),
+     * key, then the {@link DocumentSerdes} encoding of the value, absent for {@code null}.
+     *
+     * @param keySerde Serde of the record keys
+     * @param <K>      type of record key
+     * @return the journal entry Serde
+     */
+    static <K> Serde<JournalEntry<K>> journalSerde(final Serde<K> keySerde) {
+        Serializer<K> keySerializer = keySerde.serializer();
+        Deserializer<K> keyDeserializer = keySerde.deserializer();
+        Serializer<DocumentPayload> valueSerializer = DocumentSerdes.documentPayload().serializer();
+        Deserializer<DocumentPayload> valueDeserializer = DocumentSerdes.documentPayload().deserializer();
+
+        Serializer<JournalEntry<K>> serializer = (topic, entry) -> {
+            if (entry == null) {
+                return null;
+            }
+            byte[] key = entry.key() == null ? null : keySerializer.serialize(topic, entry.key());
+            byte[] value = entry.value() == null ? new byte[0] : valueSerializer.serialize(topic, entry.value());
+            int keyLength = key == null ? 0 : key.length;
+            ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES + Integer.BYTES + keyLength + value.length)
+                    .putLong(entry.timestamp())
+                    .putInt(key == null ? -1 : key.length);
+            if (key != null) {
+                buffer.put(key);
+            }
+            return buffer.put(value).array();
+        };
+        Deserializer<JournalEntry<K>> deserializer = (topic, data) -> {
+            if (data == null) {
+                return null;
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            long timestamp = buffer.getLong();
+            int keyLength = buffer.getInt();
+            K key = null;
+            if (keyLength >= 0) {
+                key = keyDeserializer.deserialize(topic, Arrays.copyOfRange(data, buffer.position(),
+                        buffer.position() + keyLength));
+                buffer.position(buffer.position() + keyLength);
+            }
+            DocumentPayload value = buffer.hasRemaining()
+                    ? valueDeserializer.deserialize(topic, Arrays.copyOfRange(data, buffer.position(), data.length))
+                    : null;
+            return new JournalEntry<>(key, timestamp, value);
+        };
+        return Serdes.serdeFrom(serializer, deserializer);
+    }
+
+    /**
+     * A record pending in the journal.
+     *
+     * @param key       the record key
+     * @param timestamp the record timestamp
+     * @param value     the payload as received
+     * @param <K>       type of record key
+     */
+    record JournalEntry<K>(K key, long timestamp, DocumentPayload value) {
+    }
+
+    /**
+     * A journalled record, with its call once submitted.
+     */
+    private static final class Pending<K> {
+
+        private final long sequence;
+        private final FixedKeyRecord<K, DocumentPayload> record;
+        private CompletableFuture<DocumentPayload> result;
+        private long submittedAt;
+
+        Pending(final long sequence, final FixedKeyRecord<K, DocumentPayload> record) {
+            this.sequence = sequence;
+            this.record = record;
+        }
+
+        void submit(final CompletableFuture<DocumentPayload> call) {
+            this.result = call;
+            this.submittedAt = System.nanoTime();
+        }
+
+        long sequence() {
+            return sequence;
+        }
+
+        FixedKeyRecord<K, DocumentPayload> record() {
+            return record;
+        }
+
+        CompletableFuture<DocumentPayload> result() {
+            return result;
+        }
+
+        long submittedAt() {
+            return submittedAt;
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.github.dimitryivaniuta.foundation.streams;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.errors.RetriableException;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.common.serialization.Serializer;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.errors.DeserializationExceptionHandler;
+import org.apache.kafka.streams.errors.ErrorHandlerContext;
+import org.apache.kafka.streams.errors.ProcessingExceptionHandler;
+import org.apache.kafka.streams.errors.ProductionExceptionHandler;
+import org.apache.kafka.streams.errors.StreamsException;
+import org.apache.kafka.streams.processor.api.Record;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Kafka Streams exception handler that hands failed records to the
+ * {@link DeadLetterPublisher} and lets the stream thread carry on, so that one bad
+ * record no longer kills the thread and rebalances the group.
+ * <p>
+ * One class serves all three handler settings: records that fail processing go
+ * through the retry tiers, while records that cannot be deserialized or produced are
+ * dead-lettered at once, as retrying them cannot help. A processing failure is only
+ * retried if the record can be serialized back with the default Serdes and the
+ * publisher finds that the failing processor reads the input topic directly (see
+ * {@link DeadLetterPublisher#setTopology}); otherwise the record is no longer the one
+ * that was read, and putting it back on the input topic would corrupt it. Retriable send errors are left
+ * to the producer. The handler answers {@code CONTINUE} only once the broker has
+ * acknowledged the record, since Kafka Streams then commits past it; if the publisher
+ * fails or times out, it answers {@code FAIL} rather than lose the record.
+ * </p>
+ * <p>
+ * A {@link StreamsException} raised by a processor is the SDK's signal that the task
+ * must stop, for instance when {@link AsyncVisionProcessor} could not dead-letter a
+ * record, so it is answered with {@code FAIL} and not routed to the retry tiers.
+ * </p>
+ * <p>
+ * Kafka Streams creates the handler and calls {@link #configure} with the Streams
+ * properties, which must hold the publisher under {@value DeadLetterPublisher#CONFIG}.
+ * Values that reach a processing or serialization failure as objects are serialized
+ * with the default key and value Serdes, falling back to their UTF-8 string form. That
+ * form only ever goes to the error topic.
+ * </p>
+ */
+@Slf4j
+public class DeadLetterExceptionHandler
+        implements DeserializationExceptionHandler, ProcessingExceptionHandler, ProductionExceptionHandler {
+
+    private DeadLetterPublisher publisher;
+    private Serializer<Object> keySerializer;
+    private Serializer<Object> valueSerializer;
+
+    /**
+     * Looks up the publisher and the default Serdes in the Streams properties.
+     *
+     * @param configs the Streams properties
+     * @throws IllegalStateException if no publisher is configured or a Serde cannot be created
+     */
+    @Override
+    public void configure(final Map<String, ?> configs) {
+        if (!(configs.get(DeadLetterPublisher.CONFIG) instanceof DeadLetterPublisher configured)) {
+            throw new IllegalStateException("Failed to configure DeadLetterExceptionHandler: no DeadLetterPublisher under '"
+                    + DeadLetterPublisher.CONFIG + "'");
+        }
+        this.publisher = configured;
+        this.keySerializer = serializer(configs, StreamsConfig.DEFAULT_KEY_SERDE_CLASS_CONFIG, true);
+        this.valueSerializer = serializer(configs, StreamsConfig.DEFAULT_VALUE_SERDE_CLASS_CONFIG, false);
+    }
+
+    @Override
+    public DeserializationHandlerResponse handle(final ErrorHandlerContext context,
+                                                 final ConsumerRecord<byte[], byte[]> record,
+                                                 final Exception exception) {
+        FailedRecord failed = failed(FailedRecord.Stage.DESERIALIZATION, context, exception)
+                .key(record.key())
+                .value(record.value())
+                .headers(record.headers())
+                .build();
+        return publish(failed, false)
+                ? DeserializationHandlerResponse.CONTINUE
+                : DeserializationHandlerResponse.FAIL;
+    }
+
+    @Override
+    public ProcessingHandlerResponse handle(final ErrorHandlerContext context,
+                                            final Record<?, ?> record,
+                                            final Exception exception) {
+        if (exception instanceof StreamsException) {
+            log.error("Processing failed fatally for record {}-{}@{} at node {}", context.topic(),
+                    context.partition(), context.offset(), context.processorNodeId(), exception);
+            return ProcessingHandlerResponse.FAIL;
+        }
+        byte[] key = serialize(keySerializer, context.topic(), record.key());
+        byte[] value = serialize(valueSerializer, context.topic(), record.value());
+        boolean serialized = (key != null || record.key() == null) && (value != null || record.value() == null);
+        FailedRecord failed = failed(FailedRecord.Stage.PROCESSING, context, exception)
+                .key(key != null ? key : text(record.key()))
+                .value(value != null ? value : text(record.value()))
+                .headers(record.headers())
+                .build();
+        return publish(failed, serialized)
+                ? ProcessingHandlerResponse.CONTINUE
+                : ProcessingHandlerResponse.FAIL;
+    }
+
+    @Override
+    public ProductionExceptionHandlerResponse handle(final ErrorHandlerContext context,
+                                                     final ProducerRecord<byte[], byte[]> record,
+                                                     final Exception exception) {
+        if (exception instanceof RetriableException) {
+            return ProductionExceptionHandlerResponse.RETRY;
+        }
+        FailedRecord failed = failed(FailedRecord.Stage.PRODUCTION, context, exception)
+                .key(record.key())
+                .value(record.value())
+                .headers(record.headers())
+                .build();
+        return publish(failed, false)
+                ? ProductionExceptionHandlerResponse.CONTINUE
+                : ProductionExceptionHandlerResponse.FAIL;
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public ProductionExceptionHandlerResponse handleSerializationException(final ErrorHandlerContext context,
+                                                                           final ProducerRecord record,
+                                                                           final Exception exception,
+                                                                           final SerializationExceptionOrigin origin) {
+        FailedRecord failed = failed(FailedRecord.Stage.PRODUCTION, context, exception)
+                .key(bytes(keySerializer, record.topic(), record.key()))
+                .value(bytes(valueSerializer, record.topic(), record.value()))
+                .headers(record.headers())
+                .build();
+        return publish(failed, false)
+                ? ProductionExceptionHandlerResponse.CONTINUE
+                : ProductionExceptionHandlerResponse.FAIL;
+    }
+
+    private static FailedRecord.FailedRecordBuilder failed(final FailedRecord.Stage stage,
+                                                           final ErrorHandlerContext context,
+                                                           final Exception exception) {
+        return FailedRecord.builder()
+                .stage(stage)
+                .topic(context.topic())
+                .partition(context.partition())
+                .offset(context.offset())
+                .processorNodeId(context.processorNodeId())
+                .error(exception);
+    }
+
+    /**
+     * Sends a failed record on and logs where it went.
+     *
+     * @param failed    the failed record
+     * @param retryable whether the record may go through the retry tiers
+     * @return {@code false} if the broker did not acknowledge the record
+     */
+    private boolean publish(final FailedRecord failed, final boolean retryable) {
+        try {
+            String topic = retryable ? publisher.retryOrDeadLetter(failed) : publisher.deadLetter(failed);
+            log.warn("{} failed for record {}-{}@{} at node {}; sent it to '{}'", failed.getStage(),
+                    failed.getTopic(), failed.getPartition(), failed.getOffset(), failed.getProcessorNodeId(),
+                    topic, failed.getError());
+            return true;
+        } catch (RuntimeException e) {
+            log.error("Failed to dead-letter record {}-{}@{} after {}", failed.getTopic(), failed.getPartition(),
+                    failed.getOffset(), failed.getError(), e);
+            return false;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Serializer<Object> serializer(final Map<String, ?> configs, final String name, final boolean isKey) {
+        Object setting = configs.get(name);
+        if (setting == null) {
+            return null;
+        }
+        try {
+            Class<?> type = setting instanceof Class<?> c
+                    ? c
+                    : Class.forName(setting.toString().trim(), true, DeadLetterExceptionHandler.class.getClassLoader());
+            Serde<Object> serde = (Serde<Object>) type.getDeclaredConstructor().newInstance();
+            serde.configure(configs, isKey);
+            return serde.serializer();
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            throw new IllegalStateException("Failed to create Serde '" + setting + "' for dead-lettered records", e);
+        }
+    }
+
+    private static byte[] bytes(final Serializer<Object> serializer, final String topic, final Object data) {
+        byte[] serialized = serialize(serializer, topic, data);
+        return serialized != null ? serialized : text(data);
+    }
+
+    /**
+     * Serializes data with a default Serde.
+     *
+     * @return the serialized data, or {@code null} if the data is {@code null} or not of the Serde's type
+     */
+    private static byte[] serialize(final Serializer<Object> serializer, final String topic, final Object data) {
+        if (data == null || data instanceof byte[]) {
+            return (byte[]) data;
+        }
+        if (serializer != null) {
+            try {
+                return serializer.serialize(topic, data);
+            } catch (ClassCastException | SerializationException e) {
+                // Not the default type
+            }
+        }
+        return null;
+    }
+
+    private static byte[] text(final Object data) {
+        return data == null ? null : String.valueOf(data).getBytes(StandardCharsets.UTF_8);
+    }
+}
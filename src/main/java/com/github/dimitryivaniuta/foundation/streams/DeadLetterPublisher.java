@@ -0,0 +1,438 @@
+package com.github.dimitryivaniuta.foundation.streams;
+
+import com.github.dimitryivaniuta.foundation.config.Config;
+import com.github.dimitryivaniuta.foundation.persistence.KafkaErrorSink;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.streams.TopologyDescription;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sends records that failed in Kafka Streams to tiered retry topics or to the error
+ * topic, through one batching producer shared by every stream thread.
+ * <p>
+ * A record that failed processing goes to the first retry tier whose delay it has
+ * not been through yet, as counted by its {@value #ATTEMPT_HEADER} header, and
+ * carries the time it may be redelivered in {@value #NOT_BEFORE_HEADER}. The
+ * {@link RetryTopicRelay} sends it back to its {@linkplain #ORIGIN_TOPIC_HEADER
+ * origin topic} once that time has passed. After the last tier, and straight away
+ * for records that cannot be deserialized or produced, the record is dead-lettered
+ * to {@link Config#getErrorTopic()}.
+ * </p>
+ * <p>
+ * Only a record that failed in a processor reading straight from the input topic is
+ * retried, since only then is it still the record that was read and can be processed
+ * again from the start; see {@link #setTopology}. A record that failed further down
+ * has already been transformed, and is dead-lettered at once.
+ * </p>
+ * <p>
+ * Key, value and headers are kept as they are, and {@value #ERROR_HEADER_PREFIX}
+ * headers describe the failure: stage, exception class and message, and where the
+ * record was read from. Retried and dead-lettered records are only reported sent
+ * once the broker has acknowledged them, within the acknowledgement timeout, since
+ * Kafka Streams commits past the failed record as soon as the handler returns; a
+ * rejected or timed-out send throws, so the caller can stop instead of losing the
+ * record. Redelivery by the {@link RetryTopicRelay} is asynchronous, the relay
+ * committing only after the acknowledgement.
+ * </p>
+ * <p>
+ * Kafka Streams creates its exception handlers itself, so the publisher reaches
+ * {@link DeadLetterExceptionHandler} as the value of {@value #CONFIG} in the
+ * Streams properties.
+ * </p>
+ */
+@Slf4j
+public class DeadLetterPublisher implements AutoCloseable {
+
+    /**
+     * Streams property under which the publisher is handed to the exception handlers.
+     */
+    public static final String CONFIG = "foundation.dead.letter.publisher";
+
+    /**
+     * Header counting the retry tiers a record has been sent to.
+     */
+    public static final String ATTEMPT_HEADER = "foundation.retry.attempt";
+
+    /**
+     * Header holding the epoch millisecond before which a retried record must not be redelivered.
+     */
+    public static final String NOT_BEFORE_HEADER = "foundation.retry.not-before";
+
+    /**
+     * Header holding the topic a retried record is redelivered to.
+     */
+    public static final String ORIGIN_TOPIC_HEADER = "foundation.retry.origin-topic";
+
+    /**
+     * Prefix of the headers describing the failure.
+     */
+    public static final String ERROR_HEADER_PREFIX = "foundation.error.";
+
+    /**
+     * How long a retry or dead-letter send waits for the broker when none is given.
+     */
+    public static final Duration DEFAULT_ACK_TIMEOUT = Duration.ofSeconds(30);
+
+    private final Producer<byte[], byte[]> producer;
+    private final String errorTopic;
+    private final String defaultOriginTopic;
+    private final List<Long> retryDelaysMs;
+    private final List<String> retryTopics;
+    private final Clock clock;
+    private final Duration ackTimeout;
+
+    private volatile Set<String> inputReaders = Set.of();
+
+    private final LongAdder retried = new LongAdder();
+    private final LongAdder deadLettered = new LongAdder();
+    private final LongAdder redelivered = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    /**
+     * Creates the publisher.
+     *
+     * @param producer           producer used for every send; owned and closed by this publisher
+     * @param errorTopic         topic dead-lettered records are sent to
+     * @param defaultOriginTopic topic retried records are redelivered to when their origin is unknown
+     * @param retryDelaysMs      delay of each retry tier, in order; empty to dead-letter at once
+     * @param clock              clock the redelivery times are computed from
+     */
+    public DeadLetterPublisher(final Producer<byte[], byte[]> producer,
+                               final String errorTopic,
+                               final String defaultOriginTopic,
+                               final List<Long> retryDelaysMs,
+                               final Clock clock) {
+        this(producer, errorTopic, defaultOriginTopic, retryDelaysMs, clock, DEFAULT_ACK_TIMEOUT);
+    }
+
+    /**
+     * Creates the publisher with a custom acknowledgement timeout.
+     *
+     * @param producer           producer used for every send; owned and closed by this publisher
+     * @param errorTopic         topic dead-lettered records are sent to
+     * @param defaultOriginTopic topic retried records are redelivered to when their origin is unknown
+     * @param retryDelaysMs      delay of each retry tier, in order; empty to dead-letter at once
+     * @param clock              clock the redelivery times are computed from
+     * @param ackTimeout         how long a retry or dead-letter send waits for the broker;
+     *                           keep it well below {@code max.poll.interval.ms}
+     */
+    public DeadLetterPublisher(final Producer<byte[], byte[]> producer,
+                               final String errorTopic,
+                               final String defaultOriginTopic,
+                               final List<Long> retryDelaysMs,
+                               final Clock clock,
+                               final Duration ackTimeout) {
+        this.producer = producer;
+        this.errorTopic = errorTopic;
+        this.defaultOriginTopic = defaultOriginTopic;
+        this.retryDelaysMs = List.copyOf(retryDelaysMs);
+        List<String> topics = new ArrayList<>(retryDelaysMs.size());
+        for (long delay : retryDelaysMs) {
+            topics.add(retryTopic(defaultOriginTopic, delay));
+        }
+        this.retryTopics = List.copyOf(topics);
+        this.clock = clock;
+        this.ackTimeout = ackTimeout;
+    }
+
+    /**
+     * Builds the properties of the shared producer: the error sink's batching,
+     * idempotent settings with byte array keys.
+     *
+     * @param config the application configuration
+     * @return producer properties including connection and security settings
+     */
+    public static Properties producerProperties(final Config config) {
+        Properties props = KafkaErrorSink.batchingProducerProperties(config);
+        props.put(ProducerConfig.CLIENT_ID_CONFIG, config.getApplicationId() + "-dead-letter");
+        props.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class.getName());
+        return props;
+    }
+
+    /**
+     * Returns the name of the retry topic of a tier.
+     *
+     * @param inputTopic the topic records are redelivered to
+     * @param delayMs    the delay of the tier
+     * @return e.g. {@code documents-retry-60000} for a 60-second tier of {@code documents}
+     */
+    public static String retryTopic(final String inputTopic, final long delayMs) {
+        return inputTopic + "-retry-" + delayMs;
+    }
+
+    /**
+     * Records which processors of the topology read straight from the input topic, so
+     * that records failing in them may be retried.
+     * <p>
+     * A processor qualifies if each of its predecessors is a source reading only the
+     * input topic. Failures are matched on {@link FailedRecord#getProcessorNodeId()},
+     * which may be either the processor's name or the name of one of its stores. The
+     * records it receives must be serialized by the default Serdes, as those are what
+     * the exception handler re-serializes them with. Until this is called, every
+     * failed record is dead-lettered.
+     * </p>
+     *
+     * @param topology the description of the topology being run
+     */
+    public void setTopology(final TopologyDescription topology) {
+        Set<String> readers = new HashSet<>();
+        for (TopologyDescription.Subtopology subtopology : topology.subtopologies()) {
+            for (TopologyDescription.Node node : subtopology.nodes()) {
+                if (node instanceof TopologyDescription.Processor processor && readsInput(processor)) {
+                    readers.add(processor.name());
+                    readers.addAll(processor.stores());
+                }
+            }
+        }
+        this.inputReaders = Set.copyOf(readers);
+    }
+
+    /**
+     * Sends a record to its next retry tier, or dead-letters it if it has been
+     * through every tier or did not fail in a processor reading the input topic, and
+     * waits for the broker to acknowledge it.
+     *
+     * @param record the failed record
+     * @return the topic the record was sent to
+     * @throws IllegalStateException if the send failed or was not acknowledged in time
+     */
+    public String retryOrDeadLetter(final FailedRecord record) {
+        int attempt = attempt(record.getHeaders());
+        if (attempt >= retryTopics.size() || !inputReaders.contains(record.getProcessorNodeId())) {
+            return deadLetter(record);
+        }
+        Headers headers = failureHeaders(record);
+        set(headers, ATTEMPT_HEADER, Integer.toString(attempt + 1));
+        set(headers, NOT_BEFORE_HEADER, Long.toString(clock.millis() + retryDelaysMs.get(attempt)));
+        if (headers.lastHeader(ORIGIN_TOPIC_HEADER) == null) {
+            headers.add(ORIGIN_TOPIC_HEADER, utf8(record.getTopic() != null ? record.getTopic() : defaultOriginTopic));
+        }
+        String topic = retryTopics.get(attempt);
+        await(topic, send(topic, record.getKey(), record.getValue(), headers, retried));
+        return topic;
+    }
+
+    /**
+     * Sends a record to the error topic and waits for the broker to acknowledge it.
+     *
+     * @param record the failed record
+     * @return the error topic
+     * @throws IllegalStateException if the send failed or was not acknowledged in time
+     */
+    public String deadLetter(final FailedRecord record) {
+        await(errorTopic, send(errorTopic, record.getKey(), record.getValue(), failureHeaders(record), deadLettered));
+        return errorTopic;
+    }
+
+    /**
+     * Sends a retried record back to its origin topic, without its redelivery time.
+     *
+     * @param record the record read from a retry topic
+     * @return the future of the send
+     */
+    public Future<RecordMetadata> redeliver(final ConsumerRecord<byte[], byte[]> record) {
+        Headers headers = new RecordHeaders(record.headers().toArray());
+        headers.remove(NOT_BEFORE_HEADER);
+        Header origin = headers.lastHeader(ORIGIN_TOPIC_HEADER);
+        String topic = origin != null ? new String(origin.value(), StandardCharsets.UTF_8) : defaultOriginTopic;
+        return send(topic, record.key(), record.value(), headers, redelivered);
+    }
+
+    /**
+     * Waits until every send so far has completed.
+     */
+    public void flush() {
+        producer.flush();
+    }
+
+    /**
+     * Returns the retry topics, one per tier in order.
+     *
+     * @return the retry topic names
+     */
+    public List<String> getRetryTopics() {
+        return retryTopics;
+    }
+
+    /**
+     * Returns the number of records sent to a retry topic.
+     *
+     * @return the retried count
+     */
+    public long getRetriedCount() {
+        return retried.sum();
+    }
+
+    /**
+     * Returns the number of records sent to the error topic.
+     *
+     * @return the dead-lettered count
+     */
+    public long getDeadLetteredCount() {
+        return deadLettered.sum();
+    }
+
+    /**
+     * Returns the number of retried records sent back to their origin topic.
+     *
+     * @return the redelivered count
+     */
+    public long getRedeliveredCount() {
+        return redelivered.sum();
+    }
+
+    /**
+     * Returns the number of sends the producer rejected.
+     *
+     * @return the failed count
+     */
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    /**
+     * Flushes and closes the producer within 30 seconds.
+     */
+    @Override
+    public void close() {
+        close(Duration.ofSeconds(30));
+    }
+
+    /**
+     * Flushes and closes the producer, abandoning sends still incomplete after the timeout.
+     *
+     * @param timeout how long to wait for outstanding sends
+     */
+    public void close(final Duration timeout) {
+        producer.close(timeout);
+    }
+
+    /**
+     * Returns the time a retried record may be redelivered.
+     *
+     * @param headers the record headers
+     * @return the epoch millisecond from its {@value #NOT_BEFORE_HEADER} header, or zero
+     */
+    static long notBefore(final Headers headers) {
+        Header header = headers.lastHeader(NOT_BEFORE_HEADER);
+        if (header == null) {
+            return 0L;
+        }
+        try {
+            return Long.parseLong(new String(header.value(), StandardCharsets.UTF_8));
+        } catch (NumberFormatException e) {
+            return 0L;
+        }
+    }
+
+    private boolean readsInput(final TopologyDescription.Processor processor) {
+        if (processor.predecessors().isEmpty()) {
+            return false;
+        }
+        for (TopologyDescription.Node predecessor : processor.predecessors()) {
+            if (!(predecessor instanceof TopologyDescription.Source source)
+                    || !Set.of(defaultOriginTopic).equals(source.topicSet())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int attempt(final Headers headers) {
+        Header header = headers == null ? null : headers.lastHeader(ATTEMPT_HEADER);
+        if (header == null) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(new String(header.value(), StandardCharsets.UTF_8));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static Headers failureHeaders(final FailedRecord record) {
+        Headers headers = record.getHeaders() == null
+                ? new RecordHeaders()
+                : new RecordHeaders(record.getHeaders().toArray());
+        Throwable error = record.getError();
+        set(headers, ERROR_HEADER_PREFIX + "stage", record.getStage().name());
+        set(headers, ERROR_HEADER_PREFIX + "class", error == null ? null : error.getClass().getName());
+        set(headers, ERROR_HEADER_PREFIX + "message", error == null ? null : error.getMessage());
+        set(headers, ERROR_HEADER_PREFIX + "topic", record.getTopic());
+        set(headers, ERROR_HEADER_PREFIX + "partition",
+                record.getPartition() < 0 ? null : Integer.toString(record.getPartition()));
+        set(headers, ERROR_HEADER_PREFIX + "offset",
+                record.getOffset() < 0 ? null : Long.toString(record.getOffset()));
+        set(headers, ERROR_HEADER_PREFIX + "node", record.getProcessorNodeId());
+        return headers;
+    }
+
+    private static void set(final Headers headers, final String name, final String value) {
+        headers.remove(name);
+        if (value != null) {
+            headers.add(name, utf8(value));
+        }
+    }
+
+    private static byte[] utf8(final String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Waits for a send to be acknowledged. Rejections are counted by the send's callback.
+     *
+     * @throws IllegalStateException if the send failed or was not acknowledged in time
+     */
+    private void await(final String topic, final Future<RecordMetadata> result) {
+        try {
+            result.get(ackTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Failed to send failed record to '" + topic + "'", e.getCause());
+        } catch (TimeoutException e) {
+            failed.increment();
+            throw new IllegalStateException("Failed to send failed record to '" + topic + "' within "
+                    + ackTimeout.toMillis() + " ms", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while sending failed record to '" + topic + "'", e);
+        }
+    }
+
+    private Future<RecordMetadata> send(final String topic,
+                                        final byte[] key,
+                                        final byte[] value,
+                                        final Headers headers,
+                                        final LongAdder counter) {
+        Future<RecordMetadata> result = producer.send(new ProducerRecord<>(topic, null, key, value, headers),
+                (metadata, exception) -> {
+                    if (exception != null) {
+                        failed.increment();
+                        log.error("Failed to send failed record to '{}'", topic, exception);
+                    }
+                });
+        counter.increment();
+        return result;
+    }
+}
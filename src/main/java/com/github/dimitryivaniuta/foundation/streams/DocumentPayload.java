@@ -0,0 +1,123 @@
+package com.github.dimitryivaniuta.foundation.streams;
+
+import lombok.Builder;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+
+import java.nio.ByteBuffer;
+
+/**
+ * One page of a document travelling through the OCR topology: the raw image and,
+ * once recognised, the OCR result.
+ * <p>
+ * Large fields are held as {@link ByteBuffer}s so that
+ * {@link DocumentSerdes.DocumentPayloadDeserializer} can hand out slices of the
+ * record's bytes instead of copying them. The bytes between a buffer's position
+ * and limit are the content. Getters return read-only views, so reading them does
+ * not disturb the payload.
+ * </p>
+ * <p>
+ * A deserialized payload keeps the whole serialized record reachable for as long
+ * as any of its buffers is; call {@link #compact()} before caching payloads
+ * for a long time.
+ * </p>
+ */
+@Builder(toBuilder = true)
+@EqualsAndHashCode
+@ToString
+public final class DocumentPayload {
+
+    /**
+     * Identifier of the document the page belongs to.
+     */
+    private final String documentId;
+
+    /**
+     * One-based page number within the document.
+     */
+    private final int pageNumber;
+
+    /**
+     * MIME type of {@link #image}, e.g. {@code image/jpeg}.
+     */
+    private final String contentType;
+
+    /**
+     * Raw (not base64-encoded) image bytes; {@code null} when the image was dropped after OCR.
+     */
+    @ToString.Exclude
+    private final ByteBuffer image;
+
+    /**
+     * OCR result, typically UTF-8 JSON; {@code null} before recognition.
+     */
+    @ToString.Exclude
+    private final ByteBuffer ocrResult;
+
+    /**
+     * Returns the identifier of the document the page belongs to.
+     *
+     * @return the document identifier
+     */
+    public String getDocumentId() {
+        return documentId;
+    }
+
+    /**
+     * Returns the one-based page number.
+     *
+     * @return the page number
+     */
+    public int getPageNumber() {
+        return pageNumber;
+    }
+
+    /**
+     * Returns the MIME type of the image.
+     *
+     * @return the content type, or {@code null}
+     */
+    public String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * Returns a read-only view of the image bytes.
+     *
+     * @return the image, or {@code null}
+     */
+    public ByteBuffer getImage() {
+        return image == null ? null : image.asReadOnlyBuffer();
+    }
+
+    /**
+     * Returns a read-only view of the OCR result bytes.
+     *
+     * @return the OCR result, or {@code null}
+     */
+    public ByteBuffer getOcrResult() {
+        return ocrResult == null ? null : ocrResult.asReadOnlyBuffer();
+    }
+
+    /**
+     * Returns a payload whose buffers own exactly their content, releasing any
+     * larger record buffer they were sliced from.
+     *
+     * @return a payload with compact copies of the byte fields
+     */
+    public DocumentPayload compact() {
+        return toBuilder()
+                .image(copy(image))
+                .ocrResult(copy(ocrResult))
+                .build();
+    }
+
+    private static ByteBuffer copy(final ByteBuffer source) {
+        if (source == null) {
+            return null;
+        }
+        ByteBuffer copy = ByteBuffer.allocate(source.remaining());
+        copy.put(source.duplicate()).flip();
+        return copy;
+    }
+}
@@ -0,0 +1,307 @@
+package com.github.dimitryivaniuta.foundation.streams;
+
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Factory and implementations of the Kafka {@link Serde}s for OCR document payloads.
+ * <p>
+ * {@link DocumentPayload}s are written in a compact binary framing instead of
+ * base64 strings:
+ * </p>
+ * <pre>
+ *   magic (1 byte, 0xD0) | version (1 byte)
+ *   documentId   varint length+1, UTF-8   (0 = null)
+ *   pageNumber   varint
+ *   contentType  varint length+1, UTF-8   (0 = null)
+ *   image        varint length+1, bytes   (0 = null)
+ *   ocrResult    varint length+1, bytes   (0 = null)
+ * </pre>
+ * <p>
+ * Serialization encodes the small fields into a per-thread scratch buffer that is
+ * reused across records, then allocates the output array once at its exact size
+ * and bulk-copies the image and OCR bytes into it. Deserialization reads the small
+ * fields and returns the image and OCR result as read-only slices of the record's
+ * bytes, without copying them.
+ * </p>
+ * <p>
+ * Use {@link #documentPayload()} in topology code, or
+ * {@link DocumentPayloadSerde} as {@code default.value.serde}.
+ * </p>
+ */
+public final class DocumentSerdes {
+
+    /**
+     * First byte of every serialized payload.
+     */
+    static final byte MAGIC = (byte) 0xD0;
+
+    /**
+     * Current framing version.
+     */
+    static final byte VERSION = 1;
+
+    /**
+     * Scratch buffers larger than this are not kept for reuse.
+     */
+    private static final int MAX_POOLED_SCRATCH = 64 * 1024;
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    // Prevent instantiation
+    private DocumentSerdes() {}
+
+    /**
+     * Returns a new Serde for {@link DocumentPayload}.
+     *
+     * @return the document payload Serde
+     */
+    public static Serde<DocumentPayload> documentPayload() {
+        return new DocumentPayloadSerde();
+    }
+
+    /**
+     * {@link Serde} for {@link DocumentPayload} with a public no-argument constructor,
+     * so it can be named in {@code default.value.serde}.
+     */
+    public static final class DocumentPayloadSerde extends Serdes.WrapperSerde<DocumentPayload> {
+
+        /**
+         * Creates the Serde.
+         */
+        public DocumentPayloadSerde() {
+            super(new DocumentPayloadSerializer(), new DocumentPayloadDeserializer());
+        }
+    }
+
+    /**
+     * Writes {@link DocumentPayload}s in the binary framing with one exact-size allocation.
+     */
+    public static final class DocumentPayloadSerializer implements Serializer<DocumentPayload> {
+
+        @Override
+        public byte[] serialize(final String topic, final DocumentPayload payload) {
+            if (payload == null) {
+                return null;
+            }
+            Scratch scratch = SCRATCH.get();
+            try {
+                ByteBuffer header = scratch.encodeHeader(payload);
+                ByteBuffer image = payload.getImage();
+                ByteBuffer ocr = payload.getOcrResult();
+                int size = header.remaining()
+                        + sizeOfLength(image) + (image == null ? 0 : image.remaining())
+                        + sizeOfLength(ocr) + (ocr == null ? 0 : ocr.remaining());
+
+                ByteBuffer out = ByteBuffer.wrap(new byte[size]);
+                out.put(header);
+                writeBytes(out, image);
+                writeBytes(out, ocr);
+                return out.array();
+            } finally {
+                scratch.release();
+            }
+        }
+    }
+
+    /**
+     * Reads {@link DocumentPayload}s, exposing large fields as slices of the input.
+     */
+    public static final class DocumentPayloadDeserializer implements Deserializer<DocumentPayload> {
+
+        @Override
+        public DocumentPayload deserialize(final String topic, final byte[] data) {
+            return data == null ? null : read(topic, ByteBuffer.wrap(data));
+        }
+
+        @Override
+        public DocumentPayload deserialize(final String topic, final Headers headers, final ByteBuffer data) {
+            return data == null ? null : read(topic, data.duplicate());
+        }
+
+        private static DocumentPayload read(final String topic, final ByteBuffer in) {
+            try {
+                if (in.get() != MAGIC) {
+                    throw new SerializationException("Failed to deserialize DocumentPayload from topic "
+                            + topic + ": not a document payload");
+                }
+                byte version = in.get();
+                if (version != VERSION) {
+                    throw new SerializationException("Failed to deserialize DocumentPayload from topic "
+                            + topic + ": unsupported version " + version);
+                }
+                CharsetDecoder decoder = SCRATCH.get().decoder;
+                return DocumentPayload.builder()
+                        .documentId(readString(in, decoder))
+                        .pageNumber(readVarint(in))
+                        .contentType(readString(in, decoder))
+                        .image(readSlice(in))
+                        .ocrResult(readSlice(in))
+                        .build();
+            } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException
+                     | CharacterCodingException e) {
+                throw new SerializationException("Failed to deserialize DocumentPayload from topic "
+                        + topic + ": truncated or corrupt record", e);
+            }
+        }
+    }
+
+    private static int sizeOfLength(final ByteBuffer bytes) {
+        return sizeOfVarint(bytes == null ? 0 : bytes.remaining() + 1);
+    }
+
+    private static void writeBytes(final ByteBuffer out, final ByteBuffer bytes) {
+        if (bytes == null) {
+            writeVarint(out, 0);
+            return;
+        }
+        writeVarint(out, bytes.remaining() + 1);
+        out.put(bytes);
+    }
+
+    private static ByteBuffer readSlice(final ByteBuffer in) {
+        int length = readVarint(in) - 1;
+        if (length < 0) {
+            return null;
+        }
+        ByteBuffer slice = in.slice(in.position(), length).asReadOnlyBuffer();
+        in.position(in.position() + length);
+        return slice;
+    }
+
+    private static String readString(final ByteBuffer in, final CharsetDecoder decoder)
+            throws CharacterCodingException {
+        int length = readVarint(in) - 1;
+        if (length < 0) {
+            return null;
+        }
+        ByteBuffer bytes = in.slice(in.position(), length);
+        in.position(in.position() + length);
+        if (bytes.hasArray()) {
+            return new String(bytes.array(), bytes.arrayOffset(), length, StandardCharsets.UTF_8);
+        }
+        return decoder.reset().decode(bytes).toString();
+    }
+
+    static int sizeOfVarint(final int value) {
+        int size = 1;
+        int v = value;
+        while ((v & ~0x7F) != 0) {
+            size++;
+            v >>>= 7;
+        }
+        return size;
+    }
+
+    static void writeVarint(final ByteBuffer out, final int value) {
+        int v = value;
+        while ((v & ~0x7F) != 0) {
+            out.put((byte) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.put((byte) v);
+    }
+
+    static int readVarint(final ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                if (value < 0) {
+                    throw new IllegalArgumentException("Negative varint " + value);
+                }
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Varint is longer than 5 bytes");
+    }
+
+    /**
+     * Per-thread buffer and coders reused across records.
+     */
+    private static final class Scratch {
+
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private ByteBuffer buffer = ByteBuffer.allocate(256);
+
+        /**
+         * Encodes everything before the byte fields and returns it ready for reading.
+         */
+        ByteBuffer encodeHeader(final DocumentPayload payload) {
+            while (true) {
+                buffer.clear();
+                try {
+                    buffer.put(MAGIC).put(VERSION);
+                    if (encodeString(payload.getDocumentId())) {
+                        writeVarint(buffer, payload.getPageNumber());
+                        if (encodeString(payload.getContentType())) {
+                            return buffer.flip();
+                        }
+                    }
+                } catch (BufferOverflowException e) {
+                    // Fall through and retry with a larger buffer
+                }
+                buffer = ByteBuffer.allocate(buffer.capacity() * 2);
+            }
+        }
+
+        /**
+         * Writes a length-prefixed string, returning {@code false} if the buffer is too small.
+         */
+        private boolean encodeString(final String value) {
+            if (value == null) {
+                writeVarint(buffer, 0);
+                return true;
+            }
+            // Reserve the longest prefix the string could need, encode after it,
+            // then close the gap once the actual length is known
+            int start = buffer.position();
+            int reserved = sizeOfVarint((int) Math.min(Integer.MAX_VALUE, value.length() * 3L + 1));
+            if (buffer.remaining() < reserved) {
+                return false;
+            }
+            buffer.position(start + reserved);
+            encoder.reset();
+            if (encoder.encode(CharBuffer.wrap(value), buffer, true).isOverflow()
+                    || encoder.flush(buffer).isOverflow()) {
+                return false;
+            }
+            int length = buffer.position() - start - reserved;
+            int prefix = sizeOfVarint(length + 1);
+            System.arraycopy(buffer.array(), start + reserved, buffer.array(), start + prefix, length);
+            buffer.position(start);
+            writeVarint(buffer, length + 1);
+            buffer.position(start + prefix + length);
+            return true;
+        }
+
+        /**
+         * Drops an oversized buffer so one huge header does not stay pinned to the thread.
+         */
+        void release() {
+            if (buffer.capacity() > MAX_POOLED_SCRATCH) {
+                buffer = ByteBuffer.allocate(256);
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.github.dimitryivaniuta.foundation.streams;
+
+import lombok.Builder;
+import lombok.Value;
+import org.apache.kafka.common.header.Headers;
+
+/**
+ * A record Kafka Streams failed to deserialize, process or produce, on its way to a
+ * retry topic or the error topic through {@link DeadLetterPublisher}.
+ */
+@Value
+@Builder
+public class FailedRecord {
+
+    /**
+     * Where in the topology a record failed.
+     */
+    public enum Stage {
+
+        /**
+         * The record could not be deserialized; retrying cannot help.
+         */
+        DESERIALIZATION,
+
+        /**
+         * A processor threw while handling the record.
+         */
+        PROCESSING,
+
+        /**
+         * The record could not be serialized or sent to its output topic.
+         */
+        PRODUCTION
+    }
+
+    /**
+     * Where the record failed.
+     */
+    Stage stage;
+
+    /**
+     * Topic the record was read from, or {@code null} if unknown.
+     */
+    String topic;
+
+    /**
+     * Partition the record was read from, or {@code -1} if unknown.
+     */
+    @Builder.Default
+    int partition = -1;
+
+    /**
+     * Offset of the record in its partition, or {@code -1} if unknown.
+     */
+    @Builder.Default
+    long offset = -1L;
+
+    /**
+     * Name of the processor node that failed, or {@code null} if unknown.
+     */
+    String processorNodeId;
+
+    /**
+     * Serialized key, possibly {@code null}.
+     */
+    byte[] key;
+
+    /**
+     * Serialized value, possibly {@code null}.
+     */
+    byte[] value;
+
+    /**
+     * Headers of the record, possibly {@code null}; copied, never modified.
+     */
+    Headers headers;
+
+    /**
+     * Cause of the failure.
+     */
+    Throwable error;
+}
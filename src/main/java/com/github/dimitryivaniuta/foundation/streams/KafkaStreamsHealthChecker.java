@@ -0,0 +1,310 @@
+package com.github.dimitryivaniuta.foundation.streams;
+
+import com.github.dimitryivaniuta.foundation.health.HealthChecker;
+import com.github.dimitryivaniuta.foundation.health.HealthStatus;
+import com.github.dimitryivaniuta.foundation.health.Status;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.streams.KafkaStreams;
+import org.apache.kafka.streams.TaskMetadata;
+import org.apache.kafka.streams.ThreadMetadata;
+import org.apache.kafka.streams.processor.StateRestoreListener;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * {@link HealthChecker} reporting the state of the application's {@link KafkaStreams} client.
+ * <p>
+ * Readiness is UP only while the client is {@link KafkaStreams.State#RUNNING}, so a pod
+ * is taken out of rotation during rebalances and restoration. Liveness is DOWN once the
+ * client reaches {@link KafkaStreams.State#PENDING_ERROR} or {@link KafkaStreams.State#ERROR},
+ * from which it cannot recover on its own.
+ * </p>
+ * <p>
+ * State is pushed by a {@link KafkaStreams.StateListener} into an immutable snapshot that
+ * holds pre-built {@link HealthStatus} results. Per-thread states are read from
+ * {@link KafkaStreams#metadataForLocalThreads()}, and per-partition lag of the active
+ * tasks' input partitions from the main consumers' {@code records-lag} metric, after each
+ * state transition and at most once per lag refresh interval thereafter; outstanding
+ * restoration is tracked by a {@link StateRestoreListener}.
+ * </p>
+ * <p>
+ * A check reads the snapshot, except that while the client is running or rebalancing,
+ * the first check after a transition or after the refresh interval rebuilds it on the
+ * caller's thread, reading thread metadata and scanning {@link KafkaStreams#metrics()}.
+ * Only one caller rebuilds at a time; the others read the previous snapshot without
+ * waiting. With a refresh interval configured, {@code CompositeHealthChecker} runs
+ * checks on its background refresh thread, so probes themselves stay a memory read.
+ * </p>
+ * <p>
+ * The consumer computes {@code records-lag} as the partition's high watermark, which every
+ * fetch response carries, minus its fetch position. {@link TaskMetadata#endOffsets()} is not
+ * used: it is the highest offset the task has fetched so far, not the log end, so it hides
+ * the backlog the consumer has not reached yet. A partition not fetched since the last
+ * assignment has no lag figure and is left out.
+ * </p>
+ * <p>
+ * The listeners must be installed before {@link KafkaStreams#start()}; see
+ * {@link #attach(KafkaStreams)}. Installing another state listener afterwards replaces this one.
+ * </p>
+ */
+@Singleton
+public class KafkaStreamsHealthChecker implements HealthChecker {
+
+    /**
+     * Minimum age of the lag figures before they are recomputed.
+     */
+    public static final Duration DEFAULT_LAG_REFRESH_INTERVAL = Duration.ofSeconds(1);
+
+    private final long lagRefreshNanos;
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>(Snapshot.detached());
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private final Map<TopicPartition, Long> restoreRemaining = new ConcurrentHashMap<>();
+    private volatile KafkaStreams streams;
+
+    /**
+     * Creates a checker with the default lag refresh interval.
+     */
+    @Inject
+    public KafkaStreamsHealthChecker() {
+        this(DEFAULT_LAG_REFRESH_INTERVAL);
+    }
+
+    /**
+     * Creates a checker.
+     *
+     * @param lagRefreshInterval minimum age of the lag figures before they are recomputed
+     */
+    public KafkaStreamsHealthChecker(final Duration lagRefreshInterval) {
+        this.lagRefreshNanos = lagRefreshInterval.toNanos();
+    }
+
+    /**
+     * Installs the state and restore listeners on the given client and takes an
+     * initial snapshot. Must be called before the client is started.
+     *
+     * @param kafkaStreams the client to monitor
+     * @throws IllegalStateException if the client has already been started
+     */
+    public void attach(final KafkaStreams kafkaStreams) {
+        kafkaStreams.setStateListener((newState, oldState) -> snapshot.set(build(newState, false)));
+        kafkaStreams.setGlobalStateRestoreListener(new RestoreTracker());
+        this.streams = kafkaStreams;
+        snapshot.set(build(kafkaStreams.state(), false));
+    }
+
+    /**
+     * Reports DOWN once the client has entered an unrecoverable error state.
+     *
+     * @return the cached liveness status
+     */
+    @Override
+    public HealthStatus checkLiveness() {
+        return current().liveness();
+    }
+
+    /**
+     * Reports UP only while the client is RUNNING, with per-partition lag in the details.
+     *
+     * @return the cached readiness status
+     */
+    @Override
+    public HealthStatus checkReadiness() {
+        return current().readiness();
+    }
+
+    /**
+     * Returns the latest snapshot, first recomputing it if its lag figures are stale.
+     * Concurrent callers never wait on a refresh; they read the previous snapshot.
+     */
+    private Snapshot current() {
+        Snapshot current = snapshot.get();
+        if (current.lagTracked()
+                && (current.stale() || System.nanoTime() - current.takenAtNanos() >= lagRefreshNanos)
+                && refreshing.compareAndSet(false, true)) {
+            try {
+                // A transition published meanwhile wins over this refresh
+                snapshot.compareAndSet(current, build(current.state(), true));
+            } finally {
+                refreshing.set(false);
+            }
+        }
+        return snapshot.get();
+    }
+
+    /**
+     * Builds a snapshot for the given state.
+     * <p>
+     * The state listener runs on a stream thread, so it publishes the new state
+     * without thread metadata and leaves the snapshot stale; the next check
+     * collects lag and thread states.
+     * </p>
+     *
+     * @param state      the client state the snapshot describes
+     * @param collectLag whether to read thread metadata and lag
+     * @return the new snapshot
+     */
+    private Snapshot build(final KafkaStreams.State state, final boolean collectLag) {
+        Map<String, String> details = new TreeMap<>();
+        details.put("state", state.name());
+        boolean lagTracked = state == KafkaStreams.State.RUNNING || state == KafkaStreams.State.REBALANCING;
+        if (lagTracked && collectLag) {
+            collectThreadDetails(details);
+        }
+        long restoring = 0;
+        for (long remaining : restoreRemaining.values()) {
+            restoring += remaining;
+        }
+        if (restoring > 0) {
+            details.put("restore.remaining", Long.toString(restoring));
+        }
+
+        Instant now = Instant.now();
+        boolean failed = state == KafkaStreams.State.PENDING_ERROR || state == KafkaStreams.State.ERROR;
+        HealthStatus.HealthStatusBuilder liveness = HealthStatus.builder()
+                .status(failed ? Status.DOWN : Status.UP)
+                .timestamp(now)
+                .detail("state", state.name());
+        HealthStatus.HealthStatusBuilder readiness = HealthStatus.builder()
+                .status(state == KafkaStreams.State.RUNNING ? Status.UP : Status.DOWN)
+                .timestamp(now)
+                .details(details);
+        if (failed) {
+            liveness.message("KafkaStreams is in state " + state);
+        }
+        if (state != KafkaStreams.State.RUNNING) {
+            readiness.message("KafkaStreams is in state " + state);
+        }
+        return new Snapshot(state, liveness.build(), readiness.build(),
+                System.nanoTime(), lagTracked, !collectLag);
+    }
+
+    /**
+     * Adds per-thread states and per-partition lag to the details.
+     *
+     * @param details the map to populate
+     */
+    private void collectThreadDetails(final Map<String, String> details) {
+        KafkaStreams current = streams;
+        if (current == null) {
+            return;
+        }
+        try {
+            Set<TopicPartition> inputs = new HashSet<>();
+            for (ThreadMetadata thread : current.metadataForLocalThreads()) {
+                details.put("thread." + thread.threadName(), thread.threadState());
+                for (TaskMetadata task : thread.activeTasks()) {
+                    inputs.addAll(task.topicPartitions());
+                }
+            }
+            long totalLag = 0;
+            for (Map.Entry<TopicPartition, Long> lag : recordsLag(current, inputs).entrySet()) {
+                totalLag += lag.getValue();
+                details.put("lag." + lag.getKey(), Long.toString(lag.getValue()));
+            }
+            details.put("lag.total", Long.toString(totalLag));
+        } catch (RuntimeException e) {
+            // The client left RUNNING/REBALANCING between the state read and the metadata call
+            details.put("lag.error", e.getClass().getSimpleName());
+        }
+    }
+
+    /**
+     * Reads the consumer {@code records-lag} metric of the given partitions.
+     * <p>
+     * The restore consumer reports the same metric for changelog partitions, which are
+     * filtered out by only keeping the active tasks' input partitions.
+     * </p>
+     *
+     * @param kafkaStreams the client whose embedded consumers report the metric
+     * @param partitions   the input partitions of the active tasks
+     * @return records between the fetch position and the high watermark, per partition
+     */
+    private static Map<TopicPartition, Long> recordsLag(final KafkaStreams kafkaStreams,
+                                                        final Set<TopicPartition> partitions) {
+        Map<TopicPartition, Long> lags = new HashMap<>();
+        if (partitions.isEmpty()) {
+            return lags;
+        }
+        for (Map.Entry<MetricName, ? extends Metric> entry : kafkaStreams.metrics().entrySet()) {
+            MetricName name = entry.getKey();
+            if (!"records-lag".equals(name.name()) || !"consumer-fetch-manager-metrics".equals(name.group())) {
+                continue;
+            }
+            String topic = name.tags().get("topic");
+            String partition = name.tags().get("partition");
+            if (topic == null || partition == null) {
+                continue;
+            }
+            TopicPartition topicPartition = new TopicPartition(topic, Integer.parseInt(partition));
+            if (!partitions.contains(topicPartition)
+                    || !(entry.getValue().metricValue() instanceof Number value)
+                    || Double.isNaN(value.doubleValue())) {
+                continue;
+            }
+            lags.merge(topicPartition, Math.max(0L, value.longValue()), Math::max);
+        }
+        return lags;
+    }
+
+    /**
+     * Tracks how many changelog records are left to restore per partition.
+     */
+    private final class RestoreTracker implements StateRestoreListener {
+
+        @Override
+        public void onRestoreStart(final TopicPartition partition, final String storeName,
+                                   final long startingOffset, final long endingOffset) {
+            restoreRemaining.put(partition, Math.max(0, endingOffset - startingOffset));
+        }
+
+        @Override
+        public void onBatchRestored(final TopicPartition partition, final String storeName,
+                                    final long batchEndOffset, final long numRestored) {
+            restoreRemaining.computeIfPresent(partition, (p, remaining) -> Math.max(0, remaining - numRestored));
+        }
+
+        @Override
+        public void onRestoreEnd(final TopicPartition partition, final String storeName,
+                                 final long totalRestored) {
+            restoreRemaining.remove(partition);
+        }
+
+        @Override
+        public void onRestoreSuspended(final TopicPartition partition, final String storeName,
+                                       final long totalRestored) {
+            restoreRemaining.remove(partition);
+        }
+    }
+
+    /**
+     * Immutable view of the client published by the listeners.
+     *
+     * @param state        the client state
+     * @param liveness     pre-built liveness result
+     * @param readiness    pre-built readiness result
+     * @param takenAtNanos {@link System#nanoTime()} when the snapshot was built
+     * @param lagTracked   whether the snapshot carries lag that should be refreshed
+     * @param stale        whether lag has not been collected since the last transition
+     */
+    private record Snapshot(KafkaStreams.State state, HealthStatus liveness, HealthStatus readiness,
+                            long takenAtNanos, boolean lagTracked, boolean stale) {
+
+        static Snapshot detached() {
+            HealthStatus down = HealthStatus.down("KafkaStreams has not been attached");
+            return new Snapshot(KafkaStreams.State.CREATED, HealthStatus.up(), down, System.nanoTime(), false, false);
+        }
+    }
+}
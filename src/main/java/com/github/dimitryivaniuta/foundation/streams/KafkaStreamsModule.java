@@ -1,17 +1,41 @@
 package com.github.dimitryivaniuta.foundation.streams;
 
 import com.github.dimitryivaniuta.foundation.config.Config;
+import com.github.dimitryivaniuta.foundation.config.KafkaClientProperties;
+import com.github.dimitryivaniuta.foundation.health.HealthChecker;
+import com.github.dimitryivaniuta.foundation.lifecycle.ShutdownManager;
+import com.github.dimitryivaniuta.foundation.lifecycle.ShutdownStage;
+import com.github.dimitryivaniuta.foundation.lifecycle.StartupPhase;
+import com.github.dimitryivaniuta.foundation.metrics.MetricsRegistry;
 import dagger.Module;
 import dagger.Provides;
+import dagger.multibindings.ElementsIntoSet;
+import dagger.multibindings.IntoSet;
+import javax.inject.Provider;
 import javax.inject.Singleton;
-import org.apache.kafka.clients.CommonClientConfigs;
-import org.apache.kafka.common.config.SslConfigs;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.TopicDescription;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.common.KafkaFuture;
+import org.apache.kafka.common.errors.UnknownTopicOrPartitionException;
 import org.apache.kafka.common.serialization.Serdes;
 import org.apache.kafka.streams.KafkaStreams;
 import org.apache.kafka.streams.StreamsConfig;
 import org.apache.kafka.streams.Topology;
 
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Dagger module responsible for providing and configuring the Kafka Streams client.
@@ -21,13 +45,28 @@ import java.util.Properties;
  * and exposes a singleton {@link KafkaStreams} built from a provided {@link Topology}.
  * </p>
  * <p>
- * It also registers a shutdown hook to ensure graceful termination of the Streams application.
+ * It also contributes a {@link KafkaStreamsHealthChecker} to the {@link HealthChecker} set
+ * and a topic existence check to the {@link StartupPhase} set.
+ * </p>
+ * <p>
+ * On shutdown the {@link ShutdownManager} pauses processing and stops the retry relay
+ * first, so no new work reaches the OCR engines while they drain. Streams are closed
+ * once the sinks have been flushed, without leaving the consumer group, so a restarted
+ * instance with the same static membership gets its partitions back without a rebalance.
+ * </p>
+ * <p>
+ * Records that fail deserialization, processing or production are handed to a
+ * {@link DeadLetterExceptionHandler} instead of killing their stream thread. It sends
+ * them through a shared {@link DeadLetterPublisher} to tiered retry topics, which a
+ * {@link RetryTopicRelay} feeds back to the input topic after each tier's delay,
+ * and finally to {@link Config#getErrorTopic()}.
  * </p>
  *
  * @see Config
  * @see Topology
  * @see KafkaStreams
  */
+@Slf4j
 @Module
 public class KafkaStreamsModule {
 
@@ -41,66 +80,351 @@ public class KafkaStreamsModule {
     /**
      * Builds and provides the configuration {@link Properties} for Kafka Streams.
      * <p>
-     * Configures bootstrap servers, application ID, default SerDes, schema registry,
+     * Configures bootstrap servers, application ID, default SerDes (value Serde from
+     * {@link Config#getStreamsValueSerde()}), schema registry,
      * and optional security (SSL/TLS) settings based on the provided {@link Config}.
+     * The {@link StreamsTuningProfile} named by {@link Config#getStreamsProfile()} is
+     * applied next, then the rebalance settings (see {@link #applyRebalanceSettings}),
+     * then the {@link DeadLetterExceptionHandler} is installed for deserialization,
+     * processing and production errors, followed by any raw
+     * {@link Config#getStreamsOverrides()}.
      * </p>
      *
-     * @param config the application configuration containing environment-driven settings
+     * @param config      the application configuration containing environment-driven settings
+     * @param deadLetters the publisher the exception handlers send failed records through
      * @return a singleton {@link Properties} instance for Kafka Streams
+     * @throws IllegalStateException if the tuning profile is unknown
      */
     @Provides
     @Singleton
-    public Properties provideStreamsConfig(final Config config) {
-        Properties props = new Properties();
+    public Properties provideStreamsConfig(final Config config, final DeadLetterPublisher deadLetters) {
+        // Bootstrap servers and optional SSL/TLS settings shared with other Kafka clients
+        Properties props = KafkaClientProperties.common(config);
 
-        // Kafka cluster bootstrap servers
-        props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, config.getKafkaBootstrapServers());
         // Unique identifier for this Streams application
         props.put(StreamsConfig.APPLICATION_ID_CONFIG, config.getApplicationId());
-        // Default SerDes: String for keys, String for values unless overridden downstream
+        // Default SerDes: String for keys; values as configured (String unless overridden)
         props.put(StreamsConfig.DEFAULT_KEY_SERDE_CLASS_CONFIG, Serdes.StringSerde.class.getName());
-        props.put(StreamsConfig.DEFAULT_VALUE_SERDE_CLASS_CONFIG, Serdes.StringSerde.class.getName());
+        props.put(StreamsConfig.DEFAULT_VALUE_SERDE_CLASS_CONFIG, valueSerdeClass(config));
 
         // Schema registry URL for Avro/Protobuf integration (if used)
         props.put("schema.registry.url", config.getSchemaRegistryUrl());
 
-        // Optional SSL/TLS configuration
-        props.put(CommonClientConfigs.SECURITY_PROTOCOL_CONFIG, config.getKafkaSecurityProtocol());
-        if (config.getKafkaTruststorePath() != null && !config.getKafkaTruststorePath().isEmpty()) {
-            props.put(SslConfigs.SSL_TRUSTSTORE_LOCATION_CONFIG, config.getKafkaTruststorePath());
-            props.put(SslConfigs.SSL_TRUSTSTORE_PASSWORD_CONFIG, config.getKafkaTruststorePassword());
+        // Tune commit interval, cache, threads and client batching for the selected profile
+        tuningProfile(config).apply(props);
+
+        // Keep rolling deploys from pausing the group: warm standbys, and static membership when
+        // the instance has a stable identity
+        applyRebalanceSettings(config, props);
+
+        // Hand failed records to the dead-letter publisher instead of failing the stream thread
+        props.put(DeadLetterPublisher.CONFIG, deadLetters);
+        props.put(StreamsConfig.DESERIALIZATION_EXCEPTION_HANDLER_CLASS_CONFIG, DeadLetterExceptionHandler.class.getName());
+        props.put(StreamsConfig.PROCESSING_EXCEPTION_HANDLER_CLASS_CONFIG, DeadLetterExceptionHandler.class.getName());
+        props.put(StreamsConfig.PRODUCTION_EXCEPTION_HANDLER_CLASS_CONFIG, DeadLetterExceptionHandler.class.getName());
+
+        // Raw KAFKA_STREAMS_* overrides win over everything above
+        if (config.getStreamsOverrides() != null) {
+            props.putAll(config.getStreamsOverrides());
         }
-        if (config.getKafkaKeystorePath() != null && !config.getKafkaKeystorePath().isEmpty()) {
-            props.put(SslConfigs.SSL_KEYSTORE_LOCATION_CONFIG, config.getKafkaKeystorePath());
-            props.put(SslConfigs.SSL_KEYSTORE_PASSWORD_CONFIG, config.getKafkaKeystorePassword());
+
+        return props;
+    }
+
+    /**
+     * Applies the settings that keep a rolling deploy from pausing the whole group.
+     * <p>
+     * With {@link Config#getStreamsInstanceId()} set, the main consumers join with
+     * static membership: Kafka Streams suffixes the id with each thread's index, and an
+     * instance that restarts under the same id within the session timeout gets its
+     * tasks back without a rebalance. The id must therefore be stable across restarts
+     * yet unique in the group, as a StatefulSet pod name is; a Deployment's random pod
+     * names would leave departed members holding partitions until their session expires.
+     * </p>
+     * <p>
+     * Standby replicas, the acceptable recovery lag and the probing rebalance interval
+     * are set when positive, so that tasks move only to instances whose state is warm.
+     * </p>
+     *
+     * @param config the application configuration
+     * @param props  the Kafka Streams properties to add to
+     */
+    static void applyRebalanceSettings(final Config config, final Properties props) {
+        String instanceId = config.getStreamsInstanceId();
+        if (instanceId != null && !instanceId.isBlank()) {
+            props.put(StreamsConfig.mainConsumerPrefix(ConsumerConfig.GROUP_INSTANCE_ID_CONFIG), instanceId.trim());
+        }
+        if (config.getStreamsNumStandbyReplicas() > 0) {
+            props.put(StreamsConfig.NUM_STANDBY_REPLICAS_CONFIG, config.getStreamsNumStandbyReplicas());
         }
+        if (config.getStreamsAcceptableRecoveryLag() > 0) {
+            props.put(StreamsConfig.ACCEPTABLE_RECOVERY_LAG_CONFIG, config.getStreamsAcceptableRecoveryLag());
+        }
+        if (config.getStreamsProbingRebalanceIntervalMs() > 0) {
+            props.put(StreamsConfig.PROBING_REBALANCE_INTERVAL_MS_CONFIG, config.getStreamsProbingRebalanceIntervalMs());
+        }
+    }
 
-        // Tune commit interval and cache size for throughput/latency balance
-        props.put(StreamsConfig.COMMIT_INTERVAL_MS_CONFIG, 10_000);
-        props.put(StreamsConfig.CACHE_MAX_BYTES_BUFFERING_CONFIG, 10 * 1024 * 1024);
+    /**
+     * Resolves the configured default value Serde to a class name.
+     * <p>
+     * {@code STRING} (the default), {@code BYTES} and {@code DOCUMENT} select
+     * {@link Serdes.StringSerde}, {@link Serdes.ByteArraySerde} and
+     * {@link DocumentSerdes.DocumentPayloadSerde}; any other value is taken
+     * as a fully qualified Serde class name.
+     * </p>
+     *
+     * @param config the application configuration
+     * @return the Serde class name for {@code default.value.serde}
+     */
+    static String valueSerdeClass(final Config config) {
+        String name = config.getStreamsValueSerde();
+        if (name == null || name.isBlank()) {
+            return Serdes.StringSerde.class.getName();
+        }
+        return switch (name.trim().toUpperCase(Locale.ROOT)) {
+            case "STRING" -> Serdes.StringSerde.class.getName();
+            case "BYTES" -> Serdes.ByteArraySerde.class.getName();
+            case "DOCUMENT" -> DocumentSerdes.DocumentPayloadSerde.class.getName();
+            default -> name.trim();
+        };
+    }
 
-        return props;
+    /**
+     * Resolves the configured tuning profile, defaulting to {@link StreamsTuningProfile#DEFAULT}.
+     *
+     * @param config the application configuration
+     * @return the selected profile
+     * @throws IllegalStateException if the profile name is unknown
+     */
+    static StreamsTuningProfile tuningProfile(final Config config) {
+        String name = config.getStreamsProfile();
+        if (name == null || name.isBlank()) {
+            return StreamsTuningProfile.DEFAULT;
+        }
+        try {
+            return StreamsTuningProfile.valueOf(name.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalStateException("Unknown Kafka Streams tuning profile '" + name + "'", e);
+        }
     }
 
     /**
      * Constructs and provides a singleton {@link KafkaStreams} instance.
      * <p>
-     * The provided {@link Topology} defines the processing graph. A JVM shutdown
-     * hook is registered to invoke {@code KafkaStreams.close()} on application exit,
-     * ensuring a clean shutdown.
+     * The provided {@link Topology} defines the processing graph. The instance is
+     * paused when shutdown begins and closed after the sinks have been flushed,
+     * without leaving the consumer group. The health checker's listeners are installed
+     * here, before the instance can be started, and the dead-letter publisher is told
+     * which processors read the input topic directly, as only their failures are retried.
      * </p>
      *
      * @param streamsConfig the Kafka Streams configuration properties
      * @param topology      the processing topology to execute
+     * @param healthChecker the checker to attach to the new instance
+     * @param deadLetters   the publisher the exception handlers send failed records through
+     * @param shutdown      the manager the instance is paused and closed by
      * @return a singleton KafkaStreams instance
      */
     @Provides
     @Singleton
     public KafkaStreams provideKafkaStreams(final Properties streamsConfig,
-                                            final Topology topology) {
+                                            final Topology topology,
+                                            final KafkaStreamsHealthChecker healthChecker,
+                                            final DeadLetterPublisher deadLetters,
+                                            final ShutdownManager shutdown) {
+        deadLetters.setTopology(topology.describe());
         KafkaStreams streams = new KafkaStreams(topology, streamsConfig);
-        // Ensure graceful shutdown on JVM exit
-        Runtime.getRuntime().addShutdownHook(new Thread(streams::close));
+        healthChecker.attach(streams);
+        registerShutdown(streams, shutdown);
         return streams;
     }
+
+    /**
+     * Registers a Kafka Streams instance for an ordered shutdown: processing is paused
+     * in the {@link ShutdownStage#STOP_INTAKE} stage, and the instance is closed in the
+     * {@link ShutdownStage#CLOSE_STREAMS} stage within that stage's budget and without
+     * leaving the consumer group.
+     * <p>
+     * Records still pending in an {@link AsyncVisionProcessor} stay in its journal and are
+     * resubmitted on restart; their calls have drained into the Vision result cache by then.
+     * </p>
+     *
+     * @param streams  the instance to shut down
+     * @param shutdown the manager to register with
+     */
+    static void registerShutdown(final KafkaStreams streams, final ShutdownManager shutdown) {
+        shutdown.register("kafka-streams-pause", ShutdownStage.STOP_INTAKE, budget -> streams.pause());
+        shutdown.register("kafka-streams", ShutdownStage.CLOSE_STREAMS, budget -> {
+            if (!streams.close(new KafkaStreams.CloseOptions().timeout(budget).leaveGroup(false))) {
+                log.warn("Kafka Streams did not close within {} ms", budget.toMillis());
+            }
+        });
+    }
+
+    /**
+     * Provides the singleton {@link DeadLetterPublisher}, whose batching producer is
+     * shared by every stream thread and the retry relay.
+     * <p>
+     * Retry tiers come from {@link Config#getRetryDelaysMs()}, with one topic per tier
+     * named after {@link Config#getInputTopic()}. The producer is flushed with the other
+     * sinks on shutdown, but only closed after Kafka Streams, whose exception handlers
+     * may still hand it records while closing. The routed, redelivered and failed record
+     * counts are exported through the metrics registry.
+     * </p>
+     *
+     * @param config   the application configuration containing the topics and retry delays
+     * @param registry the registry the publisher's counts are exported through
+     * @param shutdown the manager the publisher is flushed and closed by
+     * @return a singleton publisher
+     */
+    @Provides
+    @Singleton
+    public DeadLetterPublisher provideDeadLetterPublisher(final Config config, final MetricsRegistry registry,
+                                                          final ShutdownManager shutdown) {
+        DeadLetterPublisher publisher = new DeadLetterPublisher(
+                new KafkaProducer<>(DeadLetterPublisher.producerProperties(config)),
+                config.getErrorTopic(),
+                config.getInputTopic(),
+                retryDelays(config),
+                Clock.systemUTC());
+        shutdown.register("dead-letter-flush", ShutdownStage.FLUSH, budget -> publisher.flush());
+        shutdown.register("dead-letter-producer", ShutdownStage.CLOSE_CLIENTS, budget -> publisher.close(budget));
+
+        String help = "Failed records by where they were sent.";
+        registry.counter("foundation_dead_letter_records_total", help, publisher::getRetriedCount, "route", "retry");
+        registry.counter("foundation_dead_letter_records_total", help, publisher::getDeadLetteredCount,
+                "route", "error");
+        registry.counter("foundation_dead_letter_records_total", help, publisher::getRedeliveredCount,
+                "route", "redelivered");
+        registry.counter("foundation_dead_letter_send_failures_total", "Failed-record sends the broker rejected.",
+                publisher::getFailedCount);
+        return publisher;
+    }
+
+    /**
+     * Provides the singleton {@link RetryTopicRelay} feeding retried records back to
+     * their origin topic. It is stopped in the {@link ShutdownStage#STOP_INTAKE} stage.
+     *
+     * @param config      the application configuration
+     * @param deadLetters the publisher whose retry topics are relayed
+     * @param shutdown    the manager the relay is stopped by
+     * @return a singleton relay, not yet started
+     */
+    @Provides
+    @Singleton
+    public RetryTopicRelay provideRetryTopicRelay(final Config config, final DeadLetterPublisher deadLetters,
+                                                  final ShutdownManager shutdown) {
+        RetryTopicRelay relay = new RetryTopicRelay(
+                new KafkaConsumer<>(RetryTopicRelay.consumerProperties(config)), deadLetters, Clock.systemUTC());
+        shutdown.register("retry-relay", ShutdownStage.STOP_INTAKE, budget -> relay.close(budget));
+        return relay;
+    }
+
+    /**
+     * Contributes the start-up phase that starts the retry relay, unless
+     * {@link Config#getRetryDelaysMs()} is empty.
+     *
+     * @param config the application configuration
+     * @param relay  provider of the relay, only resolved when there are retry tiers
+     * @return the {@code retry-relay} start-up phase, or no phase
+     */
+    @Provides
+    @ElementsIntoSet
+    public Set<StartupPhase> provideRetryRelayStartupPhase(final Config config, final Provider<RetryTopicRelay> relay) {
+        if (retryDelays(config).isEmpty()) {
+            return Set.of();
+        }
+        return Set.of(new StartupPhase("retry-relay", () -> relay.get().start()));
+    }
+
+    /**
+     * Returns the configured retry delays.
+     *
+     * @param config the application configuration
+     * @return the delays in milliseconds, empty if none are configured
+     */
+    static List<Long> retryDelays(final Config config) {
+        return config.getRetryDelaysMs() == null ? List.of() : config.getRetryDelaysMs();
+    }
+
+    /**
+     * Contributes the {@link KafkaStreamsHealthChecker} to the set of HealthChecker
+     * implementations aggregated by the composite checker.
+     * <p>
+     * Depends on {@link KafkaStreams} so that requesting the health checker set
+     * also creates the client and attaches the checker to it.
+     * </p>
+     *
+     * @param healthChecker the Kafka Streams health checker
+     * @param streams       the client the checker is attached to
+     * @return the bound HealthChecker instance
+     */
+    @Provides
+    @IntoSet
+    public HealthChecker provideKafkaStreamsHealthChecker(final KafkaStreamsHealthChecker healthChecker,
+                                                          final KafkaStreams streams) {
+        return healthChecker;
+    }
+
+    /**
+     * Contributes the start-up phase that checks the input, output, error and retry topics exist.
+     * <p>
+     * A missing input or output topic fails start-up, as the topology cannot run
+     * without them; a missing error or retry topic is only logged, since brokers may
+     * create it on first publish.
+     * </p>
+     *
+     * @param config the application configuration containing the topic names
+     * @return the {@code kafka-topics} start-up phase
+     */
+    @Provides
+    @IntoSet
+    public StartupPhase provideTopicsStartupPhase(final Config config) {
+        return new StartupPhase("kafka-topics", () -> {
+            try (Admin admin = Admin.create(KafkaClientProperties.common(config))) {
+                checkTopics(admin, config, Math.max(1L, config.getStartupTimeoutMs()));
+            }
+        });
+    }
+
+    /**
+     * Describes the configured topics and fails if a required one does not exist.
+     *
+     * @param admin     the admin client
+     * @param config    the application configuration containing the topic names
+     * @param timeoutMs how long to wait for each description
+     * @throws IllegalStateException if the input or output topic is missing
+     * @throws Exception             if a topic cannot be described for another reason
+     */
+    static void checkTopics(final Admin admin, final Config config, final long timeoutMs) throws Exception {
+        Set<String> required = new LinkedHashSet<>(List.of(config.getInputTopic(), config.getOutputTopic()));
+        Set<String> topics = new LinkedHashSet<>(required);
+        if (config.getErrorTopic() != null && !config.getErrorTopic().isBlank()) {
+            topics.add(config.getErrorTopic());
+        }
+        for (long delay : retryDelays(config)) {
+            topics.add(DeadLetterPublisher.retryTopic(config.getInputTopic(), delay));
+        }
+
+        Map<String, KafkaFuture<TopicDescription>> descriptions = admin.describeTopics(topics).topicNameValues();
+        List<String> missing = new ArrayList<>();
+        for (String topic : topics) {
+            try {
+                descriptions.get(topic).get(timeoutMs, TimeUnit.MILLISECONDS);
+            } catch (ExecutionException e) {
+                if (!(e.getCause() instanceof UnknownTopicOrPartitionException)) {
+                    throw e;
+                }
+                if (required.contains(topic)) {
+                    missing.add(topic);
+                } else {
+                    log.warn("Optional topic '{}' does not exist", topic);
+                }
+            }
+        }
+        if (!missing.isEmpty()) {
+            throw new IllegalStateException("Failed to find Kafka topic(s) " + missing);
+        }
+    }
 }
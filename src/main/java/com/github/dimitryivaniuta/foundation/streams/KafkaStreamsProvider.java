@@ -1,5 +1,6 @@
 package com.github.dimitryivaniuta.foundation.streams;
 
+import com.github.dimitryivaniuta.foundation.lifecycle.ShutdownManager;
 import javax.inject.Inject;
 import javax.inject.Provider;
 import javax.inject.Singleton;
@@ -13,8 +14,8 @@ import java.util.Properties;
  * application-specific topology and properties.
  * <p>
  * This class initializes the Kafka Streams client on construction and
- * registers a JVM shutdown hook to ensure graceful shutdown of the Streams
- * application. It implements {@link Provider} to integrate seamlessly with
+ * registers it with the {@link ShutdownManager} for an ordered shutdown of the
+ * Streams application. It implements {@link Provider} to integrate seamlessly with
  * Dagger or other DI frameworks that support JSR-330.
  * </p>
  *
@@ -32,18 +33,24 @@ public class KafkaStreamsProvider implements Provider<KafkaStreams> {
      * Constructs the provider by building the KafkaStreams instance using the
      * provided {@link Topology} and {@link Properties}.
      * <p>
-     * A shutdown hook is registered to invoke {@code streams.close()} when the
-     * JVM exits, ensuring the Streams application shuts down cleanly.
+     * The instance is paused and closed by the shutdown manager just like the one
+     * {@link KafkaStreamsModule} provides, and the health checker is attached
+     * before the instance can be started.
      * </p>
      *
      * @param streamsConfig the Kafka Streams configuration properties
      * @param topology      the processing topology to execute
+     * @param healthChecker the checker to attach to the new instance
+     * @param shutdown      the manager the instance is paused and closed by
      */
     @Inject
     public KafkaStreamsProvider(final Properties streamsConfig,
-                                final Topology topology) {
+                                final Topology topology,
+                                final KafkaStreamsHealthChecker healthChecker,
+                                final ShutdownManager shutdown) {
         this.streams = new KafkaStreams(topology, streamsConfig);
-        Runtime.getRuntime().addShutdownHook(new Thread(streams::close));
+        healthChecker.attach(streams);
+        KafkaStreamsModule.registerShutdown(streams, shutdown);
     }
 
     /**
@@ -0,0 +1,261 @@
+package com.github.dimitryivaniuta.foundation.streams;
+
+import com.github.dimitryivaniuta.foundation.config.Config;
+import com.github.dimitryivaniuta.foundation.config.KafkaClientProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Sends records from the retry topics back to the topic they failed on once their
+ * retry delay has passed.
+ * <p>
+ * One consumer reads every retry topic of a {@link DeadLetterPublisher}. Records of a
+ * tier become due in the order they were written, so when a partition reaches a record
+ * that is not due yet, the relay seeks back to it and pauses the partition until it is.
+ * The other partitions keep flowing. Due records are redelivered through the
+ * publisher's shared producer, and their offsets are committed only after the producer
+ * has acknowledged them; a record whose send failed is read again.
+ * </p>
+ * <p>
+ * The relay runs on its own thread from {@link #start()} until {@link #close()}.
+ * </p>
+ */
+@Slf4j
+public class RetryTopicRelay implements AutoCloseable {
+
+    /**
+     * Longest a poll waits, so that paused partitions are resumed on time.
+     */
+    static final Duration MAX_POLL_WAIT = Duration.ofMillis(500);
+
+    private final Consumer<byte[], byte[]> consumer;
+    private final DeadLetterPublisher publisher;
+    private final Clock clock;
+
+    /**
+     * Paused partitions and the epoch millisecond at which their next record is due.
+     */
+    private final Map<TopicPartition, Long> pausedUntil = new HashMap<>();
+
+    private Thread thread;
+    private volatile boolean running = true;
+
+    /**
+     * {@link System#nanoTime()} by which the relay thread must have closed the consumer.
+     */
+    private volatile long closeDeadline;
+
+    /**
+     * Creates the relay.
+     *
+     * @param consumer  consumer of the retry topics; owned and closed by this relay
+     * @param publisher the publisher whose retry topics are relayed and whose producer redelivers
+     * @param clock     clock the redelivery times are compared against
+     */
+    public RetryTopicRelay(final Consumer<byte[], byte[]> consumer,
+                           final DeadLetterPublisher publisher,
+                           final Clock clock) {
+        this.consumer = consumer;
+        this.publisher = publisher;
+        this.clock = clock;
+    }
+
+    /**
+     * Builds the properties of the relay's consumer: its own consumer group, manual
+     * commits and byte array records. With an instance id configured, the relay joins
+     * its group with static membership too.
+     *
+     * @param config the application configuration
+     * @return consumer properties including connection and security settings
+     */
+    public static Properties consumerProperties(final Config config) {
+        Properties props = KafkaClientProperties.common(config);
+        props.put(ConsumerConfig.GROUP_ID_CONFIG, config.getApplicationId() + "-retry-relay");
+        props.put(ConsumerConfig.CLIENT_ID_CONFIG, config.getApplicationId() + "-retry-relay");
+        if (config.getStreamsInstanceId() != null && !config.getStreamsInstanceId().isBlank()) {
+            props.put(ConsumerConfig.GROUP_INSTANCE_ID_CONFIG, config.getStreamsInstanceId().trim() + "-retry-relay");
+        }
+        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class.getName());
+        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class.getName());
+        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        return props;
+    }
+
+    /**
+     * Subscribes to the retry topics and starts relaying.
+     */
+    public void start() {
+        consumer.subscribe(publisher.getRetryTopics());
+        thread = new Thread(this::run, "retry-topic-relay");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops relaying and closes the consumer within 30 seconds.
+     */
+    @Override
+    public void close() {
+        close(Duration.ofSeconds(30));
+    }
+
+    /**
+     * Stops relaying and closes the consumer within the given time. Records not yet
+     * committed are relayed again on the next start.
+     *
+     * @param timeout how long to wait for the relay thread and the consumer
+     */
+    public void close(final Duration timeout) {
+        closeDeadline = System.nanoTime() + timeout.toNanos();
+        running = false;
+        if (thread == null) {
+            consumer.close(timeout);
+            return;
+        }
+        consumer.wakeup();
+        try {
+            if (!thread.join(timeout)) {
+                log.warn("Retry relay did not stop within {} ms", timeout.toMillis());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        try {
+            while (running) {
+                try {
+                    relayOnce();
+                } catch (WakeupException e) {
+                    // Closing
+                } catch (RuntimeException e) {
+                    log.error("Failed to relay retried records", e);
+                }
+            }
+        } finally {
+            consumer.close(Duration.ofNanos(Math.max(0L, closeDeadline - System.nanoTime())));
+        }
+    }
+
+    /**
+     * Resumes partitions that have become due, polls once and redelivers the due records.
+     *
+     * @return the number of records redelivered and committed
+     */
+    int relayOnce() {
+        long now = clock.millis();
+        resumeDue(now);
+        ConsumerRecords<byte[], byte[]> records = consumer.poll(pollWait(now));
+        now = clock.millis();
+
+        List<Sent> sent = new ArrayList<>();
+        for (TopicPartition partition : records.partitions()) {
+            for (ConsumerRecord<byte[], byte[]> record : records.records(partition)) {
+                long due = DeadLetterPublisher.notBefore(record.headers());
+                if (due > now) {
+                    consumer.seek(partition, record.offset());
+                    consumer.pause(Set.of(partition));
+                    pausedUntil.put(partition, due);
+                    break;
+                }
+                sent.add(new Sent(partition, record.offset(), publisher.redeliver(record)));
+            }
+        }
+        if (sent.isEmpty()) {
+            return 0;
+        }
+        publisher.flush();
+        return commit(sent);
+    }
+
+    /**
+     * Commits the offsets of acknowledged sends. In a partition with a failed send,
+     * nothing after it is committed and the consumer seeks back to it.
+     *
+     * @param sent the sends of one poll, in partition order
+     * @return the number of committed records
+     */
+    private int commit(final List<Sent> sent) {
+        Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+        Set<TopicPartition> failed = new HashSet<>();
+        int committed = 0;
+        for (Sent send : sent) {
+            if (failed.contains(send.partition())) {
+                continue;
+            }
+            try {
+                send.result().get();
+                offsets.put(send.partition(), new OffsetAndMetadata(send.offset() + 1));
+                committed++;
+            } catch (ExecutionException e) {
+                failed.add(send.partition());
+                consumer.seek(send.partition(), send.offset());
+                log.warn("Failed to redeliver {}@{}; will retry", send.partition(), send.offset(), e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failed.add(send.partition());
+                consumer.seek(send.partition(), send.offset());
+            }
+        }
+        if (!offsets.isEmpty()) {
+            consumer.commitSync(offsets);
+        }
+        return committed;
+    }
+
+    private void resumeDue(final long now) {
+        pausedUntil.keySet().retainAll(consumer.assignment());
+        List<TopicPartition> due = new ArrayList<>();
+        pausedUntil.forEach((partition, until) -> {
+            if (until <= now) {
+                due.add(partition);
+            }
+        });
+        if (!due.isEmpty()) {
+            due.forEach(pausedUntil::remove);
+            consumer.resume(due);
+        }
+    }
+
+    private Duration pollWait(final long now) {
+        long wait = MAX_POLL_WAIT.toMillis();
+        for (long until : pausedUntil.values()) {
+            wait = Math.min(wait, Math.max(0L, until - now));
+        }
+        return Duration.ofMillis(wait);
+    }
+
+    /**
+     * Returns the partitions currently paused until their next record is due.
+     *
+     * @return an immutable copy of the paused partitions
+     */
+    Set<TopicPartition> getPausedPartitions() {
+        return Set.copyOf(pausedUntil.keySet());
+    }
+
+    private record Sent(TopicPartition partition, long offset, Future<RecordMetadata> result) {
+    }
+}
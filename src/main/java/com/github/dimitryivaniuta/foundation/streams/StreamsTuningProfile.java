@@ -0,0 +1,98 @@
+package com.github.dimitryivaniuta.foundation.streams;
+
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.streams.StreamsConfig;
+
+import java.util.Properties;
+
+/**
+ * Named groups of Kafka Streams, consumer and producer settings tuned for a goal.
+ * <p>
+ * Each profile sets a coherent combination of commit interval, record cache,
+ * thread count, producer batching and consumer fetch sizes, so services no longer
+ * need to fork {@link KafkaStreamsModule} to change them. Embedded client settings
+ * are written with {@link StreamsConfig#producerPrefix(String)} and
+ * {@link StreamsConfig#consumerPrefix(String)} so they only reach the intended client.
+ * Individual properties can still be overridden through {@code KAFKA_STREAMS_*}
+ * variables, which are applied after the profile.
+ * </p>
+ */
+public enum StreamsTuningProfile {
+
+    /**
+     * The SDK's historical settings: 10 s commit interval and a 10 MiB record cache.
+     */
+    DEFAULT {
+        @Override
+        public void apply(final Properties props) {
+            props.put(StreamsConfig.COMMIT_INTERVAL_MS_CONFIG, 10_000);
+            props.put(StreamsConfig.STATESTORE_CACHE_MAX_BYTES_CONFIG, 10 * 1024 * 1024);
+        }
+    },
+
+    /**
+     * Minimises end-to-end latency: frequent commits, no record cache, no producer
+     * linger and consumer fetches that return as soon as any data is available.
+     */
+    LOW_LATENCY {
+        @Override
+        public void apply(final Properties props) {
+            props.put(StreamsConfig.COMMIT_INTERVAL_MS_CONFIG, 100);
+            props.put(StreamsConfig.STATESTORE_CACHE_MAX_BYTES_CONFIG, 0);
+            props.put(StreamsConfig.producerPrefix(ProducerConfig.LINGER_MS_CONFIG), 0);
+            props.put(StreamsConfig.producerPrefix(ProducerConfig.COMPRESSION_TYPE_CONFIG), "none");
+            props.put(StreamsConfig.consumerPrefix(ConsumerConfig.FETCH_MIN_BYTES_CONFIG), 1);
+            props.put(StreamsConfig.consumerPrefix(ConsumerConfig.FETCH_MAX_WAIT_MS_CONFIG), 10);
+            props.put(StreamsConfig.consumerPrefix(ConsumerConfig.MAX_POLL_RECORDS_CONFIG), 100);
+        }
+    },
+
+    /**
+     * Maximises records per second: one stream thread per core, a large record
+     * cache, infrequent commits, compressed producer batches and large fetches.
+     */
+    HIGH_THROUGHPUT {
+        @Override
+        public void apply(final Properties props) {
+            props.put(StreamsConfig.NUM_STREAM_THREADS_CONFIG, Runtime.getRuntime().availableProcessors());
+            props.put(StreamsConfig.COMMIT_INTERVAL_MS_CONFIG, 30_000);
+            props.put(StreamsConfig.STATESTORE_CACHE_MAX_BYTES_CONFIG, 64 * 1024 * 1024);
+            props.put(StreamsConfig.producerPrefix(ProducerConfig.LINGER_MS_CONFIG), 50);
+            props.put(StreamsConfig.producerPrefix(ProducerConfig.BATCH_SIZE_CONFIG), 256 * 1024);
+            props.put(StreamsConfig.producerPrefix(ProducerConfig.COMPRESSION_TYPE_CONFIG), "lz4");
+            props.put(StreamsConfig.producerPrefix(ProducerConfig.BUFFER_MEMORY_CONFIG), 128L * 1024 * 1024);
+            props.put(StreamsConfig.consumerPrefix(ConsumerConfig.FETCH_MIN_BYTES_CONFIG), 64 * 1024);
+            props.put(StreamsConfig.consumerPrefix(ConsumerConfig.FETCH_MAX_WAIT_MS_CONFIG), 500);
+            props.put(StreamsConfig.consumerPrefix(ConsumerConfig.MAX_POLL_RECORDS_CONFIG), 2_000);
+            props.put(StreamsConfig.consumerPrefix(ConsumerConfig.MAX_PARTITION_FETCH_BYTES_CONFIG), 4 * 1024 * 1024);
+        }
+    },
+
+    /**
+     * Exactly-once processing with transactional producers ({@code exactly_once_v2}).
+     * <p>
+     * The commit interval bounds how long downstream read-committed consumers wait
+     * for results, so it is kept short; producer batching is moderate because each
+     * commit also closes the open transaction.
+     * </p>
+     */
+    EXACTLY_ONCE_V2 {
+        @Override
+        public void apply(final Properties props) {
+            props.put(StreamsConfig.PROCESSING_GUARANTEE_CONFIG, StreamsConfig.EXACTLY_ONCE_V2);
+            props.put(StreamsConfig.COMMIT_INTERVAL_MS_CONFIG, 100);
+            props.put(StreamsConfig.STATESTORE_CACHE_MAX_BYTES_CONFIG, 10 * 1024 * 1024);
+            props.put(StreamsConfig.producerPrefix(ProducerConfig.LINGER_MS_CONFIG), 5);
+            props.put(StreamsConfig.producerPrefix(ProducerConfig.COMPRESSION_TYPE_CONFIG), "lz4");
+            props.put(StreamsConfig.consumerPrefix(ConsumerConfig.MAX_POLL_RECORDS_CONFIG), 500);
+        }
+    };
+
+    /**
+     * Writes this profile's settings into the given properties, replacing any existing values.
+     *
+     * @param props the Kafka Streams properties to tune
+     */
+    public abstract void apply(Properties props);
+}
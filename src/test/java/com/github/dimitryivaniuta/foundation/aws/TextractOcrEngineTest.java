@@ -0,0 +1,120 @@
+package com.github.dimitryivaniuta.foundation.aws;
+
+import com.github.dimitryivaniuta.foundation.grpc.AdaptiveConcurrencyLimiter;
+import com.github.dimitryivaniuta.foundation.metrics.MetricsRegistry;
+import com.github.dimitryivaniuta.foundation.ocr.OcrResult;
+import com.github.dimitryivaniuta.foundation.streams.DocumentPayload;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.textract.TextractAsyncClient;
+import software.amazon.awssdk.services.textract.model.Block;
+import software.amazon.awssdk.services.textract.model.BlockType;
+import software.amazon.awssdk.services.textract.model.DetectDocumentTextRequest;
+import software.amazon.awssdk.services.textract.model.DetectDocumentTextResponse;
+import software.amazon.awssdk.services.textract.model.ThrottlingException;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link TextractOcrEngine}, verifying result assembly and the
+ * concurrency limiter's reaction to Textract throttling.
+ */
+class TextractOcrEngineTest {
+
+    private TextractAsyncClient client;
+    private AdaptiveConcurrencyLimiter limiter;
+    private TextractOcrEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        client = mock(TextractAsyncClient.class);
+        limiter = new AdaptiveConcurrencyLimiter(4, 1, 4, Duration.ofSeconds(30));
+        engine = new TextractOcrEngine(() -> client, limiter, Duration.ofSeconds(5), new MetricsRegistry());
+    }
+
+    /**
+     * Verifies that the text is built from LINE blocks only, in order.
+     */
+    @Test
+    void testTextBuiltFromLineBlocks() throws Exception {
+        DetectDocumentTextResponse response = DetectDocumentTextResponse.builder()
+                .blocks(block(BlockType.PAGE, null), block(BlockType.LINE, "Invoice 42"),
+                        block(BlockType.WORD, "Invoice"), block(BlockType.LINE, "Total: 10 EUR"))
+                .build();
+        when(client.detectDocumentText(any(DetectDocumentTextRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture(response));
+
+        OcrResult result = engine.recognize(page()).get(5, TimeUnit.SECONDS);
+
+        assertEquals("textract", result.getEngine());
+        assertEquals("Invoice 42\nTotal: 10 EUR", result.getText());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    /**
+     * Verifies that a throttled call fails the page and shrinks the limit.
+     */
+    @Test
+    void testThrottlingShrinksLimit() {
+        when(client.detectDocumentText(any(DetectDocumentTextRequest.class)))
+                .thenReturn(CompletableFuture.failedFuture(
+                        ThrottlingException.builder().message("Rate exceeded").statusCode(429).build()));
+
+        ExecutionException error = assertThrows(ExecutionException.class,
+                () -> engine.recognize(page()).get(5, TimeUnit.SECONDS));
+
+        assertInstanceOf(ThrottlingException.class, error.getCause());
+        assertEquals(1, limiter.getDroppedCount());
+        assertEquals(3, limiter.getLimit());
+    }
+
+    /**
+     * Verifies that a closed engine takes no more pages.
+     */
+    @Test
+    void testClosedEngineRejectsPages() {
+        engine.close();
+        assertThrows(IllegalStateException.class, () -> engine.recognize(page()));
+        verifyNoInteractions(client);
+    }
+
+    /**
+     * Verifies that close waits for a call already sent to Textract.
+     */
+    @Test
+    void testCloseWaitsForInFlightCall() throws Exception {
+        CompletableFuture<DetectDocumentTextResponse> call = new CompletableFuture<>();
+        when(client.detectDocumentText(any(DetectDocumentTextRequest.class))).thenReturn(call);
+        CompletableFuture<OcrResult> result = engine.recognize(page());
+        verify(client, timeout(5_000)).detectDocumentText(any(DetectDocumentTextRequest.class));
+
+        CompletableFuture<Void> closing = CompletableFuture.runAsync(engine::close);
+        Thread.sleep(200);
+        assertFalse(closing.isDone(), "close should wait for the outstanding call");
+
+        call.complete(DetectDocumentTextResponse.builder().blocks(block(BlockType.LINE, "Invoice 42")).build());
+        closing.get(5, TimeUnit.SECONDS);
+        assertEquals("Invoice 42", result.getNow(null).getText());
+    }
+
+    private static Block block(final BlockType type, final String text) {
+        return Block.builder().blockType(type).text(text).build();
+    }
+
+    private static DocumentPayload page() {
+        return DocumentPayload.builder()
+                .documentId("doc")
+                .pageNumber(1)
+                .contentType("image/png")
+                .image(ByteBuffer.wrap(new byte[]{1, 2, 3}))
+                .build();
+    }
+}
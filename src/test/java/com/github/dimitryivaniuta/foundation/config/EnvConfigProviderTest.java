@@ -4,6 +4,10 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
@@ -154,4 +158,89 @@ class EnvConfigProviderTest {
                 "Exception message should mention missing APPLICATION_ID"
         );
     }
+
+    /**
+     * Verifies that each layer replaces the non-blank values of the layers below it.
+     */
+    @Test
+    void testLaterLayersTakePrecedence() {
+        System.setProperty("GV_THRESHOLD", "10");
+        System.setProperty("HEALTH_CHECK_INTERVAL_SEC", " ");
+
+        Config cfg = EnvConfigProvider.loadConfig(List.of(
+                ConfigSource.of("file", Map.of(
+                        "APPLICATION_ID", "file-app",
+                        "INPUT_TOPIC", "in-topic",
+                        "OUTPUT_TOPIC", "out-topic",
+                        "GOOGLE_APPLICATION_CREDENTIALS", "/tmp/key.json",
+                        "GV_THRESHOLD", "5",
+                        "HEALTH_CHECK_INTERVAL_SEC", "30")),
+                ConfigSource.systemProperties(),
+                ConfigSource.of("overrides", Map.of("APPLICATION_ID", "batch-app"))));
+
+        assertEquals("batch-app", cfg.getApplicationId());
+        assertEquals(10, cfg.getGvThreshold());
+        assertEquals(30, cfg.getHealthCheckIntervalSec(), "blank values do not replace lower layers");
+        assertEquals(2_000L, cfg.getHealthCheckTimeoutMs());
+        assertEquals("batch-app-errors", cfg.getErrorTopic());
+    }
+
+    /**
+     * Verifies that the Streams instance id falls back to the pod name and that an
+     * explicit id wins over it.
+     */
+    @Test
+    void testInstanceIdFromPodName() {
+        Map<String, String> settings = new HashMap<>(Map.of(
+                "APPLICATION_ID", "app-1",
+                "INPUT_TOPIC", "in-topic",
+                "OUTPUT_TOPIC", "out-topic",
+                "GOOGLE_APPLICATION_CREDENTIALS", "/tmp/key.json",
+                "POD_NAME", "ocr-worker-0"));
+
+        Config fromPod = EnvConfigProvider.loadConfig(List.of(ConfigSource.of("env", settings)));
+        settings.put("STREAMS_INSTANCE_ID", "worker-a");
+        Config explicit = EnvConfigProvider.loadConfig(List.of(ConfigSource.of("env", settings)));
+
+        assertEquals("ocr-worker-0", fromPod.getStreamsInstanceId());
+        assertEquals(1, fromPod.getStreamsNumStandbyReplicas());
+        assertEquals(600_000L, fromPod.getStreamsProbingRebalanceIntervalMs());
+        assertEquals("worker-a", explicit.getStreamsInstanceId());
+    }
+
+    /**
+     * Verifies that every missing or invalid setting is reported in one exception.
+     */
+    @Test
+    void testAllProblemsReportedTogether() {
+        IllegalStateException ex = assertThrows(IllegalStateException.class,
+                () -> EnvConfigProvider.loadConfig(List.of(ConfigSource.of("file", Map.of(
+                        "INPUT_TOPIC", "in-topic",
+                        "GV_THRESHOLD", "many",
+                        "RUN_GV_IN_PARALLEL", "yes")))));
+
+        assertTrue(ex.getMessage().contains("APPLICATION_ID"));
+        assertTrue(ex.getMessage().contains("OUTPUT_TOPIC"));
+        assertTrue(ex.getMessage().contains("'GV_THRESHOLD' must be an integer, but was 'many' (from file)"));
+        assertTrue(ex.getMessage().contains("RUN_GV_IN_PARALLEL"));
+        assertFalse(ex.getMessage().contains("INPUT_TOPIC"));
+    }
+
+    /**
+     * Verifies that every load returns its own instance, so component graphs never share one.
+     */
+    @Test
+    void testEachLoadReturnsNewConfig() {
+        Map<String, String> required = Map.of(
+                "APPLICATION_ID", "app-1",
+                "INPUT_TOPIC", "in-topic",
+                "OUTPUT_TOPIC", "out-topic",
+                "GOOGLE_APPLICATION_CREDENTIALS", "/tmp/key.json");
+
+        Config first = EnvConfigProvider.loadConfig(List.of(ConfigSource.of("file", required)));
+        Config second = EnvConfigProvider.loadConfig(List.of(ConfigSource.of("file", required)));
+
+        assertEquals(first, second);
+        assertNotSame(first, second);
+    }
 }
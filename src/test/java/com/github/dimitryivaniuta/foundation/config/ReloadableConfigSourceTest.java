@@ -0,0 +1,118 @@
+package com.github.dimitryivaniuta.foundation.config;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link ReloadableConfigSource}, verifying file parsing, snapshot
+ * publication and live watching.
+ */
+class ReloadableConfigSourceTest {
+
+    /**
+     * Builds a Config from the file's {@code GV_THRESHOLD} only, independent of the environment.
+     */
+    private static final Function<Map<String, String>, Config> LOADER = values -> {
+        String threshold = values.getOrDefault("GV_THRESHOLD", "1");
+        try {
+            return Config.builder().gvThreshold(Integer.parseInt(threshold)).build();
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException("GV_THRESHOLD must be an integer, but was '" + threshold + "'", e);
+        }
+    };
+
+    @TempDir
+    Path dir;
+
+    /**
+     * Verifies that properties files and flat YAML files are read into the same settings.
+     */
+    @Test
+    void testReadsPropertiesAndFlatYaml() throws IOException {
+        Path properties = Files.writeString(dir.resolve("sdk.properties"),
+                "# tuning\nGV_THRESHOLD=7\nVISION_API_TIMEOUT_MS = 5000\n");
+        Path yaml = Files.writeString(dir.resolve("sdk.yaml"),
+                "---\n# tuning\nGV_THRESHOLD: 7 # pages\nVISION_API_TIMEOUT_MS: \"5000\"\n");
+
+        Map<String, String> expected = Map.of("GV_THRESHOLD", "7", "VISION_API_TIMEOUT_MS", "5000");
+        assertEquals(expected, ConfigSource.file(properties).values());
+        assertEquals(expected, ConfigSource.file(yaml).values());
+    }
+
+    /**
+     * Verifies that nested YAML is rejected rather than silently misread.
+     */
+    @Test
+    void testNestedYamlIsRejected() throws IOException {
+        Path yaml = Files.writeString(dir.resolve("sdk.yml"), "vision:\n  timeout: 5000\n");
+        assertThrows(IllegalStateException.class, () -> ConfigSource.file(yaml).values());
+    }
+
+    /**
+     * Verifies that a changed file publishes a new snapshot and notifies every listener once,
+     * and that an unchanged file publishes nothing.
+     */
+    @Test
+    void testReloadPublishesChanges() throws IOException {
+        Path file = Files.writeString(dir.resolve("sdk.properties"), "GV_THRESHOLD=5\n");
+        List<Integer> bound = new CopyOnWriteArrayList<>();
+        List<Integer> added = new CopyOnWriteArrayList<>();
+        ReloadableConfigSource source = new ReloadableConfigSource(file, LOADER,
+                () -> List.of((previous, current) -> bound.add(current.getGvThreshold())), Duration.ZERO);
+        source.addListener((previous, current) -> added.add(previous.getGvThreshold()));
+        assertEquals(5, source.get().getGvThreshold());
+
+        assertFalse(source.reload(), "unchanged file should not publish");
+        Files.writeString(file, "GV_THRESHOLD=9\n");
+        assertTrue(source.reload());
+
+        assertEquals(9, source.get().getGvThreshold());
+        assertEquals(List.of(9), bound);
+        assertEquals(List.of(5), added);
+    }
+
+    /**
+     * Verifies that an invalid file keeps the previous snapshot.
+     */
+    @Test
+    void testInvalidFileKeepsCurrentSnapshot() throws IOException {
+        Path file = Files.writeString(dir.resolve("sdk.properties"), "GV_THRESHOLD=5\n");
+        ReloadableConfigSource source = new ReloadableConfigSource(file, LOADER, List::of, Duration.ZERO);
+
+        Files.writeString(file, "GV_THRESHOLD=many\n");
+        assertFalse(source.reload());
+        assertEquals(5, source.get().getGvThreshold());
+    }
+
+    /**
+     * Verifies that the watcher picks up an edited file without an explicit reload.
+     */
+    @Test
+    void testWatcherReloadsEditedFile() throws Exception {
+        Path file = Files.writeString(dir.resolve("sdk.properties"), "GV_THRESHOLD=5\n");
+        CountDownLatch changed = new CountDownLatch(1);
+        try (ReloadableConfigSource source = new ReloadableConfigSource(file, LOADER, List::of,
+                Duration.ofMillis(50))) {
+            source.addListener((previous, current) -> changed.countDown());
+            source.start();
+
+            Files.writeString(file, "GV_THRESHOLD=12\n");
+
+            assertTrue(changed.await(30, TimeUnit.SECONDS), "watcher should reload the file");
+            assertEquals(12, source.get().getGvThreshold());
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.github.dimitryivaniuta.foundation.grpc;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link AdaptiveConcurrencyLimiter}, verifying the AIMD limit
+ * adjustments, FIFO hand-off and rejection of callers once the limit is reached.
+ */
+class AdaptiveConcurrencyLimiterTest {
+
+    private static final Duration BUDGET = Duration.ofSeconds(10);
+
+    /**
+     * Verifies that callers beyond the limit are rejected and counted.
+     */
+    @Test
+    void testRejectsBeyondLimit() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 1, 2, BUDGET);
+
+        AdaptiveConcurrencyLimiter.Permit first = limiter.tryAcquire();
+        AdaptiveConcurrencyLimiter.Permit second = limiter.tryAcquire();
+        assertNotNull(first);
+        assertNotNull(second);
+        assertNull(limiter.tryAcquire());
+        assertEquals(2, limiter.getInFlight());
+        assertEquals(1, limiter.getRejectedCount());
+
+        first.onIgnore();
+        first.onIgnore();
+        assertEquals(1, limiter.getInFlight(), "A permit must release its slot only once");
+    }
+
+    /**
+     * Verifies that a burst of drops from calls in flight together shrinks the limit only once.
+     */
+    @Test
+    void testDecreasesOncePerCongestionEpisode() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(8, 1, 8, BUDGET, 0.5);
+        AdaptiveConcurrencyLimiter.Permit[] permits = new AdaptiveConcurrencyLimiter.Permit[8];
+        for (int i = 0; i < permits.length; i++) {
+            permits[i] = limiter.tryAcquire();
+        }
+        for (AdaptiveConcurrencyLimiter.Permit permit : permits) {
+            permit.onDropped();
+        }
+        assertEquals(4, limiter.getLimit());
+        assertEquals(8, limiter.getDroppedCount());
+
+        // A call started after the decrease is a new signal
+        limiter.tryAcquire().onDropped();
+        assertEquals(2, limiter.getLimit());
+    }
+
+    /**
+     * Verifies that calls over the latency budget shrink the limit and fast calls grow it back.
+     */
+    @Test
+    void testLatencyBudgetAndAdditiveIncrease() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4, 1, 4, Duration.ofMillis(5), 0.5);
+        AdaptiveConcurrencyLimiter.Permit slow = limiter.tryAcquire();
+        TimeUnit.MILLISECONDS.sleep(20);
+        slow.onSuccess();
+        assertEquals(2, limiter.getLimit());
+
+        for (int i = 0; i < 20 && limiter.getLimit() < 4; i++) {
+            AdaptiveConcurrencyLimiter.Permit a = limiter.tryAcquire();
+            AdaptiveConcurrencyLimiter.Permit b = limiter.tryAcquire();
+            a.onSuccess();
+            b.onSuccess();
+        }
+        assertEquals(4, limiter.getLimit(), "The limit should recover up to its maximum");
+    }
+
+    /**
+     * Verifies that waiters are granted slots in arrival order and time out when none frees up.
+     */
+    @Test
+    void testWaitersAreServedInOrder() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 1, 1, BUDGET);
+        AdaptiveConcurrencyLimiter.Permit held = limiter.tryAcquire();
+
+        assertNull(limiter.acquire(Duration.ofMillis(10)));
+
+        CompletableFuture<AdaptiveConcurrencyLimiter.Permit> first = waitFor(limiter);
+        awaitWaiters(limiter, 1);
+        CompletableFuture<AdaptiveConcurrencyLimiter.Permit> second = waitFor(limiter);
+        awaitWaiters(limiter, 2);
+        assertNull(limiter.tryAcquire(), "A newcomer must not overtake queued callers");
+
+        held.onIgnore();
+        first.get(5, TimeUnit.SECONDS).onIgnore();
+        assertNotNull(second.get(5, TimeUnit.SECONDS));
+        assertEquals(1, limiter.getInFlight());
+    }
+
+    private static CompletableFuture<AdaptiveConcurrencyLimiter.Permit> waitFor(
+            final AdaptiveConcurrencyLimiter limiter) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return limiter.acquire(Duration.ofSeconds(5));
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    private static void awaitWaiters(final AdaptiveConcurrencyLimiter limiter, final int count)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (limiter.getWaiting() < count && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(5);
+        }
+        assertEquals(count, limiter.getWaiting());
+    }
+
+    /**
+     * Verifies that lowering the maximum caps the limit at once and that it grows
+     * back towards a raised maximum.
+     */
+    @Test
+    void testMaxLimitCanBeChanged() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4, 1, 4, BUDGET);
+        limiter.setMaxLimit(2);
+        assertEquals(2, limiter.getLimit());
+        assertNotNull(limiter.tryAcquire());
+        assertNotNull(limiter.tryAcquire());
+        assertNull(limiter.tryAcquire());
+
+        limiter.setMaxLimit(8);
+        assertEquals(2, limiter.getLimit(), "a higher maximum is reached through additive increase");
+        assertThrows(IllegalArgumentException.class, () -> limiter.setMaxLimit(0));
+    }
+}
@@ -0,0 +1,56 @@
+package com.github.dimitryivaniuta.foundation.grpc;
+
+import com.github.dimitryivaniuta.foundation.config.Config;
+import com.github.dimitryivaniuta.foundation.metrics.MetricsRegistry;
+import com.github.dimitryivaniuta.foundation.ocr.OcrEngine;
+import com.github.dimitryivaniuta.foundation.ocr.StubOcrEngine;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link GrpcClientModule} bindings that need no Vision client.
+ */
+class GrpcClientModuleTest {
+
+    private final GrpcClientModule module = new GrpcClientModule();
+
+    /**
+     * Verifies that the router binding can be provided, puts Vision first and exports
+     * its per-engine metrics.
+     */
+    @Test
+    void testProvideOcrEngineRouter() {
+        Config config = Config.builder().visionApiTimeoutMs(5_000L).visionHedgingMinDelayMs(100L).build();
+        MetricsRegistry registry = new MetricsRegistry();
+        Set<OcrEngine> engines = Set.of(new StubOcrEngine("textract"), new StubOcrEngine(VisionOcrEngine.NAME));
+
+        OcrEngineRouter router = module.provideOcrEngineRouter(config, engines, registry);
+
+        assertEquals(VisionOcrEngine.NAME, router.getEngineStats().get(0).getEngine().getName());
+        String scrape = registry.scrape();
+        assertTrue(scrape.contains("foundation_ocr_engine_latency_p50_seconds{engine=\"textract\"}"), scrape);
+        assertTrue(scrape.contains("foundation_ocr_engine_latency_p99_seconds{engine=\"vision\"}"), scrape);
+        assertTrue(scrape.contains("foundation_ocr_router_decisions_total{decision=\"probe\",engine=\"vision\"}"),
+                scrape);
+    }
+
+    /**
+     * Verifies that the limiter's latency target is separate from the call deadline:
+     * configured, derived from the deadline when unset, and never above it.
+     */
+    @Test
+    void testVisionLatencyTargetBelowDeadline() {
+        Config configured = Config.builder().visionApiTimeoutMs(30_000L).visionLatencyTargetMs(2_000L).build();
+        Config unset = Config.builder().visionApiTimeoutMs(30_000L).build();
+        Config tooHigh = Config.builder().visionApiTimeoutMs(1_000L).visionLatencyTargetMs(2_000L).build();
+
+        assertEquals(Duration.ofSeconds(2), GrpcClientModule.visionLatencyTarget(configured));
+        assertEquals(Duration.ofMillis(7_500), GrpcClientModule.visionLatencyTarget(unset));
+        assertEquals(Duration.ofSeconds(1), GrpcClientModule.visionLatencyTarget(tooHigh));
+        assertEquals(Duration.ofSeconds(30), GrpcClientModule.visionLatencyBudget(configured));
+    }
+}
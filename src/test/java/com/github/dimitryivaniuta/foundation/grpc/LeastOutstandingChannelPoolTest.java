@@ -0,0 +1,105 @@
+package com.github.dimitryivaniuta.foundation.grpc;
+
+import io.grpc.CallOptions;
+import io.grpc.ClientCall;
+import io.grpc.ConnectivityState;
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link LeastOutstandingChannelPool}, verifying that calls go to the
+ * least loaded channel and that in-flight counts follow call start and close.
+ */
+class LeastOutstandingChannelPoolTest {
+
+    private final List<ManagedChannel> channels = new ArrayList<>();
+    private final List<ClientCall<Object, Object>> delegates = new ArrayList<>();
+    private LeastOutstandingChannelPool pool;
+
+    /**
+     * Creates a pool of three mocked channels, each handing out mocked calls.
+     */
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        pool = new LeastOutstandingChannelPool(3, () -> {
+            ManagedChannel channel = Mockito.mock(ManagedChannel.class);
+            Mockito.when(channel.newCall(Mockito.any(), Mockito.any())).thenAnswer(invocation -> {
+                ClientCall<Object, Object> call = Mockito.mock(ClientCall.class);
+                delegates.add(call);
+                return call;
+            });
+            channels.add(channel);
+            return channel;
+        });
+    }
+
+    /**
+     * Verifies that busy channels are avoided and that closing a call frees its slot.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void testPicksLeastOutstandingChannel() {
+        MethodDescriptor<Object, Object> method = Mockito.mock(MethodDescriptor.class);
+        List<ClientCall<Object, Object>> started = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            ClientCall<Object, Object> call = pool.newCall(method, CallOptions.DEFAULT);
+            call.start(Mockito.mock(ClientCall.Listener.class), new Metadata());
+            started.add(call);
+        }
+        assertEquals(1, pool.getInFlight(0));
+        assertEquals(1, pool.getInFlight(1));
+        assertEquals(1, pool.getInFlight(2));
+
+        // Close the call on channel 1; the next call must land there
+        ClientCall<Object, Object> onChannelOne = delegates.get(1);
+        ArgumentCaptor<ClientCall.Listener<Object>> listener = ArgumentCaptor.forClass(ClientCall.Listener.class);
+        Mockito.verify(onChannelOne).start(listener.capture(), Mockito.any());
+        listener.getValue().onClose(Status.OK, new Metadata());
+        assertEquals(0, pool.getInFlight(1));
+
+        pool.newCall(method, CallOptions.DEFAULT).start(Mockito.mock(ClientCall.Listener.class), new Metadata());
+        assertEquals(1, pool.getInFlight(1));
+        Mockito.verify(channels.get(1), Mockito.times(2)).newCall(Mockito.any(), Mockito.any());
+    }
+
+    /**
+     * Verifies that shutdown reaches every channel.
+     */
+    @Test
+    void testShutdownClosesAllChannels() {
+        pool.shutdown();
+        channels.forEach(channel -> Mockito.verify(channel).shutdown());
+    }
+
+    /**
+     * Verifies that connect waits for channels that become ready later and counts
+     * those that never do as not ready.
+     */
+    @Test
+    void testConnectWaitsForReadyChannels() throws InterruptedException {
+        Mockito.when(channels.get(0).getState(Mockito.anyBoolean())).thenReturn(ConnectivityState.READY);
+        Mockito.when(channels.get(1).getState(Mockito.anyBoolean()))
+                .thenReturn(ConnectivityState.CONNECTING, ConnectivityState.READY);
+        Mockito.doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(1).run();
+            return null;
+        }).when(channels.get(1)).notifyWhenStateChanged(Mockito.any(), Mockito.any());
+        Mockito.when(channels.get(2).getState(Mockito.anyBoolean())).thenReturn(ConnectivityState.TRANSIENT_FAILURE);
+
+        assertEquals(2, pool.connect(Duration.ofMillis(50)));
+        Mockito.verify(channels.get(2)).getState(true);
+    }
+}
@@ -0,0 +1,208 @@
+package com.github.dimitryivaniuta.foundation.grpc;
+
+import com.github.dimitryivaniuta.foundation.ocr.OcrEngine;
+import com.github.dimitryivaniuta.foundation.ocr.OcrResult;
+import com.github.dimitryivaniuta.foundation.ocr.StubOcrEngine;
+import com.github.dimitryivaniuta.foundation.streams.DocumentPayload;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link OcrEngineRouter}, verifying latency-based routing, hedging
+ * and fallback between engines.
+ */
+class OcrEngineRouterTest {
+
+    /**
+     * Verifies that pages go to the engine with the lower p99 once both are warmed up.
+     */
+    @Test
+    void testRoutesToFasterEngine() {
+        StubOcrEngine vision = new StubOcrEngine("vision");
+        StubOcrEngine textract = new StubOcrEngine("textract");
+        OcrEngineRouter router = new OcrEngineRouter(List.of(vision, textract),
+                Duration.ofSeconds(5), Duration.ZERO);
+        warmUp(router.getEngineStats().get(0), Duration.ofMillis(400));
+        warmUp(router.getEngineStats().get(1), Duration.ofMillis(40));
+
+        assertEquals("textract", router.recognize(page()).join().getEngine());
+
+        assertEquals(0, vision.getCallCount());
+        assertEquals(1, router.getEngineStats().get(1).getRoutedCount());
+        assertEquals(Duration.ofMillis(40), router.getEngineStats().get(1).getP99());
+    }
+
+    /**
+     * Verifies that a high error rate outweighs a lower latency.
+     */
+    @Test
+    void testErrorRateLowersRank() {
+        OcrEngineRouter router = new OcrEngineRouter(
+                List.of(new StubOcrEngine("vision"), new StubOcrEngine("textract")),
+                Duration.ofSeconds(5), Duration.ZERO);
+        OcrEngineRouter.EngineStats vision = router.getEngineStats().get(0);
+        warmUp(vision, Duration.ofMillis(40));
+        warmUp(router.getEngineStats().get(1), Duration.ofMillis(100));
+        for (int i = 0; i < 48; i++) {
+            vision.recordFailure();
+        }
+
+        assertEquals(0.75, vision.getErrorRate(), 1e-9);
+        assertEquals("textract", router.rank().get(0).getEngine().getName());
+    }
+
+    /**
+     * Verifies that a page the primary has not answered within the budget is hedged
+     * to the runner-up, which wins.
+     */
+    @Test
+    void testSlowPrimaryIsHedged() throws Exception {
+        OcrEngine stuck = engine("vision", new CompletableFuture<>());
+        StubOcrEngine textract = new StubOcrEngine("textract");
+        OcrEngineRouter router = new OcrEngineRouter(List.of(stuck, textract),
+                Duration.ofMillis(50), Duration.ZERO);
+
+        OcrResult result = router.recognize(page()).get(5, TimeUnit.SECONDS);
+
+        assertEquals("textract", result.getEngine());
+        assertEquals(1, router.getEngineStats().get(1).getHedgeCount());
+        // The win is counted right after the result completes, on the hedge's thread
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (router.getEngineStats().get(1).getHedgeWinCount() == 0 && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertEquals(1, router.getEngineStats().get(1).getHedgeWinCount());
+    }
+
+    /**
+     * Verifies that a page the primary fails is sent to the runner-up at once.
+     */
+    @Test
+    void testFailedPageFallsBack() throws Exception {
+        OcrEngine failing = engine("vision", CompletableFuture.failedFuture(new IllegalStateException("quota")));
+        OcrEngineRouter router = new OcrEngineRouter(List.of(failing, new StubOcrEngine("textract")),
+                Duration.ofSeconds(30), Duration.ZERO);
+
+        assertEquals("textract", router.recognize(page()).get(5, TimeUnit.SECONDS).getEngine());
+        assertEquals(1, router.getEngineStats().get(1).getFallbackCount());
+        assertEquals(1.0, router.getEngineStats().get(0).getErrorRate(), 1e-9);
+    }
+
+    /**
+     * Verifies that engines warming up take turns, so each is measured early.
+     */
+    @Test
+    void testEnginesTakeTurnsWhileWarmingUp() {
+        StubOcrEngine vision = new StubOcrEngine("vision");
+        StubOcrEngine textract = new StubOcrEngine("textract");
+        OcrEngineRouter router = new OcrEngineRouter(List.of(vision, textract),
+                Duration.ofSeconds(30), Duration.ZERO);
+
+        for (int i = 0; i < 2 * OcrEngineRouter.MIN_SAMPLES; i++) {
+            router.recognize(page()).join();
+        }
+
+        assertEquals(OcrEngineRouter.MIN_SAMPLES, vision.getCallCount());
+        assertEquals(OcrEngineRouter.MIN_SAMPLES, textract.getCallCount());
+        assertNotNull(router.getEngineStats().get(1).getP99());
+    }
+
+    /**
+     * Verifies that an engine failing every call from start-up stops being the primary
+     * after a few failures, although it never finishes warming up.
+     */
+    @Test
+    void testAlwaysFailingColdEngineRanksLast() {
+        AtomicInteger visionCalls = new AtomicInteger();
+        OcrEngine failing = new OcrEngine() {
+            @Override
+            public String getName() {
+                return "vision";
+            }
+
+            @Override
+            public CompletableFuture<OcrResult> recognize(final DocumentPayload page) {
+                visionCalls.incrementAndGet();
+                return CompletableFuture.failedFuture(new IllegalStateException("permission denied"));
+            }
+        };
+        StubOcrEngine textract = new StubOcrEngine("textract");
+        OcrEngineRouter router = new OcrEngineRouter(List.of(failing, textract),
+                Duration.ofSeconds(30), Duration.ZERO);
+
+        for (int i = 0; i < OcrEngineRouter.PROBE_EVERY - 1; i++) {
+            assertEquals("textract", router.recognize(page()).join().getEngine());
+        }
+
+        assertEquals(OcrEngineRouter.WARM_UP_FAILURES, visionCalls.get());
+        assertEquals("textract", router.rank().get(0).getEngine().getName());
+        assertEquals(OcrEngineRouter.WARM_UP_FAILURES, router.getEngineStats().get(1).getFallbackCount());
+    }
+
+    /**
+     * Verifies that a page fails when both engines fail it.
+     */
+    @Test
+    void testPageFailsWhenBothEnginesFail() {
+        OcrEngineRouter router = new OcrEngineRouter(List.of(
+                engine("vision", CompletableFuture.failedFuture(new IllegalStateException("quota"))),
+                engine("textract", CompletableFuture.failedFuture(new IllegalStateException("throttled")))),
+                Duration.ofSeconds(30), Duration.ZERO);
+
+        ExecutionException error = assertThrows(ExecutionException.class,
+                () -> router.recognize(page()).get(5, TimeUnit.SECONDS));
+        assertEquals("throttled", error.getCause().getMessage());
+        assertEquals("quota", error.getCause().getSuppressed()[0].getMessage());
+    }
+
+    /**
+     * Verifies that Vision is preferred and the other engines follow by name.
+     */
+    @Test
+    void testRoutingOrderPrefersVision() {
+        List<OcrEngine> ordered = GrpcClientModule.routingOrder(Set.of(
+                new StubOcrEngine("textract"), new StubOcrEngine("vision"), new StubOcrEngine("azure")));
+
+        assertEquals(List.of("vision", "azure", "textract"), ordered.stream().map(OcrEngine::getName).toList());
+        assertThrows(IllegalStateException.class, () -> GrpcClientModule.routingOrder(Set.of()));
+    }
+
+    private static void warmUp(final OcrEngineRouter.EngineStats stats, final Duration latency) {
+        for (int i = 0; i < OcrEngineRouter.MIN_SAMPLES; i++) {
+            stats.recordSuccess(latency.toNanos());
+        }
+    }
+
+    private static OcrEngine engine(final String name, final CompletableFuture<OcrResult> answer) {
+        return new OcrEngine() {
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public CompletableFuture<OcrResult> recognize(final DocumentPayload page) {
+                return answer;
+            }
+        };
+    }
+
+    private static DocumentPayload page() {
+        return DocumentPayload.builder()
+                .documentId("doc")
+                .pageNumber(1)
+                .contentType("image/png")
+                .image(ByteBuffer.wrap(new byte[]{1, 2, 3}))
+                .build();
+    }
+}
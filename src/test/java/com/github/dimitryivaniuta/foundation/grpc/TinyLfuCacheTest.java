@@ -0,0 +1,69 @@
+package com.github.dimitryivaniuta.foundation.grpc;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link TinyLfuCache}, verifying the size bound and that frequently
+ * requested keys survive a scan of one-off keys.
+ */
+class TinyLfuCacheTest {
+
+    /**
+     * Verifies that the cache never holds more than its maximum size and counts evictions.
+     */
+    @Test
+    void testSizeIsBounded() {
+        TinyLfuCache<Integer, String> cache = new TinyLfuCache<>(100);
+        for (int i = 0; i < 1_000; i++) {
+            cache.get(i);
+            cache.put(i, "v" + i);
+        }
+        assertEquals(100, cache.size());
+        assertEquals(900, cache.evictions());
+    }
+
+    /**
+     * Verifies that a hot set keeps its place while many keys are requested only once.
+     */
+    @Test
+    void testHotKeysSurviveScan() {
+        TinyLfuCache<String, String> cache = new TinyLfuCache<>(100);
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 50; i++) {
+                String key = "hot-" + i;
+                if (cache.get(key) == null) {
+                    cache.put(key, key);
+                }
+            }
+        }
+        for (int i = 0; i < 10_000; i++) {
+            String key = "scan-" + i;
+            if (cache.get(key) == null) {
+                cache.put(key, key);
+            }
+        }
+
+        int retained = 0;
+        for (int i = 0; i < 50; i++) {
+            if (cache.get("hot-" + i) != null) {
+                retained++;
+            }
+        }
+        assertTrue(retained >= 45, "Expected the hot set to survive the scan, retained " + retained);
+    }
+
+    /**
+     * Verifies that putting an existing key replaces its value without evicting anything.
+     */
+    @Test
+    void testPutReplacesValue() {
+        TinyLfuCache<String, String> cache = new TinyLfuCache<>(10);
+        cache.put("a", "1");
+        cache.put("a", "2");
+        assertEquals("2", cache.get("a"));
+        assertEquals(1, cache.size());
+        assertEquals(0, cache.evictions());
+    }
+}
@@ -0,0 +1,199 @@
+package com.github.dimitryivaniuta.foundation.grpc;
+
+import com.github.dimitryivaniuta.foundation.config.Config;
+import com.google.cloud.vision.v1.AnnotateImageRequest;
+import com.google.cloud.vision.v1.AnnotateImageResponse;
+import com.google.cloud.vision.v1.BatchAnnotateImagesRequest;
+import com.google.cloud.vision.v1.BatchAnnotateImagesResponse;
+import com.google.cloud.vision.v1.Image;
+import com.google.cloud.vision.v1.ImageAnnotatorClient;
+import com.google.cloud.vision.v1.TextAnnotation;
+import com.google.protobuf.ByteString;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link VisionBatchExecutor}, verifying that pages are grouped
+ * into batches of {@code gvThreshold} and that each caller receives its own response.
+ */
+class VisionBatchExecutorTest {
+
+    private ImageAnnotatorClient client;
+
+    /**
+     * Stubs the Vision client to echo each page's content back as its OCR text.
+     */
+    @BeforeEach
+    void setUp() {
+        client = Mockito.mock(ImageAnnotatorClient.class);
+        Mockito.when(client.batchAnnotateImages(Mockito.any(BatchAnnotateImagesRequest.class)))
+                .thenAnswer(invocation -> {
+                    BatchAnnotateImagesRequest request = invocation.getArgument(0);
+                    BatchAnnotateImagesResponse.Builder response = BatchAnnotateImagesResponse.newBuilder();
+                    for (AnnotateImageRequest page : request.getRequestsList()) {
+                        response.addResponses(AnnotateImageResponse.newBuilder()
+                                .setFullTextAnnotation(TextAnnotation.newBuilder()
+                                        .setText(page.getImage().getContent().toStringUtf8()))
+                                .build());
+                    }
+                    return response.build();
+                });
+    }
+
+    /**
+     * Verifies that seven pages with a threshold of three produce batches of 3, 3 and 1,
+     * and that every future is completed with the response for its own page.
+     */
+    @Test
+    void testPagesAreBatchedUpToThreshold() throws Exception {
+        try (VisionBatchExecutor executor = new VisionBatchExecutor(config(3, false, 60_000L), () -> client)) {
+            List<CompletableFuture<AnnotateImageResponse>> futures = new ArrayList<>();
+            for (int i = 0; i < 7; i++) {
+                futures.add(executor.submit(page("page-" + i)));
+            }
+            executor.flush();
+
+            for (int i = 0; i < 7; i++) {
+                assertEquals("page-" + i,
+                        futures.get(i).get(5, TimeUnit.SECONDS).getFullTextAnnotation().getText(),
+                        "Each page should receive its own response");
+            }
+
+            ArgumentCaptor<BatchAnnotateImagesRequest> captor =
+                    ArgumentCaptor.forClass(BatchAnnotateImagesRequest.class);
+            Mockito.verify(client, Mockito.times(3)).batchAnnotateImages(captor.capture());
+            List<Integer> sizes = captor.getAllValues().stream()
+                    .map(BatchAnnotateImagesRequest::getRequestsCount)
+                    .sorted()
+                    .toList();
+            assertEquals(List.of(1, 3, 3), sizes, "Pages should be grouped into batches of at most 3");
+        }
+    }
+
+    /**
+     * Verifies that a partially filled batch is sent once its linger deadline passes.
+     */
+    @Test
+    void testPartialBatchIsSentAfterLinger() throws Exception {
+        try (VisionBatchExecutor executor = new VisionBatchExecutor(config(10, true, 10L), () -> client)) {
+            CompletableFuture<AnnotateImageResponse> future = executor.submit(page("lonely"));
+            assertEquals("lonely", future.get(5, TimeUnit.SECONDS).getFullTextAnnotation().getText());
+        }
+    }
+
+    /**
+     * Verifies that a failed batch RPC fails every page of that batch.
+     */
+    @Test
+    void testRpcFailureFailsAllPagesOfBatch() {
+        RuntimeException failure = new RuntimeException("vision unavailable");
+        Mockito.when(client.batchAnnotateImages(Mockito.any(BatchAnnotateImagesRequest.class)))
+                .thenThrow(failure);
+
+        try (VisionBatchExecutor executor = new VisionBatchExecutor(config(2, false, 60_000L), () -> client)) {
+            CompletableFuture<AnnotateImageResponse> first = executor.submit(page("a"));
+            CompletableFuture<AnnotateImageResponse> second = executor.submit(page("b"));
+
+            ExecutionException ex = assertThrows(ExecutionException.class, () -> first.get(5, TimeUnit.SECONDS));
+            assertSame(failure, ex.getCause(), "Should propagate the RPC failure");
+            assertThrows(ExecutionException.class, () -> second.get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    /**
+     * Verifies that no pages are accepted after the executor is closed.
+     */
+    @Test
+    void testSubmitAfterCloseThrows() {
+        VisionBatchExecutor executor = new VisionBatchExecutor(config(2, false, 10L), () -> client);
+        executor.close();
+        assertThrows(IllegalStateException.class, () -> executor.submit(page("late")));
+    }
+
+    /**
+     * Verifies that in sequential mode batches are sent in the order they were formed.
+     */
+    @Test
+    void testSequentialBatchesKeepSubmissionOrder() throws Exception {
+        List<String> sent = new CopyOnWriteArrayList<>();
+        Mockito.when(client.batchAnnotateImages(Mockito.any(BatchAnnotateImagesRequest.class)))
+                .thenAnswer(invocation -> {
+                    BatchAnnotateImagesRequest request = invocation.getArgument(0);
+                    sent.add(request.getRequestsList().get(0).getImage().getContent().toStringUtf8());
+                    return BatchAnnotateImagesResponse.newBuilder()
+                            .addResponses(AnnotateImageResponse.getDefaultInstance())
+                            .build();
+                });
+
+        try (VisionBatchExecutor executor = new VisionBatchExecutor(config(1, false, 60_000L), () -> client)) {
+            List<CompletableFuture<AnnotateImageResponse>> futures = new ArrayList<>();
+            List<String> submitted = new ArrayList<>();
+            for (int i = 0; i < 500; i++) {
+                submitted.add("page-" + i);
+                futures.add(executor.submit(page("page-" + i)));
+            }
+            CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(30, TimeUnit.SECONDS);
+
+            assertEquals(submitted, sent);
+        }
+    }
+
+    /**
+     * Verifies that pages submitted while the executor closes are either sent or
+     * failed, never left pending.
+     */
+    @Test
+    void testSubmitRacingCloseCompletesEveryPage() throws Exception {
+        VisionBatchExecutor executor = new VisionBatchExecutor(config(5, true, 5L), () -> client);
+        List<CompletableFuture<AnnotateImageResponse>> futures = new CopyOnWriteArrayList<>();
+        CountDownLatch started = new CountDownLatch(1);
+        Thread submitter = Thread.ofPlatform().start(() -> {
+            for (int i = 0; ; i++) {
+                try {
+                    futures.add(executor.submit(page("page-" + i)));
+                } catch (IllegalStateException e) {
+                    return;
+                }
+                started.countDown();
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        executor.close();
+        submitter.join(5_000);
+
+        for (CompletableFuture<AnnotateImageResponse> future : futures) {
+            try {
+                future.get(5, TimeUnit.SECONDS);
+            } catch (ExecutionException e) {
+                assertInstanceOf(IllegalStateException.class, e.getCause());
+            }
+        }
+    }
+
+    private static Config config(int threshold, boolean parallel, long lingerMs) {
+        return Config.builder()
+                .gvThreshold(threshold)
+                .runGVInParallel(parallel)
+                .gvMaxParallelBatches(2)
+                .gvBatchLingerMs(lingerMs)
+                .build();
+    }
+
+    private static AnnotateImageRequest page(String content) {
+        return AnnotateImageRequest.newBuilder()
+                .setImage(Image.newBuilder().setContent(ByteString.copyFromUtf8(content)))
+                .build();
+    }
+}
@@ -0,0 +1,125 @@
+package com.github.dimitryivaniuta.foundation.grpc;
+
+import com.google.api.core.SettableApiFuture;
+import com.google.api.gax.rpc.UnaryCallable;
+import com.google.cloud.vision.v1.AnnotateImageResponse;
+import com.google.cloud.vision.v1.BatchAnnotateImagesRequest;
+import com.google.cloud.vision.v1.BatchAnnotateImagesResponse;
+import com.google.cloud.vision.v1.ImageAnnotatorClient;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link VisionRequestHedger}, verifying that slow calls are hedged
+ * once the latency window is warm, and that the first answer wins.
+ */
+class VisionRequestHedgerTest {
+
+    private final BatchAnnotateImagesRequest request = BatchAnnotateImagesRequest.getDefaultInstance();
+    private final List<SettableApiFuture<BatchAnnotateImagesResponse>> sent = new ArrayList<>();
+    private ImageAnnotatorClient client;
+
+    /**
+     * Stubs the Vision callable to hand out futures the test completes by hand.
+     */
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        UnaryCallable<BatchAnnotateImagesRequest, BatchAnnotateImagesResponse> callable =
+                Mockito.mock(UnaryCallable.class);
+        Mockito.when(callable.futureCall(Mockito.any())).thenAnswer(invocation -> {
+            SettableApiFuture<BatchAnnotateImagesResponse> future = SettableApiFuture.create();
+            synchronized (sent) {
+                sent.add(future);
+            }
+            return future;
+        });
+        client = Mockito.mock(ImageAnnotatorClient.class);
+        Mockito.when(client.batchAnnotateImagesCallable()).thenReturn(callable);
+    }
+
+    /**
+     * Verifies that no hedge is sent before enough latencies have been recorded.
+     */
+    @Test
+    void testNoHedgeWhileWarmingUp() throws Exception {
+        VisionRequestHedger hedger = new VisionRequestHedger(true, Duration.ofMillis(1));
+        CompletableFuture<BatchAnnotateImagesResponse> call =
+                CompletableFuture.supplyAsync(() -> hedger.call(client, request));
+        TimeUnit.MILLISECONDS.sleep(50);
+        sent.get(0).set(BatchAnnotateImagesResponse.getDefaultInstance());
+
+        assertNotNull(call.get(5, TimeUnit.SECONDS));
+        assertEquals(1, sent.size());
+        assertNull(hedger.getHedgeDelay());
+        assertEquals(0, hedger.getHedgeCount());
+    }
+
+    /**
+     * Verifies that a call slower than the p95 is hedged and the hedge's answer is used.
+     */
+    @Test
+    void testSlowCallIsHedged() throws Exception {
+        VisionRequestHedger hedger = new VisionRequestHedger(true, Duration.ofMillis(200));
+        for (int i = 0; i < VisionRequestHedger.MIN_SAMPLES * 10; i++) {
+            hedger.record(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        assertEquals(Duration.ofMillis(200), hedger.getHedgeDelay(), "The minimum delay applies");
+        // Make room in the hedge budget
+        for (int i = 0; i < 20; i++) {
+            CompletableFuture<BatchAnnotateImagesResponse> fast =
+                    CompletableFuture.supplyAsync(() -> hedger.call(client, request));
+            awaitSent(i + 1);
+            sent.get(i).set(BatchAnnotateImagesResponse.getDefaultInstance());
+            fast.get(5, TimeUnit.SECONDS);
+        }
+
+        CompletableFuture<BatchAnnotateImagesResponse> slow =
+                CompletableFuture.supplyAsync(() -> hedger.call(client, request));
+        awaitSent(22);
+        BatchAnnotateImagesResponse fromHedge = BatchAnnotateImagesResponse.newBuilder()
+                .addResponses(AnnotateImageResponse.getDefaultInstance())
+                .build();
+        sent.get(21).set(fromHedge);
+
+        assertSame(fromHedge, slow.get(5, TimeUnit.SECONDS));
+        assertTrue(sent.get(20).isCancelled(), "The slow original should be cancelled");
+        assertEquals(1, hedger.getHedgeCount());
+        assertEquals(1, hedger.getHedgeWinCount());
+    }
+
+    /**
+     * Verifies that a disabled hedger makes plain blocking calls.
+     */
+    @Test
+    void testDisabledHedgerCallsDirectly() {
+        BatchAnnotateImagesResponse response = BatchAnnotateImagesResponse.getDefaultInstance();
+        Mockito.when(client.batchAnnotateImages(request)).thenReturn(response);
+        VisionRequestHedger hedger = new VisionRequestHedger(false, Duration.ZERO);
+
+        assertSame(response, hedger.call(client, request));
+        assertTrue(sent.isEmpty());
+    }
+
+    private void awaitSent(final int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (System.nanoTime() < deadline) {
+            synchronized (sent) {
+                if (sent.size() >= count) {
+                    return;
+                }
+            }
+            TimeUnit.MILLISECONDS.sleep(1);
+        }
+        fail("Expected " + count + " RPCs to be sent");
+    }
+}
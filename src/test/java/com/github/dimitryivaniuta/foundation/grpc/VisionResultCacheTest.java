@@ -0,0 +1,189 @@
+package com.github.dimitryivaniuta.foundation.grpc;
+
+import com.google.cloud.vision.v1.AnnotateImageRequest;
+import com.google.cloud.vision.v1.AnnotateImageResponse;
+import com.google.cloud.vision.v1.Feature;
+import com.google.cloud.vision.v1.Image;
+import com.google.cloud.vision.v1.TextAnnotation;
+import com.google.protobuf.ByteString;
+import com.google.rpc.Status;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link VisionResultCache}, verifying hits, request coalescing,
+ * that failures are not cached, and the disk tier.
+ */
+class VisionResultCacheTest {
+
+    private final AtomicInteger calls = new AtomicInteger();
+
+    private static AnnotateImageRequest page(final String content, final Feature.Type feature) {
+        return AnnotateImageRequest.newBuilder()
+                .setImage(Image.newBuilder().setContent(ByteString.copyFromUtf8(content)))
+                .addFeatures(Feature.newBuilder().setType(feature))
+                .build();
+    }
+
+    private static AnnotateImageRequest page(final String content) {
+        return page(content, Feature.Type.DOCUMENT_TEXT_DETECTION);
+    }
+
+    private static AnnotateImageResponse text(final String text) {
+        return AnnotateImageResponse.newBuilder()
+                .setFullTextAnnotation(TextAnnotation.newBuilder().setText(text))
+                .build();
+    }
+
+    private Function<AnnotateImageRequest, CompletableFuture<AnnotateImageResponse>> echo() {
+        return request -> {
+            calls.incrementAndGet();
+            return CompletableFuture.completedFuture(text(request.getImage().getContent().toStringUtf8()));
+        };
+    }
+
+    /**
+     * Verifies that a resent page is answered from heap, while different options miss.
+     */
+    @Test
+    void testResentPageIsAHit() throws Exception {
+        VisionResultCache cache = new VisionResultCache(100, null);
+
+        assertEquals("invoice", cache.get(page("invoice"), echo()).get().getFullTextAnnotation().getText());
+        assertEquals("invoice", cache.get(page("invoice"), echo()).get().getFullTextAnnotation().getText());
+        cache.get(page("invoice", Feature.Type.TEXT_DETECTION), echo()).get();
+
+        assertEquals(2, calls.get());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+        assertEquals(2, cache.size());
+    }
+
+    /**
+     * Verifies that concurrent lookups of the same page share one load.
+     */
+    @Test
+    void testConcurrentLookupsAreCoalesced() throws Exception {
+        VisionResultCache cache = new VisionResultCache(100, null);
+        CompletableFuture<AnnotateImageResponse> rpc = new CompletableFuture<>();
+        Function<AnnotateImageRequest, CompletableFuture<AnnotateImageResponse>> loader = request -> {
+            calls.incrementAndGet();
+            return rpc;
+        };
+
+        CompletableFuture<AnnotateImageResponse> first = cache.get(page("invoice"), loader);
+        CompletableFuture<AnnotateImageResponse> second = cache.get(page("invoice"), loader);
+        assertFalse(first.isDone());
+        rpc.complete(text("invoice"));
+
+        assertEquals(text("invoice"), first.get(5, TimeUnit.SECONDS));
+        assertEquals(text("invoice"), second.get(5, TimeUnit.SECONDS));
+        assertEquals(1, calls.get());
+        assertEquals(1, cache.getCoalescedCount());
+    }
+
+    /**
+     * Verifies that failed RPCs and per-page errors are not cached.
+     */
+    @Test
+    void testFailuresAreNotCached() throws Exception {
+        VisionResultCache cache = new VisionResultCache(100, null);
+        AnnotateImageResponse error = AnnotateImageResponse.newBuilder()
+                .setError(Status.newBuilder().setCode(3).setMessage("Bad image"))
+                .build();
+
+        CompletableFuture<AnnotateImageResponse> failed = cache.get(page("a"),
+                request -> CompletableFuture.failedFuture(new IllegalStateException("RPC failed")));
+        assertTrue(failed.isCompletedExceptionally());
+        assertEquals(error, cache.get(page("b"), request -> CompletableFuture.completedFuture(error)).get());
+
+        cache.get(page("a"), echo()).get();
+        cache.get(page("b"), echo()).get();
+        assertEquals(2, calls.get());
+        assertEquals(0, cache.getHitCount());
+    }
+
+    /**
+     * Verifies that the disk tier answers lookups after a restart.
+     */
+    @Test
+    void testDiskTierSurvivesRestart(@TempDir final Path dir) throws Exception {
+        VisionResultCache before = new VisionResultCache(100, dir);
+        before.get(page("invoice"), echo()).get();
+        before.close();
+
+        VisionResultCache after = new VisionResultCache(100, dir);
+        assertEquals(text("invoice"), after.get(page("invoice"), echo()).get(5, TimeUnit.SECONDS));
+        after.close();
+
+        assertEquals(1, calls.get());
+        assertEquals(1, after.getDiskHitCount());
+    }
+
+    /**
+     * Verifies that the disk tier is trimmed to under its cap, keeping the most
+     * recently used responses.
+     */
+    @Test
+    void testDiskTierIsCapped(@TempDir final Path dir) throws Exception {
+        Function<AnnotateImageRequest, CompletableFuture<AnnotateImageResponse>> large = request ->
+                CompletableFuture.completedFuture(text("x".repeat(1_000) + request.getImage().getContent().toStringUtf8()));
+        VisionResultCache unbounded = new VisionResultCache(100, dir);
+        for (int i = 0; i < 10; i++) {
+            unbounded.get(page("page-" + i), large).get();
+        }
+        unbounded.close();
+        // Age the stored responses so that the next one is the most recently used
+        for (Path file : files(dir)) {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(0));
+        }
+
+        VisionResultCache capped = new VisionResultCache(100, dir, 4_000);
+        capped.get(page("latest"), large).get();
+        capped.close();
+
+        long stored = 0;
+        for (Path file : files(dir)) {
+            stored += Files.size(file);
+        }
+        assertTrue(stored <= 3_600, "disk tier holds " + stored + " bytes");
+        assertEquals(stored, capped.getDiskBytes());
+        assertEquals(8, capped.getDiskEvictionCount());
+
+        VisionResultCache after = new VisionResultCache(100, dir, 4_000);
+        after.get(page("latest"), echo()).get(5, TimeUnit.SECONDS);
+        after.close();
+        assertEquals(1, after.getDiskHitCount());
+        assertEquals(0, calls.get());
+    }
+
+    private static List<Path> files(final Path dir) throws IOException {
+        try (Stream<Path> walk = Files.walk(dir)) {
+            return walk.filter(Files::isRegularFile).toList();
+        }
+    }
+
+    /**
+     * Verifies that a disabled cache passes every lookup to the loader.
+     */
+    @Test
+    void testDisabledCachePassesThrough() throws Exception {
+        VisionResultCache cache = VisionResultCache.disabled();
+        cache.get(page("invoice"), echo()).get();
+        cache.get(page("invoice"), echo()).get();
+        assertEquals(2, calls.get());
+    }
+}
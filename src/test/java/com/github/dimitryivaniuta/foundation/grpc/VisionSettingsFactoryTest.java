@@ -0,0 +1,67 @@
+package com.github.dimitryivaniuta.foundation.grpc;
+
+import com.github.dimitryivaniuta.foundation.config.Config;
+import com.google.api.gax.retrying.RetrySettings;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link VisionSettingsFactory}, verifying that the Vision retry
+ * policy is taken from {@link Config} and clamped to valid values.
+ */
+class VisionSettingsFactoryTest {
+
+    /**
+     * Verifies that configured timeouts, backoff and attempts are applied.
+     */
+    @Test
+    void testRetrySettingsFromConfig() {
+        Config config = Config.builder()
+                .visionApiTimeoutMs(20_000L)
+                .visionMaxAttempts(4)
+                .visionInitialRpcTimeoutMs(5_000L)
+                .visionMaxRpcTimeoutMs(15_000L)
+                .visionInitialRetryDelayMs(100L)
+                .visionMaxRetryDelayMs(2_000L)
+                .visionRetryDelayMultiplier(3.0)
+                .build();
+
+        RetrySettings settings = VisionSettingsFactory.retrySettings(config);
+
+        assertEquals(Duration.ofSeconds(20), settings.getTotalTimeoutDuration());
+        assertEquals(Duration.ofSeconds(5), settings.getInitialRpcTimeoutDuration());
+        assertEquals(Duration.ofSeconds(15), settings.getMaxRpcTimeoutDuration());
+        assertEquals(Duration.ofMillis(100), settings.getInitialRetryDelayDuration());
+        assertEquals(Duration.ofSeconds(2), settings.getMaxRetryDelayDuration());
+        assertEquals(3.0, settings.getRetryDelayMultiplier());
+        assertEquals(VisionSettingsFactory.RPC_TIMEOUT_MULTIPLIER, settings.getRpcTimeoutMultiplier());
+        assertEquals(4, settings.getMaxAttempts());
+    }
+
+    /**
+     * Verifies that per-attempt timeouts never exceed the total timeout and that
+     * maxima below their initial values are raised to them.
+     */
+    @Test
+    void testRetrySettingsAreClamped() {
+        Config config = Config.builder()
+                .visionApiTimeoutMs(3_000L)
+                .visionInitialRpcTimeoutMs(10_000L)
+                .visionMaxRpcTimeoutMs(1_000L)
+                .visionInitialRetryDelayMs(500L)
+                .visionMaxRetryDelayMs(100L)
+                .visionRetryDelayMultiplier(0.5)
+                .build();
+
+        RetrySettings settings = VisionSettingsFactory.retrySettings(config);
+
+        assertEquals(Duration.ofSeconds(3), settings.getInitialRpcTimeoutDuration());
+        assertEquals(Duration.ofSeconds(3), settings.getMaxRpcTimeoutDuration());
+        assertEquals(Duration.ofMillis(500), settings.getMaxRetryDelayDuration());
+        assertEquals(1.0, settings.getRetryDelayMultiplier());
+        assertEquals(1, settings.getMaxAttempts());
+    }
+}
@@ -0,0 +1,234 @@
+package com.github.dimitryivaniuta.foundation.health;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link CompositeHealthChecker}, verifying aggregation,
+ * per-checker deadlines and result caching.
+ */
+class CompositeHealthCheckerTest {
+
+    /**
+     * Checker that sleeps before answering UP.
+     */
+    private static class SlowChecker implements HealthChecker {
+        private final long delayMs;
+
+        SlowChecker(long delayMs) {
+            this.delayMs = delayMs;
+        }
+
+        @Override
+        public HealthStatus checkLiveness() {
+            return checkReadiness();
+        }
+
+        @Override
+        public HealthStatus checkReadiness() {
+            try {
+                Thread.sleep(delayMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return HealthStatus.up();
+        }
+    }
+
+    /**
+     * Checker that reports DOWN.
+     */
+    private static class FailingChecker implements HealthChecker {
+        @Override
+        public HealthStatus checkLiveness() {
+            return HealthStatus.down("broken");
+        }
+
+        @Override
+        public HealthStatus checkReadiness() {
+            return HealthStatus.down("broken");
+        }
+    }
+
+    /**
+     * Verifies that one DOWN checker makes the composite DOWN and its message is surfaced.
+     */
+    @Test
+    void testAnyDownMakesCompositeDown() {
+        try (CompositeHealthChecker composite = new CompositeHealthChecker(
+                Set.of(new SlowChecker(0), new FailingChecker()))) {
+            HealthStatus status = composite.checkReadiness();
+            assertEquals(Status.DOWN, status.getStatus());
+            assertEquals("DOWN", status.getDetails().get("FailingChecker"));
+            assertEquals("UP", status.getDetails().get("SlowChecker"));
+            assertTrue(status.getMessages().contains("FailingChecker: broken"));
+        }
+    }
+
+    /**
+     * Verifies that each checker's own details are carried under its name.
+     */
+    @Test
+    void testChildDetailsMergedUnderCheckerName() {
+        HealthChecker detailed = new HealthChecker() {
+            @Override
+            public HealthStatus checkLiveness() {
+                return HealthStatus.up();
+            }
+
+            @Override
+            public HealthStatus checkReadiness() {
+                return HealthStatus.builder().status(Status.UP).detail("lag.total", "10").build();
+            }
+        };
+        try (CompositeHealthChecker composite = new CompositeHealthChecker(Set.of(detailed))) {
+            String name = detailed.getClass().getSimpleName();
+            HealthStatus status = composite.checkReadiness();
+            assertEquals("UP", status.getDetails().get(name));
+            assertEquals("10", status.getDetails().get(name + ".lag.total"));
+        }
+    }
+
+    /**
+     * Verifies that a checker exceeding its deadline is reported DOWN without
+     * delaying the probe until it finishes.
+     */
+    @Test
+    void testSlowCheckerTimesOut() {
+        try (CompositeHealthChecker composite = new CompositeHealthChecker(
+                Set.of(new SlowChecker(5_000)), Duration.ZERO, Duration.ofMillis(100))) {
+            long start = System.nanoTime();
+            HealthStatus status = composite.checkLiveness();
+            long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+            assertEquals(Status.DOWN, status.getStatus());
+            assertTrue(elapsedMs < 2_000, "Probe should return at the deadline, took " + elapsedMs + " ms");
+        }
+    }
+
+    /**
+     * Verifies that with a refresh interval the result is served from memory
+     * instead of re-running the checkers on every call.
+     */
+    @Test
+    void testResultsAreCached() {
+        AtomicInteger calls = new AtomicInteger();
+        HealthChecker counting = new HealthChecker() {
+            @Override
+            public HealthStatus checkLiveness() {
+                calls.incrementAndGet();
+                return HealthStatus.up();
+            }
+
+            @Override
+            public HealthStatus checkReadiness() {
+                return HealthStatus.up();
+            }
+        };
+        try (CompositeHealthChecker composite = new CompositeHealthChecker(
+                Set.of(counting), Duration.ofHours(1), Duration.ofSeconds(1))) {
+            HealthStatus first = composite.checkLiveness();
+            for (int i = 0; i < 100; i++) {
+                composite.checkLiveness();
+            }
+            assertSame(first, composite.checkLiveness(), "Cached status should be reused");
+            assertTrue(calls.get() <= 2, "Checker should run at most once per refresh, ran " + calls.get());
+        }
+    }
+
+    /**
+     * Verifies that caching can be switched on at runtime.
+     */
+    @Test
+    void testRefreshIntervalCanBeChanged() {
+        AtomicInteger calls = new AtomicInteger();
+        HealthChecker counting = new HealthChecker() {
+            @Override
+            public HealthStatus checkLiveness() {
+                calls.incrementAndGet();
+                return HealthStatus.up();
+            }
+
+            @Override
+            public HealthStatus checkReadiness() {
+                return HealthStatus.up();
+            }
+        };
+        try (CompositeHealthChecker composite = new CompositeHealthChecker(
+                Set.of(counting), Duration.ZERO, Duration.ofSeconds(1))) {
+            composite.checkLiveness();
+            composite.checkLiveness();
+            assertEquals(2, calls.get(), "Without caching every call runs the checkers");
+
+            composite.setRefreshInterval(Duration.ofHours(1));
+            HealthStatus first = composite.checkLiveness();
+            assertSame(first, composite.checkLiveness(), "Cached status should be reused");
+        }
+    }
+
+    /**
+     * Verifies that a checker still running at the deadline is interrupted rather
+     * than left blocking a probe thread.
+     */
+    @Test
+    void testHungCheckerIsInterrupted() throws InterruptedException {
+        CountDownLatch interrupted = new CountDownLatch(1);
+        HealthChecker hung = new HealthChecker() {
+            @Override
+            public HealthStatus checkLiveness() {
+                try {
+                    Thread.sleep(60_000);
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                }
+                return HealthStatus.up();
+            }
+
+            @Override
+            public HealthStatus checkReadiness() {
+                return HealthStatus.up();
+            }
+        };
+        try (CompositeHealthChecker composite = new CompositeHealthChecker(
+                Set.of(hung), Duration.ZERO, Duration.ofMillis(100))) {
+            assertEquals(Status.DOWN, composite.checkLiveness().getStatus());
+            assertTrue(interrupted.await(5, TimeUnit.SECONDS), "Hung check should be interrupted at the deadline");
+        }
+    }
+
+    /**
+     * Verifies that a failing background refresh does not stop later refreshes.
+     */
+    @Test
+    void testRefreshSurvivesFailure() throws InterruptedException {
+        AtomicInteger calls = new AtomicInteger();
+        HealthChecker flaky = new HealthChecker() {
+            @Override
+            public HealthStatus checkLiveness() {
+                // A status without a status breaks aggregation on the first refresh only
+                return calls.incrementAndGet() == 1 ? HealthStatus.builder().build() : HealthStatus.up();
+            }
+
+            @Override
+            public HealthStatus checkReadiness() {
+                return HealthStatus.up();
+            }
+        };
+        try (CompositeHealthChecker composite = new CompositeHealthChecker(
+                Set.of(flaky), Duration.ofMillis(20), Duration.ofSeconds(1))) {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (calls.get() < 3 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertTrue(calls.get() >= 3, "Refresh should keep running, ran " + calls.get() + " times");
+            assertEquals(Status.UP, composite.checkLiveness().getStatus());
+        }
+    }
+}
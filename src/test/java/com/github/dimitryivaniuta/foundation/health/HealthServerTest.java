@@ -0,0 +1,146 @@
+package com.github.dimitryivaniuta.foundation.health;
+
+import com.github.dimitryivaniuta.foundation.metrics.Counter;
+import com.github.dimitryivaniuta.foundation.metrics.MetricsRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link HealthServer}, verifying status codes, response bodies
+ * and the Prometheus rendering of health gauges and registry metrics.
+ */
+class HealthServerTest {
+
+    /**
+     * Checker whose liveness and readiness can be switched by the test.
+     */
+    private static class SwitchableChecker implements HealthChecker {
+        volatile HealthStatus liveness = HealthStatus.up();
+        volatile HealthStatus readiness = HealthStatus.up();
+
+        @Override
+        public HealthStatus checkLiveness() {
+            return liveness;
+        }
+
+        @Override
+        public HealthStatus checkReadiness() {
+            return readiness;
+        }
+    }
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private SwitchableChecker checker;
+    private HealthServer server;
+    private MetricsRegistry registry;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        checker = new SwitchableChecker();
+        registry = new MetricsRegistry();
+        server = new HealthServer(checker, 0, registry);
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    /**
+     * Verifies that UP probes answer 200 with a JSON body.
+     */
+    @Test
+    void testUpProbesReturnOk() throws Exception {
+        HttpResponse<String> live = get("/live");
+        assertEquals(200, live.statusCode());
+        assertTrue(live.body().contains("\"status\":\"UP\""), "Body should carry the status");
+        assertEquals("application/json", live.headers().firstValue("Content-Type").orElse(null));
+
+        assertEquals(200, get("/ready").statusCode());
+    }
+
+    /**
+     * Verifies that a DOWN readiness answers 503 and includes its messages,
+     * and that a new status instance is picked up by the next request.
+     */
+    @Test
+    void testDownReadinessReturnsServiceUnavailable() throws Exception {
+        assertEquals(200, get("/ready").statusCode());
+
+        checker.readiness = HealthStatus.down("Kafka \"unreachable\"");
+        HttpResponse<String> ready = get("/ready");
+        assertEquals(503, ready.statusCode());
+        assertTrue(ready.body().contains("Kafka \\\"unreachable\\\""), "Messages should be JSON-escaped");
+
+        assertEquals(200, get("/live").statusCode(), "Liveness should be unaffected");
+    }
+
+    /**
+     * Verifies that /metrics exposes one gauge per probe in Prometheus text format.
+     */
+    @Test
+    void testMetricsExposesHealthGauges() throws Exception {
+        checker.readiness = HealthStatus.down("not ready");
+        HttpResponse<String> metrics = get("/metrics");
+        assertEquals(200, metrics.statusCode());
+        assertTrue(metrics.body().contains("foundation_health_up{probe=\"liveness\"} 1"));
+        assertTrue(metrics.body().contains("foundation_health_up{probe=\"readiness\"} 0"));
+    }
+
+    /**
+     * Verifies that /metrics has one checker gauge per checker and none for the
+     * checkers' own details.
+     */
+    @Test
+    void testCheckerGaugesSkipCheckerDetails() throws Exception {
+        checker.readiness = HealthStatus.builder()
+                .status(Status.UP)
+                .detail("KafkaStreamsHealthChecker", "UP")
+                .detail("KafkaStreamsHealthChecker.lag.total", "10")
+                .build();
+        String body = get("/metrics").body();
+        assertTrue(body.contains("foundation_health_check_up{checker=\"KafkaStreamsHealthChecker\",probe=\"readiness\"} 1"));
+        assertFalse(body.contains("lag.total"));
+    }
+
+    /**
+     * Verifies that /metrics also exports the registry, reflecting updates on every scrape.
+     */
+    @Test
+    void testMetricsExportsRegistry() throws Exception {
+        Counter counter = registry.counter("foundation_test_total", "Test counter.");
+        counter.add(3);
+        assertTrue(get("/metrics").body().contains("foundation_test_total 3"));
+
+        counter.increment();
+        assertTrue(get("/metrics").body().contains("foundation_test_total 4"));
+    }
+
+    /**
+     * Verifies that methods other than GET and HEAD are rejected.
+     */
+    @Test
+    void testPostIsRejected() throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(uri("/live"))
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .build();
+        assertEquals(405, client.send(request, HttpResponse.BodyHandlers.ofString()).statusCode());
+    }
+
+    private HttpResponse<String> get(final String path) throws Exception {
+        return client.send(HttpRequest.newBuilder(uri(path)).GET().build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private URI uri(final String path) {
+        return URI.create("http://localhost:" + server.port() + path);
+    }
+}
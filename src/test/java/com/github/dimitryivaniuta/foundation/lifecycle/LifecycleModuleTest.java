@@ -0,0 +1,58 @@
+package com.github.dimitryivaniuta.foundation.lifecycle;
+
+import com.github.dimitryivaniuta.foundation.config.Config;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the configuration check of {@link LifecycleModule}.
+ */
+class LifecycleModuleTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Config.ConfigBuilder validConfig() throws Exception {
+        Path credentials = Files.writeString(tempDir.resolve("key.json"), "{}");
+        return Config.builder()
+                .kafkaBootstrapServers("localhost:9092")
+                .applicationId("app")
+                .inputTopic("in")
+                .outputTopic("out")
+                .gvThreshold(15)
+                .googleCredentialsPath(credentials.toString());
+    }
+
+    /**
+     * Verifies that a complete configuration passes.
+     */
+    @Test
+    void testValidConfigPasses() throws Exception {
+        Config config = validConfig().build();
+        assertDoesNotThrow(() -> new LifecycleModule().provideConfigStartupPhase(config).task().run());
+    }
+
+    /**
+     * Verifies that every problem is reported in a single exception.
+     */
+    @Test
+    void testAllProblemsReported() throws Exception {
+        Config config = validConfig()
+                .inputTopic(" ")
+                .gvThreshold(0)
+                .googleCredentialsPath(tempDir.resolve("missing.json").toString())
+                .build();
+
+        IllegalStateException error = assertThrows(IllegalStateException.class,
+                () -> LifecycleModule.validate(config));
+
+        assertTrue(error.getMessage().contains("INPUT_TOPIC"), error.getMessage());
+        assertTrue(error.getMessage().contains("GV_THRESHOLD"), error.getMessage());
+        assertTrue(error.getMessage().contains("missing.json"), error.getMessage());
+    }
+}
@@ -0,0 +1,197 @@
+package com.github.dimitryivaniuta.foundation.lifecycle;
+
+import com.github.dimitryivaniuta.foundation.config.Config;
+import com.github.dimitryivaniuta.foundation.config.ReloadableConfigSource;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link ShutdownManager}, verifying stage order, the order within a
+ * stage, the time budgets and that failing or slow tasks do not stop the shutdown.
+ */
+class ShutdownManagerTest {
+
+    private final List<String> ran = new CopyOnWriteArrayList<>();
+
+    @TempDir
+    Path dir;
+
+    private ShutdownManager.Task record(final String name) {
+        return budget -> ran.add(name);
+    }
+
+    /**
+     * Verifies that stages run in order whatever the registration order, and that
+     * tasks of one stage run in reverse order of registration.
+     */
+    @Test
+    void testStagesRunInOrder() {
+        ShutdownManager manager = new ShutdownManager(Duration.ofSeconds(10));
+        manager.register("vision-channels", ShutdownStage.CLOSE_CLIENTS, record("vision-channels"));
+        manager.register("vision-client", ShutdownStage.CLOSE_CLIENTS, record("vision-client"));
+        manager.register("kafka-streams", ShutdownStage.CLOSE_STREAMS, record("kafka-streams"));
+        manager.register("document-sink", ShutdownStage.FLUSH, record("document-sink"));
+        manager.register("vision-batches", ShutdownStage.DRAIN, record("vision-batches"));
+        manager.register("kafka-streams-pause", ShutdownStage.STOP_INTAKE, record("kafka-streams-pause"));
+
+        assertTrue(manager.shutdown());
+
+        assertEquals(List.of("kafka-streams-pause", "vision-batches", "document-sink", "kafka-streams",
+                "vision-client", "vision-channels"), ran);
+        assertTrue(manager.isShuttingDown());
+    }
+
+    /**
+     * Verifies that a stage may use the time earlier stages left unused.
+     */
+    @Test
+    void testUnusedBudgetPassesOn() {
+        ShutdownManager manager = new ShutdownManager(Duration.ofSeconds(10));
+        AtomicReference<Duration> budget = new AtomicReference<>();
+        manager.register("kafka-streams", ShutdownStage.CLOSE_STREAMS, budget::set);
+
+        manager.shutdown();
+
+        // Every stage up to CLOSE_STREAMS is 90 % of the budget; the earlier ones took no time
+        assertTrue(budget.get().toMillis() > 8_000, "budget was " + budget.get());
+        assertTrue(budget.get().toMillis() <= 9_000, "budget was " + budget.get());
+    }
+
+    /**
+     * Verifies that a task overrunning its stage is interrupted and later stages still run.
+     */
+    @Test
+    void testSlowTaskInterrupted() {
+        ShutdownManager manager = new ShutdownManager(Duration.ofMillis(1_000));
+        AtomicBoolean interrupted = new AtomicBoolean();
+        CountDownLatch done = new CountDownLatch(1);
+        manager.register("stuck", ShutdownStage.STOP_INTAKE, budget -> {
+            try {
+                Thread.sleep(60_000);
+            } catch (InterruptedException e) {
+                interrupted.set(true);
+            } finally {
+                done.countDown();
+            }
+        });
+        manager.register("vision-client", ShutdownStage.CLOSE_CLIENTS, record("vision-client"));
+
+        long start = System.nanoTime();
+        assertFalse(manager.shutdown());
+
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() < 5_000);
+        assertEquals(List.of("vision-client"), ran);
+        assertDoesNotThrow(() -> assertTrue(done.await(5, TimeUnit.SECONDS)));
+        assertTrue(interrupted.get());
+    }
+
+    /**
+     * Verifies that a task after one that used up the stage still gets the minimum budget.
+     */
+    @Test
+    void testLaterTaskKeepsMinimumBudget() {
+        ShutdownManager manager = new ShutdownManager(Duration.ofMillis(1_000));
+        AtomicReference<Duration> budget = new AtomicReference<>();
+        // Registered first, so it runs after "stuck"
+        manager.register("retry-relay", ShutdownStage.STOP_INTAKE, budget::set);
+        manager.register("stuck", ShutdownStage.STOP_INTAKE, ignored -> Thread.sleep(60_000));
+
+        assertFalse(manager.shutdown());
+
+        assertEquals(ShutdownManager.MIN_TASK_BUDGET, budget.get());
+    }
+
+    /**
+     * Verifies that an overrunning flush task is left to finish rather than interrupted.
+     */
+    @Test
+    void testSlowFlushNotInterrupted() throws Exception {
+        ShutdownManager manager = new ShutdownManager(Duration.ofMillis(1_000));
+        AtomicBoolean interrupted = new AtomicBoolean();
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+        manager.register("document-sink", ShutdownStage.FLUSH, budget -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                interrupted.set(true);
+            } finally {
+                done.countDown();
+            }
+        });
+        manager.register("kafka-streams", ShutdownStage.CLOSE_STREAMS, record("kafka-streams"));
+
+        assertFalse(manager.shutdown());
+        assertEquals(List.of("kafka-streams"), ran);
+
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertFalse(interrupted.get());
+    }
+
+    /**
+     * Verifies that a failing task is reported and the remaining tasks still run.
+     */
+    @Test
+    void testFailingTaskDoesNotStopShutdown() {
+        ShutdownManager manager = new ShutdownManager(Duration.ofSeconds(10));
+        manager.register("error-sink", ShutdownStage.FLUSH, budget -> {
+            throw new IllegalStateException("broker gone");
+        });
+        manager.register("kafka-streams", ShutdownStage.CLOSE_STREAMS, record("kafka-streams"));
+
+        assertFalse(manager.shutdown());
+        assertEquals(List.of("kafka-streams"), ran);
+    }
+
+    /**
+     * Verifies that only the first shutdown runs the tasks and that a task registered
+     * afterwards runs at once.
+     */
+    @Test
+    void testShutdownRunsOnce() {
+        ShutdownManager manager = new ShutdownManager(Duration.ofSeconds(10));
+        manager.register("vision-client", ShutdownStage.CLOSE_CLIENTS, record("vision-client"));
+
+        assertTrue(manager.shutdown());
+        assertFalse(manager.shutdown());
+        manager.register("late", ShutdownStage.CLOSE_CLIENTS, record("late"));
+
+        assertEquals(List.of("vision-client", "late"), ran);
+    }
+
+    /**
+     * Verifies that the injected manager stops the configuration watcher, so an edit
+     * made during shutdown is no longer published.
+     */
+    @Test
+    void testConfigWatcherStopped() throws Exception {
+        Path file = Files.writeString(dir.resolve("sdk.properties"), "GV_THRESHOLD=5\n");
+        CountDownLatch changed = new CountDownLatch(1);
+        try (ReloadableConfigSource source = new ReloadableConfigSource(file,
+                values -> Config.builder().gvThreshold(Integer.parseInt(values.get("GV_THRESHOLD"))).build(),
+                List::of, Duration.ofMillis(50))) {
+            source.addListener((previous, current) -> changed.countDown());
+            source.start();
+            ShutdownManager manager = new ShutdownManager(source);
+
+            assertTrue(manager.shutdown());
+            Files.writeString(file, "GV_THRESHOLD=12\n");
+
+            assertFalse(changed.await(1, TimeUnit.SECONDS), "a stopped watcher should not reload the file");
+            assertEquals(5, source.get().getGvThreshold());
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.github.dimitryivaniuta.foundation.lifecycle;
+
+import org.apache.kafka.streams.KafkaStreams;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.time.Duration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link StartupCoordinator}, verifying concurrent phases, the
+ * timing report, failure aggregation and the start-up deadline.
+ */
+class StartupCoordinatorTest {
+
+    private static Set<StartupPhase> phases(final StartupPhase... phases) {
+        return new LinkedHashSet<>(List.of(phases));
+    }
+
+    /**
+     * Verifies that phases run concurrently: each waits for the other to have started.
+     */
+    @Test
+    void testPhasesRunConcurrently() {
+        CountDownLatch started = new CountDownLatch(2);
+        StartupPhase.Task task = () -> {
+            started.countDown();
+            if (!started.await(5, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("Phases ran one after another");
+            }
+        };
+        StartupCoordinator coordinator = new StartupCoordinator(
+                phases(new StartupPhase("a", task), new StartupPhase("b", task)), Duration.ofSeconds(10));
+
+        StartupReport report = coordinator.warmUp();
+
+        assertTrue(report.isSuccessful());
+        assertSame(report, coordinator.getLastReport());
+    }
+
+    /**
+     * Verifies that the report lists every phase in order with its duration.
+     */
+    @Test
+    void testReportHasPerPhaseTimings() {
+        StartupCoordinator coordinator = new StartupCoordinator(phases(
+                new StartupPhase("fast", () -> { }),
+                new StartupPhase("slow", () -> Thread.sleep(50))), Duration.ofSeconds(10));
+
+        StartupReport report = coordinator.warmUp();
+
+        assertEquals(List.of("fast", "slow"), report.phases().stream().map(StartupReport.PhaseResult::name).toList());
+        assertTrue(report.phases().get(1).duration().toMillis() >= 50);
+        assertTrue(report.total().compareTo(report.phases().get(1).duration()) >= 0);
+        assertTrue(report.summary().contains("slow "), report.summary());
+    }
+
+    /**
+     * Verifies that all failures are reported together and Kafka Streams is not started.
+     */
+    @Test
+    void testFailuresAreAggregatedAndStreamsNotStarted() {
+        IllegalStateException first = new IllegalStateException("bad config");
+        IllegalStateException second = new IllegalStateException("no topic");
+        StartupCoordinator coordinator = new StartupCoordinator(phases(
+                new StartupPhase("config", () -> { throw first; }),
+                new StartupPhase("ok", () -> { }),
+                new StartupPhase("kafka-topics", () -> { throw second; })), Duration.ofSeconds(10));
+        KafkaStreams streams = Mockito.mock(KafkaStreams.class);
+
+        IllegalStateException error = assertThrows(IllegalStateException.class, () -> coordinator.start(streams));
+
+        assertSame(first, error.getCause());
+        assertArrayEquals(new Throwable[] {second}, error.getSuppressed());
+        assertTrue(error.getMessage().contains("config") && error.getMessage().contains("kafka-topics"));
+        assertEquals(2, coordinator.getLastReport().failures().size());
+        Mockito.verify(streams, Mockito.never()).start();
+    }
+
+    /**
+     * Verifies that a phase missing the deadline fails start-up without waiting for it.
+     */
+    @Test
+    void testSlowPhaseTimesOut() {
+        StartupCoordinator coordinator = new StartupCoordinator(phases(
+                new StartupPhase("stuck", () -> Thread.sleep(10_000))), Duration.ofMillis(100));
+
+        long start = System.nanoTime();
+        IllegalStateException error = assertThrows(IllegalStateException.class, coordinator::warmUp);
+
+        assertInstanceOf(TimeoutException.class, error.getCause());
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() < 5_000);
+    }
+
+    /**
+     * Verifies that Kafka Streams is started once warm-up succeeds.
+     */
+    @Test
+    void testStartStartsStreamsAfterWarmUp() {
+        StartupCoordinator coordinator = new StartupCoordinator(
+                phases(new StartupPhase("config", () -> { })), Duration.ofSeconds(10));
+        KafkaStreams streams = Mockito.mock(KafkaStreams.class);
+
+        StartupReport report = coordinator.start(streams);
+
+        assertTrue(report.isSuccessful());
+        Mockito.verify(streams).start();
+    }
+}
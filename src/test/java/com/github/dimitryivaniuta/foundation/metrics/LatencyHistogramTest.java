@@ -0,0 +1,92 @@
+package com.github.dimitryivaniuta.foundation.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link LatencyHistogram}, verifying bucket boundaries, percentile
+ * accuracy and lossless concurrent recording.
+ */
+class LatencyHistogramTest {
+
+    /**
+     * Verifies that every value lands in a bucket whose bounds contain it and that
+     * buckets are contiguous.
+     */
+    @Test
+    void testBucketsCoverValues() {
+        long[] values = {0, 1, 31, 32, 33, 63, 64, 1_000, 999_999, 1L << 30, LatencyHistogram.MAX_TRACKABLE_NANOS};
+        for (long value : values) {
+            int index = LatencyHistogram.indexOf(value);
+            assertTrue(LatencyHistogram.lowestValue(index) <= value, "lowest of " + value);
+            assertTrue(LatencyHistogram.highestValue(index) >= value, "highest of " + value);
+        }
+        for (int i = 1; i < LatencyHistogram.indexOf(LatencyHistogram.MAX_TRACKABLE_NANOS); i++) {
+            assertEquals(LatencyHistogram.highestValue(i - 1) + 1, LatencyHistogram.lowestValue(i));
+        }
+    }
+
+    /**
+     * Verifies that percentiles of a uniform distribution are within the bucket precision.
+     */
+    @Test
+    void testPercentilesWithinPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long micros = 1; micros <= 10_000; micros++) {
+            histogram.record(micros * 1_000);
+        }
+
+        assertEquals(10_000, histogram.count());
+        assertEquals(50_005_000_000L, histogram.sum());
+        assertEquals(5_000_000, histogram.valueAtPercentile(50), 5_000_000 * 0.04);
+        assertEquals(9_900_000, histogram.valueAtPercentile(99), 9_900_000 * 0.04);
+        assertEquals(0, new LatencyHistogram().valueAtPercentile(99));
+    }
+
+    /**
+     * Verifies that negative and oversized values are clamped instead of failing.
+     */
+    @Test
+    void testOutOfRangeValuesClamped() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+
+        assertEquals(2, histogram.count());
+        assertEquals(0, histogram.valueAtPercentile(50));
+        assertTrue(histogram.valueAtPercentile(100) <= LatencyHistogram.MAX_TRACKABLE_NANOS);
+    }
+
+    /**
+     * Verifies that no value is lost when many threads record at once.
+     */
+    @Test
+    void testConcurrentRecording() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            threads.add(Thread.ofVirtual().start(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                for (int i = 0; i < 10_000; i++) {
+                    histogram.record(i);
+                }
+            }));
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(80_000, histogram.count());
+    }
+}
@@ -0,0 +1,83 @@
+package com.github.dimitryivaniuta.foundation.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link MetricsRegistry}, verifying registration rules and the
+ * Prometheus text rendering.
+ */
+class MetricsRegistryTest {
+
+    private final MetricsRegistry registry = new MetricsRegistry();
+
+    /**
+     * Verifies that the same name and labels return the same counter regardless of label order.
+     */
+    @Test
+    void testCounterIsIdempotent() {
+        Counter first = registry.counter("foundation_requests_total", "Requests.", "a", "1", "b", "2");
+        Counter second = registry.counter("foundation_requests_total", "Requests.", "b", "2", "a", "1");
+
+        assertSame(first, second);
+        assertNotSame(first, registry.counter("foundation_requests_total", "Requests.", "a", "2", "b", "2"));
+    }
+
+    /**
+     * Verifies that a name cannot be reused with another type and that invalid names are rejected.
+     */
+    @Test
+    void testInvalidRegistrationsFail() {
+        registry.counter("foundation_events_total", "Events.");
+
+        assertThrows(IllegalArgumentException.class,
+                () -> registry.histogram("foundation_events_total", "Events."));
+        assertThrows(IllegalArgumentException.class, () -> registry.counter("bad-name", "Bad."));
+        assertThrows(IllegalArgumentException.class, () -> registry.counter("foundation_x_total", "X.", "odd"));
+        assertThrows(IllegalArgumentException.class,
+                () -> registry.histogram("foundation_y_seconds", "Y.", "quantile", "1"));
+    }
+
+    /**
+     * Verifies the rendering of counters, function counters, gauges and histograms.
+     */
+    @Test
+    void testScrapeRendersPrometheusText() {
+        registry.counter("foundation_sent_total", "Sent \"items\".", "topic", "a\"b").add(5);
+        AtomicLong hits = new AtomicLong(7);
+        registry.counter("foundation_hits_total", "Hits.", hits::get);
+        registry.gauge("foundation_queue", "Queue depth.", () -> 2.5);
+        LatencyHistogram latency = registry.histogram("foundation_call_seconds", "Calls.", "op", "write");
+        latency.record(2_000_000);
+        latency.record(2_000_000);
+
+        String text = registry.scrape();
+
+        assertTrue(text.contains("# TYPE foundation_sent_total counter\n"), text);
+        assertTrue(text.contains("foundation_sent_total{topic=\"a\\\"b\"} 5\n"), text);
+        assertTrue(text.contains("foundation_hits_total 7\n"), text);
+        assertTrue(text.contains("# TYPE foundation_queue gauge\nfoundation_queue 2.5\n"), text);
+        assertTrue(text.contains("# TYPE foundation_call_seconds summary\n"), text);
+        assertTrue(text.contains("foundation_call_seconds{op=\"write\",quantile=\"0.99\"} 0.00"), text);
+        assertTrue(text.contains("foundation_call_seconds_sum{op=\"write\"} 0.004\n"), text);
+        assertTrue(text.contains("foundation_call_seconds_count{op=\"write\"} 2\n"), text);
+        assertTrue(text.indexOf("foundation_call_seconds") < text.indexOf("foundation_hits_total"), text);
+
+        hits.set(9);
+        assertTrue(registry.scrape().contains("foundation_hits_total 9\n"));
+    }
+
+    /**
+     * Verifies that a failing gauge is exported as NaN instead of breaking the scrape.
+     */
+    @Test
+    void testFailingGaugeExportsNaN() {
+        registry.gauge("foundation_broken", "Broken.", () -> {
+            throw new IllegalStateException("boom");
+        });
+        assertTrue(registry.scrape().contains("foundation_broken NaN\n"));
+    }
+}
@@ -0,0 +1,185 @@
+package com.github.dimitryivaniuta.foundation.ocr;
+
+import com.github.dimitryivaniuta.foundation.config.Config;
+import com.github.dimitryivaniuta.foundation.metrics.MetricsRegistry;
+import com.github.dimitryivaniuta.foundation.streams.DocumentPayload;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link ImagePreprocessor}, verifying downscaling, grayscale
+ * conversion, blank-page detection and pass-through of unreadable images.
+ */
+class ImagePreprocessorTest {
+
+    private ImagePreprocessor preprocessor;
+
+    @AfterEach
+    void tearDown() {
+        if (preprocessor != null) {
+            preprocessor.close();
+        }
+    }
+
+    /**
+     * Verifies that a scan without resolution metadata is downscaled to the target DPI,
+     * converted to grayscale and re-encoded as a smaller JPEG.
+     */
+    @Test
+    void testScanIsDownscaledToGrayJpeg() throws Exception {
+        preprocessor = new ImagePreprocessor(config(true, 100), new MetricsRegistry());
+        // 2200 px over an assumed 11 inches is 200 dpi, twice the target
+        byte[] png = png(scan(2200, 1700));
+
+        DocumentPayload prepared = preprocessor.preprocess(page(png, "image/png")).orElseThrow();
+
+        assertEquals("image/jpeg", prepared.getContentType());
+        BufferedImage decoded = decode(prepared.getImage());
+        assertEquals(1100, decoded.getWidth());
+        assertEquals(850, decoded.getHeight());
+        assertEquals(BufferedImage.TYPE_BYTE_GRAY, decoded.getType());
+        assertTrue(prepared.getImage().remaining() < png.length);
+    }
+
+    /**
+     * Verifies that a page without ink is reported as blank.
+     */
+    @Test
+    void testBlankPageIsSkipped() throws Exception {
+        preprocessor = new ImagePreprocessor(config(true, 100), new MetricsRegistry());
+        BufferedImage white = new BufferedImage(1100, 850, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = white.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, 1100, 850);
+        g.dispose();
+
+        assertEquals(Optional.empty(), preprocessor.preprocess(page(png(white), "image/png")));
+    }
+
+    /**
+     * Verifies that bytes ImageIO cannot read, such as a PDF, are passed through unchanged.
+     */
+    @Test
+    void testUnreadableImageIsPassedThrough() {
+        preprocessor = new ImagePreprocessor(config(true, 100), new MetricsRegistry());
+        DocumentPayload pdf = page("%PDF-1.7 not an image".getBytes(), "application/pdf");
+
+        assertSame(pdf, preprocessor.preprocess(pdf).orElseThrow());
+    }
+
+    /**
+     * Verifies that a disabled pre-processor hands pages back untouched.
+     */
+    @Test
+    void testDisabledPreprocessorReturnsPage() throws Exception {
+        preprocessor = new ImagePreprocessor(config(false, 100), new MetricsRegistry());
+        DocumentPayload page = page(png(scan(2200, 1700)), "image/png");
+
+        assertSame(page, preprocessor.submit(page).get(5, TimeUnit.SECONDS).orElseThrow());
+    }
+
+    /**
+     * Verifies that pages submitted to the pool are processed there.
+     */
+    @Test
+    void testSubmitRunsOnPool() throws Exception {
+        preprocessor = new ImagePreprocessor(config(true, 100), new MetricsRegistry());
+
+        DocumentPayload prepared = preprocessor.submit(page(png(scan(2200, 1700)), "image/png"))
+                .get(30, TimeUnit.SECONDS).orElseThrow();
+
+        assertEquals(1100, decode(prepared.getImage()).getWidth());
+    }
+
+    /**
+     * Verifies that a page submitted after close fails instead of never completing.
+     */
+    @Test
+    void testSubmitAfterCloseFails() throws Exception {
+        preprocessor = new ImagePreprocessor(config(true, 100), new MetricsRegistry());
+        preprocessor.close();
+
+        CompletableFuture<Optional<DocumentPayload>> result =
+                preprocessor.submit(page(png(scan(220, 170)), "image/png"));
+
+        ExecutionException error = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(RejectedExecutionException.class, error.getCause());
+    }
+
+    /**
+     * Verifies that an output format without an ImageIO writer is rejected up front.
+     */
+    @Test
+    void testUnknownFormatIsRejected() {
+        Config config = Config.builder()
+                .imagePreprocessEnabled(true)
+                .imageOutputFormat("no-such-format")
+                .build();
+
+        assertThrows(IllegalStateException.class, () -> new ImagePreprocessor(config, new MetricsRegistry()));
+    }
+
+    private static Config config(final boolean enabled, final int targetDpi) {
+        return Config.builder()
+                .imagePreprocessEnabled(enabled)
+                .imageTargetDpi(targetDpi)
+                .imageOutputFormat("jpeg")
+                .imageQuality(0.85)
+                .imageMaxBytes(1024 * 1024)
+                .imageBlankInkRatio(0.002)
+                .imagePreprocessThreads(2)
+                .build();
+    }
+
+    /**
+     * Returns a color image of random noise, which compresses poorly as PNG.
+     */
+    private static BufferedImage scan(final int width, final int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(42);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, random.nextInt(0x1000000));
+            }
+        }
+        return image;
+    }
+
+    private static byte[] png(final BufferedImage image) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
+    private static BufferedImage decode(final ByteBuffer image) throws IOException {
+        byte[] bytes = new byte[image.remaining()];
+        image.get(bytes);
+        return ImageIO.read(new ByteArrayInputStream(bytes));
+    }
+
+    private static DocumentPayload page(final byte[] image, final String contentType) {
+        return DocumentPayload.builder()
+                .documentId("doc")
+                .pageNumber(1)
+                .contentType(contentType)
+                .image(ByteBuffer.wrap(image))
+                .build();
+    }
+}
@@ -0,0 +1,100 @@
+package com.github.dimitryivaniuta.foundation.ocr;
+
+import com.github.dimitryivaniuta.foundation.streams.DocumentPayload;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link StubOcrEngine} and the {@link OcrEngine} defaults it relies on.
+ */
+class StubOcrEngineTest {
+
+    /**
+     * Verifies that pages are recognised in order with the default line and a JSON raw response.
+     */
+    @Test
+    void testRecognizeAllKeepsOrder() {
+        StubOcrEngine engine = new StubOcrEngine("stub");
+
+        List<CompletableFuture<OcrResult>> results = engine.recognizeAll(List.of(page(1), page(2)));
+
+        assertEquals("page 1 of document doc", results.get(0).join().getText());
+        assertEquals("page 2 of document doc", results.get(1).join().getText());
+        assertEquals("stub", results.get(0).join().getEngine());
+        assertEquals("{\"engine\":\"stub\",\"lines\":[\"page 1 of document doc\"]}",
+                StandardCharsets.UTF_8.decode(results.get(0).join().getRaw()).toString());
+        assertEquals(2, engine.getCallCount());
+    }
+
+    /**
+     * Verifies that the configured latency delays completion.
+     */
+    @Test
+    void testLatencyDelaysResult() throws Exception {
+        StubOcrEngine engine = new StubOcrEngine("slow", Duration.ofMillis(100), page -> List.of("a", "b"));
+
+        CompletableFuture<OcrResult> result = engine.recognize(page(1));
+
+        assertFalse(result.isDone());
+        assertEquals("a\nb", result.get(5, TimeUnit.SECONDS).getText());
+    }
+
+    /**
+     * Verifies that a throwing line function fails the call.
+     */
+    @Test
+    void testFailingFunctionFailsCall() {
+        StubOcrEngine engine = new StubOcrEngine("broken", Duration.ZERO, page -> {
+            throw new IllegalStateException("unreadable");
+        });
+
+        ExecutionException error = assertThrows(ExecutionException.class, () -> engine.recognize(page(1)).get());
+        assertEquals("unreadable", error.getCause().getMessage());
+    }
+
+    /**
+     * Verifies that the recogniser stores the raw response as the payload's OCR result.
+     */
+    @Test
+    void testRecognizerStoresRawResult() {
+        DocumentPayload recognised = OcrEngine.recognizer(new StubOcrEngine("stub"))
+                .apply(page(3)).toCompletableFuture().join();
+
+        assertEquals(3, recognised.getPageNumber());
+        assertTrue(StandardCharsets.UTF_8.decode(recognised.getOcrResult()).toString()
+                .contains("page 3 of document doc"));
+    }
+
+    /**
+     * Verifies that engines are indexed by name and duplicate names are rejected.
+     */
+    @Test
+    void testEnginesIndexedByName() {
+        StubOcrEngine vision = new StubOcrEngine("vision");
+        StubOcrEngine textract = new StubOcrEngine("textract");
+
+        assertEquals(List.of("textract", "vision"),
+                List.copyOf(OcrModule.enginesByName(Set.of(vision, textract)).keySet()));
+        assertThrows(IllegalStateException.class,
+                () -> OcrModule.enginesByName(Set.of(vision, new StubOcrEngine("vision"))));
+    }
+
+    private static DocumentPayload page(final int page) {
+        return DocumentPayload.builder()
+                .documentId("doc")
+                .pageNumber(page)
+                .contentType("image/png")
+                .image(ByteBuffer.wrap(new byte[]{1, 2, 3}))
+                .build();
+    }
+}
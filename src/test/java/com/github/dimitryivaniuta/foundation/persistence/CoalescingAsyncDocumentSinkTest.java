@@ -0,0 +1,103 @@
+package com.github.dimitryivaniuta.foundation.persistence;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link CoalescingAsyncDocumentSink}, verifying ordering,
+ * coalescing of queued writes and failure propagation.
+ */
+class CoalescingAsyncDocumentSinkTest {
+
+    /**
+     * In-memory sink recording every document and every delegate call.
+     */
+    private static class RecordingSink implements DocumentSink<String> {
+        final List<String> written = Collections.synchronizedList(new ArrayList<>());
+        final List<Integer> callSizes = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch gate;
+
+        RecordingSink(CountDownLatch gate) {
+            this.gate = gate;
+        }
+
+        @Override
+        public void write(String document) throws IOException {
+            writeAll(List.of(document));
+        }
+
+        @Override
+        public void writeAll(Collection<? extends String> documents) throws IOException {
+            try {
+                gate.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            callSizes.add(documents.size());
+            written.addAll(documents);
+        }
+    }
+
+    /**
+     * Verifies that writes queued while the delegate is busy are handed over
+     * together, in submission order.
+     */
+    @Test
+    void testQueuedWritesAreCoalescedInOrder() throws Exception {
+        CountDownLatch gate = new CountDownLatch(1);
+        RecordingSink delegate = new RecordingSink(gate);
+        try (CoalescingAsyncDocumentSink<String> sink = new CoalescingAsyncDocumentSink<>(delegate)) {
+            List<CompletableFuture<Void>> results = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                results.add(sink.writeAsync("doc-" + i).toCompletableFuture());
+            }
+            gate.countDown();
+            CompletableFuture.allOf(results.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+
+            List<String> expected = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                expected.add("doc-" + i);
+            }
+            assertEquals(expected, delegate.written, "Documents should reach the delegate in order");
+            assertTrue(delegate.callSizes.size() < 100, "Queued writes should be coalesced");
+        }
+    }
+
+    /**
+     * Verifies that a delegate failure completes the affected stages exceptionally.
+     */
+    @Test
+    void testDelegateFailureIsPropagated() {
+        IOException failure = new IOException("disk full");
+        DocumentSink<String> failing = document -> {
+            throw failure;
+        };
+        try (CoalescingAsyncDocumentSink<String> sink = new CoalescingAsyncDocumentSink<>(failing)) {
+            ExecutionException ex = assertThrows(ExecutionException.class,
+                    () -> sink.writeAsync("doc").toCompletableFuture().get(5, TimeUnit.SECONDS));
+            assertSame(failure, ex.getCause(), "Should preserve the delegate's exception");
+        }
+    }
+
+    /**
+     * Verifies that writes submitted after close are rejected.
+     */
+    @Test
+    void testWriteAfterCloseFails() {
+        CoalescingAsyncDocumentSink<String> sink =
+                new CoalescingAsyncDocumentSink<>(new RecordingSink(new CountDownLatch(0)));
+        sink.close();
+        assertTrue(sink.writeAsync("late").toCompletableFuture().isCompletedExceptionally());
+    }
+}
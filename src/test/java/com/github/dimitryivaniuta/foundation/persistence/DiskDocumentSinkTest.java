@@ -0,0 +1,110 @@
+package com.github.dimitryivaniuta.foundation.persistence;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link DiskDocumentSink}, verifying offset assignment,
+ * read-back through the index, segment rolling and recovery on reopen.
+ */
+class DiskDocumentSinkTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @TempDir
+    Path dir;
+
+    /**
+     * Verifies that documents are assigned consecutive offsets and read back intact.
+     */
+    @Test
+    void testAppendAndReadBack() throws Exception {
+        try (DiskDocumentSink<Map<String, String>> sink = new DiskDocumentSink<>(dir, MAPPER, 4096)) {
+            long first = sink.append(Map.of("id", "doc-1"));
+            long second = sink.append(Map.of("id", "doc-2"));
+
+            assertEquals(0L, first);
+            assertEquals(1L, second);
+            assertEquals("doc-2", sink.read(second, Map.class).get("id"));
+            assertEquals("doc-1", sink.read(first, Map.class).get("id"));
+        }
+    }
+
+    /**
+     * Verifies that writes beyond the segment size roll into new segment files
+     * and remain readable.
+     */
+    @Test
+    void testRollsToNewSegment() throws Exception {
+        try (DiskDocumentSink<String> sink = new DiskDocumentSink<>(dir, MAPPER, 256)) {
+            for (int i = 0; i < 50; i++) {
+                sink.write("document-" + i);
+            }
+            assertEquals("document-0", sink.read(0, String.class));
+            assertEquals("document-49", sink.read(49, String.class));
+        }
+        try (var files = Files.list(dir)) {
+            long segments = files.filter(p -> p.toString().endsWith(".log")).count();
+            assertTrue(segments > 1, "Small segment size should produce several segment files");
+        }
+    }
+
+    /**
+     * Verifies that reopening a sink resumes after the last written document.
+     */
+    @Test
+    void testReopenRecoversOffsets() throws Exception {
+        try (DiskDocumentSink<String> sink = new DiskDocumentSink<>(dir, MAPPER, 4096)) {
+            sink.write("a");
+            sink.write("b");
+        }
+        try (DiskDocumentSink<String> reopened = new DiskDocumentSink<>(dir, MAPPER, 4096)) {
+            assertEquals(2L, reopened.nextOffset(), "Should resume after recovered documents");
+            assertEquals(2L, reopened.append("c"));
+            assertEquals("a", reopened.read(0, String.class));
+        }
+    }
+
+    /**
+     * Verifies that concurrent writers each receive a distinct, readable offset.
+     */
+    @Test
+    void testConcurrentWriters() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try (DiskDocumentSink<String> sink = new DiskDocumentSink<>(dir, MAPPER, 64 * 1024)) {
+            List<Future<Long>> offsets = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                String doc = "doc-" + i;
+                offsets.add(pool.submit(() -> sink.append(doc)));
+            }
+            for (int i = 0; i < 200; i++) {
+                assertEquals("doc-" + i, sink.read(offsets.get(i).get(), String.class));
+            }
+            assertEquals(200L, sink.nextOffset());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Verifies that reading an offset that was never written is rejected.
+     */
+    @Test
+    void testReadUnknownOffsetThrows() throws Exception {
+        try (DiskDocumentSink<String> sink = new DiskDocumentSink<>(dir, MAPPER, 4096)) {
+            assertThrows(IllegalArgumentException.class, () -> sink.read(0));
+        }
+    }
+}
@@ -1,4 +1,257 @@
 package com.github.dimitryivaniuta.foundation.persistence;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link KafkaErrorSink}, verifying asynchronous delivery
+ * and the behaviour of each overflow policy.
+ */
 public class KafkaErrorSinkTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @TempDir
+    Path spillDir;
+
+    /**
+     * Verifies that published envelopes reach the error topic as JSON once the sink is closed.
+     */
+    @Test
+    void testPublishDeliversToTopic() {
+        MockProducer<String, byte[]> producer = newProducer();
+        KafkaErrorSink<Map<String, String>> sink = new KafkaErrorSink<>(
+                producer, "errors", MAPPER, 16, KafkaErrorSink.OverflowPolicy.BLOCK, null);
+
+        sink.publish(Map.of("reason", "ocr-failed"));
+        sink.close();
+
+        List<ProducerRecord<String, byte[]>> history = producer.history();
+        assertEquals(1, history.size(), "Envelope should be sent");
+        assertEquals("errors", history.get(0).topic());
+        assertEquals("{\"reason\":\"ocr-failed\"}", new String(history.get(0).value(), StandardCharsets.UTF_8));
+        assertTrue(producer.closed(), "Sink should close its producer");
+    }
+
+    /**
+     * Verifies that envelopes overflowing the buffer are spilled to disk and
+     * still delivered once the buffer drains.
+     */
+    @Test
+    void testSpillToDiskKeepsEveryEnvelope() {
+        MockProducer<String, byte[]> producer = newProducer();
+        KafkaErrorSink<Integer> sink = new KafkaErrorSink<>(
+                producer, "errors", MAPPER, 1, KafkaErrorSink.OverflowPolicy.SPILL_TO_DISK, spillDir);
+
+        for (int i = 0; i < 500; i++) {
+            sink.publish(i);
+        }
+        sink.close();
+
+        assertEquals(500, producer.history().size(), "Spilled envelopes should be replayed");
+        assertEquals(0, sink.droppedCount());
+    }
+
+    /**
+     * Verifies that a spill file left with a torn last record by a crash is replayed
+     * once: the complete envelopes are sent, the torn tail is set aside and the file
+     * is removed.
+     */
+    @Test
+    void testTornSpillFileReplayedOnce() throws Exception {
+        byte[] first = "1".getBytes(StandardCharsets.UTF_8);
+        byte[] second = "22".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer file = ByteBuffer.allocate(3 * Integer.BYTES + first.length + second.length + 2);
+        file.putInt(first.length).put(first).putInt(second.length).put(second);
+        // Crash mid-append: the length of a 100-byte record made it to disk, two bytes of it did not
+        file.putInt(100).put((byte) '3').put((byte) '3');
+        Files.write(spillDir.resolve("error-sink.spill"), file.array());
+
+        MockProducer<String, byte[]> producer = newProducer();
+        KafkaErrorSink<Integer> sink = new KafkaErrorSink<>(
+                producer, "errors", MAPPER, 16, KafkaErrorSink.OverflowPolicy.SPILL_TO_DISK, spillDir);
+        sink.close();
+
+        assertEquals(List.of("1", "22"), producer.history().stream()
+                .map(record -> new String(record.value(), StandardCharsets.UTF_8)).toList());
+        assertEquals(1, sink.droppedCount());
+        assertFalse(Files.exists(spillDir.resolve("error-sink.replay")));
+        assertEquals(Integer.BYTES + 2, Files.size(spillDir.resolve("error-sink.corrupt")));
+    }
+
+    /**
+     * Verifies that a negative record length is treated as corruption rather than failing the replay.
+     */
+    @Test
+    void testNegativeLengthQuarantined() throws Exception {
+        ByteBuffer file = ByteBuffer.allocate(2 * Integer.BYTES + 1);
+        file.putInt(1).put((byte) '7').putInt(-5);
+        Files.write(spillDir.resolve("error-sink.spill"), file.array());
+
+        MockProducer<String, byte[]> producer = newProducer();
+        KafkaErrorSink<Integer> sink = new KafkaErrorSink<>(
+                producer, "errors", MAPPER, 16, KafkaErrorSink.OverflowPolicy.SPILL_TO_DISK, spillDir);
+        sink.close();
+
+        assertEquals(1, producer.history().size());
+        assertFalse(Files.exists(spillDir.resolve("error-sink.replay")));
+        assertTrue(Files.exists(spillDir.resolve("error-sink.corrupt")));
+    }
+
+    /**
+     * Verifies that DROP_OLDEST never blocks and accounts for every envelope
+     * as either sent or dropped.
+     */
+    @Test
+    void testDropOldestAccountsForEveryEnvelope() {
+        MockProducer<String, byte[]> producer = newProducer();
+        KafkaErrorSink<Integer> sink = new KafkaErrorSink<>(
+                producer, "errors", MAPPER, 2, KafkaErrorSink.OverflowPolicy.DROP_OLDEST, null);
+
+        for (int i = 0; i < 1_000; i++) {
+            sink.publish(i);
+        }
+        sink.close();
+
+        assertEquals(1_000, producer.history().size() + sink.droppedCount(),
+                "Every envelope should be either sent or dropped");
+    }
+
+    /**
+     * Verifies that a flush hands every buffered envelope to the producer and that the
+     * sink keeps accepting envelopes afterwards, until it is closed.
+     */
+    @Test
+    void testFlushKeepsAccepting() {
+        MockProducer<String, byte[]> producer = newProducer();
+        KafkaErrorSink<Integer> sink = new KafkaErrorSink<>(
+                producer, "errors", MAPPER, 4, KafkaErrorSink.OverflowPolicy.SPILL_TO_DISK, spillDir);
+
+        for (int i = 0; i < 100; i++) {
+            sink.publish(i);
+        }
+        assertTrue(sink.flush(Duration.ofSeconds(5)));
+        assertEquals(100, producer.history().size());
+
+        sink.publish(100);
+        sink.close(Duration.ofSeconds(5));
+        assertEquals(101, producer.history().size());
+    }
+
+    /**
+     * Verifies that a closed sink rejects envelopes instead of leaving them in the buffer.
+     */
+    @Test
+    void testPublishAfterCloseFails() {
+        KafkaErrorSink<Integer> sink = new KafkaErrorSink<>(
+                newProducer(), "errors", MAPPER, 16, KafkaErrorSink.OverflowPolicy.BLOCK, null);
+        sink.close();
+
+        assertThrows(IllegalStateException.class, () -> sink.publish(1));
+        assertEquals(0, sink.queuedCount());
+    }
+
+    /**
+     * Verifies that a close bounded by a budget returns while the producer hangs,
+     * releases a publisher blocked on a full buffer and counts the stranded envelope
+     * as dropped.
+     */
+    @Test
+    void testBoundedCloseReleasesBlockedPublisher() throws Exception {
+        CountDownLatch sending = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        KafkaErrorSink<Integer> sink = new KafkaErrorSink<>(
+                hangingProducer(sending, release), "errors", MAPPER, 1, KafkaErrorSink.OverflowPolicy.BLOCK, null);
+        try {
+            sink.publish(0);
+            assertTrue(sending.await(5, TimeUnit.SECONDS));
+            sink.publish(1);
+            CompletableFuture<Void> blocked = CompletableFuture.runAsync(() -> sink.publish(2));
+
+            long start = System.nanoTime();
+            sink.close(Duration.ofMillis(300));
+
+            assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() < 2_000);
+            ExecutionException error = assertThrows(ExecutionException.class, () -> blocked.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(IllegalStateException.class, error.getCause());
+            assertEquals(1, sink.droppedCount());
+        } finally {
+            release.countDown();
+        }
+    }
+
+    /**
+     * Verifies that the spill file stops growing at its cap and the overflow is counted as dropped.
+     */
+    @Test
+    void testSpillFileCapped() throws Exception {
+        CountDownLatch sending = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        // Each spilled envelope is a length prefix and one digit: five bytes
+        KafkaErrorSink<Integer> sink = new KafkaErrorSink<>(hangingProducer(sending, release), "errors", MAPPER,
+                1, KafkaErrorSink.OverflowPolicy.SPILL_TO_DISK, spillDir, 15);
+        try {
+            sink.publish(0);
+            assertTrue(sending.await(5, TimeUnit.SECONDS));
+            for (int i = 1; i < 10; i++) {
+                sink.publish(i);
+            }
+
+            assertEquals(3, sink.spilledCount());
+            assertEquals(5, sink.droppedCount());
+            assertEquals(15, Files.size(spillDir.resolve("error-sink.spill")));
+        } finally {
+            release.countDown();
+            sink.close(Duration.ofSeconds(5));
+        }
+    }
+
+    /**
+     * Verifies that spilling without a spill directory is rejected up front.
+     */
+    @Test
+    void testSpillRequiresDirectory() {
+        assertThrows(IllegalArgumentException.class, () -> new KafkaErrorSink<>(
+                newProducer(), "errors", MAPPER, 1, KafkaErrorSink.OverflowPolicy.SPILL_TO_DISK, null));
+    }
+
+    /**
+     * Returns a producer whose sends block until released, signalling the first one.
+     */
+    @SuppressWarnings("unchecked")
+    private static Producer<String, byte[]> hangingProducer(final CountDownLatch sending, final CountDownLatch release) {
+        Producer<String, byte[]> producer = mock(Producer.class);
+        when(producer.send(any(), any())).thenAnswer(invocation -> {
+            sending.countDown();
+            release.await();
+            return CompletableFuture.completedFuture(null);
+        });
+        return producer;
+    }
+
+    private static MockProducer<String, byte[]> newProducer() {
+        return new MockProducer<>(true, null, new StringSerializer(), new ByteArraySerializer());
+    }
 }
@@ -0,0 +1,284 @@
+package com.github.dimitryivaniuta.foundation.streams;
+
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.errors.StreamsException;
+import org.apache.kafka.streams.processor.Cancellable;
+import org.apache.kafka.streams.processor.api.FixedKeyProcessorContext;
+import org.apache.kafka.streams.processor.api.FixedKeyRecord;
+import org.apache.kafka.streams.processor.api.InternalFixedKeyRecordFactory;
+import org.apache.kafka.streams.processor.api.Record;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link AsyncVisionProcessor}, verifying in-order forwarding,
+ * bounded in-flight calls, call timeouts and journal replay.
+ */
+class AsyncVisionProcessorTest {
+
+    private final Map<Integer, CompletableFuture<DocumentPayload>> calls = new ConcurrentHashMap<>();
+    private final Function<DocumentPayload, CompletionStage<DocumentPayload>> recognizer =
+            payload -> calls.computeIfAbsent(payload.getPageNumber(), page -> new CompletableFuture<>());
+    private final TreeMap<Long, AsyncVisionProcessor.JournalEntry<String>> entries = new TreeMap<>();
+    private final List<FixedKeyRecord<String, DocumentPayload>> forwarded = new ArrayList<>();
+
+    private FixedKeyProcessorContext<String, DocumentPayload> context;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        KeyValueStore<Long, AsyncVisionProcessor.JournalEntry<String>> journal = mock(KeyValueStore.class);
+        doAnswer(invocation -> entries.put(invocation.getArgument(0), invocation.getArgument(1)))
+                .when(journal).put(any(), any());
+        when(journal.delete(any())).thenAnswer(invocation -> entries.remove(invocation.<Long>getArgument(0)));
+        when(journal.all()).thenAnswer(invocation -> iterator(entries));
+
+        context = mock(FixedKeyProcessorContext.class);
+        when(context.getStateStore("journal")).thenReturn((KeyValueStore) journal);
+        when(context.schedule(any(), any(), any())).thenReturn(mock(Cancellable.class));
+        doAnswer(invocation -> forwarded.add(invocation.getArgument(0))).when(context).forward(any());
+    }
+
+    /**
+     * Verifies that results completing out of order are forwarded in input order.
+     */
+    @Test
+    void testResultsForwardedInInputOrder() {
+        AsyncVisionProcessor<String> processor = processor(8);
+        processor.process(record("a", 1));
+        processor.process(record("b", 2));
+        processor.process(record("c", 3));
+
+        calls.get(3).complete(recognised(3));
+        calls.get(2).complete(recognised(2));
+        processor.process(record("d", 4));
+        assertTrue(forwarded.isEmpty(), "page 1 is still pending");
+
+        calls.get(1).complete(recognised(1));
+        processor.process(record("e", 5));
+
+        assertEquals(List.of("a", "b", "c"), forwarded.stream().map(FixedKeyRecord::key).toList());
+        assertNotNull(forwarded.get(0).value().getOcrResult());
+        assertEquals(2, processor.getPendingCount());
+        assertEquals(List.of(3L, 4L), List.copyOf(entries.keySet()), "forwarded records leave the journal");
+    }
+
+    /**
+     * Verifies that a saturated task journals new records without a call and submits
+     * them as calls complete.
+     */
+    @Test
+    void testSaturatedTaskQueuesRecords() {
+        AsyncVisionProcessor<String> processor = processor(2);
+        processor.process(record("a", 1));
+        processor.process(record("b", 2));
+        processor.process(record("c", 3));
+
+        assertFalse(calls.containsKey(3), "no slot is free for page 3");
+        assertEquals(3, processor.getPendingCount());
+        assertEquals(List.of(0L, 1L, 2L), List.copyOf(entries.keySet()));
+
+        calls.get(1).complete(recognised(1));
+        processor.process(record("d", 4));
+
+        assertEquals(List.of("a"), forwarded.stream().map(FixedKeyRecord::key).toList());
+        assertTrue(calls.containsKey(3));
+        assertFalse(calls.containsKey(4));
+        assertEquals(3, processor.getPendingCount());
+    }
+
+    /**
+     * Verifies that records journalled before a restart are resubmitted ahead of new input.
+     */
+    @Test
+    void testJournalReplayedOnInit() {
+        entries.put(7L, new AsyncVisionProcessor.JournalEntry<>("old", 42L, page(1)));
+        AsyncVisionProcessor<String> processor = processor(8);
+
+        processor.process(record("new", 2));
+        calls.get(2).complete(recognised(2));
+        calls.get(1).complete(recognised(1));
+        processor.process(record("newer", 3));
+
+        assertEquals(List.of("old", "new"), forwarded.stream().map(FixedKeyRecord::key).toList());
+        assertEquals(42L, forwarded.get(0).timestamp());
+        assertEquals(List.of(9L), List.copyOf(entries.keySet()), "sequence continues after the journal");
+    }
+
+    /**
+     * Verifies that records without an image pass through without a call.
+     */
+    @Test
+    void testRecordsWithoutImagePassThrough() {
+        AsyncVisionProcessor<String> processor = processor(8);
+        processor.process(InternalFixedKeyRecordFactory.create(new Record<>("empty", (DocumentPayload) null, 1L)));
+        processor.process(record("a", 1));
+
+        assertEquals(List.of("empty"), forwarded.stream().map(FixedKeyRecord::key).toList());
+        assertNull(forwarded.get(0).value());
+    }
+
+    /**
+     * Verifies that a failed call fails the task once its record is the oldest.
+     */
+    @Test
+    void testFailedCallFailsTask() {
+        AsyncVisionProcessor<String> processor = processor(8);
+        processor.process(record("a", 1));
+        calls.get(1).completeExceptionally(new IllegalStateException("quota"));
+
+        StreamsException error = assertThrows(StreamsException.class, () -> processor.process(record("b", 2)));
+        assertEquals("quota", error.getCause().getMessage());
+    }
+
+    /**
+     * Verifies that with a failure callback a failed call is handed over, its record
+     * leaves the journal and the records behind it are forwarded.
+     */
+    @Test
+    void testFailedCallHandedToCallback() {
+        List<String> failed = new ArrayList<>();
+        AsyncVisionProcessor<String> processor = new AsyncVisionProcessor<>("journal", recognizer, 8,
+                Duration.ofSeconds(5), AsyncVisionProcessor.DEFAULT_FORWARD_INTERVAL,
+                (record, error) -> failed.add(record.key() + ":" + error.getMessage()));
+        processor.init(context);
+        processor.process(record("a", 1));
+        processor.process(record("b", 2));
+        calls.get(1).completeExceptionally(new IllegalStateException("quota"));
+        calls.get(2).complete(recognised(2));
+
+        processor.process(record("c", 3));
+
+        assertEquals(List.of("a:quota"), failed);
+        assertEquals(List.of("b"), forwarded.stream().map(FixedKeyRecord::key).toList());
+        assertEquals(List.of(2L), List.copyOf(entries.keySet()));
+    }
+
+    /**
+     * Verifies that a call without a result within the call timeout is handed to the
+     * failure callback instead of failing the task.
+     */
+    @Test
+    void testTimedOutCallHandedToCallback() {
+        List<String> failed = new ArrayList<>();
+        AsyncVisionProcessor<String> processor = new AsyncVisionProcessor<>("journal", recognizer, 8,
+                Duration.ZERO, AsyncVisionProcessor.DEFAULT_FORWARD_INTERVAL,
+                (record, error) -> failed.add(record.key() + ":" + error.getClass().getSimpleName()));
+        processor.init(context);
+        processor.process(record("a", 1));
+
+        processor.process(record("b", 2));
+
+        assertEquals(List.of("a:TimeoutException"), failed);
+        assertTrue(forwarded.isEmpty());
+        assertEquals(List.of(1L), List.copyOf(entries.keySet()));
+    }
+
+    /**
+     * Verifies that a failed record the callback cannot hand on fails the task and
+     * stays in the journal, so it is resubmitted after the restart.
+     */
+    @Test
+    void testCallbackFailureFailsTask() {
+        AsyncVisionProcessor<String> processor = new AsyncVisionProcessor<>("journal", recognizer, 8,
+                Duration.ofSeconds(5), AsyncVisionProcessor.DEFAULT_FORWARD_INTERVAL,
+                (record, error) -> {
+                    throw new IllegalStateException("Failed to send failed record to 'in-retry-1000'");
+                });
+        processor.init(context);
+        processor.process(record("a", 1));
+        calls.get(1).completeExceptionally(new IllegalStateException("quota"));
+
+        StreamsException error = assertThrows(StreamsException.class, () -> processor.process(record("b", 2)));
+
+        assertEquals("quota", error.getCause().getSuppressed()[0].getMessage());
+        assertTrue(entries.containsKey(0L));
+    }
+
+    /**
+     * Verifies that journal entries survive a Serde round trip, including null keys.
+     */
+    @Test
+    void testJournalSerdeRoundTrip() {
+        Serde<AsyncVisionProcessor.JournalEntry<String>> serde =
+                AsyncVisionProcessor.journalSerde(Serdes.String());
+        for (AsyncVisionProcessor.JournalEntry<String> entry : List.of(
+                new AsyncVisionProcessor.JournalEntry<>("key", 5L, page(3)),
+                new AsyncVisionProcessor.JournalEntry<String>(null, 6L, null))) {
+            byte[] bytes = serde.serializer().serialize("journal", entry);
+            assertEquals(entry, serde.deserializer().deserialize("journal", bytes));
+        }
+    }
+
+    private AsyncVisionProcessor<String> processor(final int maxInFlight) {
+        AsyncVisionProcessor<String> processor = new AsyncVisionProcessor<>("journal", recognizer, maxInFlight,
+                Duration.ofSeconds(5), AsyncVisionProcessor.DEFAULT_FORWARD_INTERVAL);
+        processor.init(context);
+        return processor;
+    }
+
+    private static FixedKeyRecord<String, DocumentPayload> record(final String key, final int page) {
+        return InternalFixedKeyRecordFactory.create(new Record<>(key, page(page), page));
+    }
+
+    private static DocumentPayload page(final int page) {
+        return DocumentPayload.builder()
+                .documentId("doc")
+                .pageNumber(page)
+                .contentType("image/png")
+                .image(ByteBuffer.wrap(new byte[]{1, 2, 3}))
+                .build();
+    }
+
+    private static DocumentPayload recognised(final int page) {
+        return page(page).toBuilder()
+                .ocrResult(ByteBuffer.wrap(("text " + page).getBytes(StandardCharsets.UTF_8)))
+                .build();
+    }
+
+    private static <V> KeyValueIterator<Long, V> iterator(final TreeMap<Long, V> entries) {
+        Iterator<Map.Entry<Long, V>> iterator = new ArrayList<>(entries.entrySet()).iterator();
+        return new KeyValueIterator<>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public KeyValue<Long, V> next() {
+                Map.Entry<Long, V> entry = iterator.next();
+                return KeyValue.pair(entry.getKey(), entry.getValue());
+            }
+
+            @Override
+            public Long peekNextKey() {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+}
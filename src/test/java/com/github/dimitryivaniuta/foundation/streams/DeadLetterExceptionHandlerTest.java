@@ -0,0 +1,159 @@
+package com.github.dimitryivaniuta.foundation.streams;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.errors.TimeoutException;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.errors.DeserializationExceptionHandler.DeserializationHandlerResponse;
+import org.apache.kafka.streams.errors.ErrorHandlerContext;
+import org.apache.kafka.streams.errors.ProcessingExceptionHandler.ProcessingHandlerResponse;
+import org.apache.kafka.streams.errors.ProductionExceptionHandler.ProductionExceptionHandlerResponse;
+import org.apache.kafka.streams.errors.StreamsException;
+import org.apache.kafka.streams.processor.api.Record;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link DeadLetterExceptionHandler}, verifying which failures are
+ * retried, which are dead-lettered at once and how publisher failures are answered.
+ */
+class DeadLetterExceptionHandlerTest {
+
+    private final DeadLetterPublisher publisher = Mockito.mock(DeadLetterPublisher.class);
+    private final ErrorHandlerContext context = Mockito.mock(ErrorHandlerContext.class);
+    private DeadLetterExceptionHandler handler;
+
+    @BeforeEach
+    void setUp() {
+        when(context.topic()).thenReturn("in");
+        when(context.partition()).thenReturn(2);
+        when(context.offset()).thenReturn(9L);
+        when(context.processorNodeId()).thenReturn("ocr");
+        handler = new DeadLetterExceptionHandler();
+        handler.configure(Map.of(
+                DeadLetterPublisher.CONFIG, publisher,
+                StreamsConfig.DEFAULT_KEY_SERDE_CLASS_CONFIG, Serdes.StringSerde.class,
+                StreamsConfig.DEFAULT_VALUE_SERDE_CLASS_CONFIG, Serdes.StringSerde.class.getName()));
+    }
+
+    /**
+     * Verifies that a record that cannot be deserialized is dead-lettered as read.
+     */
+    @Test
+    void testDeserializationFailureDeadLettered() {
+        when(publisher.deadLetter(any())).thenReturn("errors");
+        ConsumerRecord<byte[], byte[]> record = new ConsumerRecord<>("in", 2, 9L, utf8("k"), utf8("garbage"));
+
+        assertEquals(DeserializationHandlerResponse.CONTINUE,
+                handler.handle(context, record, new IllegalArgumentException("bad")));
+
+        FailedRecord failed = captureDeadLettered();
+        assertEquals(FailedRecord.Stage.DESERIALIZATION, failed.getStage());
+        assertArrayEquals(utf8("garbage"), failed.getValue());
+        assertEquals(9L, failed.getOffset());
+        verify(publisher, never()).retryOrDeadLetter(any());
+    }
+
+    /**
+     * Verifies that a record that failed processing is serialized with the default
+     * Serdes and sent through the retry tiers.
+     */
+    @Test
+    void testProcessingFailureRetried() {
+        when(publisher.retryOrDeadLetter(any())).thenReturn("in-retry-1000");
+
+        assertEquals(ProcessingHandlerResponse.CONTINUE,
+                handler.handle(context, new Record<>("k", "v", 1L), new IllegalStateException("boom")));
+
+        ArgumentCaptor<FailedRecord> captor = ArgumentCaptor.forClass(FailedRecord.class);
+        verify(publisher).retryOrDeadLetter(captor.capture());
+        assertEquals(FailedRecord.Stage.PROCESSING, captor.getValue().getStage());
+        assertArrayEquals(utf8("k"), captor.getValue().getKey());
+        assertArrayEquals(utf8("v"), captor.getValue().getValue());
+        assertEquals("ocr", captor.getValue().getProcessorNodeId());
+    }
+
+    /**
+     * Verifies that a value the default Serde cannot handle is dead-lettered in its
+     * string form and never sent through the retry tiers.
+     */
+    @Test
+    void testProcessingFailureWithForeignValue() {
+        when(publisher.deadLetter(any())).thenReturn("errors");
+
+        handler.handle(context, new Record<>("k", 42, 1L), new IllegalStateException("boom"));
+
+        FailedRecord failed = captureDeadLettered();
+        assertArrayEquals(utf8("42"), failed.getValue());
+        verify(publisher, never()).retryOrDeadLetter(any());
+    }
+
+    /**
+     * Verifies that retriable send errors are left to the producer and others are dead-lettered.
+     */
+    @Test
+    void testProductionFailures() {
+        when(publisher.deadLetter(any())).thenReturn("errors");
+        ProducerRecord<byte[], byte[]> record = new ProducerRecord<>("out", utf8("k"), utf8("v"));
+
+        assertEquals(ProductionExceptionHandlerResponse.RETRY,
+                handler.handle(context, record, new TimeoutException("slow")));
+        verifyNoInteractions(publisher);
+
+        assertEquals(ProductionExceptionHandlerResponse.CONTINUE,
+                handler.handle(context, record, new IllegalStateException("too large")));
+        assertEquals(FailedRecord.Stage.PRODUCTION, captureDeadLettered().getStage());
+    }
+
+    /**
+     * Verifies that the handler fails the thread rather than lose a record the publisher rejected.
+     */
+    @Test
+    void testPublisherFailureFails() {
+        when(publisher.retryOrDeadLetter(any())).thenThrow(new IllegalStateException("closed"));
+
+        assertEquals(ProcessingHandlerResponse.FAIL,
+                handler.handle(context, new Record<>("k", "v", 1L), new IllegalStateException("boom")));
+    }
+
+    /**
+     * Verifies that a StreamsException raised by a processor stops the task instead of
+     * sending the record being processed to a retry tier.
+     */
+    @Test
+    void testStreamsExceptionFails() {
+        assertEquals(ProcessingHandlerResponse.FAIL, handler.handle(context, new Record<>("k", "v", 1L),
+                new StreamsException("Failed to hand on failed record")));
+        verify(publisher, never()).retryOrDeadLetter(any());
+    }
+
+    /**
+     * Verifies that configuring the handler without a publisher is rejected.
+     */
+    @Test
+    void testMissingPublisherRejected() {
+        DeadLetterExceptionHandler unconfigured = new DeadLetterExceptionHandler();
+
+        assertThrows(IllegalStateException.class, () -> unconfigured.configure(Map.of()));
+    }
+
+    private FailedRecord captureDeadLettered() {
+        ArgumentCaptor<FailedRecord> captor = ArgumentCaptor.forClass(FailedRecord.class);
+        verify(publisher).deadLetter(captor.capture());
+        return captor.getValue();
+    }
+
+    private static byte[] utf8(final String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,223 @@
+package com.github.dimitryivaniuta.foundation.streams;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.streams.Topology;
+import org.apache.kafka.streams.processor.api.ContextualProcessor;
+import org.apache.kafka.streams.processor.api.Record;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link DeadLetterPublisher}, verifying the retry tier progression,
+ * the failure headers, dead-lettering and redelivery to the origin topic.
+ */
+class DeadLetterPublisherTest {
+
+    private static final long NOW = 1_000_000L;
+
+    private MockProducer<byte[], byte[]> producer;
+    private DeadLetterPublisher publisher;
+
+    @BeforeEach
+    void setUp() {
+        producer = new MockProducer<>(true, null, new ByteArraySerializer(), new ByteArraySerializer());
+        publisher = new DeadLetterPublisher(producer, "errors", "documents", List.of(1_000L, 60_000L),
+                Clock.fixed(Instant.ofEpochMilli(NOW), ZoneOffset.UTC));
+        publisher.setTopology(topology().describe());
+    }
+
+    /**
+     * Verifies that a record failing after it has been transformed is dead-lettered
+     * rather than put back on the input topic.
+     */
+    @Test
+    void testDownstreamFailureDeadLettered() {
+        FailedRecord downstream = FailedRecord.builder()
+                .stage(FailedRecord.Stage.PROCESSING)
+                .topic("documents")
+                .processorNodeId("enrich")
+                .value(utf8("transformed"))
+                .build();
+
+        assertEquals("errors", publisher.retryOrDeadLetter(downstream));
+        assertEquals(0, publisher.getRetriedCount());
+    }
+
+    /**
+     * Verifies that the retry topics are named after the input topic and delay of each tier.
+     */
+    @Test
+    void testRetryTopicNames() {
+        assertEquals(List.of("documents-retry-1000", "documents-retry-60000"), publisher.getRetryTopics());
+    }
+
+    /**
+     * Verifies that a record failing for the first time goes to the first tier with
+     * its redelivery time, attempt, origin and failure headers.
+     */
+    @Test
+    void testFirstFailureGoesToFirstTier() {
+        Headers original = new RecordHeaders().add("trace", utf8("t-1"));
+
+        String topic = publisher.retryOrDeadLetter(failed(original, "in"));
+
+        assertEquals("documents-retry-1000", topic);
+        ProducerRecord<byte[], byte[]> sent = producer.history().get(0);
+        assertEquals("documents-retry-1000", sent.topic());
+        assertArrayEquals(utf8("key"), sent.key());
+        assertEquals("1", header(sent.headers(), DeadLetterPublisher.ATTEMPT_HEADER));
+        assertEquals(Long.toString(NOW + 1_000L), header(sent.headers(), DeadLetterPublisher.NOT_BEFORE_HEADER));
+        assertEquals("in", header(sent.headers(), DeadLetterPublisher.ORIGIN_TOPIC_HEADER));
+        assertEquals("PROCESSING", header(sent.headers(), DeadLetterPublisher.ERROR_HEADER_PREFIX + "stage"));
+        assertEquals("boom", header(sent.headers(), DeadLetterPublisher.ERROR_HEADER_PREFIX + "message"));
+        assertEquals("3", header(sent.headers(), DeadLetterPublisher.ERROR_HEADER_PREFIX + "partition"));
+        assertEquals("t-1", header(sent.headers(), "trace"));
+        assertNull(original.lastHeader(DeadLetterPublisher.ATTEMPT_HEADER), "input headers are not modified");
+        assertEquals(1, publisher.getRetriedCount());
+    }
+
+    /**
+     * Verifies that a record that has been through every tier is dead-lettered.
+     */
+    @Test
+    void testLastTierGoesToErrorTopic() {
+        Headers second = new RecordHeaders()
+                .add(DeadLetterPublisher.ATTEMPT_HEADER, utf8("1"))
+                .add(DeadLetterPublisher.ORIGIN_TOPIC_HEADER, utf8("in"));
+        assertEquals("documents-retry-60000", publisher.retryOrDeadLetter(failed(second, "documents-retry-1000")));
+        assertEquals("in", header(producer.history().get(0).headers(), DeadLetterPublisher.ORIGIN_TOPIC_HEADER));
+
+        Headers exhausted = new RecordHeaders().add(DeadLetterPublisher.ATTEMPT_HEADER, utf8("2"));
+        assertEquals("errors", publisher.retryOrDeadLetter(failed(exhausted, "in")));
+
+        assertEquals("errors", producer.history().get(1).topic());
+        assertEquals(1, publisher.getRetriedCount());
+        assertEquals(1, publisher.getDeadLetteredCount());
+    }
+
+    /**
+     * Verifies that without retry tiers a failed record is dead-lettered at once.
+     */
+    @Test
+    void testNoTiersDeadLettersAtOnce() {
+        DeadLetterPublisher untiered = new DeadLetterPublisher(producer, "errors", "documents", List.of(),
+                Clock.systemUTC());
+
+        assertEquals("errors", untiered.retryOrDeadLetter(failed(null, "in")));
+        assertTrue(untiered.getRetryTopics().isEmpty());
+    }
+
+    /**
+     * Verifies that a redelivered record goes to its origin topic without its redelivery time.
+     */
+    @Test
+    void testRedeliverToOriginTopic() throws Exception {
+        ConsumerRecord<byte[], byte[]> retried = new ConsumerRecord<>("documents-retry-1000", 0, 5L,
+                utf8("key"), utf8("value"));
+        retried.headers()
+                .add(DeadLetterPublisher.ATTEMPT_HEADER, utf8("1"))
+                .add(DeadLetterPublisher.NOT_BEFORE_HEADER, utf8("42"))
+                .add(DeadLetterPublisher.ORIGIN_TOPIC_HEADER, utf8("in"));
+
+        publisher.redeliver(retried).get();
+
+        ProducerRecord<byte[], byte[]> sent = producer.history().get(0);
+        assertEquals("in", sent.topic());
+        assertArrayEquals(utf8("value"), sent.value());
+        assertNull(sent.headers().lastHeader(DeadLetterPublisher.NOT_BEFORE_HEADER));
+        assertEquals("1", header(sent.headers(), DeadLetterPublisher.ATTEMPT_HEADER));
+        assertEquals(42L, DeadLetterPublisher.notBefore(retried.headers()), "consumed record is not modified");
+        assertEquals(1, publisher.getRedeliveredCount());
+    }
+
+    /**
+     * Verifies that a send rejected by the broker fails the caller and is counted.
+     */
+    @Test
+    void testRejectedSendThrowsAndIsCounted() {
+        MockProducer<byte[], byte[]> manual =
+                new MockProducer<>(false, null, new ByteArraySerializer(), new ByteArraySerializer());
+        DeadLetterPublisher rejecting = new DeadLetterPublisher(manual, "errors", "documents", List.of(),
+                Clock.systemUTC());
+        CompletableFuture.runAsync(() -> {
+            while (!manual.errorNext(new IllegalStateException("rejected"))) {
+                Thread.onSpinWait();
+            }
+        });
+
+        IllegalStateException error = assertThrows(IllegalStateException.class,
+                () -> rejecting.deadLetter(failed(null, "in")));
+
+        assertEquals("rejected", error.getCause().getMessage());
+        assertEquals(1, rejecting.getFailedCount());
+    }
+
+    /**
+     * Verifies that a send the broker does not acknowledge in time fails the caller.
+     */
+    @Test
+    void testUnacknowledgedSendTimesOut() {
+        MockProducer<byte[], byte[]> manual =
+                new MockProducer<>(false, null, new ByteArraySerializer(), new ByteArraySerializer());
+        DeadLetterPublisher stalled = new DeadLetterPublisher(manual, "errors", "documents", List.of(1_000L),
+                Clock.systemUTC(), Duration.ofMillis(50));
+
+        assertThrows(IllegalStateException.class, () -> stalled.retryOrDeadLetter(failed(null, "in")));
+        assertEquals(1, stalled.getFailedCount());
+    }
+
+    /**
+     * Builds a topology where {@code ocr} reads the input topic and {@code enrich} reads its output.
+     */
+    private static Topology topology() {
+        return new Topology()
+                .addSource("source", "documents")
+                .addProcessor("ocr", Forward::new, "source")
+                .addProcessor("enrich", Forward::new, "ocr");
+    }
+
+    private static FailedRecord failed(final Headers headers, final String topic) {
+        return FailedRecord.builder()
+                .stage(FailedRecord.Stage.PROCESSING)
+                .topic(topic)
+                .partition(3)
+                .offset(17L)
+                .processorNodeId("ocr")
+                .key(utf8("key"))
+                .value(utf8("value"))
+                .headers(headers)
+                .error(new IllegalStateException("boom"))
+                .build();
+    }
+
+    private static String header(final Headers headers, final String name) {
+        return new String(headers.lastHeader(name).value(), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] utf8(final String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static final class Forward extends ContextualProcessor<Object, Object, Object, Object> {
+
+        @Override
+        public void process(final Record<Object, Object> record) {
+            context().forward(record);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.github.dimitryivaniuta.foundation.streams;
+
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Serde;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link DocumentSerdes}, verifying round trips, zero-copy slices
+ * and rejection of corrupt input.
+ */
+class DocumentSerdesTest {
+
+    private final Serde<DocumentPayload> serde = DocumentSerdes.documentPayload();
+
+    private static DocumentPayload samplePayload() {
+        byte[] image = new byte[64 * 1024];
+        new Random(42).nextBytes(image);
+        return DocumentPayload.builder()
+                .documentId("invoice-Ж-😀")
+                .pageNumber(3)
+                .contentType("image/jpeg")
+                .image(ByteBuffer.wrap(image))
+                .ocrResult(ByteBuffer.wrap("{\"text\":\"Total 42\"}".getBytes(StandardCharsets.UTF_8)))
+                .build();
+    }
+
+    /**
+     * Verifies that every field survives a round trip, including non-ASCII identifiers.
+     */
+    @Test
+    void testRoundTrip() {
+        DocumentPayload payload = samplePayload();
+        byte[] bytes = serde.serializer().serialize("pages", payload);
+        DocumentPayload restored = serde.deserializer().deserialize("pages", bytes);
+
+        assertEquals(payload, restored);
+        assertEquals("invoice-Ж-😀", restored.getDocumentId());
+        assertTrue(bytes.length < payload.getImage().remaining() + 64, "Framing overhead should be small");
+    }
+
+    /**
+     * Verifies that null fields are preserved and a null payload maps to null bytes.
+     */
+    @Test
+    void testNullFields() {
+        DocumentPayload empty = DocumentPayload.builder().pageNumber(1).build();
+        DocumentPayload restored = serde.deserializer().deserialize("pages",
+                serde.serializer().serialize("pages", empty));
+
+        assertEquals(empty, restored);
+        assertNull(restored.getImage());
+        assertNull(serde.serializer().serialize("pages", null));
+        assertNull(serde.deserializer().deserialize("pages", (byte[]) null));
+    }
+
+    /**
+     * Verifies that the image is exposed as a read-only slice of the record bytes rather than a copy.
+     */
+    @Test
+    void testImageIsSliceOfRecord() {
+        byte[] bytes = serde.serializer().serialize("pages", samplePayload());
+        DocumentPayload restored = serde.deserializer().deserialize("pages", bytes);
+        ByteBuffer image = restored.getImage();
+
+        assertTrue(image.isReadOnly());
+        // The image is followed by a one-byte OCR length prefix and the OCR bytes
+        int offset = bytes.length - restored.getOcrResult().remaining() - 1 - image.remaining();
+        byte first = image.get(0);
+        bytes[offset] ^= (byte) 0xFF;
+        assertNotEquals(first, image.get(0), "The slice should share the record's bytes");
+    }
+
+    /**
+     * Verifies that truncated and foreign input is rejected.
+     */
+    @Test
+    void testCorruptInputIsRejected() {
+        byte[] bytes = serde.serializer().serialize("pages", samplePayload());
+
+        assertThrows(SerializationException.class,
+                () -> serde.deserializer().deserialize("pages", Arrays.copyOf(bytes, 100)));
+        assertThrows(SerializationException.class,
+                () -> serde.deserializer().deserialize("pages", "plain string".getBytes(StandardCharsets.UTF_8)));
+    }
+}
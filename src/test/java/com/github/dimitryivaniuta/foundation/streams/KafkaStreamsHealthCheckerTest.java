@@ -0,0 +1,119 @@
+package com.github.dimitryivaniuta.foundation.streams;
+
+import com.github.dimitryivaniuta.foundation.health.HealthStatus;
+import com.github.dimitryivaniuta.foundation.health.Status;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.streams.KafkaStreams;
+import org.apache.kafka.streams.TaskMetadata;
+import org.apache.kafka.streams.ThreadMetadata;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link KafkaStreamsHealthChecker}, verifying that state transitions
+ * drive liveness and readiness and that lag is reported per partition.
+ */
+class KafkaStreamsHealthCheckerTest {
+
+    private KafkaStreams streams;
+    private KafkaStreamsHealthChecker checker;
+    private KafkaStreams.StateListener listener;
+
+    @BeforeEach
+    void setUp() {
+        streams = mock(KafkaStreams.class);
+        when(streams.state()).thenReturn(KafkaStreams.State.CREATED);
+        checker = new KafkaStreamsHealthChecker(Duration.ZERO);
+        checker.attach(streams);
+
+        ArgumentCaptor<KafkaStreams.StateListener> captor = ArgumentCaptor.forClass(KafkaStreams.StateListener.class);
+        verify(streams).setStateListener(captor.capture());
+        listener = captor.getValue();
+    }
+
+    /**
+     * Verifies that the checker is not ready before the client reaches RUNNING.
+     */
+    @Test
+    void testNotReadyUntilRunning() {
+        assertEquals(Status.DOWN, checker.checkReadiness().getStatus());
+        assertEquals(Status.UP, checker.checkLiveness().getStatus());
+
+        listener.onChange(KafkaStreams.State.REBALANCING, KafkaStreams.State.CREATED);
+        assertEquals(Status.DOWN, checker.checkReadiness().getStatus(), "REBALANCING should not be ready");
+    }
+
+    /**
+     * Verifies that RUNNING is ready and that per-partition lag appears in the details.
+     */
+    @Test
+    void testRunningReportsLag() {
+        TopicPartition partition = new TopicPartition("input", 0);
+        TaskMetadata task = mock(TaskMetadata.class);
+        when(task.topicPartitions()).thenReturn(Set.of(partition));
+        // endOffsets() is only what the task has fetched and must not be used as the log end
+        when(task.endOffsets()).thenReturn(Map.of(partition, 91L));
+        when(task.committedOffsets()).thenReturn(Map.of(partition, 90L));
+        Map<MetricName, Metric> metrics = new HashMap<>();
+        putRecordsLag(metrics, "app-StreamThread-1-consumer", partition, 10.0);
+        putRecordsLag(metrics, "app-StreamThread-1-restore-consumer", new TopicPartition("app-store-changelog", 0), 500.0);
+        doReturn(metrics).when(streams).metrics();
+        ThreadMetadata thread = mock(ThreadMetadata.class);
+        when(thread.threadName()).thenReturn("app-StreamThread-1");
+        when(thread.threadState()).thenReturn("RUNNING");
+        when(thread.activeTasks()).thenReturn(Set.of(task));
+        when(streams.metadataForLocalThreads()).thenReturn(Set.of(thread));
+
+        listener.onChange(KafkaStreams.State.RUNNING, KafkaStreams.State.REBALANCING);
+        HealthStatus readiness = checker.checkReadiness();
+
+        assertEquals(Status.UP, readiness.getStatus());
+        assertEquals("10", readiness.getDetails().get("lag.input-0"));
+        assertEquals("10", readiness.getDetails().get("lag.total"));
+        assertNull(readiness.getDetails().get("lag.app-store-changelog-0"));
+        assertEquals("RUNNING", readiness.getDetails().get("thread.app-StreamThread-1"));
+    }
+
+    /**
+     * Verifies that an error state fails liveness.
+     */
+    @Test
+    void testErrorFailsLiveness() {
+        listener.onChange(KafkaStreams.State.PENDING_ERROR, KafkaStreams.State.RUNNING);
+        assertEquals(Status.DOWN, checker.checkLiveness().getStatus());
+
+        listener.onChange(KafkaStreams.State.ERROR, KafkaStreams.State.PENDING_ERROR);
+        assertEquals(Status.DOWN, checker.checkLiveness().getStatus());
+        assertEquals(Status.DOWN, checker.checkReadiness().getStatus());
+    }
+
+    /**
+     * Verifies that a detached checker reports not ready.
+     */
+    @Test
+    void testDetachedCheckerIsNotReady() {
+        KafkaStreamsHealthChecker detached = new KafkaStreamsHealthChecker();
+        assertEquals(Status.DOWN, detached.checkReadiness().getStatus());
+    }
+
+    private static void putRecordsLag(final Map<MetricName, Metric> metrics, final String clientId,
+                                      final TopicPartition partition, final double lag) {
+        MetricName name = new MetricName("records-lag", "consumer-fetch-manager-metrics", "",
+                Map.of("client-id", clientId, "topic", partition.topic(),
+                        "partition", Integer.toString(partition.partition())));
+        Metric metric = mock(Metric.class);
+        when(metric.metricValue()).thenReturn(lag);
+        metrics.put(name, metric);
+    }
+}
@@ -1,4 +1,183 @@
 package com.github.dimitryivaniuta.foundation.streams;
 
-public class KafkaStreamsModuleTest {
+import com.github.dimitryivaniuta.foundation.config.Config;
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.DescribeTopicsResult;
+import org.apache.kafka.clients.admin.TopicDescription;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.KafkaFuture;
+import org.apache.kafka.common.errors.UnknownTopicOrPartitionException;
+import org.apache.kafka.common.internals.KafkaFutureImpl;
+import org.apache.kafka.streams.StreamsConfig;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link KafkaStreamsModule#provideStreamsConfig(Config, DeadLetterPublisher)},
+ * verifying that tuning profiles, rebalance settings, exception handlers and raw
+ * overrides are applied in order, and for the start-up topic check.
+ */
+class KafkaStreamsModuleTest {
+
+    private final KafkaStreamsModule module = new KafkaStreamsModule();
+    private final DeadLetterPublisher deadLetters = Mockito.mock(DeadLetterPublisher.class);
+
+    private static Config.ConfigBuilder baseConfig() {
+        return Config.builder()
+                .kafkaBootstrapServers("localhost:9092")
+                .schemaRegistryUrl("http://localhost:8081")
+                .applicationId("test-app")
+                .kafkaSecurityProtocol("PLAINTEXT");
+    }
+
+    /**
+     * Verifies that without a profile the historical commit interval and cache size are kept.
+     */
+    @Test
+    void testDefaultProfile() {
+        Properties props = module.provideStreamsConfig(baseConfig().build(), deadLetters);
+
+        assertEquals(10_000, props.get(StreamsConfig.COMMIT_INTERVAL_MS_CONFIG));
+        assertEquals(10 * 1024 * 1024, props.get(StreamsConfig.STATESTORE_CACHE_MAX_BYTES_CONFIG));
+        assertEquals("test-app", props.get(StreamsConfig.APPLICATION_ID_CONFIG));
+    }
+
+    /**
+     * Verifies that a named profile sets streams and prefixed client properties.
+     */
+    @Test
+    void testExactlyOnceProfile() {
+        Properties props = module.provideStreamsConfig(baseConfig().streamsProfile("exactly_once_v2").build(),
+                deadLetters);
+
+        assertEquals(StreamsConfig.EXACTLY_ONCE_V2, props.get(StreamsConfig.PROCESSING_GUARANTEE_CONFIG));
+        assertEquals("lz4", props.get(StreamsConfig.producerPrefix(ProducerConfig.COMPRESSION_TYPE_CONFIG)));
+    }
+
+    /**
+     * Verifies that raw overrides are applied on top of the profile.
+     */
+    @Test
+    void testOverridesWinOverProfile() {
+        Properties props = module.provideStreamsConfig(baseConfig()
+                .streamsProfile("HIGH_THROUGHPUT")
+                .streamsOverrides(Map.of("num.stream.threads", "3", "commit.interval.ms", "5000"))
+                .build(), deadLetters);
+
+        assertEquals("3", props.get(StreamsConfig.NUM_STREAM_THREADS_CONFIG));
+        assertEquals("5000", props.get(StreamsConfig.COMMIT_INTERVAL_MS_CONFIG));
+        assertEquals(64 * 1024 * 1024, props.get(StreamsConfig.STATESTORE_CACHE_MAX_BYTES_CONFIG));
+    }
+
+    /**
+     * Verifies that an unknown profile fails fast.
+     */
+    @Test
+    void testUnknownProfileFails() {
+        Config config = baseConfig().streamsProfile("TURBO").build();
+        assertThrows(IllegalStateException.class, () -> module.provideStreamsConfig(config, deadLetters));
+    }
+
+    /**
+     * Verifies that the dead-letter handler is installed for every kind of failure
+     * and can find the publisher.
+     */
+    @Test
+    void testDeadLetterHandlersInstalled() {
+        Properties props = module.provideStreamsConfig(baseConfig().build(), deadLetters);
+
+        String handler = DeadLetterExceptionHandler.class.getName();
+        assertEquals(handler, props.get(StreamsConfig.DESERIALIZATION_EXCEPTION_HANDLER_CLASS_CONFIG));
+        assertEquals(handler, props.get(StreamsConfig.PROCESSING_EXCEPTION_HANDLER_CLASS_CONFIG));
+        assertEquals(handler, props.get(StreamsConfig.PRODUCTION_EXCEPTION_HANDLER_CLASS_CONFIG));
+        assertSame(deadLetters, props.get(DeadLetterPublisher.CONFIG));
+    }
+
+    /**
+     * Verifies that an instance id turns on static membership with one member per
+     * stream thread, and that the standby and warm-up settings are applied.
+     */
+    @Test
+    void testStaticMembershipAndStandbys() {
+        Properties props = module.provideStreamsConfig(baseConfig()
+                .streamsInstanceId("ocr-worker-2")
+                .streamsNumStandbyReplicas(1)
+                .streamsAcceptableRecoveryLag(10_000L)
+                .streamsProbingRebalanceIntervalMs(600_000L)
+                .build(), deadLetters);
+
+        assertEquals(1, props.get(StreamsConfig.NUM_STANDBY_REPLICAS_CONFIG));
+        assertEquals(10_000L, props.get(StreamsConfig.ACCEPTABLE_RECOVERY_LAG_CONFIG));
+        assertEquals(600_000L, props.get(StreamsConfig.PROBING_REBALANCE_INTERVAL_MS_CONFIG));
+        Map<String, Object> consumer = new StreamsConfig(props).getMainConsumerConfigs("test-app", "client", 1);
+        assertEquals("ocr-worker-2-1", consumer.get(ConsumerConfig.GROUP_INSTANCE_ID_CONFIG));
+    }
+
+    /**
+     * Verifies that without an instance id the group keeps dynamic membership and
+     * unset rebalance settings keep the Kafka Streams defaults.
+     */
+    @Test
+    void testDynamicMembershipWithoutInstanceId() {
+        Properties props = module.provideStreamsConfig(baseConfig().streamsInstanceId(" ").build(), deadLetters);
+
+        assertFalse(props.containsKey(StreamsConfig.mainConsumerPrefix(ConsumerConfig.GROUP_INSTANCE_ID_CONFIG)));
+        assertFalse(props.containsKey(StreamsConfig.PROBING_REBALANCE_INTERVAL_MS_CONFIG));
+        assertNull(new StreamsConfig(props).getMainConsumerConfigs("test-app", "client", 1)
+                .get(ConsumerConfig.GROUP_INSTANCE_ID_CONFIG));
+    }
+
+    /**
+     * Verifies that a missing input topic fails the check while a missing error topic does not.
+     */
+    @Test
+    void testCheckTopicsFailsOnlyForRequiredTopics() {
+        Config config = baseConfig().inputTopic("in").outputTopic("out").errorTopic("errors").build();
+        Admin admin = admin(Map.of("in", missing(), "out", found("out"), "errors", missing()));
+
+        IllegalStateException error = assertThrows(IllegalStateException.class,
+                () -> KafkaStreamsModule.checkTopics(admin, config, 1_000));
+
+        assertTrue(error.getMessage().contains("[in]"), error.getMessage());
+    }
+
+    /**
+     * Verifies that the check passes when the required topics exist, even without
+     * the error and retry topics.
+     */
+    @Test
+    void testCheckTopicsPassesWithoutErrorTopic() {
+        Config config = baseConfig().inputTopic("in").outputTopic("out").errorTopic("errors")
+                .retryDelaysMs(List.of(1_000L)).build();
+        Admin admin = admin(Map.of("in", found("in"), "out", found("out"), "errors", missing(),
+                "in-retry-1000", missing()));
+
+        assertDoesNotThrow(() -> KafkaStreamsModule.checkTopics(admin, config, 1_000));
+    }
+
+    private static Admin admin(final Map<String, KafkaFuture<TopicDescription>> descriptions) {
+        DescribeTopicsResult result = Mockito.mock(DescribeTopicsResult.class);
+        Mockito.when(result.topicNameValues()).thenReturn(descriptions);
+        Admin admin = Mockito.mock(Admin.class);
+        Mockito.when(admin.describeTopics(Mockito.<Collection<String>>any())).thenReturn(result);
+        return admin;
+    }
+
+    private static KafkaFuture<TopicDescription> found(final String topic) {
+        return KafkaFuture.completedFuture(new TopicDescription(topic, false, List.of()));
+    }
+
+    private static KafkaFuture<TopicDescription> missing() {
+        KafkaFutureImpl<TopicDescription> future = new KafkaFutureImpl<>();
+        future.completeExceptionally(new UnknownTopicOrPartitionException("missing"));
+        return future;
+    }
 }
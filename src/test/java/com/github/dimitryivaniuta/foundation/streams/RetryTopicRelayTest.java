@@ -0,0 +1,134 @@
+package com.github.dimitryivaniuta.foundation.streams;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link RetryTopicRelay}, verifying that due records are redelivered
+ * and committed while partitions whose next record is not due are paused.
+ */
+class RetryTopicRelayTest {
+
+    private static final TopicPartition FAST = new TopicPartition("in-retry-1000", 0);
+    private static final TopicPartition SLOW = new TopicPartition("in-retry-60000", 0);
+
+    private final MutableClock clock = new MutableClock(10_000L);
+    private MockProducer<byte[], byte[]> producer;
+    private MockConsumer<byte[], byte[]> consumer;
+    private RetryTopicRelay relay;
+
+    @BeforeEach
+    void setUp() {
+        producer = new MockProducer<>(true, null, new ByteArraySerializer(), new ByteArraySerializer());
+        DeadLetterPublisher publisher = new DeadLetterPublisher(producer, "errors", "in",
+                List.of(1_000L, 60_000L), clock);
+        consumer = new MockConsumer<>("earliest");
+        consumer.assign(List.of(FAST, SLOW));
+        consumer.updateBeginningOffsets(Map.of(FAST, 0L, SLOW, 0L));
+        relay = new RetryTopicRelay(consumer, publisher, clock);
+    }
+
+    /**
+     * Verifies that due records are sent to their origin topic and their offsets committed.
+     */
+    @Test
+    void testDueRecordsRedeliveredAndCommitted() {
+        consumer.addRecord(retried(FAST, 0L, 9_000L));
+        consumer.addRecord(retried(FAST, 1L, 10_000L));
+
+        assertEquals(2, relay.relayOnce());
+
+        assertEquals(2, producer.history().size());
+        assertEquals("in", producer.history().get(0).topic());
+        assertEquals(new OffsetAndMetadata(2L), consumer.committed(Set.of(FAST)).get(FAST));
+        assertTrue(relay.getPausedPartitions().isEmpty());
+    }
+
+    /**
+     * Verifies that a partition reaching a record that is not due is paused and
+     * rewound to it, while other partitions keep flowing, and resumed once it is due.
+     */
+    @Test
+    void testNotDueRecordPausesPartition() {
+        consumer.addRecord(retried(SLOW, 0L, 9_000L));
+        consumer.addRecord(retried(SLOW, 1L, 70_000L));
+        consumer.addRecord(retried(FAST, 0L, 10_000L));
+
+        assertEquals(2, relay.relayOnce());
+
+        assertEquals(Set.of(SLOW), relay.getPausedPartitions());
+        assertEquals(Set.of(SLOW), consumer.paused());
+        assertEquals(1L, consumer.position(SLOW));
+        assertEquals(new OffsetAndMetadata(1L), consumer.committed(Set.of(SLOW)).get(SLOW));
+
+        clock.millis = 70_000L;
+        consumer.addRecord(retried(SLOW, 1L, 70_000L));
+        assertEquals(1, relay.relayOnce());
+
+        assertTrue(consumer.paused().isEmpty());
+        assertEquals(new OffsetAndMetadata(2L), consumer.committed(Set.of(SLOW)).get(SLOW));
+    }
+
+    private static ConsumerRecord<byte[], byte[]> retried(final TopicPartition partition,
+                                                          final long offset,
+                                                          final long notBefore) {
+        ConsumerRecord<byte[], byte[]> record = new ConsumerRecord<>(partition.topic(), partition.partition(),
+                offset, utf8("key"), utf8("value"));
+        record.headers()
+                .add(DeadLetterPublisher.NOT_BEFORE_HEADER, utf8(Long.toString(notBefore)))
+                .add(DeadLetterPublisher.ORIGIN_TOPIC_HEADER, utf8("in"));
+        return record;
+    }
+
+    private static byte[] utf8(final String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Clock whose time the test sets.
+     */
+    private static final class MutableClock extends Clock {
+
+        private long millis;
+
+        private MutableClock(final long millis) {
+            this.millis = millis;
+        }
+
+        @Override
+        public long millis() {
+            return millis;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneId.of("UTC");
+        }
+
+        @Override
+        public Clock withZone(final ZoneId zone) {
+            return this;
+        }
+    }
+}